@@ -21,18 +21,25 @@
 package org.apache.cassandra.cache;
 
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import com.github.benmanes.caffeine.cache.*;
+import io.netty.util.concurrent.FastThreadLocal;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.io.sstable.CorruptSSTableException;
 import org.apache.cassandra.io.util.*;
 import org.apache.cassandra.metrics.ChunkCacheMetrics;
+import org.apache.cassandra.metrics.TableMetrics;
+import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.utils.memory.BufferPool;
 
 public class ChunkCache
@@ -45,7 +52,22 @@ public class ChunkCache
     private static boolean enabled = cacheSize > 0;
     public static final ChunkCache instance = enabled ? new ChunkCache() : null;
 
+    // whether the current thread runs background operations, such as compactions and validations, whose reads don't
+    // add chunks to the cache so that they don't evict the chunks of the foreground reads
+    private static final FastThreadLocal<Boolean> backgroundThread = new FastThreadLocal<Boolean>()
+    {
+        @Override
+        protected Boolean initialValue()
+        {
+            return false;
+        }
+    };
+
+    // the partition shared by the tables without a quota
     private final LoadingCache<Key, Buffer> cache;
+    // the partitions of the keyspaces and tables with a quota, by keyspace or keyspace.table name
+    private final Map<String, LoadingCache<Key, Buffer>> quotaPartitions;
+    private final List<LoadingCache<Key, Buffer>> partitions;
     public final ChunkCacheMetrics metrics;
 
     static class Key
@@ -53,6 +75,8 @@ public class ChunkCache
         final ChunkReader file;
         final String path;
         final long position;
+        // set if the chunk was read from the file when looking this key up
+        boolean loaded;
 
         public Key(ChunkReader file, long position)
         {
@@ -137,22 +161,52 @@ public class ChunkCache
     private ChunkCache()
     {
         metrics = new ChunkCacheMetrics(this);
-        cache = Caffeine.newBuilder()
-                        .maximumWeight(cacheSize)
-                        .executor(MoreExecutors.directExecutor())
-                        .weigher((key, buffer) -> ((Buffer) buffer).buffer.capacity())
-                        .removalListener(this)
-                        .recordStats(() -> metrics)
-                        .build(this);
+
+        ImmutableMap.Builder<String, LoadingCache<Key, Buffer>> quotas = ImmutableMap.builder();
+        long quotasSize = 0;
+        for (Map.Entry<String, Integer> quota : DatabaseDescriptor.getFileCacheQuotasInMB().entrySet())
+        {
+            long quotaSize = 1024L * 1024L * quota.getValue();
+            quotas.put(quota.getKey(), createPartition(quotaSize));
+            quotasSize += quotaSize;
+        }
+        quotaPartitions = quotas.build();
+        cache = createPartition(Math.max(0, cacheSize - quotasSize));
+        partitions = ImmutableList.<LoadingCache<Key, Buffer>>builder().add(cache).addAll(quotaPartitions.values()).build();
+    }
+
+    private LoadingCache<Key, Buffer> createPartition(long size)
+    {
+        return Caffeine.newBuilder()
+                       .maximumWeight(size)
+                       .executor(MoreExecutors.directExecutor())
+                       .weigher((key, buffer) -> ((Buffer) buffer).buffer.capacity())
+                       .removalListener(this)
+                       .recordStats(() -> metrics)
+                       .build(this);
     }
 
     @Override
     public Buffer load(Key key)
     {
-        ByteBuffer buffer = BufferPool.get(key.file.chunkSize(), key.file.preferredBufferType());
+        key.loaded = true;
+        return new Buffer(read(key.file, key.position), key.position);
+    }
+
+    private static ByteBuffer read(ChunkReader file, long position)
+    {
+        ByteBuffer buffer = BufferPool.get(file.chunkSize(), file.preferredBufferType());
         assert buffer != null;
-        key.file.readChunk(key.position, buffer);
-        return new Buffer(buffer, key.position);
+        try
+        {
+            file.readChunk(position, buffer);
+            return buffer;
+        }
+        catch (Throwable t)
+        {
+            BufferPool.put(buffer);
+            throw t;
+        }
     }
 
     @Override
@@ -163,12 +217,30 @@ public class ChunkCache
 
     public void close()
     {
-        cache.invalidateAll();
+        partitions.forEach(Cache::invalidateAll);
+    }
+
+    /**
+     * Marks the current thread as running background operations, such as compactions or validations. The readers it
+     * opens use the chunks present in the cache, but don't add the chunks they read to it.
+     */
+    public static void setBackgroundThread(boolean isBackgroundThread)
+    {
+        backgroundThread.set(isBackgroundThread);
     }
 
     public RebuffererFactory wrap(ChunkReader file)
     {
-        return new CachingRebufferer(file);
+        return wrap(file, 0);
+    }
+
+    /**
+     * Wraps the given file, reading the given number of chunks into the cache ahead of the readers scanning it
+     * sequentially.
+     */
+    public RebuffererFactory wrap(ChunkReader file, int readAheadChunks)
+    {
+        return new CachingRebufferer(file, readAheadChunks);
     }
 
     public static RebuffererFactory maybeWrap(ChunkReader file)
@@ -189,14 +261,37 @@ public class ChunkCache
 
     public void invalidateFile(String fileName)
     {
-        cache.invalidateAll(Iterables.filter(cache.asMap().keySet(), x -> x.path.equals(fileName)));
+        for (LoadingCache<Key, Buffer> partition : partitions)
+            partition.invalidateAll(Iterables.filter(partition.asMap().keySet(), x -> x.path.equals(fileName)));
+    }
+
+    /**
+     * Sets the table the given file belongs to: its chunks are then cached in the partition of the table or of its
+     * keyspace if they have a quota, and its cache hits and misses are counted in the table metrics.
+     */
+    public void setTable(FileHandle file, TableMetadata table, TableMetrics tableMetrics)
+    {
+        if (file == null || !(file.rebuffererFactory() instanceof CachingRebufferer))
+            return;
+
+        CachingRebufferer rebufferer = (CachingRebufferer) file.rebuffererFactory();
+        rebufferer.partition = partitionFor(table.keyspace, table.name);
+        rebufferer.tableMetrics = tableMetrics;
+    }
+
+    private LoadingCache<Key, Buffer> partitionFor(String keyspace, String table)
+    {
+        LoadingCache<Key, Buffer> partition = quotaPartitions.get(keyspace + '.' + table);
+        if (partition == null)
+            partition = quotaPartitions.get(keyspace);
+        return partition == null ? cache : partition;
     }
 
     @VisibleForTesting
     public void enable(boolean enabled)
     {
         ChunkCache.enabled = enabled;
-        cache.invalidateAll();
+        partitions.forEach(Cache::invalidateAll);
         metrics.reset();
     }
 
@@ -209,11 +304,16 @@ public class ChunkCache
     class CachingRebufferer implements Rebufferer, RebuffererFactory
     {
         private final ChunkReader source;
+        private final int readAheadChunks;
         final long alignmentMask;
+        // the partition of the cache and the metrics of the table of the file, set once it is known
+        private volatile LoadingCache<Key, Buffer> partition = cache;
+        private volatile TableMetrics tableMetrics;
 
-        public CachingRebufferer(ChunkReader file)
+        public CachingRebufferer(ChunkReader file, int readAheadChunks)
         {
             source = file;
+            this.readAheadChunks = readAheadChunks;
             int chunkSize = file.chunkSize();
             assert Integer.bitCount(chunkSize) == 1 : String.format("%d must be a power of two", chunkSize);
             alignmentMask = -chunkSize;
@@ -225,11 +325,14 @@ public class ChunkCache
             try
             {
                 long pageAlignedPos = position & alignmentMask;
+                LoadingCache<Key, Buffer> partition = this.partition;
+                Key key = new Key(source, pageAlignedPos);
                 Buffer buf;
                 do
-                    buf = cache.get(new Key(source, pageAlignedPos)).reference();
+                    buf = partition.get(key).reference();
                 while (buf == null);
 
+                recordRequest(!key.loaded);
                 return buf;
             }
             catch (Throwable t)
@@ -239,16 +342,41 @@ public class ChunkCache
             }
         }
 
+        /**
+         * Returns the chunk at the given position if it is in the cache, without adding it otherwise.
+         */
+        private Buffer getIfPresent(long pageAlignedPos)
+        {
+            Buffer buf = partition.getIfPresent(new Key(source, pageAlignedPos));
+            if (buf != null)
+                buf = buf.reference();
+
+            recordRequest(buf != null);
+            return buf;
+        }
+
+        private void recordRequest(boolean hit)
+        {
+            TableMetrics metrics = tableMetrics;
+            if (metrics != null)
+                (hit ? metrics.chunkCacheHit : metrics.chunkCacheMiss).inc();
+        }
+
         public void invalidate(long position)
         {
             long pageAlignedPos = position & alignmentMask;
-            cache.invalidate(new Key(source, pageAlignedPos));
+            // the chunk may have been cached before the table of the file was known
+            for (LoadingCache<Key, Buffer> partition : partitions)
+                partition.invalidate(new Key(source, pageAlignedPos));
         }
 
         @Override
         public Rebufferer instantiateRebufferer()
         {
-            return this;
+            if (backgroundThread.get())
+                return new BackgroundRebufferer();
+
+            return readAheadChunks > 0 ? new ReadAheadRebufferer() : this;
         }
 
         @Override
@@ -286,6 +414,148 @@ public class ChunkCache
         {
             return "CachingRebufferer:" + source;
         }
+
+        /**
+         * Rebufferer of a single reader, loading the chunks following the ones it reads into the cache when it
+         * reads them sequentially.
+         */
+        class ReadAheadRebufferer implements Rebufferer
+        {
+            private final ChunkReadAhead readAhead = new ChunkReadAhead(source.chunkSize(), readAheadChunks, source.fileLength())
+            {
+                protected ByteBuffer read(long position)
+                {
+                    partition.get(new Key(source, position));
+                    return null;
+                }
+
+                protected void discard(ByteBuffer result)
+                {
+                    // the chunks stay in the cache
+                }
+            };
+
+            @Override
+            public BufferHolder rebuffer(long position)
+            {
+                long pageAlignedPos = position & alignmentMask;
+                // wait for the chunk if it is being read ahead, so that it isn't read twice
+                readAhead.take(pageAlignedPos);
+                Buffer buf = CachingRebufferer.this.rebuffer(position);
+                readAhead.onRead(pageAlignedPos);
+                return buf;
+            }
+
+            @Override
+            public void closeReader()
+            {
+                readAhead.close();
+            }
+
+            @Override
+            public void close()
+            {
+                CachingRebufferer.this.close();
+            }
+
+            @Override
+            public ChannelProxy channel()
+            {
+                return source.channel();
+            }
+
+            @Override
+            public long fileLength()
+            {
+                return source.fileLength();
+            }
+
+            @Override
+            public double getCrcCheckChance()
+            {
+                return source.getCrcCheckChance();
+            }
+
+            @Override
+            public String toString()
+            {
+                return "CachingRebufferer.ReadAheadRebufferer:" + source;
+            }
+        }
+
+        /**
+         * Rebufferer of a single reader of a background operation, which uses the chunks present in the cache but
+         * reads the others into buffers of its own, so that a compaction or validation scanning whole sstables doesn't
+         * evict the chunks of the foreground reads.
+         */
+        class BackgroundRebufferer implements Rebufferer
+        {
+            private final ChunkReadAhead readAhead = readAheadChunks <= 0 ? null : new ChunkReadAhead(source.chunkSize(), readAheadChunks, source.fileLength())
+            {
+                protected ByteBuffer read(long position)
+                {
+                    return ChunkCache.read(source, position);
+                }
+
+                protected void discard(ByteBuffer result)
+                {
+                    BufferPool.put(result);
+                }
+            };
+
+            @Override
+            public BufferHolder rebuffer(long position)
+            {
+                long pageAlignedPos = position & alignmentMask;
+                ByteBuffer chunk = readAhead == null ? null : readAhead.take(pageAlignedPos);
+                Buffer buf = getIfPresent(pageAlignedPos);
+                if (buf == null)
+                    buf = new Buffer(chunk == null ? read(source, pageAlignedPos) : chunk, pageAlignedPos);
+                else if (chunk != null)
+                    BufferPool.put(chunk);
+
+                if (readAhead != null)
+                    readAhead.onRead(pageAlignedPos);
+                return buf;
+            }
+
+            @Override
+            public void closeReader()
+            {
+                if (readAhead != null)
+                    readAhead.close();
+            }
+
+            @Override
+            public void close()
+            {
+                CachingRebufferer.this.close();
+            }
+
+            @Override
+            public ChannelProxy channel()
+            {
+                return source.channel();
+            }
+
+            @Override
+            public long fileLength()
+            {
+                return source.fileLength();
+            }
+
+            @Override
+            public double getCrcCheckChance()
+            {
+                return source.getCrcCheckChance();
+            }
+
+            @Override
+            public String toString()
+            {
+                return "CachingRebufferer.BackgroundRebufferer:" + source;
+            }
+        }
     }
 
     @Override
@@ -303,14 +573,20 @@ public class ChunkCache
     @Override
     public int size()
     {
-        return cache.asMap().size();
+        int size = 0;
+        for (LoadingCache<Key, Buffer> partition : partitions)
+            size += partition.asMap().size();
+        return size;
     }
 
     @Override
     public long weightedSize()
     {
-        return cache.policy().eviction()
-                .map(policy -> policy.weightedSize().orElseGet(cache::estimatedSize))
-                .orElseGet(cache::estimatedSize);
+        long size = 0;
+        for (LoadingCache<Key, Buffer> partition : partitions)
+            size += partition.policy().eviction()
+                             .map(policy -> policy.weightedSize().orElseGet(partition::estimatedSize))
+                             .orElseGet(partition::estimatedSize);
+        return size;
     }
 }
@@ -68,6 +68,17 @@ public class InstrumentingCache<K, V>
         return map.get(key);
     }
 
+    /**
+     * Records the result of a lookup made directly on the wrapped cache, see {@link #getCache()}.
+     */
+    public void recordLookup(boolean hit)
+    {
+        if (hit)
+            metrics.hits.mark();
+        else
+            metrics.misses.mark();
+    }
+
     public void remove(K key)
     {
         map.remove(key);
@@ -114,6 +125,14 @@ public class InstrumentingCache<K, V>
         return map.containsKey(key);
     }
 
+    /**
+     * @return the wrapped cache, for the lookups specific to its implementation
+     */
+    public ICache<K, V> getCache()
+    {
+        return map;
+    }
+
     public CacheMetrics getMetrics()
     {
         return metrics;
@@ -24,6 +24,7 @@ import java.util.Iterator;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.TypeSizes;
 import org.apache.cassandra.db.partitions.CachedPartition;
+import org.apache.cassandra.db.partitions.CachedPartitionSlices;
 import org.apache.cassandra.io.util.DataInputBuffer;
 import org.apache.cassandra.io.util.DataOutputBuffer;
 import org.apache.cassandra.io.util.DataOutputBufferFixed;
@@ -170,17 +171,32 @@ public class OHCProvider implements CacheProvider<RowCacheKey, IRowCacheEntry>
     private static class ValueSerializer implements org.caffinitas.ohc.CacheSerializer<IRowCacheEntry>
     {
         private static ValueSerializer instance = new ValueSerializer();
+
+        // the kinds of entries, preceding their serialization
+        private static final byte PARTITION = 0;
+        private static final byte SENTINEL = 1;
+        private static final byte SLICES = 2;
+
         public void serialize(IRowCacheEntry entry, ByteBuffer buf)
         {
             assert entry != null; // unlike CFS we don't support nulls, since there is no need for that in the cache
             try (DataOutputBufferFixed out = new DataOutputBufferFixed(buf))
             {
-                boolean isSentinel = entry instanceof RowCacheSentinel;
-                out.writeBoolean(isSentinel);
-                if (isSentinel)
+                if (entry instanceof RowCacheSentinel)
+                {
+                    out.writeByte(SENTINEL);
                     out.writeLong(((RowCacheSentinel) entry).sentinelId);
+                }
+                else if (entry instanceof CachedPartitionSlices)
+                {
+                    out.writeByte(SLICES);
+                    CachedPartitionSlices.cacheSerializer.serialize((CachedPartitionSlices) entry, out);
+                }
                 else
+                {
+                    out.writeByte(PARTITION);
                     CachedPartition.cacheSerializer.serialize((CachedPartition)entry, out);
+                }
             }
             catch (IOException e)
             {
@@ -194,10 +210,15 @@ public class OHCProvider implements CacheProvider<RowCacheKey, IRowCacheEntry>
             try
             {
                 RebufferingInputStream in = new DataInputBuffer(buf, false);
-                boolean isSentinel = in.readBoolean();
-                if (isSentinel)
-                    return new RowCacheSentinel(in.readLong());
-                return CachedPartition.cacheSerializer.deserialize(in);
+                switch (in.readByte())
+                {
+                    case SENTINEL:
+                        return new RowCacheSentinel(in.readLong());
+                    case SLICES:
+                        return CachedPartitionSlices.cacheSerializer.deserialize(in);
+                    default:
+                        return CachedPartition.cacheSerializer.deserialize(in);
+                }
             }
             catch (IOException e)
             {
@@ -207,9 +228,11 @@ public class OHCProvider implements CacheProvider<RowCacheKey, IRowCacheEntry>
 
         public int serializedSize(IRowCacheEntry entry)
         {
-            int size = TypeSizes.sizeof(true);
+            int size = TypeSizes.sizeof(PARTITION);
             if (entry instanceof RowCacheSentinel)
                 size += TypeSizes.sizeof(((RowCacheSentinel) entry).sentinelId);
+            else if (entry instanceof CachedPartitionSlices)
+                size += CachedPartitionSlices.cacheSerializer.serializedSize((CachedPartitionSlices) entry);
             else
                 size += CachedPartition.cacheSerializer.serializedSize((CachedPartition) entry);
             return size;
@@ -0,0 +1,655 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.index.Index;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.util.DataInputBuffer;
+import org.apache.cassandra.io.util.DataOutputBuffer;
+import org.apache.cassandra.schema.Schema;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FastByteOperations;
+import org.apache.cassandra.utils.MurmurHash;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+
+/**
+ * A key cache keeping its entries off-heap, so that the key cache doesn't fill the old generation with
+ * {@link KeyCacheKey} and {@link RowIndexEntry} objects.
+ * <p>
+ * The entries are spread over segments, each an open-addressing hash table with linear probing, guarded by its own
+ * lock. A slot holds the hash of the key, the id of the sstable, the position of the partition in the data file and
+ * the address of a block holding the key, and for the partitions with a row index, the serialized index entry. The
+ * sstables are given compact ids as long as they have entries in the cache, and {@link #get(Descriptor, DecoratedKey)}
+ * looks up a key of an sstable without allocating a {@link KeyCacheKey}. The segments evict their entries with the
+ * CLOCK algorithm: the entries are inserted unreferenced, so that keys read only once are evicted first.
+ * <p>
+ * The capacity covers the blocks and a slot per entry, the tables having up to twice as many free slots on top.
+ */
+public class OffHeapKeyCache implements ICache<KeyCacheKey, RowIndexEntry>
+{
+    // slot layout: long hash (0 if the slot is empty), int sstable id, int flags, long data position, long block address
+    private static final int SLOT_SIZE = 32;
+    private static final int OWNER_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 12;
+    private static final int POSITION_OFFSET = 16;
+    private static final int BLOCK_OFFSET = 24;
+
+    private static final int REFERENCED = 1;
+    private static final int INDEXED = 2;
+
+    // block layout: int block size, int key length, key, serialized index entry if indexed
+    private static final int BLOCK_HEADER_SIZE = 8;
+
+    private static final int MIN_SLOTS = 16;
+    private static final long HASH_SEED = 0x9747b28cL;
+
+    private final Segment[] segments;
+    private volatile long capacity;
+
+    // the sstables with entries in the cache, by descriptor and by id
+    private final ConcurrentHashMap<Descriptor, Owner> owners = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Owner> ownersById = new ConcurrentHashMap<>();
+    private final AtomicInteger nextOwnerId = new AtomicInteger();
+
+    public OffHeapKeyCache(long capacity)
+    {
+        this(capacity, Math.max(2, Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors())));
+    }
+
+    @VisibleForTesting
+    OffHeapKeyCache(long capacity, int segmentCount)
+    {
+        assert Integer.bitCount(segmentCount) == 1 : "The number of segments must be a power of two";
+        this.capacity = capacity;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++)
+            segments[i] = new Segment();
+    }
+
+    private static final class Owner
+    {
+        final int id;
+        final TableMetadata metadata;
+        final Descriptor descriptor;
+        final RowIndexEntry.IndexSerializer serializer;
+        // guarded by the owners map
+        int entries;
+
+        Owner(int id, TableMetadata metadata, Descriptor descriptor)
+        {
+            this.id = id;
+            this.metadata = metadata;
+            this.descriptor = descriptor;
+            this.serializer = descriptor.getFormat().getIndexSerializer(metadata, descriptor.version, SerializationHeader.makeWithoutStats(metadata));
+        }
+    }
+
+    /**
+     * Returns the entry cached for the given key of the given sstable, or null, without allocating a key.
+     */
+    public RowIndexEntry get(Descriptor descriptor, DecoratedKey key)
+    {
+        Owner owner = owners.get(descriptor);
+        if (owner == null)
+            return null;
+
+        long hash = hash(owner.id, key.getKey());
+        return segmentFor(hash).get(hash, owner, key.getKey());
+    }
+
+    /**
+     * Caches the entry of the given key of the given sstable.
+     */
+    public void put(TableMetadata metadata, Descriptor descriptor, DecoratedKey key, RowIndexEntry entry)
+    {
+        put(metadata, descriptor, key.getKey(), entry, true);
+    }
+
+    public void put(KeyCacheKey key, RowIndexEntry entry)
+    {
+        put(key, entry, true);
+    }
+
+    public boolean putIfAbsent(KeyCacheKey key, RowIndexEntry entry)
+    {
+        return put(key, entry, false);
+    }
+
+    /**
+     * Replaces the entry of the given key if its partition is at the position of {@code old}, as the entries are
+     * deserialized on each lookup and can't be compared by identity.
+     */
+    public boolean replace(KeyCacheKey key, RowIndexEntry old, RowIndexEntry entry)
+    {
+        Owner owner = owners.get(key.desc);
+        if (owner == null)
+            return false;
+
+        ByteBuffer buffer = ByteBuffer.wrap(key.key);
+        long hash = hash(owner.id, buffer);
+        if (!segmentFor(hash).contains(hash, owner.id, buffer, old.position))
+            return false;
+        put(key, entry, true);
+        return true;
+    }
+
+    private boolean put(KeyCacheKey key, RowIndexEntry entry, boolean replace)
+    {
+        TableMetadata metadata = null;
+        if (!owners.containsKey(key.desc))
+        {
+            metadata = metadataFor(key);
+            if (metadata == null)
+                return false;
+        }
+        return put(metadata, key.desc, ByteBuffer.wrap(key.key), entry, replace);
+    }
+
+    private boolean put(TableMetadata metadata, Descriptor descriptor, ByteBuffer key, RowIndexEntry entry, boolean replace)
+    {
+        Owner owner = acquire(metadata, descriptor);
+        if (owner == null)
+            return false;
+
+        ByteBuffer serialized = null;
+        if (entry.isIndexed())
+        {
+            try (DataOutputBuffer out = new DataOutputBuffer())
+            {
+                owner.serializer.serializeForCache(entry, out);
+                serialized = out.buffer();
+            }
+            catch (IOException e)
+            {
+                release(owner);
+                throw new RuntimeException(e);
+            }
+        }
+
+        long hash = hash(owner.id, key);
+        return segmentFor(hash).put(hash, owner, key, entry.position, serialized, replace);
+    }
+
+    public RowIndexEntry get(KeyCacheKey key)
+    {
+        Owner owner = owners.get(key.desc);
+        if (owner == null)
+            return null;
+
+        ByteBuffer buffer = ByteBuffer.wrap(key.key);
+        long hash = hash(owner.id, buffer);
+        return segmentFor(hash).get(hash, owner, buffer);
+    }
+
+    public boolean containsKey(KeyCacheKey key)
+    {
+        Owner owner = owners.get(key.desc);
+        if (owner == null)
+            return false;
+
+        ByteBuffer buffer = ByteBuffer.wrap(key.key);
+        long hash = hash(owner.id, buffer);
+        return segmentFor(hash).contains(hash, owner.id, buffer, -1);
+    }
+
+    public void remove(KeyCacheKey key)
+    {
+        Owner owner = owners.get(key.desc);
+        if (owner == null)
+            return;
+
+        ByteBuffer buffer = ByteBuffer.wrap(key.key);
+        long hash = hash(owner.id, buffer);
+        segmentFor(hash).remove(hash, owner.id, buffer);
+    }
+
+    public void clear()
+    {
+        for (Segment segment : segments)
+            segment.clear();
+    }
+
+    public Iterator<KeyCacheKey> keyIterator()
+    {
+        return hotKeyIterator(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the keys of the referenced entries first, as there is no finer measure of their hotness.
+     */
+    public Iterator<KeyCacheKey> hotKeyIterator(int n)
+    {
+        List<KeyCacheKey> keys = new ArrayList<>();
+        for (Segment segment : segments)
+            segment.collectKeys(keys, true, n);
+        for (Segment segment : segments)
+            segment.collectKeys(keys, false, n);
+
+        Iterator<KeyCacheKey> iterator = keys.iterator();
+        return new Iterator<KeyCacheKey>()
+        {
+            private KeyCacheKey last;
+
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            public KeyCacheKey next()
+            {
+                return last = iterator.next();
+            }
+
+            public void remove()
+            {
+                OffHeapKeyCache.this.remove(last);
+            }
+        };
+    }
+
+    public long capacity()
+    {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity)
+    {
+        this.capacity = capacity;
+        for (Segment segment : segments)
+            segment.evict();
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    public long weightedSize()
+    {
+        long weightedSize = 0;
+        for (Segment segment : segments)
+            weightedSize += segment.weight();
+        return weightedSize;
+    }
+
+    private Segment segmentFor(long hash)
+    {
+        return segments[(int) (hash >>> 32) & (segments.length - 1)];
+    }
+
+    private static long hash(int ownerId, ByteBuffer key)
+    {
+        long hash = MurmurHash.hash2_64(key, key.position(), key.remaining(), HASH_SEED) ^ (ownerId * 0x9E3779B97F4A7C15L);
+        // 0 marks the empty slots
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static TableMetadata metadataFor(KeyCacheKey key)
+    {
+        ColumnFamilyStore cfs = Schema.instance.getColumnFamilyStoreInstance(key.tableId);
+        if (cfs != null && key.indexName != null)
+        {
+            Index index = cfs.indexManager.getIndexByName(key.indexName);
+            cfs = index == null ? null : index.getBackingTable().orElse(null);
+        }
+        return cfs == null ? null : cfs.metadata();
+    }
+
+    /**
+     * Registers an entry of the given sstable, giving it an id if it has no other entry.
+     *
+     * @param metadata the metadata of the sstable's table, only needed if the sstable has no id yet
+     */
+    private Owner acquire(TableMetadata metadata, Descriptor descriptor)
+    {
+        return owners.compute(descriptor, (d, owner) -> {
+            if (owner == null)
+            {
+                if (metadata == null)
+                    return null;
+                owner = new Owner(nextOwnerId(), metadata, d);
+                ownersById.put(owner.id, owner);
+            }
+            owner.entries++;
+            return owner;
+        });
+    }
+
+    private int nextOwnerId()
+    {
+        int id = nextOwnerId.getAndIncrement();
+        while (ownersById.containsKey(id))
+            id = nextOwnerId.getAndIncrement();
+        return id;
+    }
+
+    private void release(int ownerId)
+    {
+        Owner owner = ownersById.get(ownerId);
+        if (owner != null)
+            release(owner);
+    }
+
+    private void release(Owner owner)
+    {
+        owners.computeIfPresent(owner.descriptor, (d, o) -> {
+            if (--o.entries > 0)
+                return o;
+            ownersById.remove(o.id);
+            return null;
+        });
+    }
+
+    private static boolean keyEquals(long block, ByteBuffer key)
+    {
+        int length = MemoryUtil.getInt(block + 4);
+        return length == key.remaining()
+               && FastByteOperations.UnsafeOperations.compareTo(null, block + BLOCK_HEADER_SIZE, length, key) == 0;
+    }
+
+    private final class Segment
+    {
+        private long table = allocateTable(MIN_SLOTS);
+        private int mask = MIN_SLOTS - 1;
+        private int size;
+        private int hand;
+        private long blockBytes;
+
+        private long slot(int index)
+        {
+            return table + (long) index * SLOT_SIZE;
+        }
+
+        private int find(long hash, int ownerId, ByteBuffer key)
+        {
+            for (int index = (int) hash & mask; ; index = (index + 1) & mask)
+            {
+                long slot = slot(index);
+                long slotHash = MemoryUtil.getLong(slot);
+                if (slotHash == 0)
+                    return -1;
+                if (slotHash == hash
+                    && MemoryUtil.getInt(slot + OWNER_OFFSET) == ownerId
+                    && keyEquals(MemoryUtil.getLong(slot + BLOCK_OFFSET), key))
+                    return index;
+            }
+        }
+
+        synchronized RowIndexEntry get(long hash, Owner owner, ByteBuffer key)
+        {
+            int index = find(hash, owner.id, key);
+            if (index < 0)
+                return null;
+
+            long slot = slot(index);
+            int flags = MemoryUtil.getInt(slot + FLAGS_OFFSET);
+            if ((flags & REFERENCED) == 0)
+                MemoryUtil.setInt(slot + FLAGS_OFFSET, flags | REFERENCED);
+
+            long position = MemoryUtil.getLong(slot + POSITION_OFFSET);
+            if ((flags & INDEXED) == 0)
+                return new RowIndexEntry<>(position);
+
+            long block = MemoryUtil.getLong(slot + BLOCK_OFFSET);
+            int offset = BLOCK_HEADER_SIZE + MemoryUtil.getInt(block + 4);
+            ByteBuffer serialized = MemoryUtil.getByteBuffer(block + offset, MemoryUtil.getInt(block) - offset, ByteOrder.BIG_ENDIAN);
+            try
+            {
+                return owner.serializer.deserializeForCache(new DataInputBuffer(serialized, false));
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * @param position the data position the entry must have, or -1 for any
+         */
+        synchronized boolean contains(long hash, int ownerId, ByteBuffer key, long position)
+        {
+            int index = find(hash, ownerId, key);
+            return index >= 0 && (position < 0 || MemoryUtil.getLong(slot(index) + POSITION_OFFSET) == position);
+        }
+
+        /**
+         * Adds an entry of the given owner, which must have been acquired for it.
+         */
+        synchronized boolean put(long hash, Owner owner, ByteBuffer key, long position, ByteBuffer serialized, boolean replace)
+        {
+            int keyLength = key.remaining();
+            int blockSize = BLOCK_HEADER_SIZE + keyLength + (serialized == null ? 0 : serialized.remaining());
+            if (blockSize + SLOT_SIZE > segmentCapacity())
+            {
+                release(owner);
+                return false;
+            }
+
+            int index = find(hash, owner.id, key);
+            if (index >= 0)
+            {
+                // the entry keeps its reference to the owner
+                release(owner);
+                if (!replace)
+                    return false;
+                freeBlock(MemoryUtil.getLong(slot(index) + BLOCK_OFFSET));
+            }
+            else
+            {
+                if (size + 1 > (mask + 1) * 3L / 4)
+                    resize((mask + 1) * 2);
+                index = (int) hash & mask;
+                while (MemoryUtil.getLong(slot(index)) != 0)
+                    index = (index + 1) & mask;
+                MemoryUtil.setLong(slot(index), hash);
+                MemoryUtil.setInt(slot(index) + OWNER_OFFSET, owner.id);
+                MemoryUtil.setInt(slot(index) + FLAGS_OFFSET, 0);
+                size++;
+            }
+
+            long block = MemoryUtil.allocate(blockSize);
+            MemoryUtil.setInt(block, blockSize);
+            MemoryUtil.setInt(block + 4, keyLength);
+            copy(key, block + BLOCK_HEADER_SIZE);
+            if (serialized != null)
+                copy(serialized, block + BLOCK_HEADER_SIZE + keyLength);
+            blockBytes += blockSize;
+
+            long slot = slot(index);
+            int flags = MemoryUtil.getInt(slot + FLAGS_OFFSET) & REFERENCED;
+            MemoryUtil.setInt(slot + FLAGS_OFFSET, serialized == null ? flags : flags | INDEXED);
+            MemoryUtil.setLong(slot + POSITION_OFFSET, position);
+            MemoryUtil.setLong(slot + BLOCK_OFFSET, block);
+
+            evict();
+            return true;
+        }
+
+        synchronized void remove(long hash, int ownerId, ByteBuffer key)
+        {
+            int index = find(hash, ownerId, key);
+            if (index >= 0)
+                removeAt(index);
+        }
+
+        synchronized void clear()
+        {
+            for (int index = 0; index <= mask; index++)
+            {
+                long slot = slot(index);
+                if (MemoryUtil.getLong(slot) != 0)
+                {
+                    freeBlock(MemoryUtil.getLong(slot + BLOCK_OFFSET));
+                    release(MemoryUtil.getInt(slot + OWNER_OFFSET));
+                }
+            }
+            MemoryUtil.free(table);
+            table = allocateTable(MIN_SLOTS);
+            mask = MIN_SLOTS - 1;
+            size = 0;
+            hand = 0;
+        }
+
+        synchronized void collectKeys(List<KeyCacheKey> keys, boolean referenced, int limit)
+        {
+            for (int index = 0; index <= mask && keys.size() < limit; index++)
+            {
+                long slot = slot(index);
+                if (MemoryUtil.getLong(slot) == 0 || ((MemoryUtil.getInt(slot + FLAGS_OFFSET) & REFERENCED) != 0) != referenced)
+                    continue;
+
+                Owner owner = ownersById.get(MemoryUtil.getInt(slot + OWNER_OFFSET));
+                if (owner == null)
+                    continue;
+
+                long block = MemoryUtil.getLong(slot + BLOCK_OFFSET);
+                byte[] key = new byte[MemoryUtil.getInt(block + 4)];
+                MemoryUtil.getBytes(block + BLOCK_HEADER_SIZE, key, 0, key.length);
+                keys.add(new KeyCacheKey(owner.metadata, owner.descriptor, ByteBuffer.wrap(key)));
+            }
+        }
+
+        synchronized int size()
+        {
+            return size;
+        }
+
+        synchronized long weight()
+        {
+            return (long) size * SLOT_SIZE + blockBytes;
+        }
+
+        private long segmentCapacity()
+        {
+            return capacity / segments.length;
+        }
+
+        /**
+         * Evicts entries with the CLOCK algorithm until the segment fits its capacity: the hand clears the referenced
+         * flag of the entries it passes, and evicts the first entry it finds unreferenced.
+         */
+        synchronized void evict()
+        {
+            long capacity = segmentCapacity();
+            while (size > 0 && weight() > capacity)
+            {
+                long slot = slot(hand);
+                int flags = MemoryUtil.getInt(slot + FLAGS_OFFSET);
+                if (MemoryUtil.getLong(slot) == 0)
+                {
+                    hand = (hand + 1) & mask;
+                }
+                else if ((flags & REFERENCED) != 0)
+                {
+                    MemoryUtil.setInt(slot + FLAGS_OFFSET, flags & ~REFERENCED);
+                    hand = (hand + 1) & mask;
+                }
+                else
+                {
+                    // the entry shifted into the evicted slot, if any, is examined next
+                    removeAt(hand);
+                }
+            }
+        }
+
+        private void removeAt(int index)
+        {
+            long slot = slot(index);
+            int ownerId = MemoryUtil.getInt(slot + OWNER_OFFSET);
+            freeBlock(MemoryUtil.getLong(slot + BLOCK_OFFSET));
+            size--;
+
+            // shift back the following entries of the probe sequence that can't be found past the emptied slot anymore
+            int empty = index;
+            for (int next = (index + 1) & mask; MemoryUtil.getLong(slot(next)) != 0; next = (next + 1) & mask)
+            {
+                int home = (int) MemoryUtil.getLong(slot(next)) & mask;
+                boolean reachable = empty <= next ? empty < home && home <= next : empty < home || home <= next;
+                if (reachable)
+                    continue;
+                MemoryUtil.setBytes(slot(next), slot(empty), SLOT_SIZE);
+                empty = next;
+            }
+            MemoryUtil.setByte(slot(empty), SLOT_SIZE, (byte) 0);
+            release(ownerId);
+        }
+
+        private void resize(int slots)
+        {
+            long oldTable = table;
+            int oldSlots = mask + 1;
+            table = allocateTable(slots);
+            mask = slots - 1;
+            hand = 0;
+            for (int index = 0; index < oldSlots; index++)
+            {
+                long oldSlot = oldTable + (long) index * SLOT_SIZE;
+                long hash = MemoryUtil.getLong(oldSlot);
+                if (hash == 0)
+                    continue;
+
+                int newIndex = (int) hash & mask;
+                while (MemoryUtil.getLong(slot(newIndex)) != 0)
+                    newIndex = (newIndex + 1) & mask;
+                MemoryUtil.setBytes(oldSlot, slot(newIndex), SLOT_SIZE);
+            }
+            MemoryUtil.free(oldTable);
+        }
+
+        private void freeBlock(long block)
+        {
+            blockBytes -= MemoryUtil.getInt(block);
+            MemoryUtil.free(block);
+        }
+    }
+
+    private static long allocateTable(int slots)
+    {
+        long size = (long) slots * SLOT_SIZE;
+        long table = MemoryUtil.allocate(size);
+        MemoryUtil.setByte(table, (int) size, (byte) 0);
+        return table;
+    }
+
+    private static void copy(ByteBuffer buffer, long address)
+    {
+        if (buffer.hasArray())
+            MemoryUtil.setBytes(address, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        else
+            MemoryUtil.setBytes(address, ByteBufferUtil.getArray(buffer), 0, buffer.remaining());
+    }
+}
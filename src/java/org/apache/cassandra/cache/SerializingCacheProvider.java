@@ -22,6 +22,7 @@ import java.io.IOException;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.TypeSizes;
 import org.apache.cassandra.db.partitions.CachedPartition;
+import org.apache.cassandra.db.partitions.CachedPartitionSlices;
 import org.apache.cassandra.io.ISerializer;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.io.util.DataOutputPlus;
@@ -36,31 +37,51 @@ public class SerializingCacheProvider implements CacheProvider<RowCacheKey, IRow
     // Package Public: used by external Row Cache plugins
     public static class RowCacheSerializer implements ISerializer<IRowCacheEntry>
     {
+        // the kinds of entries, preceding their serialization
+        private static final byte PARTITION = 0;
+        private static final byte SENTINEL = 1;
+        private static final byte SLICES = 2;
+
         public void serialize(IRowCacheEntry entry, DataOutputPlus out) throws IOException
         {
             assert entry != null; // unlike CFS we don't support nulls, since there is no need for that in the cache
-            boolean isSentinel = entry instanceof RowCacheSentinel;
-            out.writeBoolean(isSentinel);
-            if (isSentinel)
+            if (entry instanceof RowCacheSentinel)
+            {
+                out.writeByte(SENTINEL);
                 out.writeLong(((RowCacheSentinel) entry).sentinelId);
+            }
+            else if (entry instanceof CachedPartitionSlices)
+            {
+                out.writeByte(SLICES);
+                CachedPartitionSlices.cacheSerializer.serialize((CachedPartitionSlices) entry, out);
+            }
             else
+            {
+                out.writeByte(PARTITION);
                 CachedPartition.cacheSerializer.serialize((CachedPartition)entry, out);
+            }
         }
 
         public IRowCacheEntry deserialize(DataInputPlus in) throws IOException
         {
-            boolean isSentinel = in.readBoolean();
-            if (isSentinel)
-                return new RowCacheSentinel(in.readLong());
-
-            return CachedPartition.cacheSerializer.deserialize(in);
+            switch (in.readByte())
+            {
+                case SENTINEL:
+                    return new RowCacheSentinel(in.readLong());
+                case SLICES:
+                    return CachedPartitionSlices.cacheSerializer.deserialize(in);
+                default:
+                    return CachedPartition.cacheSerializer.deserialize(in);
+            }
         }
 
         public long serializedSize(IRowCacheEntry entry)
         {
-            int size = TypeSizes.sizeof(true);
+            long size = TypeSizes.sizeof(PARTITION);
             if (entry instanceof RowCacheSentinel)
                 size += TypeSizes.sizeof(((RowCacheSentinel) entry).sentinelId);
+            else if (entry instanceof CachedPartitionSlices)
+                size += CachedPartitionSlices.cacheSerializer.serializedSize((CachedPartitionSlices) entry);
             else
                 size += CachedPartition.cacheSerializer.serializedSize((CachedPartition) entry);
             return size;
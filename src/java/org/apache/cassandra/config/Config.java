@@ -20,6 +20,7 @@ package org.apache.cassandra.config;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -121,6 +122,7 @@ public class Config
     public Integer concurrent_replicates = null;
 
     public int memtable_flush_writers = 0;
+    public int memtable_flush_split_size_in_mb = 0;
     public Integer memtable_heap_space_in_mb;
     public Integer memtable_offheap_space_in_mb;
     public Float memtable_cleanup_threshold = null;
@@ -189,6 +191,8 @@ public class Config
     public int native_transport_frame_block_size_in_kb = 32;
     public volatile long native_transport_max_concurrent_requests_in_bytes_per_ip = -1L;
     public volatile long native_transport_max_concurrent_requests_in_bytes = -1L;
+    public volatile boolean native_transport_inline_reads = false;
+    public volatile int native_transport_max_pipelined_group_size = 1;
 
 
     /**
@@ -204,11 +208,15 @@ public class Config
     /* if the size of columns or super-columns are more than this, indexing will kick in */
     public int column_index_size_in_kb = 64;
     public int column_index_cache_size_in_kb = 2;
+    public String sstable_format = "big";
     public volatile int batch_size_warn_threshold_in_kb = 5;
     public volatile int batch_size_fail_threshold_in_kb = 50;
     public Integer unlogged_batch_across_partitions_warn_threshold = 10;
     public volatile Integer concurrent_compactors;
+    public volatile int compaction_split_size_in_mb = 0;
     public volatile int compaction_throughput_mb_per_sec = 16;
+    public volatile int compaction_read_latency_target_in_ms = 0;
+    public volatile int tombstone_compaction_throughput_mb_per_sec = 0;
     public volatile int compaction_large_partition_warning_threshold_mb = 100;
     public int min_free_space_per_drive_in_mb = 50;
 
@@ -242,6 +250,7 @@ public class Config
     public int commitlog_segment_size_in_mb = 32;
     public ParameterizedClass commitlog_compression;
     public int commitlog_max_compression_buffers_in_pool = 3;
+    public CommitLogDiskAccessMode commitlog_disk_access_mode = CommitLogDiskAccessMode.legacy;
     public Integer periodic_commitlog_sync_lag_block_in_ms;
     public TransparentDataEncryptionOptions transparent_data_encryption_options = new TransparentDataEncryptionOptions();
 
@@ -281,6 +290,7 @@ public class Config
     public volatile int sstable_preemptive_open_interval_in_mb = 50;
 
     public volatile boolean key_cache_migrate_during_compaction = true;
+    public String key_cache_class_name = "org.apache.cassandra.cache.CaffeineKeyCacheProvider";
     public Long key_cache_size_in_mb = null;
     public volatile int key_cache_save_period = 14400;
     public volatile int key_cache_keys_to_save = Integer.MAX_VALUE;
@@ -310,6 +320,13 @@ public class Config
      */
     public Boolean file_cache_round_up;
 
+    /**
+     * Capacities of the file cache reserved to some keyspaces or tables, by keyspace name or
+     * {@code keyspace.table} name. The chunks of these keyspaces and tables are cached in their own partition of the
+     * file cache, and the other tables share the rest of it.
+     */
+    public Map<String, Integer> file_cache_quotas_in_mb = new HashMap<>();
+
     public boolean buffer_pool_use_heap_if_exhausted = true;
 
     public DiskOptimizationStrategy disk_optimization_strategy = DiskOptimizationStrategy.ssd;
@@ -318,6 +335,18 @@ public class Config
 
     public double disk_optimization_page_cross_chance = 0.1;
 
+    /**
+     * The number of chunks read asynchronously ahead of a reader scanning an sstable sequentially, or 0 to disable
+     * read-ahead. If not set, the {@link #disk_optimization_strategy} default is used: 8 for {@code ssd} and 0 for
+     * {@code spinning}, which relies on the read-ahead of the OS.
+     */
+    public Integer disk_read_ahead_chunks;
+
+    /**
+     * The maximum number of chunk reads ahead of the readers that can be run concurrently.
+     */
+    public int concurrent_read_aheads = 16;
+
     public boolean inter_dc_tcp_nodelay = true;
 
     public MemtableAllocationType memtable_allocation_type = MemtableAllocationType.heap_buffers;
@@ -438,6 +467,7 @@ public class Config
     public volatile boolean automatic_sstable_upgrade = false;
     public volatile int max_concurrent_automatic_sstable_upgrades = 1;
     public boolean stream_entire_sstables = true;
+    public boolean stream_entire_sstable_slices = false;
 
     public volatile AuditLogOptions audit_logging_options = new AuditLogOptions();
     public volatile FullQueryLoggerOptions full_query_logging_options = new FullQueryLoggerOptions();
@@ -508,6 +538,12 @@ public class Config
         all, none, dc
     }
 
+    public enum CommitLogDiskAccessMode
+    {
+        legacy,
+        direct
+    }
+
     public enum DiskAccessMode
     {
         auto,
@@ -521,7 +557,8 @@ public class Config
         unslabbed_heap_buffers,
         heap_buffers,
         offheap_buffers,
-        offheap_objects
+        offheap_objects,
+        offheap_objects_full
     }
 
     public enum DiskFailurePolicy
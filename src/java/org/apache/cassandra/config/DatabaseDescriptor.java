@@ -448,6 +448,18 @@ public class DatabaseDescriptor
         if (conf.file_cache_size_in_mb == null)
             conf.file_cache_size_in_mb = Math.min(512, (int) (Runtime.getRuntime().maxMemory() / (4 * 1048576)));
 
+        if (conf.file_cache_quotas_in_mb == null)
+            conf.file_cache_quotas_in_mb = new HashMap<>();
+        long fileCacheQuotas = 0;
+        for (Map.Entry<String, Integer> quota : conf.file_cache_quotas_in_mb.entrySet())
+        {
+            if (quota.getValue() == null || quota.getValue() <= 0)
+                throw new ConfigurationException("file_cache_quotas_in_mb must be positive, but was " + quota.getValue() + " for " + quota.getKey(), false);
+            fileCacheQuotas += quota.getValue();
+        }
+        if (fileCacheQuotas >= conf.file_cache_size_in_mb)
+            throw new ConfigurationException("The sum of file_cache_quotas_in_mb must be smaller than file_cache_size_in_mb (" + conf.file_cache_size_in_mb + "), but was " + fileCacheQuotas, false);
+
         // round down for SSDs and round up for spinning disks
         if (conf.file_cache_round_up == null)
             conf.file_cache_round_up = conf.disk_optimization_strategy == Config.DiskOptimizationStrategy.spinning;
@@ -638,6 +650,9 @@ public class DatabaseDescriptor
         if (conf.memtable_flush_writers < 1)
             throw new ConfigurationException("memtable_flush_writers must be at least 1, but was " + conf.memtable_flush_writers, false);
 
+        if (conf.memtable_flush_split_size_in_mb < 0)
+            throw new ConfigurationException("memtable_flush_split_size_in_mb must not be negative, but was " + conf.memtable_flush_split_size_in_mb, false);
+
         if (conf.memtable_cleanup_threshold == null)
         {
             conf.memtable_cleanup_threshold = (float) (1.0 / (1 + conf.memtable_flush_writers));
@@ -663,6 +678,15 @@ public class DatabaseDescriptor
         if (conf.concurrent_compactors <= 0)
             throw new ConfigurationException("concurrent_compactors should be strictly greater than 0, but was " + conf.concurrent_compactors, false);
 
+        if (conf.compaction_split_size_in_mb < 0)
+            throw new ConfigurationException("compaction_split_size_in_mb must not be negative, but was " + conf.compaction_split_size_in_mb, false);
+
+        if (conf.compaction_read_latency_target_in_ms < 0)
+            throw new ConfigurationException("compaction_read_latency_target_in_ms must not be negative, but was " + conf.compaction_read_latency_target_in_ms, false);
+
+        if (conf.tombstone_compaction_throughput_mb_per_sec < 0)
+            throw new ConfigurationException("tombstone_compaction_throughput_mb_per_sec must not be negative, but was " + conf.tombstone_compaction_throughput_mb_per_sec, false);
+
         if (conf.concurrent_materialized_view_builders <= 0)
             throw new ConfigurationException("concurrent_materialized_view_builders should be strictly greater than 0, but was " + conf.concurrent_materialized_view_builders, false);
 
@@ -780,13 +804,23 @@ public class DatabaseDescriptor
         switch (conf.disk_optimization_strategy)
         {
             case ssd:
-                diskOptimizationStrategy = new SsdDiskOptimizationStrategy(conf.disk_optimization_page_cross_chance);
+                diskOptimizationStrategy = conf.disk_read_ahead_chunks == null
+                                           ? new SsdDiskOptimizationStrategy(conf.disk_optimization_page_cross_chance)
+                                           : new SsdDiskOptimizationStrategy(conf.disk_optimization_page_cross_chance, conf.disk_read_ahead_chunks);
                 break;
             case spinning:
-                diskOptimizationStrategy = new SpinningDiskOptimizationStrategy();
+                diskOptimizationStrategy = conf.disk_read_ahead_chunks == null
+                                           ? new SpinningDiskOptimizationStrategy()
+                                           : new SpinningDiskOptimizationStrategy(conf.disk_read_ahead_chunks);
                 break;
         }
 
+        if (conf.disk_read_ahead_chunks != null && conf.disk_read_ahead_chunks < 0)
+            throw new ConfigurationException("disk_read_ahead_chunks must not be negative, but was " + conf.disk_read_ahead_chunks, false);
+
+        if (conf.concurrent_read_aheads <= 0)
+            throw new ConfigurationException("concurrent_read_aheads must be positive, but was " + conf.concurrent_read_aheads, false);
+
         try
         {
             ParameterizedClass strategy = conf.back_pressure_strategy != null ? conf.back_pressure_strategy : RateBasedBackPressure.withDefaultParams();
@@ -1377,6 +1411,17 @@ public class DatabaseDescriptor
         conf.column_index_cache_size_in_kb = val;
     }
 
+    public static String getSSTableFormat()
+    {
+        return conf.sstable_format;
+    }
+
+    @VisibleForTesting
+    public static void setSSTableFormat(String format)
+    {
+        conf.sstable_format = format;
+    }
+
     public static int getBatchSizeWarnThreshold()
     {
         return conf.batch_size_warn_threshold_in_kb * 1024;
@@ -1631,6 +1676,26 @@ public class DatabaseDescriptor
             return conf.memtable_flush_writers;
     }
 
+    /**
+     * @return the amount of memtable data per data directory above which a flush is split into token sub-ranges
+     * written concurrently, in bytes, or 0 if flushes are not split
+     */
+    public static long getMemtableFlushSplitSize()
+    {
+        return conf.memtable_flush_split_size_in_mb * 1024L * 1024L;
+    }
+
+    public static int getMemtableFlushSplitSizeInMB()
+    {
+        return conf.memtable_flush_split_size_in_mb;
+    }
+
+    @VisibleForTesting
+    public static void setMemtableFlushSplitSizeInMB(int sizeInMB)
+    {
+        conf.memtable_flush_split_size_in_mb = sizeInMB;
+    }
+
     public static int getConcurrentCompactors()
     {
         return conf.concurrent_compactors;
@@ -1641,6 +1706,26 @@ public class DatabaseDescriptor
         conf.concurrent_compactors = value;
     }
 
+    /**
+     * @return the input size above which a compaction is split into token sub-ranges compacted concurrently, in bytes,
+     * or 0 if compactions are not split
+     */
+    public static long getCompactionSplitSize()
+    {
+        return conf.compaction_split_size_in_mb * 1024L * 1024L;
+    }
+
+    public static int getCompactionSplitSizeInMB()
+    {
+        return conf.compaction_split_size_in_mb;
+    }
+
+    @VisibleForTesting
+    public static void setCompactionSplitSizeInMB(int sizeInMB)
+    {
+        conf.compaction_split_size_in_mb = sizeInMB;
+    }
+
     public static int getCompactionThroughputMbPerSec()
     {
         return conf.compaction_throughput_mb_per_sec;
@@ -1651,6 +1736,26 @@ public class DatabaseDescriptor
         conf.compaction_throughput_mb_per_sec = value;
     }
 
+    public static int getCompactionReadLatencyTargetInMs()
+    {
+        return conf.compaction_read_latency_target_in_ms;
+    }
+
+    public static void setCompactionReadLatencyTargetInMs(int value)
+    {
+        conf.compaction_read_latency_target_in_ms = value;
+    }
+
+    public static int getTombstoneCompactionThroughputMbPerSec()
+    {
+        return conf.tombstone_compaction_throughput_mb_per_sec;
+    }
+
+    public static void setTombstoneCompactionThroughputMbPerSec(int value)
+    {
+        conf.tombstone_compaction_throughput_mb_per_sec = value;
+    }
+
     public static long getCompactionLargePartitionWarningThreshold() { return conf.compaction_large_partition_warning_threshold_mb * 1024L * 1024L; }
 
     public static int getConcurrentValidations()
@@ -1745,6 +1850,17 @@ public class DatabaseDescriptor
         conf.commitlog_max_compression_buffers_in_pool = buffers;
     }
 
+    public static Config.CommitLogDiskAccessMode getCommitLogDiskAccessMode()
+    {
+        return conf.commitlog_disk_access_mode;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogDiskAccessMode(Config.CommitLogDiskAccessMode mode)
+    {
+        conf.commitlog_disk_access_mode = mode;
+    }
+
     public static int getMaxMutationSize()
     {
         return conf.max_mutation_size_in_kb * 1024;
@@ -2030,6 +2146,26 @@ public class DatabaseDescriptor
         conf.native_transport_allow_older_protocols = isEnabled;
     }
 
+    public static boolean getNativeTransportInlineReads()
+    {
+        return conf.native_transport_inline_reads;
+    }
+
+    public static void setNativeTransportInlineReads(boolean inlineReads)
+    {
+        conf.native_transport_inline_reads = inlineReads;
+    }
+
+    public static int getNativeTransportMaxPipelinedGroupSize()
+    {
+        return conf.native_transport_max_pipelined_group_size;
+    }
+
+    public static void setNativeTransportMaxPipelinedGroupSize(int maxGroupSize)
+    {
+        conf.native_transport_max_pipelined_group_size = maxGroupSize;
+    }
+
     public static int getNativeTransportFrameBlockSize()
     {
         return conf.native_transport_frame_block_size_in_kb * 1024;
@@ -2326,6 +2462,11 @@ public class DatabaseDescriptor
         return conf.file_cache_size_in_mb;
     }
 
+    public static Map<String, Integer> getFileCacheQuotasInMB()
+    {
+        return conf.file_cache_quotas_in_mb;
+    }
+
     public static boolean getFileCacheRoundUp()
     {
         if (conf.file_cache_round_up == null)
@@ -2348,6 +2489,11 @@ public class DatabaseDescriptor
         return diskOptimizationStrategy;
     }
 
+    public static int getConcurrentReadAheads()
+    {
+        return conf.concurrent_read_aheads;
+    }
+
     public static double getDiskOptimizationEstimatePercentile()
     {
         return conf.disk_optimization_estimate_percentile;
@@ -2417,6 +2563,11 @@ public class DatabaseDescriptor
         conf.key_cache_keys_to_save = keyCacheKeysToSave;
     }
 
+    public static String getKeyCacheClassName()
+    {
+        return conf.key_cache_class_name;
+    }
+
     public static String getRowCacheClassName()
     {
         return conf.row_cache_class_name;
@@ -2493,6 +2644,17 @@ public class DatabaseDescriptor
         return conf.stream_entire_sstables;
     }
 
+    public static boolean streamEntireSSTableSlices()
+    {
+        return conf.stream_entire_sstable_slices;
+    }
+
+    @VisibleForTesting
+    public static void setStreamEntireSSTableSlices(boolean enabled)
+    {
+        conf.stream_entire_sstable_slices = enabled;
+    }
+
     public static String getLocalDataCenter()
     {
         return localDC;
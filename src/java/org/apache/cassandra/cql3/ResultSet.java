@@ -20,6 +20,7 @@ package org.apache.cassandra.cql3;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,6 +32,7 @@ import java.util.Objects;
 import com.google.common.annotations.VisibleForTesting;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.apache.cassandra.cql3.statements.SelectStatement;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.service.pager.PagingState;
@@ -59,6 +61,26 @@ public class ResultSet
         this.rows = rows;
     }
 
+    /**
+     * Creates an empty result set that encodes its rows in their native protocol form as they are added, see
+     * {@link EncodedRows}, or a regular one if the rows hold values that aren't sent to the client.
+     */
+    public static ResultSet withEncodedRows(ResultMetadata resultMetadata)
+    {
+        if (resultMetadata.valueCount() != resultMetadata.columnCount)
+            return new ResultSet(resultMetadata);
+
+        return new ResultSet(resultMetadata, new EncodedRows(resultMetadata.columnCount));
+    }
+
+    /**
+     * @return whether the rows of this result set are kept in their native protocol form.
+     */
+    public boolean hasEncodedRows()
+    {
+        return rows instanceof EncodedRows;
+    }
+
     public int size()
     {
         return rows.size();
@@ -165,6 +187,12 @@ public class ResultSet
         {
             ResultMetadata.codec.encode(rs.metadata, dest, version);
             dest.writeInt(rs.rows.size());
+            if (rs.hasEncodedRows())
+            {
+                ((EncodedRows) rs.rows).encode(dest);
+                return;
+            }
+
             for (List<ByteBuffer> row : rs.rows)
             {
                 // Note that we do only want to serialize only the first columnCount values, even if the row
@@ -177,6 +205,9 @@ public class ResultSet
         public int encodedSize(ResultSet rs, ProtocolVersion version)
         {
             int size = ResultMetadata.codec.encodedSize(rs.metadata, version) + 4;
+            if (rs.hasEncodedRows())
+                return size + ((EncodedRows) rs.rows).encodedSize();
+
             for (List<ByteBuffer> row : rs.rows)
             {
                 for (int i = 0; i < rs.metadata.columnCount; i++)
@@ -186,6 +217,81 @@ public class ResultSet
         }
     }
 
+    /**
+     * The rows of a result set, written in their native protocol form to a heap buffer as they are added instead of
+     * being kept as lists of values. This avoids holding on to the values of the rows, which often reference whole
+     * memtable or sstable buffers, and encoding the result is then a single copy of the buffer into the frame.
+     * <p>
+     * The rows can still be read, each of them being decoded when accessed, but the only modifications supported are
+     * adding a row and removing the last one, which is enough to build and trim a result set.
+     */
+    static final class EncodedRows extends AbstractList<List<ByteBuffer>>
+    {
+        private final int columnCount;
+        private final ByteBuf buffer = Unpooled.buffer();
+        private int[] offsets = new int[16];
+        private int size;
+
+        EncodedRows(int columnCount)
+        {
+            this.columnCount = columnCount;
+        }
+
+        @Override
+        public boolean add(List<ByteBuffer> row)
+        {
+            if (size == offsets.length)
+                offsets = Arrays.copyOf(offsets, size * 2);
+
+            offsets[size++] = buffer.writerIndex();
+            for (int i = 0; i < columnCount; i++)
+                CBUtil.writeValue(row.get(i), buffer);
+            modCount++;
+            return true;
+        }
+
+        @Override
+        public List<ByteBuffer> get(int index)
+        {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+            ByteBuf row = buffer.duplicate().readerIndex(offsets[index]);
+            ByteBuffer[] values = new ByteBuffer[columnCount];
+            for (int i = 0; i < columnCount; i++)
+                values[i] = CBUtil.readValue(row);
+            return Arrays.asList(values);
+        }
+
+        @Override
+        public List<ByteBuffer> remove(int index)
+        {
+            if (index != size - 1)
+                throw new UnsupportedOperationException("Only the last row of encoded rows can be removed");
+
+            List<ByteBuffer> row = get(index);
+            buffer.writerIndex(offsets[--size]);
+            modCount++;
+            return row;
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        void encode(ByteBuf dest)
+        {
+            dest.writeBytes(buffer, buffer.readerIndex(), buffer.readableBytes());
+        }
+
+        int encodedSize()
+        {
+            return buffer.readableBytes();
+        }
+    }
+
     /**
      * The metadata for the results of executing a query or prepared statement.
      */
@@ -66,7 +66,18 @@ public final class ResultSetBuilder
 
     public ResultSetBuilder(ResultMetadata metadata, Selectors selectors, GroupMaker groupMaker)
     {
-        this.resultSet = new ResultSet(metadata.copy(), new ArrayList<List<ByteBuffer>>());
+        this(metadata, selectors, groupMaker, false);
+    }
+
+    /**
+     * @param encodeRows whether the rows of the result set should be kept in their native protocol form, see
+     * {@link ResultSet#withEncodedRows}. This is only suitable for a result set that is sent to a client as is.
+     */
+    public ResultSetBuilder(ResultMetadata metadata, Selectors selectors, GroupMaker groupMaker, boolean encodeRows)
+    {
+        this.resultSet = encodeRows
+                       ? ResultSet.withEncodedRows(metadata.copy())
+                       : new ResultSet(metadata.copy(), new ArrayList<List<ByteBuffer>>());
         this.selectors = selectors;
         this.groupMaker = groupMaker;
         this.timestamps = selectors.collectTimestamps() ? new long[selectors.numberOfFetchedColumns()] : null;
@@ -136,7 +147,11 @@ public final class ResultSetBuilder
                 selectors.reset();
             }
         }
-        current = new ArrayList<>(selectors.numberOfFetchedColumns());
+        // Encoded rows are copied when added, so the values of the previous row can be cleared and the list reused
+        if (current != null && resultSet.hasEncodedRows())
+            current.clear();
+        else
+            current = new ArrayList<>(selectors.numberOfFetchedColumns());
 
         // Timestamps and TTLs are arrays per row, we must null them out between rows
         if (timestamps != null)
@@ -61,6 +61,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.service.ClientState;
 import org.apache.cassandra.service.ClientWarn;
 import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.service.StorageProxy;
 import org.apache.cassandra.service.pager.AggregationQueryPager;
 import org.apache.cassandra.service.pager.PagingState;
 import org.apache.cassandra.service.pager.QueryPager;
@@ -253,6 +254,7 @@ public class SelectStatement implements CQLStatement
                        pageSize,
                        nowInSec,
                        userLimit,
+                       !state.getClientState().isInternal,
                        queryStartNanoTime);
     }
 
@@ -267,6 +269,95 @@ public class SelectStatement implements CQLStatement
                         options.getPageSize());
     }
 
+    /**
+     * Starts the read of executing this statement with the provided options, if it is a read of single partitions
+     * that needs neither paging nor aggregation, so that the reads of several executions can overlap, see
+     * {@link StorageProxy#readAsync}. The statement must have been authorized and validated.
+     *
+     * @return the started read, whose {@link StartedRead#execute(QueryOptions)} completes the execution, or
+     * {@code null} if the execution can't be started early.
+     */
+    public StartedRead startRead(QueryState state, QueryOptions options, long queryStartNanoTime)
+    {
+        return startRead(state, options, queryStartNanoTime, false);
+    }
+
+    /**
+     * Reads the result of executing this statement with the provided options on the calling thread, if it is a read
+     * that this node can serve from memory without blocking, see {@link StorageProxy#readFromMemory}. The statement
+     * must have been authorized and validated.
+     *
+     * @return the completed read, whose {@link StartedRead#execute(QueryOptions)} completes the execution, or
+     * {@code null} if the read can't be served from memory.
+     */
+    public StartedRead readFromMemory(QueryState state, QueryOptions options, long queryStartNanoTime)
+    {
+        return startRead(state, options, queryStartNanoTime, true);
+    }
+
+    private StartedRead startRead(QueryState state, QueryOptions options, long queryStartNanoTime, boolean fromMemory)
+    {
+        ConsistencyLevel cl = options.getConsistency();
+        if (cl == null || cl.isSerialConsistency() || aggregationSpec != null)
+            return null;
+
+        cl.validateForRead(keyspace());
+
+        int nowInSec = options.getNowInSeconds(state);
+        int userLimit = getLimit(options);
+        int pageSize = options.getPageSize();
+
+        Selectors selectors = selection.newSelectors(options);
+        ReadQuery query = getQuery(options, selectors.getColumnFilter(), nowInSec, userLimit, getPerPartitionLimit(options), pageSize);
+
+        if (!(query instanceof SinglePartitionReadCommand.Group) || (pageSize > 0 && query.limits().count() > pageSize))
+            return null;
+
+        SinglePartitionReadCommand.Group group = (SinglePartitionReadCommand.Group) query;
+        StorageProxy.PendingRead read = fromMemory
+                                      ? StorageProxy.readFromMemory(group, cl, queryStartNanoTime)
+                                      : StorageProxy.readAsync(group, cl, queryStartNanoTime);
+        return read == null ? null : new StartedRead(read, selectors, nowInSec, userLimit, !state.getClientState().isInternal);
+    }
+
+    /**
+     * A read started by {@link #startRead} or completed by {@link #readFromMemory}.
+     */
+    public class StartedRead
+    {
+        private final StorageProxy.PendingRead read;
+        private final Selectors selectors;
+        private final int nowInSec;
+        private final int userLimit;
+        private final boolean encodeRows;
+
+        private StartedRead(StorageProxy.PendingRead read, Selectors selectors, int nowInSec, int userLimit, boolean encodeRows)
+        {
+            this.read = read;
+            this.selectors = selectors;
+            this.nowInSec = nowInSec;
+            this.userLimit = userLimit;
+            this.encodeRows = encodeRows;
+        }
+
+        public SelectStatement statement()
+        {
+            return SelectStatement.this;
+        }
+
+        /**
+         * Waits for the result of the read and completes the execution of the statement with it, as
+         * {@link SelectStatement#execute(QueryState, QueryOptions, long)} would.
+         */
+        public ResultMessage.Rows execute(QueryOptions options)
+        {
+            try (PartitionIterator data = read.get())
+            {
+                return processResults(data, options, selectors, nowInSec, userLimit, encodeRows);
+            }
+        }
+    }
+
     public ReadQuery getQuery(QueryOptions options,
                               ColumnFilter columnFilter,
                               int nowInSec,
@@ -293,7 +384,7 @@ public class SelectStatement implements CQLStatement
     {
         try (PartitionIterator data = query.execute(options.getConsistency(), state.getClientState(), queryStartNanoTime))
         {
-            return processResults(data, options, selectors, nowInSec, userLimit);
+            return processResults(data, options, selectors, nowInSec, userLimit, !state.getClientState().isInternal);
         }
     }
 
@@ -376,6 +467,7 @@ public class SelectStatement implements CQLStatement
                                        int pageSize,
                                        int nowInSec,
                                        int userLimit,
+                                       boolean encodeRows,
                                        long queryStartNanoTime) throws RequestValidationException, RequestExecutionException
     {
         if (aggregationSpec != null)
@@ -399,7 +491,7 @@ public class SelectStatement implements CQLStatement
         ResultMessage.Rows msg;
         try (PartitionIterator page = pager.fetchPage(pageSize, queryStartNanoTime))
         {
-            msg = processResults(page, options, selectors, nowInSec, userLimit);
+            msg = processResults(page, options, selectors, nowInSec, userLimit, encodeRows);
         }
 
         // Please note that the isExhausted state of the pager only gets updated when we've closed the page, so this
@@ -420,9 +512,10 @@ public class SelectStatement implements CQLStatement
                                               QueryOptions options,
                                               Selectors selectors,
                                               int nowInSec,
-                                              int userLimit) throws RequestValidationException
+                                              int userLimit,
+                                              boolean encodeRows) throws RequestValidationException
     {
-        ResultSet rset = process(partitions, options, selectors, nowInSec, userLimit);
+        ResultSet rset = process(partitions, options, selectors, nowInSec, userLimit, encodeRows);
         return new ResultMessage.Rows(rset);
     }
 
@@ -446,7 +539,7 @@ public class SelectStatement implements CQLStatement
             {
                 try (PartitionIterator data = query.executeInternal(executionController))
                 {
-                    return processResults(data, options, selectors, nowInSec, userLimit);
+                    return processResults(data, options, selectors, nowInSec, userLimit, false);
                 }
             }
 
@@ -458,6 +551,7 @@ public class SelectStatement implements CQLStatement
                            pageSize,
                            nowInSec,
                            userLimit,
+                           false,
                            queryStartNanoTime);
         }
     }
@@ -476,7 +570,7 @@ public class SelectStatement implements CQLStatement
     {
         QueryOptions options = QueryOptions.DEFAULT;
         Selectors selectors = selection.newSelectors(options);
-        return process(partitions, options, selectors, nowInSec, getLimit(options));
+        return process(partitions, options, selectors, nowInSec, getLimit(options), false);
     }
 
     public String keyspace()
@@ -765,14 +859,20 @@ public class SelectStatement implements CQLStatement
         return restrictions.getRowFilter(indexRegistry, options);
     }
 
+    /**
+     * @param encodeRows whether the result set is sent as is to a client, in which case its rows are encoded as they
+     * are built unless they have to be ordered afterwards.
+     */
     private ResultSet process(PartitionIterator partitions,
                               QueryOptions options,
                               Selectors selectors,
                               int nowInSec,
-                              int userLimit) throws InvalidRequestException
+                              int userLimit,
+                              boolean encodeRows) throws InvalidRequestException
     {
         GroupMaker groupMaker = aggregationSpec == null ? null : aggregationSpec.newGroupMaker();
-        ResultSetBuilder result = new ResultSetBuilder(getResultMetadata(), selectors, groupMaker);
+        encodeRows &= groupMaker == null && !needsPostQueryOrdering();
+        ResultSetBuilder result = new ResultSetBuilder(getResultMetadata(), selectors, groupMaker, encodeRows);
 
         while (partitions.hasNext())
         {
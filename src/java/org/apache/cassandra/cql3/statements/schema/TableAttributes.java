@@ -28,6 +28,7 @@ import org.apache.cassandra.exceptions.SyntaxException;
 import org.apache.cassandra.schema.CachingParams;
 import org.apache.cassandra.schema.CompactionParams;
 import org.apache.cassandra.schema.CompressionParams;
+import org.apache.cassandra.schema.MemtableParams;
 import org.apache.cassandra.schema.TableId;
 import org.apache.cassandra.schema.TableParams;
 import org.apache.cassandra.schema.TableParams.Option;
@@ -119,6 +120,9 @@ public final class TableAttributes extends PropertyDefinitions
         if (hasOption(Option.MAX_INDEX_INTERVAL))
             builder.maxIndexInterval(getInt(Option.MAX_INDEX_INTERVAL));
 
+        if (hasOption(Option.MEMTABLE))
+            builder.memtable(MemtableParams.fromMap(getMap(Option.MEMTABLE)));
+
         if (hasOption(Option.MEMTABLE_FLUSH_PERIOD_IN_MS))
             builder.memtableFlushPeriodInMs(getInt(Option.MEMTABLE_FLUSH_PERIOD_IN_MS));
 
@@ -27,7 +27,9 @@ import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
 import javax.management.*;
 import javax.management.openmbean.*;
@@ -53,6 +55,7 @@ import org.apache.cassandra.db.repair.CassandraTableRepairManager;
 import org.apache.cassandra.db.view.TableViews;
 import org.apache.cassandra.db.lifecycle.*;
 import org.apache.cassandra.db.partitions.CachedPartition;
+import org.apache.cassandra.db.partitions.CachedPartitionSlices;
 import org.apache.cassandra.db.partitions.PartitionUpdate;
 import org.apache.cassandra.db.rows.CellPath;
 import org.apache.cassandra.dht.*;
@@ -99,10 +102,11 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     /*
     We keep a pool of threads for each data directory, size of each pool is memtable_flush_writers.
     When flushing we start a Flush runnable in the flushExecutor. Flush calculates how to split the
-    memtable ranges over the existing data directories and creates a FlushRunnable for each of the directories.
+    memtable ranges over the existing data directories and creates a FlushRunnable for each of the directories, or
+    several if the data to flush to a directory exceeds memtable_flush_split_size_in_mb, each writing a token sub-range.
     The FlushRunnables are executed in the perDiskflushExecutors and the Flush will block until all FlushRunnables
     are finished. By having flushExecutor size the same size as each of the perDiskflushExecutors we make sure we can
-    have that many flushes going at the same time.
+    have that many flushes going at the same time, or the sub-ranges of a flush written concurrently.
     */
     private static final ExecutorService flushExecutor = new JMXEnabledThreadPoolExecutor(DatabaseDescriptor.getFlushWriters(),
                                                                                           StageManager.KEEPALIVE,
@@ -198,6 +202,9 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
     private volatile DefaultValue<Integer> maxCompactionThreshold;
     private volatile DefaultValue<Double> crcCheckChance;
 
+    // the memtable params of the current memtable, used to detect when the memtable implementation is altered
+    private volatile MemtableParams memtableParams;
+
     private final CompactionStrategyManager compactionStrategyManager;
 
     private final Directories directories;
@@ -220,6 +227,12 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
     private volatile boolean neverPurgeTombstones = false;
 
+    // The number of writes to the partitions of each stripe, when caching the slices of partitions: a read caching a
+    // slice checks that no write went by while it was reading, as the slice could miss it. See cacheSlice.
+    private static final int CACHED_SLICE_WRITE_STRIPES = 64;
+    private static final int CACHED_SLICES_UPDATE_ATTEMPTS = 16;
+    private final AtomicLongArray cachedSliceWrites = new AtomicLongArray(CACHED_SLICE_WRITE_STRIPES);
+
     public static void shutdownPostFlushExecutor() throws InterruptedException
     {
         postFlushExecutor.shutdown();
@@ -257,10 +270,21 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
         // If the CF comparator has changed, we need to change the memtable,
         // because the old one still aliases the previous comparator.
-        if (data.getView().getCurrentMemtable().initialComparator != metadata().comparator)
+        // Same if the memtable implementation has changed, so that new writes go to a memtable of the new kind.
+        if (data.getView().getCurrentMemtable().initialComparator != metadata().comparator
+            || !memtableParams.equals(metadata().params.memtable))
             switchMemtable();
     }
 
+    /**
+     * Creates a new memtable, using the implementation configured in the table's params.
+     */
+    public Memtable createMemtable(AtomicReference<CommitLogPosition> commitLogLowerBound)
+    {
+        memtableParams = metadata().params.memtable;
+        return memtableParams.factory().create(commitLogLowerBound, this);
+    }
+
     void scheduleFlush()
     {
         int period = metadata().params.memtableFlushPeriodInMs;
@@ -399,7 +423,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         // Create Memtable only on online
         Memtable initialMemtable = null;
         if (DatabaseDescriptor.isDaemonInitialized())
-            initialMemtable = new Memtable(new AtomicReference<>(CommitLog.instance.getCurrentPosition()), this);
+            initialMemtable = createMemtable(new AtomicReference<>(CommitLog.instance.getCurrentPosition()));
         data = new Tracker(initialMemtable, loadSSTables);
 
         // scan for sstables corresponding to this cf and load them
@@ -769,7 +793,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
     public Descriptor newSSTableDescriptor(File directory)
     {
-        return newSSTableDescriptor(directory, SSTableFormat.Type.current().info.getLatestVersion(), SSTableFormat.Type.current());
+        return newSSTableDescriptor(directory, SSTableFormat.Type.current(metadata().partitioner));
     }
 
     public Descriptor newSSTableDescriptor(File directory, SSTableFormat.Type format)
@@ -995,7 +1019,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                 // switch all memtables, regardless of their dirty status, setting the barrier
                 // so that we can reach a coordinated decision about cleanliness once they
                 // are no longer possible to be modified
-                Memtable newMemtable = new Memtable(commitLogUpperBound, cfs);
+                Memtable newMemtable = cfs.createMemtable(commitLogUpperBound);
                 Memtable oldMemtable = cfs.data.switchMemtable(truncate, newMemtable);
                 oldMemtable.setDiscarding(writeBarrier, commitLogUpperBound);
                 memtables.add(oldMemtable);
@@ -1066,8 +1090,8 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                     // flush the memtable
                     flushRunnables = memtable.flushRunnables(txn);
 
-                    for (int i = 0; i < flushRunnables.size(); i++)
-                        futures.add(perDiskflushExecutors[i].submit(flushRunnables.get(i)));
+                    for (Memtable.FlushRunnable flushRunnable : flushRunnables)
+                        futures.add(perDiskflushExecutors[flushRunnable.diskIndex].submit(flushRunnable));
 
                     /**
                      * we can flush 2is as soon as the barrier completes, as they will be consistent with (or ahead of) the
@@ -1261,7 +1285,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             Memtable mt = data.getMemtableFor(opGroup, commitLogPosition);
             long timeDelta = mt.put(update, indexer, opGroup);
             DecoratedKey key = update.partitionKey();
-            invalidateCachedPartition(key);
+            invalidateCachedPartition(update);
             metric.topWritePartitionFrequency.addSample(key.getKey(), 1);
             if (metric.topWritePartitionSize.isEnabled()) // dont compute datasize if not needed
                 metric.topWritePartitionSize.addSample(key.getKey(), update.dataSize());
@@ -1640,6 +1664,23 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         }
     }
 
+    /**
+     * @return whether no live sstable may contain the provided partition according to its bloom filter, in which case
+     * the partition is only in the memtables, if anywhere.
+     */
+    public boolean isPartitionOnlyInMemtables(DecoratedKey key)
+    {
+        try (OpOrder.Group op = readOrdering.start())
+        {
+            for (SSTableReader sstable : View.select(SSTableSet.LIVE, key).apply(data.getView()))
+            {
+                if (sstable.getBloomFilter().isPresent(key))
+                    return false;
+            }
+            return true;
+        }
+    }
+
     public void beginLocalSampling(String sampler, int capacity, int durationMillis)
     {
         metric.samplers.get(SamplerType.valueOf(sampler)).beginSampling(capacity, durationMillis);
@@ -1935,11 +1976,13 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         if (!isRowCacheEnabled())
             return null;
         IRowCacheEntry cached = CacheService.instance.rowCache.getInternal(new RowCacheKey(metadata(), key));
-        return cached == null || cached instanceof RowCacheSentinel ? null : (CachedPartition)cached;
+        // sentinels and the slices of partitions don't hold the partition
+        return cached instanceof CachedPartition ? (CachedPartition)cached : null;
     }
 
     private void invalidateCaches()
     {
+        invalidateCachedSliceReads();
         CacheService.instance.invalidateKeyCacheForCf(metadata());
         CacheService.instance.invalidateRowCacheForCf(metadata());
         if (metadata().isCounter())
@@ -1948,6 +1991,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
     public int invalidateRowCache(Collection<Bounds<Token>> boundsToInvalidate)
     {
+        invalidateCachedSliceReads();
         int invalidatedKeys = 0;
         for (Iterator<RowCacheKey> keyIter = CacheService.instance.rowCache.keyIterator();
              keyIter.hasNext(); )
@@ -2001,6 +2045,102 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         invalidateCachedPartition(new RowCacheKey(metadata(), key));
     }
 
+    /**
+     * Invalidates the cached data the given update changes: the whole partition, or only the cached slices the update
+     * overlaps if the table caches the slices of its partitions. Must be called once the update is in the memtable.
+     */
+    public void invalidateCachedPartition(PartitionUpdate update)
+    {
+        if (!isRowCacheEnabled())
+            return;
+
+        RowCacheKey key = new RowCacheKey(metadata(), update.partitionKey());
+        if (!metadata().params.caching.cacheSlices())
+        {
+            invalidateCachedPartition(key);
+            return;
+        }
+
+        cachedSliceWrites.incrementAndGet(cachedSliceWriteStripe(key));
+        if (!updateCachedSlices(key, slices -> slices.without(update)))
+            invalidateCachedPartition(key);
+    }
+
+    /**
+     * Returns the number of writes to the partitions of the stripe of the given key so far, to pass to
+     * {@link #cacheSlice} after reading the slice to cache.
+     */
+    public long cachedSliceWrites(RowCacheKey key)
+    {
+        return cachedSliceWrites.get(cachedSliceWriteStripe(key));
+    }
+
+    /**
+     * Caches a slice of a partition, read after getting {@code writesBefore} from {@link #cachedSliceWrites}.
+     * <p>
+     * A write applied while the slice was read may be missing from it, and its invalidation may have happened before
+     * the slice is cached. So if writes went by since the read started, the slice is invalidated again once cached:
+     * a write is either visible to the read, or counted before the read checks the count again.
+     */
+    public void cacheSlice(RowCacheKey key, Slice slice, CachedPartition partition, long writesBefore)
+    {
+        ClusteringComparator comparator = metadata().comparator;
+        if (!updateCachedSlices(key, slices -> slices.with(slice, partition, comparator)))
+            return;
+
+        if (cachedSliceWrites(key) != writesBefore && !updateCachedSlices(key, slices -> slices.without(slice, comparator)))
+            invalidateCachedPartition(key);
+    }
+
+    private static int cachedSliceWriteStripe(RowCacheKey key)
+    {
+        return (key.hashCode() & Integer.MAX_VALUE) % CACHED_SLICE_WRITE_STRIPES;
+    }
+
+    // makes the reads of slices in progress invalidate what they cache, as it may be missing data the invalidation
+    // of the whole cache covers
+    private void invalidateCachedSliceReads()
+    {
+        for (int i = 0; i < CACHED_SLICE_WRITE_STRIPES; i++)
+            cachedSliceWrites.incrementAndGet(i);
+    }
+
+    /**
+     * Replaces the cached slices of a partition by the result of the given function, returning false if the cache
+     * kept changing concurrently. An entry of the whole partition, cached before the table cached slices, is
+     * replaced as if there was none.
+     */
+    private static boolean updateCachedSlices(RowCacheKey key, UnaryOperator<CachedPartitionSlices> update)
+    {
+        for (int i = 0; i < CACHED_SLICES_UPDATE_ATTEMPTS; i++)
+        {
+            IRowCacheEntry current = CacheService.instance.rowCache.getInternal(key);
+            if (current != null && !(current instanceof CachedPartitionSlices))
+            {
+                CacheService.instance.rowCache.remove(key);
+                current = null;
+            }
+
+            CachedPartitionSlices slices = current == null ? CachedPartitionSlices.EMPTY : (CachedPartitionSlices) current;
+            CachedPartitionSlices updated = update.apply(slices);
+            if (updated == slices)
+                return true;
+
+            if (updated.isEmpty())
+            {
+                // removing the entry may remove a slice cached concurrently, which is harmless
+                if (current != null)
+                    CacheService.instance.rowCache.remove(key);
+                return true;
+            }
+
+            if (current == null ? CacheService.instance.rowCache.putIfAbsent(key, updated)
+                                : CacheService.instance.rowCache.replace(key, current, updated))
+                return true;
+        }
+        return false;
+    }
+
     public ClockAndCount getCachedCounter(ByteBuffer partitionKey, Clustering clustering, ColumnMetadata column, CellPath path)
     {
         if (CacheService.instance.counterCache.getCapacity() == 0L) // counter cache disabled.
@@ -2079,7 +2219,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             {
                 public Void call()
                 {
-                    cfs.data.reset(new Memtable(new AtomicReference<>(CommitLogPosition.NONE), cfs));
+                    cfs.data.reset(cfs.createMemtable(new AtomicReference<>(CommitLogPosition.NONE)));
                     return null;
                 }
             }, true, false);
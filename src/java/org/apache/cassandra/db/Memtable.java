@@ -43,16 +43,13 @@ import org.apache.cassandra.db.partitions.*;
 import org.apache.cassandra.db.rows.EncodingStats;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.dht.*;
-import org.apache.cassandra.dht.Murmur3Partitioner.LongToken;
 import org.apache.cassandra.index.transactions.UpdateTransaction;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.SSTableMultiWriter;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.service.ActiveRepairService;
-import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
-import org.apache.cassandra.utils.ObjectSizes;
 import org.apache.cassandra.utils.concurrent.OpOrder;
 import org.apache.cassandra.utils.memory.HeapPool;
 import org.apache.cassandra.utils.memory.MemtableAllocator;
@@ -60,7 +57,15 @@ import org.apache.cassandra.utils.memory.MemtablePool;
 import org.apache.cassandra.utils.memory.NativePool;
 import org.apache.cassandra.utils.memory.SlabPool;
 
-public class Memtable implements Comparable<Memtable>
+/**
+ * The in-memory write buffer of a table.
+ *
+ * This class handles the commit log bounds, memory accounting and flushing of a memtable, while the way partitions
+ * are indexed is left to the implementations (see {@link org.apache.cassandra.db.memtable.SkipListMemtable} and
+ * {@link org.apache.cassandra.db.memtable.ShardedTrieMemtable}). The implementation used by a table is configured
+ * through the {@code memtable} table parameter, which provides the {@link Factory} used to create new memtables.
+ */
+public abstract class Memtable implements Comparable<Memtable>
 {
     private static final Logger logger = LoggerFactory.getLogger(Memtable.class);
 
@@ -79,14 +84,13 @@ public class Memtable implements Comparable<Memtable>
             case offheap_buffers:
                 return new SlabPool(heapLimit, offHeapLimit, DatabaseDescriptor.getMemtableCleanupThreshold(), new ColumnFamilyStore.FlushLargestColumnFamily());
             case offheap_objects:
+            case offheap_objects_full:
                 return new NativePool(heapLimit, offHeapLimit, DatabaseDescriptor.getMemtableCleanupThreshold(), new ColumnFamilyStore.FlushLargestColumnFamily());
             default:
                 throw new AssertionError();
         }
     }
 
-    private static final int ROW_OVERHEAD_HEAP_SIZE = estimateRowOverhead(Integer.parseInt(System.getProperty("cassandra.memtable_row_overhead_computation_step", "100000")));
-
     private final MemtableAllocator allocator;
     private final AtomicLong liveDataSize = new AtomicLong(0);
     private final AtomicLong currentOperations = new AtomicLong(0);
@@ -115,10 +119,14 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    // We index the memtable by PartitionPosition only for the purpose of being able
-    // to select key range using Token.KeyBound. However put() ensures that we
-    // actually only store DecoratedKey.
-    private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = new ConcurrentSkipListMap<>();
+    /**
+     * Creates the memtables of a table. Obtained from the table's {@link org.apache.cassandra.schema.MemtableParams}.
+     */
+    public interface Factory
+    {
+        Memtable create(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs);
+    }
+
     public final ColumnFamilyStore cfs;
     private final long creationNano = System.nanoTime();
 
@@ -133,8 +141,7 @@ public class Memtable implements Comparable<Memtable>
     private final ColumnsCollector columnsCollector;
     private final StatsCollector statsCollector = new StatsCollector();
 
-    // only to be used by init(), to setup the very first memtable for the cfs
-    public Memtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
+    protected Memtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
     {
         this.cfs = cfs;
         this.commitLogLowerBound = commitLogLowerBound;
@@ -146,7 +153,7 @@ public class Memtable implements Comparable<Memtable>
 
     // ONLY to be used for testing, to create a mock Memtable
     @VisibleForTesting
-    public Memtable(TableMetadata metadata)
+    protected Memtable(TableMetadata metadata)
     {
         this.initialComparator = metadata.comparator;
         this.cfs = null;
@@ -228,10 +235,35 @@ public class Memtable implements Comparable<Memtable>
         return allocator.isLive();
     }
 
-    public boolean isClean()
-    {
-        return partitions.isEmpty();
-    }
+    public abstract boolean isClean();
+
+    public abstract int partitionCount();
+
+    /**
+     * @return the partition stored for the given key, or null if this memtable does not contain it
+     */
+    public abstract AtomicBTreePartition getPartition(DecoratedKey key);
+
+    /**
+     * Adds the given partition, unless a partition with the same key is already present. Any memory the index
+     * needs for the new partition must be obtained from the memtable allocator under the given write operation.
+     *
+     * @return the partition already stored for the key, or null if the given partition was added
+     */
+    protected abstract AtomicBTreePartition putIfAbsent(DecoratedKey key, AtomicBTreePartition partition, OpOrder.Group opGroup);
+
+    /**
+     * Returns the partitions whose keys are within the given bounds, in key order. A null bound stands
+     * for the start or the end of the ring.
+     */
+    protected abstract Iterator<AtomicBTreePartition> partitionIterator(PartitionPosition from, boolean inclusiveFrom,
+                                                                        PartitionPosition to, boolean inclusiveTo);
+
+    /**
+     * @return the estimated on-heap size of the structures indexing a new partition with the given key, excluding
+     * the token and the partition contents
+     */
+    protected abstract long partitionOverhead(DecoratedKey key);
 
     public boolean mayContainDataBefore(CommitLogPosition position)
     {
@@ -255,7 +287,7 @@ public class Memtable implements Comparable<Memtable>
      */
     long put(PartitionUpdate update, UpdateTransaction indexer, OpOrder.Group opGroup)
     {
-        AtomicBTreePartition previous = partitions.get(update.partitionKey());
+        AtomicBTreePartition previous = getPartition(update.partitionKey());
 
         long initialSize = 0;
         if (previous == null)
@@ -263,13 +295,13 @@ public class Memtable implements Comparable<Memtable>
             final DecoratedKey cloneKey = allocator.clone(update.partitionKey(), opGroup);
             AtomicBTreePartition empty = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
             // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
-            previous = partitions.putIfAbsent(cloneKey, empty);
+            previous = putIfAbsent(cloneKey, empty, opGroup);
             if (previous == null)
             {
                 previous = empty;
                 // allocate the row overhead after the fact; this saves over allocating and having to free after, but
                 // means we can overshoot our declared limit.
-                int overhead = (int) (cloneKey.getToken().getHeapSize() + ROW_OVERHEAD_HEAP_SIZE);
+                int overhead = (int) (cloneKey.getToken().getHeapSize() + partitionOverhead(cloneKey));
                 allocator.onHeap().allocate(overhead, opGroup);
                 initialSize = 8;
             }
@@ -284,11 +316,6 @@ public class Memtable implements Comparable<Memtable>
         return pair[1];
     }
 
-    public int partitionCount()
-    {
-        return partitions.size();
-    }
-
     public List<FlushRunnable> flushRunnables(LifecycleTransaction txn)
     {
         return createFlushRunnables(txn);
@@ -299,17 +326,20 @@ public class Memtable implements Comparable<Memtable>
         DiskBoundaries diskBoundaries = cfs.getDiskBoundaries();
         List<PartitionPosition> boundaries = diskBoundaries.positions;
         List<Directories.DataDirectory> locations = diskBoundaries.directories;
-        if (boundaries == null)
-            return Collections.singletonList(new FlushRunnable(txn));
-
-        List<FlushRunnable> runnables = new ArrayList<>(boundaries.size());
-        PartitionPosition rangeStart = cfs.getPartitioner().getMinimumToken().minKeyBound();
+        List<FlushRunnable> runnables = new ArrayList<>(boundaries == null ? 1 : boundaries.size());
         try
         {
+            if (boundaries == null)
+            {
+                addFlushRunnables(runnables, null, null, null, 0, txn);
+                return runnables;
+            }
+
+            PartitionPosition rangeStart = cfs.getPartitioner().getMinimumToken().minKeyBound();
             for (int i = 0; i < boundaries.size(); i++)
             {
                 PartitionPosition t = boundaries.get(i);
-                runnables.add(new FlushRunnable(rangeStart, t, locations.get(i), txn));
+                addFlushRunnables(runnables, rangeStart, t, locations.get(i), i, txn);
                 rangeStart = t;
             }
             return runnables;
@@ -320,6 +350,55 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
+    /**
+     * Adds the runnables flushing the partitions in [from, to) to the given location. If the range holds more than
+     * memtable_flush_split_size_in_mb of data, it is split into sub-ranges with the same number of partitions, written
+     * concurrently to separate sstables by up to memtable_flush_writers runnables.
+     */
+    private void addFlushRunnables(List<FlushRunnable> runnables,
+                                   PartitionPosition from,
+                                   PartitionPosition to,
+                                   Directories.DataDirectory location,
+                                   int diskIndex,
+                                   LifecycleTransaction txn)
+    {
+        int splits = 1;
+        int rangePartitions = 0;
+        long splitSize = DatabaseDescriptor.getMemtableFlushSplitSize();
+        int totalPartitions = partitionCount();
+        if (splitSize > 0 && totalPartitions > 1)
+        {
+            for (Iterator<AtomicBTreePartition> iter = partitionIterator(from, true, to, false); iter.hasNext(); iter.next())
+                rangePartitions++;
+
+            // the partitions of a memtable are assumed to have about the same size
+            long rangeSize = liveDataSize.get() * rangePartitions / totalPartitions;
+            splits = (int) Math.min(Math.min(DatabaseDescriptor.getFlushWriters(), rangePartitions), (rangeSize + splitSize - 1) / splitSize);
+        }
+
+        if (splits <= 1)
+        {
+            runnables.add(new FlushRunnable(from, to, location, diskIndex, txn));
+            return;
+        }
+
+        PartitionPosition splitStart = from;
+        Iterator<AtomicBTreePartition> iter = partitionIterator(from, true, to, false);
+        int position = 0;
+        for (int split = 1; split < splits; split++)
+        {
+            // the next sub-range starts at that partition
+            int splitIndex = (int) ((long) rangePartitions * split / splits);
+            for (; position < splitIndex; position++)
+                iter.next();
+            PartitionPosition splitPoint = iter.next().partitionKey();
+            position++;
+            runnables.add(new FlushRunnable(splitStart, splitPoint, location, diskIndex, txn));
+            splitStart = splitPoint;
+        }
+        runnables.add(new FlushRunnable(splitStart, to, location, diskIndex, txn));
+    }
+
     public Throwable abortRunnables(List<FlushRunnable> runnables, Throwable t)
     {
         if (runnables != null)
@@ -345,41 +424,28 @@ public class Memtable implements Comparable<Memtable>
         boolean isBound = keyRange instanceof Bounds;
         boolean includeStart = isBound || keyRange instanceof IncludingExcludingBounds;
         boolean includeStop = isBound || keyRange instanceof Range;
-        Map<PartitionPosition, AtomicBTreePartition> subMap;
-        if (startIsMin)
-            subMap = stopIsMin ? partitions : partitions.headMap(keyRange.right, includeStop);
-        else
-            subMap = stopIsMin
-                   ? partitions.tailMap(keyRange.left, includeStart)
-                   : partitions.subMap(keyRange.left, includeStart, keyRange.right, includeStop);
+        PartitionPosition from = startIsMin ? null : keyRange.left;
+        PartitionPosition to = stopIsMin ? null : keyRange.right;
 
         int minLocalDeletionTime = Integer.MAX_VALUE;
 
         // avoid iterating over the memtable if we purge all tombstones
         if (cfs.getCompactionStrategyManager().onlyPurgeRepairedTombstones())
-            minLocalDeletionTime = findMinLocalDeletionTime(subMap.entrySet().iterator());
+            minLocalDeletionTime = findMinLocalDeletionTime(partitionIterator(from, includeStart, to, includeStop));
 
-        final Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter = subMap.entrySet().iterator();
+        final Iterator<AtomicBTreePartition> iter = partitionIterator(from, includeStart, to, includeStop);
 
         return new MemtableUnfilteredPartitionIterator(cfs, iter, minLocalDeletionTime, columnFilter, dataRange);
     }
 
-    private int findMinLocalDeletionTime(Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iterator)
+    private int findMinLocalDeletionTime(Iterator<AtomicBTreePartition> iterator)
     {
         int minLocalDeletionTime = Integer.MAX_VALUE;
         while (iterator.hasNext())
-        {
-            Map.Entry<PartitionPosition, AtomicBTreePartition> entry = iterator.next();
-            minLocalDeletionTime = Math.min(minLocalDeletionTime, entry.getValue().stats().minLocalDeletionTime);
-        }
+            minLocalDeletionTime = Math.min(minLocalDeletionTime, iterator.next().stats().minLocalDeletionTime);
         return minLocalDeletionTime;
     }
 
-    public Partition getPartition(DecoratedKey key)
-    {
-        return partitions.get(key);
-    }
-
     public long getMinTimestamp()
     {
         return minTimestamp;
@@ -397,37 +463,28 @@ public class Memtable implements Comparable<Memtable>
     class FlushRunnable implements Callable<SSTableMultiWriter>
     {
         private final long estimatedSize;
-        private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> toFlush;
+        private final int partitionCount;
 
         private final boolean isBatchLogTable;
         private final SSTableMultiWriter writer;
 
+        // the index of the data directory the runnable writes to, in the order of the disk boundaries
+        final int diskIndex;
+
         // keeping these to be able to log what we are actually flushing
         private final PartitionPosition from;
         private final PartitionPosition to;
 
-        FlushRunnable(PartitionPosition from, PartitionPosition to, Directories.DataDirectory flushLocation, LifecycleTransaction txn)
+        FlushRunnable(PartitionPosition from, PartitionPosition to, Directories.DataDirectory flushLocation, int diskIndex, LifecycleTransaction txn)
         {
-            this(partitions.subMap(from, to), flushLocation, from, to, txn);
-        }
-
-        FlushRunnable(LifecycleTransaction txn)
-        {
-            this(partitions, null, null, null, txn);
-        }
-
-        FlushRunnable(ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> toFlush, Directories.DataDirectory flushLocation, PartitionPosition from, PartitionPosition to, LifecycleTransaction txn)
-        {
-            this.toFlush = toFlush;
             this.from = from;
             this.to = to;
+            this.diskIndex = diskIndex;
             long keySize = 0;
-            for (PartitionPosition key : toFlush.keySet())
-            {
-                //  make sure we don't write non-sensical keys
-                assert key instanceof DecoratedKey;
-                keySize += ((DecoratedKey) key).getKey().remaining();
-            }
+            int count = 0;
+            for (Iterator<AtomicBTreePartition> iter = toFlush(); iter.hasNext(); count++)
+                keySize += iter.next().partitionKey().getKey().remaining();
+            this.partitionCount = count;
             estimatedSize = (long) ((keySize // index entries
                                     + keySize // keys in data file
                                     + liveDataSize.get()) // data
@@ -447,6 +504,11 @@ public class Memtable implements Comparable<Memtable>
             return cfs.getDirectories();
         }
 
+        private Iterator<AtomicBTreePartition> toFlush()
+        {
+            return partitionIterator(from, true, to, false);
+        }
+
         private void writeSortedContents()
         {
             if (logger.isDebugEnabled())
@@ -456,8 +518,9 @@ public class Memtable implements Comparable<Memtable>
             int heavilyContendedRowCount = 0;
             // (we can't clear out the map as-we-go to free up memory,
             //  since the memtable is being used for queries in the "pending flush" category)
-            for (AtomicBTreePartition partition : toFlush.values())
+            for (Iterator<AtomicBTreePartition> partitions = toFlush(); partitions.hasNext(); )
             {
+                AtomicBTreePartition partition = partitions.next();
                 // Each batchlog partition is a separate entry in the log. And for an entry, we only do 2
                 // operations: 1) we insert the entry and 2) we delete it. Further, BL data is strictly local,
                 // we don't need to preserve tombstones for repair. So if both operation are in this
@@ -488,7 +551,7 @@ public class Memtable implements Comparable<Memtable>
             cfs.metric.bytesFlushed.inc(bytesFlushed);
 
             if (heavilyContendedRowCount > 0)
-                logger.trace("High update contention in {}/{} partitions of {} ", heavilyContendedRowCount, toFlush.size(), Memtable.this);
+                logger.trace("High update contention in {}/{} partitions of {} ", heavilyContendedRowCount, partitionCount, Memtable.this);
         }
 
         public SSTableMultiWriter createFlushWriter(LifecycleTransaction txn,
@@ -500,7 +563,7 @@ public class Memtable implements Comparable<Memtable>
                     .commitLogIntervals(new IntervalSet<>(commitLogLowerBound.get(), commitLogUpperBound.get()));
 
             return cfs.createSSTableMultiWriter(descriptor,
-                                                toFlush.size(),
+                                                partitionCount,
                                                 ActiveRepairService.UNREPAIRED_SSTABLE,
                                                 ActiveRepairService.NO_PENDING_REPAIR,
                                                 false,
@@ -516,36 +579,15 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    private static int estimateRowOverhead(final int count)
-    {
-        // calculate row overhead
-        try (final OpOrder.Group group = new OpOrder().start())
-        {
-            int rowOverhead;
-            MemtableAllocator allocator = MEMORY_POOL.newAllocator();
-            ConcurrentNavigableMap<PartitionPosition, Object> partitions = new ConcurrentSkipListMap<>();
-            final Object val = new Object();
-            for (int i = 0 ; i < count ; i++)
-                partitions.put(allocator.clone(new BufferDecoratedKey(new LongToken(i), ByteBufferUtil.EMPTY_BYTE_BUFFER), group), val);
-            double avgSize = ObjectSizes.measureDeep(partitions) / (double) count;
-            rowOverhead = (int) ((avgSize - Math.floor(avgSize)) < 0.05 ? Math.floor(avgSize) : Math.ceil(avgSize));
-            rowOverhead -= ObjectSizes.measureDeep(new LongToken(0));
-            rowOverhead += AtomicBTreePartition.EMPTY_SIZE;
-            allocator.setDiscarding();
-            allocator.setDiscarded();
-            return rowOverhead;
-        }
-    }
-
     public static class MemtableUnfilteredPartitionIterator extends AbstractUnfilteredPartitionIterator
     {
         private final ColumnFamilyStore cfs;
-        private final Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter;
+        private final Iterator<AtomicBTreePartition> iter;
         private final int minLocalDeletionTime;
         private final ColumnFilter columnFilter;
         private final DataRange dataRange;
 
-        public MemtableUnfilteredPartitionIterator(ColumnFamilyStore cfs, Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter, int minLocalDeletionTime, ColumnFilter columnFilter, DataRange dataRange)
+        public MemtableUnfilteredPartitionIterator(ColumnFamilyStore cfs, Iterator<AtomicBTreePartition> iter, int minLocalDeletionTime, ColumnFilter columnFilter, DataRange dataRange)
         {
             this.cfs = cfs;
             this.iter = iter;
@@ -571,13 +613,10 @@ public class Memtable implements Comparable<Memtable>
 
         public UnfilteredRowIterator next()
         {
-            Map.Entry<PartitionPosition, AtomicBTreePartition> entry = iter.next();
-            // Actual stored key should be true DecoratedKey
-            assert entry.getKey() instanceof DecoratedKey;
-            DecoratedKey key = (DecoratedKey)entry.getKey();
-            ClusteringIndexFilter filter = dataRange.clusteringIndexFilter(key);
+            AtomicBTreePartition partition = iter.next();
+            ClusteringIndexFilter filter = dataRange.clusteringIndexFilter(partition.partitionKey());
 
-            return filter.getUnfilteredRowIterator(columnFilter, entry.getValue());
+            return filter.getUnfilteredRowIterator(columnFilter, partition);
         }
     }
 
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.cassandra.dht.ByteOrderedPartitioner;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.RandomPartitioner;
+import org.apache.cassandra.dht.Token;
+
+/**
+ * Byte-comparable encoding of partition positions: the unsigned lexicographic order of the encoded keys matches the
+ * order of the keys, and no encoded key is a prefix of another one. Used by the structures indexing partitions in
+ * tries.
+ * <p>
+ * A key is encoded as its token followed by its escaped bytes. Only the tokens of the {@link Murmur3Partitioner},
+ * the {@link RandomPartitioner} and the {@link ByteOrderedPartitioner} have an encoding.
+ */
+public final class PartitionPositionEncoding
+{
+    // variable-length byte sequences are escaped: zero bytes are written as 0x00 0xFF, and the sequence ends with 0x00 0x00
+    private static final byte ESCAPE = 0x00;
+    private static final byte ESCAPED_ZERO = (byte) 0xFF;
+    private static final int TERMINATOR_LENGTH = 2;
+
+    private PartitionPositionEncoding()
+    {
+    }
+
+    public static boolean supports(IPartitioner partitioner)
+    {
+        return partitioner instanceof Murmur3Partitioner
+               || partitioner instanceof RandomPartitioner
+               || partitioner instanceof ByteOrderedPartitioner;
+    }
+
+    public static byte[] encode(DecoratedKey key)
+    {
+        Token token = key.getToken();
+        byte[] encoded = new byte[encodedLength(key)];
+        int position = writeToken(token, encoded);
+        writeEscaped(key.getKey(), encoded, position);
+        return encoded;
+    }
+
+    public static int encodedLength(DecoratedKey key)
+    {
+        return encodedLength(key.getToken()) + escapedLength(key.getKey());
+    }
+
+    /**
+     * Encodes the given token as a prefix of the encodings of the keys it is the token of. It sorts before all
+     * these keys, and after the keys of the lower tokens.
+     */
+    public static byte[] encodeToken(Token token)
+    {
+        byte[] encoded = new byte[encodedLength(token)];
+        writeToken(token, encoded);
+        return encoded;
+    }
+
+    /**
+     * Encodes a position for the lookup of the first key at or after it.
+     *
+     * @return the encoding of the key, or of the bound, or null if the position is a bound sorting after all
+     * the keys that can be encoded
+     */
+    public static byte[] encodeLowerBound(PartitionPosition position)
+    {
+        if (position instanceof DecoratedKey)
+            return encode((DecoratedKey) position);
+
+        byte[] token = encodeToken(position.getToken());
+        if (position.kind() == PartitionPosition.Kind.MIN_BOUND)
+            return token;
+
+        // the keys of the token all have its encoding as a prefix, so the shortest sequence sorting after them is
+        // that prefix with its last non-0xFF byte incremented
+        int length = token.length;
+        while (length > 0 && token[length - 1] == (byte) 0xFF)
+            length--;
+        if (length == 0)
+            return null;
+        byte[] bound = Arrays.copyOf(token, length);
+        bound[length - 1]++;
+        return bound;
+    }
+
+    private static int encodedLength(Token token)
+    {
+        if (token instanceof Murmur3Partitioner.LongToken)
+            return 8;
+        if (token instanceof RandomPartitioner.BigIntegerToken)
+            return 16;
+        if (token instanceof ByteOrderedPartitioner.BytesToken)
+            return escapedLength(ByteBuffer.wrap((byte[]) token.getTokenValue()));
+        throw new AssertionError("Unsupported token type " + token.getClass().getName());
+    }
+
+    private static int writeToken(Token token, byte[] dest)
+    {
+        if (token instanceof Murmur3Partitioner.LongToken)
+        {
+            // flipping the sign bit makes the unsigned order of the two's complement bytes match the signed order
+            long value = (long) token.getTokenValue() ^ Long.MIN_VALUE;
+            for (int i = 7; i >= 0; i--)
+            {
+                dest[i] = (byte) value;
+                value >>>= 8;
+            }
+            return 8;
+        }
+
+        if (token instanceof RandomPartitioner.BigIntegerToken)
+        {
+            // tokens range from -1 (the minimum token) to 2^127, so shifting them by one makes them fit in 16 unsigned bytes
+            byte[] bytes = ((BigInteger) token.getTokenValue()).add(BigInteger.ONE).toByteArray();
+            int length = Math.min(bytes.length, 16);
+            System.arraycopy(bytes, bytes.length - length, dest, 16 - length, length);
+            return 16;
+        }
+
+        return writeEscaped(ByteBuffer.wrap((byte[]) token.getTokenValue()), dest, 0);
+    }
+
+    private static int escapedLength(ByteBuffer bytes)
+    {
+        int length = bytes.remaining() + TERMINATOR_LENGTH;
+        for (int i = bytes.position(); i < bytes.limit(); i++)
+            if (bytes.get(i) == ESCAPE)
+                length++;
+        return length;
+    }
+
+    private static int writeEscaped(ByteBuffer bytes, byte[] dest, int position)
+    {
+        for (int i = bytes.position(); i < bytes.limit(); i++)
+        {
+            byte b = bytes.get(i);
+            dest[position++] = b;
+            if (b == ESCAPE)
+                dest[position++] = ESCAPED_ZERO;
+        }
+        dest[position++] = ESCAPE;
+        dest[position++] = ESCAPE;
+        return position;
+    }
+}
@@ -98,6 +98,53 @@ public class SerializationHeader
         return new SerializationHeader(true, metadata, columns.build(), stats.get());
     }
 
+    /**
+     * Returns the header to write the result of compacting the given sstables with. This is the header of the largest
+     * of them that can serialize all of their data as {@link #make} would, which then only costs larger deltas to the
+     * minimum values of the stats of that header, but lets compaction copy the partitions of that sstable as they are
+     * serialized. Otherwise, this is the one returned by {@link #make}.
+     */
+    public static SerializationHeader makeForCompaction(TableMetadata metadata, Collection<SSTableReader> sstables)
+    {
+        SerializationHeader merged = make(metadata, sstables);
+        SSTableReader largest = null;
+        for (SSTableReader sstable : sstables)
+        {
+            if (sstable.header.canSerialize(merged) && (largest == null || sstable.uncompressedLength() > largest.uncompressedLength()))
+                largest = sstable;
+        }
+        return largest == null ? merged : largest.header;
+    }
+
+    /**
+     * Whether this header can serialize the data of the provided header, that is if they have the same types and
+     * columns, and the minimum values of the stats of this header are not greater than the ones of the other header.
+     */
+    private boolean canSerialize(SerializationHeader header)
+    {
+        return hasSameTypesAndColumns(header)
+               && stats.minTimestamp <= header.stats.minTimestamp
+               && stats.minLocalDeletionTime <= header.stats.minLocalDeletionTime
+               && stats.minTTL <= header.stats.minTTL;
+    }
+
+    /**
+     * Whether data is serialized identically with this header and the provided one, in which case serialized data
+     * can be copied as is from an sstable with one of them to an sstable with the other.
+     */
+    public boolean hasSameEncoding(SerializationHeader header)
+    {
+        return this == header || (hasSameTypesAndColumns(header) && stats.equals(header.stats));
+    }
+
+    private boolean hasSameTypesAndColumns(SerializationHeader header)
+    {
+        return isForSSTable == header.isForSSTable
+               && keyType.equals(header.keyType)
+               && clusteringTypes.equals(header.clusteringTypes)
+               && columns.equals(header.columns);
+    }
+
     private static Collection<SSTableReader> orderByDescendingGeneration(Collection<SSTableReader> sstables)
     {
         if (sstables.size() < 2)
@@ -38,6 +38,7 @@ import org.apache.cassandra.db.rows.*;
 import org.apache.cassandra.db.transform.RTBoundValidator;
 import org.apache.cassandra.db.transform.Transformation;
 import org.apache.cassandra.exceptions.RequestExecutionException;
+import org.apache.cassandra.io.sstable.SSTableSynopsis;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.format.SSTableReadsListener;
 import org.apache.cassandra.io.util.DataInputPlus;
@@ -417,12 +418,22 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
         assert !cfs.isIndex(); // CASSANDRA-5732
         assert cfs.isRowCacheEnabled() : String.format("Row cache is not enabled on table [%s]", cfs.name);
 
+        if (metadata().params.caching.cacheSlices())
+            return getThroughSliceCache(cfs, executionController);
+
         RowCacheKey key = new RowCacheKey(metadata(), partitionKey());
 
         // Attempt a sentinel-read-cache sequence.  if a write invalidates our sentinel, we'll return our
         // (now potentially obsolete) data, but won't cache it. see CASSANDRA-3862
-        // TODO: don't evict entire partitions on writes (#2864)
+        // Tables caching the slices of partitions only invalidate the slices writes overlap, see getThroughSliceCache
         IRowCacheEntry cached = CacheService.instance.rowCache.get(key);
+        if (cached instanceof CachedPartitionSlices)
+        {
+            // cached before the table stopped caching the slices of its partitions
+            cfs.invalidateCachedPartition(key);
+            cached = null;
+        }
+
         if (cached != null)
         {
             if (cached instanceof RowCacheSentinel)
@@ -544,6 +555,196 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
         return queryMemtableAndDisk(cfs, executionController);
     }
 
+    /**
+     * Fetch the rows requested from the cached slices of the partition if one of them covers the query; if not, read
+     * them from disk, caching the slice read if the query selects a single slice.
+     * <p>
+     * The slice is read with all the columns, so that it can answer any later query within it, and what the query
+     * consumes of it is cached once the query closes the result: the whole slice if the query read it all, or the part
+     * of it up to the last row read otherwise, for instance if the query has a limit.
+     */
+    @SuppressWarnings("resource")
+    private UnfilteredRowIterator getThroughSliceCache(ColumnFamilyStore cfs, ReadExecutionController executionController)
+    {
+        RowCacheKey key = new RowCacheKey(metadata(), partitionKey());
+        IRowCacheEntry cached = CacheService.instance.rowCache.get(key);
+        if (cached instanceof CachedPartitionSlices)
+        {
+            CachedPartition cachedSlice = cachedSliceFor((CachedPartitionSlices) cached);
+            if (cachedSlice != null)
+            {
+                cfs.metric.rowCacheHit.inc();
+                Tracing.trace("Row cache hit");
+                UnfilteredRowIterator unfilteredRowIterator = clusteringIndexFilter().getUnfilteredRowIterator(columnFilter(), cachedSlice);
+                cfs.metric.updateSSTableIterated(0);
+                return unfilteredRowIterator;
+            }
+
+            cfs.metric.rowCacheHitOutOfRange.inc();
+            Tracing.trace("Ignoring row cache as cached slices could not satisfy query");
+        }
+        else
+        {
+            cfs.metric.rowCacheMiss.inc();
+            Tracing.trace("Row cache miss");
+        }
+
+        if (!(clusteringIndexFilter() instanceof ClusteringIndexSliceFilter)
+            || ((ClusteringIndexSliceFilter) clusteringIndexFilter()).requestedSlices().size() != 1)
+        {
+            Tracing.trace("Fetching data but not populating cache as query does not select a single slice");
+            return queryMemtableAndDisk(cfs, executionController);
+        }
+
+        ClusteringIndexSliceFilter filter = (ClusteringIndexSliceFilter) clusteringIndexFilter();
+        long writesBefore = cfs.cachedSliceWrites(key);
+        SinglePartitionReadCommand sliceRead = create(metadata(), nowInSec(), ColumnFilter.all(metadata()), RowFilter.NONE, DataLimits.NONE, partitionKey(), filter);
+        UnfilteredRowIterator iter = sliceRead.queryMemtableAndDisk(cfs, executionController);
+        return filter.filterNotIndexed(columnFilter(), new SliceCachingIterator(iter, cfs, key, filter.requestedSlices().get(0), writesBefore));
+    }
+
+    /**
+     * Returns the cached slice holding the result of this query, that is one holding everything the query selects or,
+     * if the query selects a single slice with a limit, one holding the start of the slice with enough live rows to
+     * reach the limit within it, like the last rows of a partition read in reverse order. Null if no slice does.
+     */
+    private CachedPartition cachedSliceFor(CachedPartitionSlices slices)
+    {
+        CachedPartition covering = slices.covering(clusteringIndexFilter(), metadata().comparator);
+        if (covering != null || slices.isEmpty() || !rowFilter().isEmpty() || !(clusteringIndexFilter() instanceof ClusteringIndexSliceFilter))
+            return covering;
+
+        Slices requested = ((ClusteringIndexSliceFilter) clusteringIndexFilter()).requestedSlices();
+        if (requested.size() != 1)
+            return null;
+
+        CachedPartition start = slices.holdingStart(requested.get(0), clusteringIndexFilter().isReversed(), metadata().comparator);
+        if (start == null)
+            return null;
+
+        DataLimits.Counter counter = limits().newCounter(nowInSec(), false, selectsFullPartition(), metadata().enforceStrictLiveness());
+        try (UnfilteredRowIterator iter = counter.applyTo(clusteringIndexFilter().getUnfilteredRowIterator(ColumnFilter.all(metadata()), start)))
+        {
+            // Consume the iterator until we've counted enough
+            while (iter.hasNext())
+                iter.next();
+            return counter.isDone() || counter.isDoneForPartition() ? start : null;
+        }
+    }
+
+    /**
+     * Records what a query reads of a slice, to cache it when closed. The slice can only be cut after a row outside of
+     * a range tombstone, so that the cached part holds all the deletions covering it.
+     */
+    private class SliceCachingIterator extends WrappingUnfilteredRowIterator
+    {
+        private final ColumnFamilyStore cfs;
+        private final RowCacheKey key;
+        private final Slice slice;
+        private final long writesBefore;
+        private final int rowsToCache;
+
+        private final List<Unfiltered> read = new ArrayList<>();
+        private int rows;
+        private boolean recording = true;
+        private boolean exhausted;
+        private boolean openMarker;
+
+        // the number of unfiltereds read up to the last row the slice can be cut after, and its clustering
+        private int cacheable;
+        private Clustering cacheableEnd;
+
+        private SliceCachingIterator(UnfilteredRowIterator wrapped, ColumnFamilyStore cfs, RowCacheKey key, Slice slice, long writesBefore)
+        {
+            super(wrapped);
+            this.cfs = cfs;
+            this.key = key;
+            this.slice = slice;
+            this.writesBefore = writesBefore;
+            this.rowsToCache = metadata().params.caching.rowsPerPartitionToCache();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            boolean hasNext = super.hasNext();
+            if (!hasNext && recording)
+                exhausted = true;
+            return hasNext;
+        }
+
+        @Override
+        public Unfiltered next()
+        {
+            Unfiltered unfiltered = super.next();
+            if (!recording)
+                return unfiltered;
+
+            read.add(unfiltered);
+            if (unfiltered.isRow())
+            {
+                if (!openMarker)
+                {
+                    cacheable = read.size();
+                    cacheableEnd = ((Row) unfiltered).clustering();
+                }
+                // We want to cache only rowsToCache rows
+                if (++rows >= rowsToCache)
+                    recording = false;
+            }
+            else
+            {
+                openMarker = ((RangeTombstoneMarker) unfiltered).isOpen(isReverseOrder());
+            }
+            return unfiltered;
+        }
+
+        @Override
+        public void close()
+        {
+            try
+            {
+                Slice toCache = exhausted ? slice : cut();
+                if (toCache != null)
+                {
+                    List<Unfiltered> cached = exhausted ? read : read.subList(0, cacheable);
+                    CachedPartition partition = CachedBTreePartition.create(new AbstractUnfilteredRowIterator(metadata(),
+                                                                                                              partitionKey(),
+                                                                                                              partitionLevelDeletion(),
+                                                                                                              columns(),
+                                                                                                              staticRow(),
+                                                                                                              isReverseOrder(),
+                                                                                                              stats())
+                    {
+                        private final Iterator<Unfiltered> iterator = cached.iterator();
+
+                        protected Unfiltered computeNext()
+                        {
+                            return iterator.hasNext() ? iterator.next() : endOfData();
+                        }
+                    }, cached.size(), nowInSec());
+                    Tracing.trace("Caching slice of {} rows", partition.rowCount());
+                    cfs.cacheSlice(key, toCache, partition, writesBefore);
+                }
+            }
+            finally
+            {
+                super.close();
+            }
+        }
+
+        // the part of the slice up to the last row it can be cut after, or null if there is none
+        private Slice cut()
+        {
+            if (cacheableEnd == null)
+                return null;
+
+            return isReverseOrder()
+                 ? Slice.make(ClusteringBound.inclusiveStartOf(cacheableEnd), slice.end())
+                 : Slice.make(slice.start(), ClusteringBound.inclusiveEndOf(cacheableEnd));
+        }
+    }
+
     /**
      * Queries both memtable and sstables to fetch the result of this query.
      * <p>
@@ -648,7 +849,7 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
                 if (!shouldInclude(sstable))
                 {
                     nonIntersectingSSTables++;
-                    if (sstable.mayHaveTombstones())
+                    if (mayHavePartitionDeletion(sstable))
                     { // if sstable has tombstones we need to check after one pass if it can be safely skipped
                         if (skippedSSTablesWithTombstones == null)
                             skippedSSTablesWithTombstones = new ArrayList<>();
@@ -723,7 +924,28 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
         if (!columnFilter().fetchedColumns().statics.isEmpty())
             return true;
 
-        return clusteringIndexFilter().shouldInclude(sstable);
+        if (!clusteringIndexFilter().shouldInclude(sstable))
+            return false;
+
+        // The queried clusterings are within the bounds of the sstable, but they may not be within those of the
+        // partition itself, which the synopsis of the sstable has if the partition is large.
+        SSTableSynopsis.PartitionBounds bounds = sstable.getSynopsis().partitionBounds(partitionKey());
+        return bounds == null
+               || clusteringIndexFilter().intersects(metadata().comparator, bounds.minClusteringValues, bounds.maxClusteringValues);
+    }
+
+    /**
+     * Whether the partition may have a partition level deletion in an sstable that {@link #shouldInclude} excludes.
+     * Any other tombstone of the partition is within the clustering bounds the sstable was excluded on, and so can't
+     * shadow the queried data.
+     */
+    private boolean mayHavePartitionDeletion(SSTableReader sstable)
+    {
+        if (!sstable.mayHaveTombstones())
+            return false;
+
+        SSTableSynopsis.PartitionBounds bounds = sstable.getSynopsis().partitionBounds(partitionKey());
+        return bounds == null || bounds.hasPartitionDeletion;
     }
 
     private UnfilteredRowIteratorWithLowerBound makeIterator(ColumnFamilyStore cfs,
@@ -841,8 +1063,8 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
                 // however: if it is set, it impacts everything and must be included. Getting that top-level partition deletion costs us
                 // some seek in general however (unless the partition is indexed and is in the key cache), so we first check if the sstable
                 // has any tombstone at all as a shortcut.
-                if (!sstable.mayHaveTombstones())
-                    continue; // no tombstone at all, we can skip that sstable
+                if (!mayHavePartitionDeletion(sstable))
+                    continue; // no tombstone that could matter, we can skip that sstable
 
                 // We need to get the partition deletion and include it if it's live. In any case though, we're done with that sstable.
                 try (UnfilteredRowIterator iter = StorageHook.instance.makeRowIterator(cfs,
@@ -1025,6 +1247,16 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
                (clusteringIndexFilter.selectsAllPartition() && !rowFilter().hasExpressionOnClusteringOrRegularColumns());
     }
 
+    /**
+     * Whether this command can be answered locally from the memtables alone, as no live sstable may contain the
+     * partition. Reads of tables with the row cache enabled never are, as they may deserialize cache entries.
+     */
+    public boolean isServedFromMemory()
+    {
+        ColumnFamilyStore cfs = Keyspace.openAndGetStore(metadata());
+        return !cfs.isRowCacheEnabled() && cfs.isPartitionOnlyInMemtables(partitionKey());
+    }
+
     @Override
     public String toString()
     {
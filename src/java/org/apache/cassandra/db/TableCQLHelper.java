@@ -318,6 +318,8 @@ public class TableCQLHelper
         builder.append("\n\tAND caching = ").append(toCQL(tableParams.caching.asMap()));
         builder.append("\n\tAND compaction = ").append(toCQL(tableParams.compaction.asMap()));
         builder.append("\n\tAND compression = ").append(toCQL(tableParams.compression.asMap()));
+        if (!tableParams.memtable.equals(MemtableParams.DEFAULT))
+            builder.append("\n\tAND memtable = ").append(toCQL(tableParams.memtable.asMap()));
         builder.append("\n\tAND cdc = ").append(tableParams.cdc);
 
         builder.append("\n\tAND extensions = { ");
@@ -27,6 +27,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.ParameterizedClass;
 import org.apache.cassandra.db.*;
@@ -87,7 +88,8 @@ public class CommitLog implements CommitLogMBean
     CommitLog(CommitLogArchiver archiver)
     {
         this.configuration = new Configuration(DatabaseDescriptor.getCommitLogCompression(),
-                                               DatabaseDescriptor.getEncryptionContext());
+                                               DatabaseDescriptor.getEncryptionContext(),
+                                               DatabaseDescriptor.getCommitLogDiskAccessMode());
         DatabaseDescriptor.createAllDirectories();
 
         this.archiver = archiver;
@@ -429,7 +431,8 @@ public class CommitLog implements CommitLogMBean
     public void resetConfiguration()
     {
         configuration = new Configuration(DatabaseDescriptor.getCommitLogCompression(),
-                                          DatabaseDescriptor.getEncryptionContext());
+                                          DatabaseDescriptor.getEncryptionContext(),
+                                          DatabaseDescriptor.getCommitLogDiskAccessMode());
     }
 
     /**
@@ -500,11 +503,19 @@ public class CommitLog implements CommitLogMBean
          */
         private EncryptionContext encryptionContext;
 
-        public Configuration(ParameterizedClass compressorClass, EncryptionContext encryptionContext)
+        /**
+         * How uncompressed, unencrypted segments are written.
+         */
+        private final Config.CommitLogDiskAccessMode diskAccessMode;
+
+        public Configuration(ParameterizedClass compressorClass,
+                             EncryptionContext encryptionContext,
+                             Config.CommitLogDiskAccessMode diskAccessMode)
         {
             this.compressorClass = compressorClass;
             this.compressor = compressorClass != null ? CompressionParams.createCompressor(compressorClass) : null;
             this.encryptionContext = encryptionContext;
+            this.diskAccessMode = diskAccessMode;
         }
 
         /**
@@ -525,6 +536,16 @@ public class CommitLog implements CommitLogMBean
             return encryptionContext.isEnabled();
         }
 
+        /**
+         * Checks if the segments must be written with direct I/O.
+         * @return <code>true</code> if the segments are neither compressed nor encrypted and the disk access mode is
+         * direct, <code>false</code> otherwise.
+         */
+        public boolean useDirectIO()
+        {
+            return !useCompression() && !useEncryption() && diskAccessMode == Config.CommitLogDiskAccessMode.direct;
+        }
+
         /**
          * Returns the compressor used to compress the segments.
          * @return the compressor used to compress the segments
@@ -21,11 +21,16 @@ package org.apache.cassandra.db.commitlog;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
@@ -36,6 +41,7 @@ import org.cliffc.high_scale_lib.NonBlockingHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.concurrent.StageManager;
 import org.apache.cassandra.config.Config;
@@ -64,17 +70,20 @@ public class CommitLogReplayer implements CommitLogReadHandler
     static final String IGNORE_REPLAY_ERRORS_PROPERTY = Config.PROPERTY_PREFIX + "commitlog.ignorereplayerrors";
     private static final Logger logger = LoggerFactory.getLogger(CommitLogReplayer.class);
     private static final int MAX_OUTSTANDING_REPLAY_COUNT = Integer.getInteger(Config.PROPERTY_PREFIX + "commitlog_max_outstanding_replay_count", 1024);
+    /**
+     * The number of segments read concurrently when replaying the commit log on startup.
+     */
+    @VisibleForTesting
+    public static int REPLAY_THREADS = Integer.getInteger(Config.PROPERTY_PREFIX + "commitlog_replay_threads",
+                                                          Math.min(4, FBUtilities.getAvailableProcessors()));
 
     private final Set<Keyspace> keyspacesReplayed;
-    private final Queue<Future<Integer>> futures;
+    private final MutationQueue mutations;
 
     private final AtomicInteger replayedCount;
     private final Map<TableId, IntervalSet<CommitLogPosition>> cfPersisted;
     private final CommitLogPosition globalPosition;
 
-    // Used to throttle speed of replay of mutations if we pass the max outstanding count
-    private long pendingMutationBytes = 0;
-
     private final ReplayFilter replayFilter;
     private final CommitLogArchiver archiver;
 
@@ -84,13 +93,28 @@ public class CommitLogReplayer implements CommitLogReadHandler
     @VisibleForTesting
     protected CommitLogReader commitLogReader;
 
+    // the number of segments read concurrently by replayFiles; when 1, segments are read by the calling thread
+    // with this replayer as their handler
+    private final int replayThreads;
+    // the readers used by the concurrent segment replays, for their invalid mutation counts
+    private final Queue<CommitLogReader> segmentReaders;
+
     CommitLogReplayer(CommitLog commitLog,
                       CommitLogPosition globalPosition,
                       Map<TableId, IntervalSet<CommitLogPosition>> cfPersisted,
                       ReplayFilter replayFilter)
+    {
+        this(commitLog, globalPosition, cfPersisted, replayFilter, 1);
+    }
+
+    private CommitLogReplayer(CommitLog commitLog,
+                              CommitLogPosition globalPosition,
+                              Map<TableId, IntervalSet<CommitLogPosition>> cfPersisted,
+                              ReplayFilter replayFilter,
+                              int replayThreads)
     {
         this.keyspacesReplayed = new NonBlockingHashSet<>();
-        this.futures = new ArrayDeque<>();
+        this.mutations = new MutationQueue();
         // count the number of replayed mutation. We don't really care about atomicity, but we need it to be a reference.
         this.replayedCount = new AtomicInteger();
         this.cfPersisted = cfPersisted;
@@ -98,6 +122,8 @@ public class CommitLogReplayer implements CommitLogReadHandler
         this.replayFilter = replayFilter;
         this.archiver = commitLog.archiver;
         this.commitLogReader = new CommitLogReader();
+        this.replayThreads = replayThreads;
+        this.segmentReaders = new ConcurrentLinkedQueue<>();
     }
 
     public static CommitLogReplayer construct(CommitLog commitLog)
@@ -135,7 +161,7 @@ public class CommitLogReplayer implements CommitLogReadHandler
         }
         CommitLogPosition globalPosition = firstNotCovered(cfPersisted.values());
         logger.debug("Global replay position is {} from columnfamilies {}", globalPosition, FBUtilities.toString(cfPersisted));
-        return new CommitLogReplayer(commitLog, globalPosition, cfPersisted, replayFilter);
+        return new CommitLogReplayer(commitLog, globalPosition, cfPersisted, replayFilter, Math.max(1, REPLAY_THREADS));
     }
 
     public void replayPath(File file, boolean tolerateTruncation) throws IOException
@@ -149,6 +175,12 @@ public class CommitLogReplayer implements CommitLogReadHandler
     public void replayFiles(File[] clogs) throws IOException
     {
         List<File> filteredLogs = CommitLogReader.filterCommitLogFiles(clogs);
+        if (replayThreads > 1 && filteredLogs.size() > 1)
+        {
+            replayFilesConcurrently(filteredLogs);
+            return;
+        }
+
         int i = 0;
         for (File file: filteredLogs)
         {
@@ -161,11 +193,75 @@ public class CommitLogReplayer implements CommitLogReadHandler
     }
 
 
+    /**
+     * Reads up to {@link #replayThreads} segments at a time, each with its own reader and handler, so that reading,
+     * decompressing and checksumming segments is no longer serialized. Mutations are applied on the mutation stage
+     * as with a sequential replay, and whether they are replayed still only depends on their own position and the
+     * persisted intervals of their table, so the order in which segments are read does not matter. Each segment
+     * replay waits for the application of its mutations before completing.
+     */
+    private void replayFilesConcurrently(List<File> filteredLogs) throws IOException
+    {
+        logger.info("Replaying {} commit log segments using {} threads", filteredLogs.size(), replayThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(replayThreads, new NamedThreadFactory("CommitLogReplay"));
+        try
+        {
+            List<Future<?>> results = new ArrayList<>(filteredLogs.size());
+            for (int i = 0; i < filteredLogs.size(); i++)
+            {
+                File file = filteredLogs.get(i);
+                boolean tolerateTruncation = i == filteredLogs.size() - 1;
+                results.add(executor.submit(() -> {
+                    replaySegment(file, tolerateTruncation);
+                    return null;
+                }));
+            }
+
+            for (Future<?> result : results)
+            {
+                try
+                {
+                    result.get();
+                }
+                catch (ExecutionException e)
+                {
+                    Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                    throw new RuntimeException(e.getCause());
+                }
+                catch (InterruptedException e)
+                {
+                    throw new AssertionError(e);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void replaySegment(File file, boolean tolerateTruncation) throws IOException
+    {
+        CommitLogReader reader = new CommitLogReader();
+        segmentReaders.add(reader);
+        SegmentReplayHandler handler = new SegmentReplayHandler();
+        try
+        {
+            reader.readCommitLogSegment(handler, file, globalPosition, tolerateTruncation);
+        }
+        finally
+        {
+            handler.mutations.drain();
+        }
+        if (handler.sawCDCMutation)
+            handleCDCReplayCompletion(file);
+    }
+
     /**
      * Upon replay completion, CDC needs to hard-link files in the CDC folder and calculate index files so consumers can
      * begin their work.
      */
-    private void handleCDCReplayCompletion(File f) throws IOException
+    private static void handleCDCReplayCompletion(File f) throws IOException
     {
         // Can only reach this point if CDC is enabled, thus we have a CDCSegmentManager
         ((CommitLogSegmentManagerCDC)CommitLog.instance.segmentManager).addCDCSize(f.length());
@@ -195,15 +291,20 @@ public class CommitLogReplayer implements CommitLogReadHandler
      */
     public int blockForWrites()
     {
+        Map<TableId, Integer> invalidMutations = new HashMap<>();
         for (Map.Entry<TableId, AtomicInteger> entry : commitLogReader.getInvalidMutations())
+            invalidMutations.merge(entry.getKey(), entry.getValue().get(), Integer::sum);
+        for (CommitLogReader reader : segmentReaders)
+            for (Map.Entry<TableId, AtomicInteger> entry : reader.getInvalidMutations())
+                invalidMutations.merge(entry.getKey(), entry.getValue().get(), Integer::sum);
+        for (Map.Entry<TableId, Integer> entry : invalidMutations.entrySet())
             logger.warn("Skipped {} mutations from unknown (probably removed) CF with id {}", entry.getValue(), entry.getKey());
 
         // wait for all the writes to finish on the mutation stage
-        FBUtilities.waitOnFutures(futures);
+        mutations.drain();
         logger.trace("Finished waiting on mutations from recovery");
 
         // flush replayed keyspaces
-        futures.clear();
         boolean flushingSystem = false;
 
         List<Future<?>> futures = new ArrayList<Future<?>>();
@@ -420,19 +521,70 @@ public class CommitLogReplayer implements CommitLogReadHandler
         if (DatabaseDescriptor.isCDCEnabled() && m.trackedByCDC())
             sawCDCMutation = true;
 
-        pendingMutationBytes += size;
-        futures.offer(mutationInitiator.initiateMutation(m,
-                                                         desc.id,
-                                                         size,
-                                                         entryLocation,
-                                                         this));
-        // If there are finished mutations, or too many outstanding bytes/mutations
-        // drain the futures in the queue
-        while (futures.size() > MAX_OUTSTANDING_REPLAY_COUNT
-               || pendingMutationBytes > MAX_OUTSTANDING_REPLAY_BYTES
-               || (!futures.isEmpty() && futures.peek().isDone()))
+        mutations.submit(m, size, entryLocation, desc);
+    }
+
+    /**
+     * The mutations submitted to the mutation stage by one reader, throttled so that the reader does not get too
+     * far ahead of their application.
+     */
+    private class MutationQueue
+    {
+        private final Queue<Future<Integer>> futures = new ArrayDeque<>();
+        // Used to throttle speed of replay of mutations if we pass the max outstanding count
+        private long pendingMutationBytes = 0;
+
+        void submit(Mutation m, int size, int entryLocation, CommitLogDescriptor desc)
         {
-            pendingMutationBytes -= FBUtilities.waitOnFuture(futures.poll());
+            pendingMutationBytes += size;
+            futures.offer(mutationInitiator.initiateMutation(m,
+                                                             desc.id,
+                                                             size,
+                                                             entryLocation,
+                                                             CommitLogReplayer.this));
+            // If there are finished mutations, or too many outstanding bytes/mutations
+            // drain the futures in the queue
+            while (futures.size() > MAX_OUTSTANDING_REPLAY_COUNT
+                   || pendingMutationBytes > MAX_OUTSTANDING_REPLAY_BYTES
+                   || (!futures.isEmpty() && futures.peek().isDone()))
+            {
+                pendingMutationBytes -= FBUtilities.waitOnFuture(futures.poll());
+            }
+        }
+
+        void drain()
+        {
+            FBUtilities.waitOnFutures(futures);
+            futures.clear();
+            pendingMutationBytes = 0;
+        }
+    }
+
+    /**
+     * The handler of a segment replayed concurrently with others, which has its own mutation queue but otherwise
+     * behaves like the replayer itself.
+     */
+    private class SegmentReplayHandler implements CommitLogReadHandler
+    {
+        private final MutationQueue mutations = new MutationQueue();
+        private boolean sawCDCMutation;
+
+        public boolean shouldSkipSegmentOnError(CommitLogReadException exception) throws IOException
+        {
+            return CommitLogReplayer.this.shouldSkipSegmentOnError(exception);
+        }
+
+        public void handleUnrecoverableError(CommitLogReadException exception) throws IOException
+        {
+            CommitLogReplayer.this.handleUnrecoverableError(exception);
+        }
+
+        public void handleMutation(Mutation m, int size, int entryLocation, CommitLogDescriptor desc)
+        {
+            if (DatabaseDescriptor.isCDCEnabled() && m.trackedByCDC())
+                sawCDCMutation = true;
+
+            mutations.submit(m, size, entryLocation, desc);
         }
     }
 
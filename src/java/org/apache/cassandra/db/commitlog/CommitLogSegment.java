@@ -135,7 +135,8 @@ public abstract class CommitLogSegment
         Configuration config = commitLog.configuration;
         CommitLogSegment segment = config.useEncryption() ? new EncryptedSegment(commitLog, manager)
                                                           : config.useCompression() ? new CompressedSegment(commitLog, manager)
-                                                                                    : new MemoryMappedSegment(commitLog, manager);
+                                                          : config.useDirectIO() ? new DirectIOSegment(commitLog, manager)
+                                                                                 : new MemoryMappedSegment(commitLog, manager);
         segment.writeLogHeader();
         return segment;
     }
@@ -149,7 +150,7 @@ public abstract class CommitLogSegment
     static boolean usesBufferPool(CommitLog commitLog)
     {
         Configuration config = commitLog.configuration;
-        return config.useEncryption() || config.useCompression();
+        return config.useEncryption() || config.useCompression() || config.useDirectIO();
     }
 
     static long getNextId()
@@ -172,7 +173,7 @@ public abstract class CommitLogSegment
 
         try
         {
-            channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.READ, StandardOpenOption.CREATE);
+            channel = openChannel(logFile);
             fd = NativeLibrary.getfd(channel);
         }
         catch (IOException e)
@@ -183,6 +184,14 @@ public abstract class CommitLogSegment
         buffer = createBuffer(commitLog);
     }
 
+    /**
+     * Opens the segment file. Called from the constructor, so implementations must not rely on instance state.
+     */
+    FileChannel openChannel(File logFile) throws IOException
+    {
+        return FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.READ, StandardOpenOption.CREATE);
+    }
+
     /**
      * Deferred writing of the commit log header until subclasses have had a chance to initialize
      */
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.utils.NativeLibrary;
+import org.apache.cassandra.utils.SyncUtil;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+
+/**
+ * An uncompressed segment written from a block-aligned buffer of the segment pool, bypassing the page cache.
+ *
+ * The file is extended to the full segment size on creation, so that syncs never change its length. On sync, the
+ * blocks covering the new section (and its end marker) are written at their final position in the file, then the
+ * data is forced to disk. The file is opened with O_DIRECT when the JVM supports it (Java 10 and later);
+ * otherwise the written pages go through the page cache and are evicted right after being forced to disk.
+ *
+ * The on-disk format is the same as the one of {@link MemoryMappedSegment}.
+ */
+public class DirectIOSegment extends CommitLogSegment
+{
+    private static final Logger logger = LoggerFactory.getLogger(DirectIOSegment.class);
+
+    /**
+     * The alignment of the buffers, and of the offsets and lengths of writes. Larger than or equal to the logical
+     * block size of most devices, and a divisor of the segment size.
+     */
+    static final int BLOCK_SIZE = 4096;
+
+    private static final OpenOption DIRECT = directOpenOption();
+
+    DirectIOSegment(CommitLog commitLog, AbstractCommitLogSegmentManager manager)
+    {
+        super(commitLog, manager);
+    }
+
+    /**
+     * @return the O_DIRECT open option if the JVM and the commit log file system support it with our alignment,
+     * null otherwise
+     */
+    private static OpenOption directOpenOption()
+    {
+        OpenOption direct;
+        try
+        {
+            // the option is only known at runtime, as an enum constant of a class that older JVMs don't have
+            @SuppressWarnings("unchecked")
+            OpenOption option = (OpenOption) Enum.valueOf(Class.forName("com.sun.nio.file.ExtendedOpenOption").asSubclass(Enum.class), "DIRECT");
+            direct = option;
+        }
+        catch (ClassNotFoundException | IllegalArgumentException e)
+        {
+            logger.info("Direct I/O is not supported by this JVM, commit log pages will be evicted from the page cache after being written instead");
+            return null;
+        }
+
+        try
+        {
+            FileStore store = Files.getFileStore(new File(DatabaseDescriptor.getCommitLogLocation()).toPath());
+            long blockSize = (long) FileStore.class.getMethod("getBlockSize").invoke(store);
+            if (BLOCK_SIZE % blockSize != 0)
+            {
+                logger.warn("The block size of the commit log file system ({}) is not a divisor of {}, not using direct I/O", blockSize, BLOCK_SIZE);
+                return null;
+            }
+        }
+        catch (Exception e)
+        {
+            logger.warn("Could not determine the block size of the commit log file system, not using direct I/O", e);
+            return null;
+        }
+        return direct;
+    }
+
+    @Override
+    FileChannel openChannel(File logFile) throws IOException
+    {
+        if (DIRECT == null)
+            return super.openChannel(logFile);
+
+        return FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.READ, StandardOpenOption.CREATE, DIRECT);
+    }
+
+    ByteBuffer createBuffer(CommitLog commitLog)
+    {
+        ByteBuffer buffer = manager.getBufferPool().createAlignedBuffer(BLOCK_SIZE);
+        assert buffer.capacity() % BLOCK_SIZE == 0 : "Commit log segment size must be a multiple of " + BLOCK_SIZE;
+
+        // pooled buffers hold the content of a previous segment, which must not end up in this one
+        MemoryUtil.setByte(MemoryUtil.getAddress(buffer), buffer.capacity(), (byte) 0);
+
+        try
+        {
+            // extend the file to its full size by writing its last block
+            ByteBuffer lastBlock = buffer.duplicate();
+            lastBlock.position(buffer.capacity() - BLOCK_SIZE);
+            writeFully(lastBlock, buffer.capacity() - BLOCK_SIZE);
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, logFile);
+        }
+        manager.addSize(buffer.capacity());
+        return buffer;
+    }
+
+    @Override
+    void write(int startMarker, int nextMarker)
+    {
+        // if there's room in the discard section to write an empty header,
+        // zero out the next sync marker so replayer can cleanly exit
+        if (nextMarker <= buffer.capacity() - SYNC_MARKER_SIZE)
+        {
+            buffer.putInt(nextMarker, 0);
+            buffer.putInt(nextMarker + 4, 0);
+        }
+
+        // write previous sync marker to point to next sync marker
+        // we don't chain the crcs here to ensure this method is idempotent if it fails
+        writeSyncMarker(id, buffer, startMarker, startMarker, nextMarker);
+    }
+
+    @Override
+    protected void flush(int startMarker, int nextMarker)
+    {
+        // the blocks covering the section, including its start marker and the (zeroed) marker that follows it; the
+        // first and last blocks may have been partially written by a previous sync, or be rewritten by the next one
+        int start = startMarker & -BLOCK_SIZE;
+        int end = Math.min(buffer.capacity(), (nextMarker + SYNC_MARKER_SIZE + BLOCK_SIZE - 1) & -BLOCK_SIZE);
+        try
+        {
+            ByteBuffer section = buffer.duplicate();
+            section.limit(end).position(start);
+            writeFully(section, start);
+            SyncUtil.force(channel, false);
+        }
+        catch (Exception e)
+        {
+            throw new FSWriteError(e, getPath());
+        }
+
+        if (DIRECT == null)
+            NativeLibrary.trySkipCache(fd, start, end - start, logFile.getAbsolutePath());
+    }
+
+    private void writeFully(ByteBuffer src, long position) throws IOException
+    {
+        while (src.hasRemaining())
+            position += channel.write(src, position);
+    }
+
+    @Override
+    public long onDiskSize()
+    {
+        return DatabaseDescriptor.getCommitLogSegmentSize();
+    }
+
+    @Override
+    protected void internalClose()
+    {
+        try
+        {
+            manager.getBufferPool().releaseBuffer(buffer);
+            super.internalClose();
+        }
+        finally
+        {
+            manager.notifyBufferFreed();
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import io.netty.util.concurrent.FastThreadLocal;
 import org.apache.cassandra.io.compress.BufferType;
 import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.utils.memory.MemoryUtil;
 
 /**
  * A very simple Bytebuffer pool with a fixed allocation size and a cached max allocation count. Will allow
@@ -77,6 +78,31 @@ public class SimpleCachedBufferPool
         return bufferType.allocate(bufferSize);
     }
 
+    /**
+     * Returns a direct buffer whose address is a multiple of the given alignment, as needed for direct I/O. The
+     * content of the buffer is undefined.
+     */
+    public ByteBuffer createAlignedBuffer(int alignment)
+    {
+        usedBuffers.incrementAndGet();
+        ByteBuffer buf = bufferPool.poll();
+        if (buf != null)
+        {
+            if (buf.isDirect() && MemoryUtil.getAddress(buf) % alignment == 0)
+            {
+                buf.clear();
+                return buf;
+            }
+            // a buffer from a differently configured commit log
+            clean(buf);
+        }
+
+        ByteBuffer allocated = ByteBuffer.allocateDirect(bufferSize + alignment);
+        int offset = (int) (-MemoryUtil.getAddress(allocated) & (alignment - 1));
+        allocated.position(offset).limit(offset + bufferSize);
+        return allocated.slice();
+    }
+
     public ByteBuffer getThreadLocalReusableBuffer(int size)
     {
         ByteBuffer result = reusableBufferHolder.get();
@@ -101,7 +127,14 @@ public class SimpleCachedBufferPool
         if (bufferPool.size() < maxBufferPoolSize)
             bufferPool.add(buffer);
         else
-            FileUtils.clean(buffer);
+            clean(buffer);
+    }
+
+    private static void clean(ByteBuffer buffer)
+    {
+        // aligned buffers are slices of a larger allocation, which is the one to clean
+        Object attachment = buffer.isDirect() ? MemoryUtil.getAttachment(buffer) : null;
+        FileUtils.clean(attachment instanceof ByteBuffer ? (ByteBuffer) attachment : buffer);
     }
 
     public void shutdown()
@@ -69,6 +69,9 @@ public abstract class AbstractCompactionStrategy
     protected static final String LOG_ALL_OPTION = "log_all";
     protected static final String COMPACTION_ENABLED = "enabled";
     public static final String ONLY_PURGE_REPAIRED_TOMBSTONES = "only_purge_repaired_tombstones";
+    // weight of the table in the share of the compaction throughput, see CompactionIOScheduler
+    public static final String IO_PRIORITY_OPTION = "io_priority";
+    public static final int DEFAULT_IO_PRIORITY = 1;
 
     protected Map<String, String> options;
 
@@ -398,7 +401,7 @@ public abstract class AbstractCompactionStrategy
         else
         {
             // what percentage of columns do we expect to compact outside of overlap?
-            if (sstable.getIndexSummarySize() < 2)
+            if (sstable.hasIndexSummary() && sstable.getIndexSummarySize() < 2)
             {
                 // we have too few samples to estimate correct percentage
                 return false;
@@ -479,6 +482,23 @@ public abstract class AbstractCompactionStrategy
             }
         }
 
+        String ioPriority = options.get(IO_PRIORITY_OPTION);
+        if (ioPriority != null)
+        {
+            try
+            {
+                int ioPriorityValue = Integer.parseInt(ioPriority);
+                if (ioPriorityValue < 1)
+                {
+                    throw new ConfigurationException(String.format("%s must be at least 1, but was %d", IO_PRIORITY_OPTION, ioPriorityValue));
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                throw new ConfigurationException(String.format("%s is not a parsable int (base10) for %s", ioPriority, IO_PRIORITY_OPTION), e);
+            }
+        }
+
         Map<String, String> uncheckedOptions = new HashMap<String, String>(options);
         uncheckedOptions.remove(TOMBSTONE_THRESHOLD_OPTION);
         uncheckedOptions.remove(TOMBSTONE_COMPACTION_INTERVAL_OPTION);
@@ -486,7 +506,9 @@ public abstract class AbstractCompactionStrategy
         uncheckedOptions.remove(LOG_ALL_OPTION);
         uncheckedOptions.remove(COMPACTION_ENABLED);
         uncheckedOptions.remove(ONLY_PURGE_REPAIRED_TOMBSTONES);
+        uncheckedOptions.remove(IO_PRIORITY_OPTION);
         uncheckedOptions.remove(CompactionParams.Option.PROVIDE_OVERLAPPING_TOMBSTONES.toString());
+        uncheckedOptions.remove(CompactionParams.Option.BLOOM_FILTER.toString());
         return uncheckedOptions;
     }
 
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.schema.TableId;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.service.StorageProxy;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.Pair;
+
+/**
+ * Shares the compaction throughput between the running compaction operations (compactions, cleanups, scrubs,
+ * anticompactions...).
+ * <p>
+ * The operations of a given type on a given table share a rate limiter, whose rate is the share of the total throughput
+ * given by its weight among the weights of the rate limiters in use, so the total throughput is never exceeded
+ * and an idle rate limiter doesn't waste any of it. The weight is the product of the weight of the operation type,
+ * that favours the compactions that keep the number of sstables under control, and of the io_priority compaction
+ * option of the table.
+ * <p>
+ * When compaction_read_latency_target_in_ms is set, the total throughput adapts to the load: it decreases down to a
+ * quarter of compaction_throughput_mb_per_sec while the p99 latency of the reads coordinated by this node, as the
+ * clients observe it, exceeds the target, and increases up to twice compaction_throughput_mb_per_sec while compactions
+ * are pending, so that compactions can't fall behind. Otherwise it converges back to compaction_throughput_mb_per_sec.
+ */
+public class CompactionIOScheduler implements Runnable
+{
+    private static final Logger logger = LoggerFactory.getLogger(CompactionIOScheduler.class);
+
+    public static final long INTERVAL_MILLIS = 1000;
+    static final long ADJUSTMENT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // a rate limiter that isn't used by a running operation is released after this, as its table may have been dropped
+    private static final long EXPIRATION_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    static final double MIN_RATE_RATIO = 0.25;
+    static final double MAX_RATE_RATIO = 2;
+    static final double RATE_INCREASE = 1.25;
+    static final double RATE_DECREASE = 0.75;
+
+    // the number of pending compactions from which compactions are falling behind
+    static final int BACKLOG_PENDING_TASKS = Integer.getInteger(Config.PROPERTY_PREFIX + "compaction_backlog_pending_tasks", 32);
+
+    public static final CompactionIOScheduler instance = new CompactionIOScheduler();
+
+    private final ConcurrentMap<Pair<OperationType, TableId>, Queue> queues = new ConcurrentHashMap<>();
+
+    // the configured and adjusted total throughput, in bytes per second
+    private volatile double configuredRate = Double.MAX_VALUE;
+    private volatile double rate = Double.MAX_VALUE;
+    private long lastAdjustmentNanos = System.nanoTime();
+
+    @VisibleForTesting
+    CompactionIOScheduler()
+    {
+    }
+
+    /**
+     * Returns the rate limiter of the given operation on the given table, whose rate is updated as other operations
+     * start and complete. The rate unit is bytes per second.
+     */
+    public RateLimiter getRateLimiter(OperationType type, ColumnFamilyStore cfs)
+    {
+        setRate(DatabaseDescriptor.getCompactionThroughputMbPerSec());
+
+        Queue queue = queues.computeIfAbsent(Pair.create(type, cfs.metadata.id), key -> new Queue());
+        queue.weight = operationWeight(type) * cfs.getCompactionStrategyManager().getIOPriority();
+        queue.lastRequestNanos = System.nanoTime();
+        if (!queue.active)
+            rebalance();
+        return queue.limiter;
+    }
+
+    /**
+     * Sets the configured total throughput. When compaction_throughput_mb_per_sec is 0 or the node is bootstrapping,
+     * compactions aren't throttled.
+     */
+    public synchronized void setRate(double throughputMbPerSec)
+    {
+        double throughput = throughputMbPerSec * 1024.0 * 1024.0;
+        // if throughput is set to 0, throttling is disabled
+        if (throughput == 0 || StorageService.instance.isBootstrapMode())
+            throughput = Double.MAX_VALUE;
+        if (configuredRate != throughput)
+        {
+            configuredRate = throughput;
+            rate = throughput;
+            rebalance();
+        }
+    }
+
+    /**
+     * The current total throughput in bytes per second, {@code Double.MAX_VALUE} if compactions aren't throttled.
+     */
+    public double getRate()
+    {
+        return rate;
+    }
+
+    public synchronized void run()
+    {
+        long now = System.nanoTime();
+        if (now - lastAdjustmentNanos >= ADJUSTMENT_INTERVAL_NANOS)
+        {
+            lastAdjustmentNanos = now;
+            long readLatencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(DatabaseDescriptor.getCompactionReadLatencyTargetInMs());
+            if (readLatencyTargetNanos > 0)
+                adjust(CompactionManager.instance.getPendingTasks(), StorageProxy.getReadMetrics().latency.getSnapshot().get99thPercentile(), readLatencyTargetNanos);
+            else
+                rate = configuredRate;
+        }
+        rebalance();
+    }
+
+    /**
+     * Adjusts the total throughput given the number of pending compactions and the p99 latency of the coordinated reads.
+     */
+    @VisibleForTesting
+    synchronized void adjust(long pendingTasks, double readLatencyNanos, long readLatencyTargetNanos)
+    {
+        if (configuredRate == Double.MAX_VALUE)
+            return;
+
+        double previous = rate;
+        if (pendingTasks > BACKLOG_PENDING_TASKS)
+            rate = Math.min(configuredRate * MAX_RATE_RATIO, Math.max(rate, configuredRate) * RATE_INCREASE);
+        else if (readLatencyNanos > readLatencyTargetNanos)
+            rate = Math.max(configuredRate * MIN_RATE_RATIO, rate * RATE_DECREASE);
+        else if (rate < configuredRate)
+            rate = Math.min(configuredRate, rate * RATE_INCREASE);
+        else
+            rate = Math.max(configuredRate, rate * RATE_DECREASE);
+
+        if (rate != previous)
+            logger.debug("Adjusted compaction throughput to {}/s ({} pending compactions, p99 read latency {}ms)",
+                         FBUtilities.prettyPrintMemory((long) rate), pendingTasks, TimeUnit.NANOSECONDS.toMillis((long) readLatencyNanos));
+    }
+
+    /**
+     * Shares the total throughput between the rate limiters that are in use, that is that running operations have
+     * requested recently or that are used by the operations tracked by {@link CompactionManager#active}.
+     */
+    @VisibleForTesting
+    synchronized void rebalance()
+    {
+        Set<Pair<OperationType, TableId>> running = new HashSet<>();
+        for (CompactionInfo.Holder holder : CompactionManager.instance.active.getCompactions())
+        {
+            CompactionInfo info = holder.getCompactionInfo();
+            TableMetadata metadata = info.getTableMetadata();
+            if (metadata != null)
+                running.add(Pair.create(info.getTaskType(), metadata.id));
+        }
+
+        long now = System.nanoTime();
+        double totalWeight = 0;
+        Iterator<Map.Entry<Pair<OperationType, TableId>, Queue>> iter = queues.entrySet().iterator();
+        while (iter.hasNext())
+        {
+            Map.Entry<Pair<OperationType, TableId>, Queue> entry = iter.next();
+            Queue queue = entry.getValue();
+            long idleNanos = now - queue.lastRequestNanos;
+            queue.active = running.contains(entry.getKey()) || idleNanos < 2 * TimeUnit.MILLISECONDS.toNanos(INTERVAL_MILLIS);
+            if (queue.active)
+                totalWeight += queue.weight;
+            else if (idleNanos > EXPIRATION_NANOS)
+                iter.remove();
+        }
+
+        for (Queue queue : queues.values())
+        {
+            if (!queue.active)
+                continue;
+
+            double queueRate = rate == Double.MAX_VALUE ? Double.MAX_VALUE : rate * queue.weight / totalWeight;
+            if (queue.limiter.getRate() != queueRate)
+                queue.limiter.setRate(queueRate);
+        }
+    }
+
+    /**
+     * The weight of the operations of the given type, that favours the compactions keeping the number of sstables, and
+     * so the read latency, under control, over the operations that are only maintenance.
+     */
+    @VisibleForTesting
+    static int operationWeight(OperationType type)
+    {
+        switch (type)
+        {
+            case COMPACTION:
+            case TOMBSTONE_COMPACTION:
+            case ANTICOMPACTION:
+                return 4;
+            case VALIDATION:
+            case INDEX_BUILD:
+            case VIEW_BUILD:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    private static class Queue
+    {
+        private final RateLimiter limiter = RateLimiter.create(Double.MAX_VALUE);
+        private volatile int weight = 1;
+        private volatile long lastRequestNanos;
+        private volatile boolean active;
+    }
+}
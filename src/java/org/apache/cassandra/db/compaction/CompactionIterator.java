@@ -33,6 +33,7 @@ import org.apache.cassandra.db.partitions.UnfilteredPartitionIterators;
 import org.apache.cassandra.db.rows.*;
 import org.apache.cassandra.db.transform.Transformation;
 import org.apache.cassandra.index.transactions.CompactionTransaction;
+import org.apache.cassandra.io.sstable.CopyablePartition;
 import org.apache.cassandra.io.sstable.ISSTableScanner;
 import org.apache.cassandra.schema.CompactionParams.TombstoneOption;
 
@@ -49,6 +50,8 @@ import org.apache.cassandra.schema.CompactionParams.TombstoneOption;
  *       an optimization).</li>
  *   <li>invalidate cached partitions that are empty post-compaction. This avoids keeping partitions with
  *       only purgable tombstones in the row cache.</li>
+ *   <li>pass the partitions that a single sstable has, and that have nothing to purge, as they are read (see
+ *       {@link CopyablePartition}), so that they can be written without being deserialized.</li>
  *   <li>keep tracks of the compaction progress.</li>
  * </ul>
  */
@@ -60,12 +63,14 @@ public class CompactionIterator extends CompactionInfo.Holder implements Unfilte
     private final CompactionController controller;
     private final List<ISSTableScanner> scanners;
     private final ImmutableSet<SSTableReader> sstables;
+    private final Set<SSTableReader> copyableSSTables;
     private final int nowInSec;
     private final UUID compactionId;
 
     private final long totalBytes;
     private long bytesRead;
     private long totalSourceCQLRows;
+    private long copiedPartitions;
 
     /*
      * counters for merged rows.
@@ -99,6 +104,8 @@ public class CompactionIterator extends CompactionInfo.Holder implements Unfilte
         this.mergeCounters = new long[scanners.size()];
         this.activeCompactions = activeCompactions == null ? ActiveCompactionsTracker.NOOP : activeCompactions;
         this.activeCompactions.beginCompaction(this); // note that CompactionTask also calls this, but CT only creates CompactionIterator with a NOOP ActiveCompactions
+        sstables = scanners.stream().map(ISSTableScanner::getBackingSSTables).flatMap(Collection::stream).collect(ImmutableSet.toImmutableSet());
+        copyableSSTables = copyableSSTables(type, sstables, controller, nowInSec);
 
         UnfilteredPartitionIterator merged = scanners.isEmpty()
                                            ? EmptyIterators.unfilteredPartition(controller.cfs.metadata())
@@ -106,7 +113,33 @@ public class CompactionIterator extends CompactionInfo.Holder implements Unfilte
         merged = Transformation.apply(merged, new GarbageSkipper(controller));
         merged = Transformation.apply(merged, new Purger(controller, nowInSec));
         compacted = Transformation.apply(merged, new AbortableUnfilteredPartitionTransformation(this));
-        sstables = scanners.stream().map(ISSTableScanner::getBackingSSTables).flatMap(Collection::stream).collect(ImmutableSet.toImmutableSet());
+    }
+
+    /**
+     * Returns the sstables whose partitions can be passed as they are read when no other sstable has them: those
+     * without tombstones that could be purged nor expired cells that would be converted to tombstones, as the data
+     * of dropped columns, counters and strict liveness also require the rows to be read.
+     */
+    private static Set<SSTableReader> copyableSSTables(OperationType type, Set<SSTableReader> sstables, CompactionController controller, int nowInSec)
+    {
+        TableMetadata metadata = controller.cfs.metadata();
+        if (type != OperationType.COMPACTION
+            || controller.tombstoneOption != TombstoneOption.NONE
+            || metadata.isCounter()
+            || metadata.enforceStrictLiveness()
+            || !metadata.droppedColumns.isEmpty())
+            return Collections.emptySet();
+
+        Set<SSTableReader> copyable = new HashSet<>();
+        for (SSTableReader sstable : sstables)
+        {
+            // tombstones are purged before gcBefore, and expiring cells are converted to tombstones once expired
+            int minLocalDeletionTime = sstable.getMinLocalDeletionTime();
+            if (minLocalDeletionTime >= controller.gcBefore
+                && (minLocalDeletionTime > nowInSec || sstable.getSSTableMetadata().maxTTL == Cell.NO_TTL))
+                copyable.add(sstable);
+        }
+        return copyable;
     }
 
     public TableMetadata metadata()
@@ -144,6 +177,17 @@ public class CompactionIterator extends CompactionInfo.Holder implements Unfilte
     {
         return new UnfilteredPartitionIterators.MergeListener()
         {
+            public boolean skipMerge(UnfilteredRowIterator partition)
+            {
+                if (!(partition instanceof CopyablePartition) || !copyableSSTables.contains(((CopyablePartition) partition).sstable()))
+                    return false;
+
+                CompactionIterator.this.updateCounterFor(1);
+                if ((++copiedPartitions) % UNFILTERED_TO_UPDATE_PROGRESS == 0)
+                    updateBytesRead();
+                return true;
+            }
+
             public UnfilteredRowIterators.MergeListener getRowMergeListener(DecoratedKey partitionKey, List<UnfilteredRowIterator> versions)
             {
                 int merged = 0;
@@ -274,6 +318,13 @@ public class CompactionIterator extends CompactionInfo.Holder implements Unfilte
             this.controller = controller;
         }
 
+        @Override
+        protected UnfilteredRowIterator applyToPartition(UnfilteredRowIterator partition)
+        {
+            // partitions that weren't merged have nothing to purge
+            return partition instanceof CopyablePartition ? partition : super.applyToPartition(partition);
+        }
+
         @Override
         protected void onEmptyPartitionPostPurge(DecoratedKey key)
         {
@@ -554,6 +605,9 @@ public class CompactionIterator extends CompactionInfo.Holder implements Unfilte
         {
             if (abortableIter.iter.isStopRequested())
                 throw new CompactionInterruptedException(abortableIter.iter.getCompactionInfo());
+            // partitions that weren't merged are left as they are read, so that they can be copied
+            if (partition instanceof CopyablePartition)
+                return partition;
             return Transformation.apply(partition, abortableIter);
         }
     }
@@ -21,7 +21,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -39,6 +41,7 @@ import org.slf4j.LoggerFactory;
 
 import io.netty.util.concurrent.FastThreadLocal;
 import org.apache.cassandra.cache.AutoSavingCache;
+import org.apache.cassandra.cache.ChunkCache;
 import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
 import org.apache.cassandra.concurrent.JMXEnabledThreadPoolExecutor;
 import org.apache.cassandra.concurrent.NamedThreadFactory;
@@ -52,8 +55,8 @@ import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.SSTableIntervalTree;
 import org.apache.cassandra.db.lifecycle.SSTableSet;
+import org.apache.cassandra.db.lifecycle.SharedLifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.View;
-import org.apache.cassandra.db.lifecycle.WrappedLifecycleTransaction;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.db.view.ViewBuilderTask;
 import org.apache.cassandra.dht.Bounds;
@@ -133,38 +136,31 @@ public class CompactionManager implements CompactionManagerMBean
 
     public final ActiveCompactions active = new ActiveCompactions();
 
-    private final RateLimiter compactionRateLimiter = RateLimiter.create(Double.MAX_VALUE);
-
     public CompactionMetrics getMetrics()
     {
         return metrics;
     }
 
     /**
-     * Gets compaction rate limiter.
+     * Gets the compaction rate limiter of the given operation on the given table, whose share of the compaction
+     * throughput is set by the {@link CompactionIOScheduler}.
      * Rate unit is bytes per sec.
      *
      * @return RateLimiter with rate limit set
      */
-    public RateLimiter getRateLimiter()
+    public RateLimiter getRateLimiter(OperationType type, ColumnFamilyStore cfs)
     {
-        setRate(DatabaseDescriptor.getCompactionThroughputMbPerSec());
-        return compactionRateLimiter;
+        return CompactionIOScheduler.instance.getRateLimiter(type, cfs);
     }
 
     /**
-     * Sets the rate for the rate limiter. When compaction_throughput_mb_per_sec is 0 or node is bootstrapping,
+     * Sets the total compaction throughput. When compaction_throughput_mb_per_sec is 0 or node is bootstrapping,
      * this sets the rate to Double.MAX_VALUE bytes per second.
      * @param throughPutMbPerSec throughput to set in mb per second
      */
     public void setRate(final double throughPutMbPerSec)
     {
-        double throughput = throughPutMbPerSec * 1024.0 * 1024.0;
-        // if throughput is set to 0, throttling is disabled
-        if (throughput == 0 || StorageService.instance.isBootstrapMode())
-            throughput = Double.MAX_VALUE;
-        if (compactionRateLimiter.getRate() != throughput)
-            compactionRateLimiter.setRate(throughput);
+        CompactionIOScheduler.instance.setRate(throughPutMbPerSec);
     }
 
     /**
@@ -1219,7 +1215,7 @@ public class CompactionManager implements CompactionManagerMBean
         logger.info("Cleaning up {}", sstable);
 
         File compactionFileLocation = sstable.descriptor.directory;
-        RateLimiter limiter = getRateLimiter();
+        RateLimiter limiter = getRateLimiter(OperationType.CLEANUP, cfs);
         double compressionRatio = sstable.getCompressionRatio();
         if (compressionRatio == MetadataCollector.NO_COMPRESSION_RATIO)
             compressionRatio = 1.0;
@@ -1291,6 +1287,114 @@ public class CompactionManager implements CompactionManagerMBean
         }
     }
 
+    /**
+     * Runs the given tasks, typically the token sub-ranges of a compaction, on the calling thread and on the idle threads
+     * of the compaction executor, and returns once they have all completed.
+     * <p>
+     * The tasks are taken from a shared queue, so the calling thread runs the tasks that no idle thread has picked up
+     * rather than waiting on them: the compaction never waits on a task queued behind other compactions. Once no task
+     * is left, the helpers that haven't started yet are cancelled and only the running ones are waited on, as a helper
+     * may itself be queued behind other compactions. After a task fails the remaining ones are not started, and the
+     * first failure is thrown once the running ones complete.
+     */
+    public void runOnIdleCompactors(List<? extends Runnable> tasks)
+    {
+        Queue<Runnable> pending = new ConcurrentLinkedQueue<>(tasks);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Future<?>> helpers = new ArrayList<>();
+        List<AtomicBoolean> started = new ArrayList<>();
+        for (int i = 0; i < Math.min(getIdleCompactors(), tasks.size() - 1); i++)
+        {
+            AtomicBoolean helperStarted = new AtomicBoolean();
+            started.add(helperStarted);
+            helpers.add(executor.submitIfRunning(() -> {
+                if (helperStarted.compareAndSet(false, true))
+                    runPending(pending, failure);
+            }, "compaction sub-range"));
+        }
+
+        runPending(pending, failure);
+        for (int i = 0; i < helpers.size(); i++)
+        {
+            // a helper that hasn't started yet is prevented from running, and there is nothing left for it to run
+            // anyway. Whether its future can be cancelled doesn't tell, as a running task can be cancelled too.
+            if (started.get(i).compareAndSet(false, true))
+            {
+                helpers.get(i).cancel(false);
+                continue;
+            }
+
+            try
+            {
+                Uninterruptibles.getUninterruptibly(helpers.get(i));
+            }
+            catch (ExecutionException | CancellationException e)
+            {
+                // the helpers record the failures of the tasks they run, and the cancelled ones didn't run any
+            }
+        }
+
+        Throwables.maybeFail(failure.get());
+    }
+
+    /**
+     * Returns the number of compaction threads that are neither running a task nor about to pick a queued one.
+     */
+    public int getIdleCompactors()
+    {
+        return executor.getQueue().isEmpty() ? Math.max(0, executor.getMaximumPoolSize() - executor.getActiveCount()) : 0;
+    }
+
+    /**
+     * Submits the compaction of the single sstable of the provided transaction, that the {@link TombstoneCompactionScheduler}
+     * picked to purge its tombstones.
+     */
+    @SuppressWarnings("resource")
+    public Future<?> submitTombstoneCompaction(ColumnFamilyStore cfs, LifecycleTransaction txn, int gcBefore)
+    {
+        Runnable runnable = new WrappedRunnable()
+        {
+            protected void runMayThrow()
+            {
+                AbstractCompactionTask task = null;
+                try
+                {
+                    task = cfs.getCompactionStrategyManager().getCompactionStrategyFor(txn.onlyOne()).getCompactionTask(txn, gcBefore, Long.MAX_VALUE);
+                }
+                finally
+                {
+                    if (task == null)
+                        txn.close();
+                }
+                task.execute(active);
+            }
+        };
+
+        Future<?> fut = executor.submitIfRunning(runnable, "tombstone compaction");
+        if (fut.isCancelled())
+            txn.close();
+        return fut;
+    }
+
+    private static void runPending(Queue<Runnable> pending, AtomicReference<Throwable> failure)
+    {
+        Runnable task;
+        while ((task = pending.poll()) != null)
+        {
+            try
+            {
+                task.run();
+            }
+            catch (Throwable t)
+            {
+                if (!failure.compareAndSet(null, t))
+                    failure.get().addSuppressed(t);
+                pending.clear();
+            }
+        }
+    }
+
     private static abstract class CleanupStrategy
     {
         protected final Collection<Range<Token>> ranges;
@@ -1525,44 +1629,12 @@ public class CompactionManager implements CompactionManagerMBean
 
         File destination = cfs.getDirectories().getWriteableLocationAsFile(cfs.getExpectedCompactedFileSize(sstableAsSet, OperationType.ANTICOMPACTION));
         int nowInSec = FBUtilities.nowInSeconds();
-        RateLimiter limiter = getRateLimiter();
-
-        /**
-         * HACK WARNING
-         *
-         * We have multiple writers operating over the same Transaction, producing different sets of sstables that all
-         * logically replace the transaction's originals.  The SSTableRewriter assumes it has exclusive control over
-         * the transaction state, and this will lead to temporarily inconsistent sstable/tracker state if we do not
-         * take special measures to avoid it.
-         *
-         * Specifically, if a number of rewriter have prepareToCommit() invoked in sequence, then two problematic things happen:
-         *   1. The obsoleteOriginals() call of the first rewriter immediately remove the originals from the tracker, despite
-         *      their having been only partially replaced.  To avoid this, we must either avoid obsoleteOriginals() or checkpoint()
-         *   2. The LifecycleTransaction may only have prepareToCommit() invoked once, and this will checkpoint() also.
-         *
-         * Similarly commit() would finalise partially complete on-disk state.
-         *
-         * To avoid these problems, we introduce a SharedTxn that proxies all calls onto the underlying transaction
-         * except prepareToCommit(), checkpoint(), obsoleteOriginals(), and commit().
-         * We then invoke these methods directly once each of the rewriter has updated the transaction
-         * with their share of replacements.
-         *
-         * Note that for the same essential reason we also explicitly disable early open.
-         * By noop-ing checkpoint we avoid any of the problems with early open, but by continuing to explicitly
-         * disable it we also prevent any of the extra associated work from being performed.
-         */
-        class SharedTxn extends WrappedLifecycleTransaction
-        {
-            public SharedTxn(ILifecycleTransaction delegate) { super(delegate); }
-            public Throwable commit(Throwable accumulate) { return accumulate; }
-            public void prepareToCommit() {}
-            public void checkpoint() {}
-            public void obsoleteOriginals() {}
-            public void close() {}
-        }
+        RateLimiter limiter = getRateLimiter(OperationType.ANTICOMPACTION, cfs);
 
+        // We have multiple writers operating over the same Transaction, producing different sets of sstables that all
+        // logically replace the transaction's originals; see SharedLifecycleTransaction for how they share it.
         CompactionStrategyManager strategy = cfs.getCompactionStrategyManager();
-        try (SharedTxn sharedTxn = new SharedTxn(txn);
+        try (SharedLifecycleTransaction sharedTxn = new SharedLifecycleTransaction(txn);
              SSTableRewriter fullWriter = SSTableRewriter.constructWithoutEarlyOpening(sharedTxn, false, groupMaxDataAge);
              SSTableRewriter transWriter = SSTableRewriter.constructWithoutEarlyOpening(sharedTxn, false, groupMaxDataAge);
              SSTableRewriter unrepairedWriter = SSTableRewriter.constructWithoutEarlyOpening(sharedTxn, false, groupMaxDataAge);
@@ -1799,6 +1871,7 @@ public class CompactionManager implements CompactionManagerMBean
         {
             // can't set this in Thread factory, so we do it redundantly here
             isCompactionManager.set(true);
+            ChunkCache.setBackgroundThread(true);
             super.beforeExecute(t, r);
         }
 
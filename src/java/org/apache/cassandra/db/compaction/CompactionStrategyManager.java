@@ -1102,6 +1102,12 @@ public class CompactionStrategyManager implements INotificationConsumer
         return Boolean.parseBoolean(params.options().get(AbstractCompactionStrategy.ONLY_PURGE_REPAIRED_TOMBSTONES));
     }
 
+    public int getIOPriority()
+    {
+        String ioPriority = params.options().get(AbstractCompactionStrategy.IO_PRIORITY_OPTION);
+        return ioPriority == null ? AbstractCompactionStrategy.DEFAULT_IO_PRIORITY : Integer.parseInt(ioPriority);
+    }
+
     public SSTableMultiWriter createSSTableMultiWriter(Descriptor descriptor,
                                                        long keyCount,
                                                        long repairedAt,
@@ -17,10 +17,15 @@
  */
 package org.apache.cassandra.db.compaction;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -39,11 +44,18 @@ import org.apache.cassandra.db.Directories;
 import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.db.compaction.writers.CompactionAwareWriter;
 import org.apache.cassandra.db.compaction.writers.DefaultCompactionWriter;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.db.lifecycle.SharedLifecycleTransaction;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Splitter;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
 import org.apache.cassandra.service.ActiveRepairService;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.Throwables;
 import org.apache.cassandra.utils.concurrent.Refs;
 
 public class CompactionTask extends AbstractCompactionTask
@@ -155,7 +167,7 @@ public class CompactionTask extends AbstractCompactionTask
 
             logger.debug("Compacting ({}) {}", taskId, ssTableLoggerMsg);
 
-            RateLimiter limiter = CompactionManager.instance.getRateLimiter();
+            RateLimiter limiter = CompactionManager.instance.getRateLimiter(compactionType, cfs);
             long start = System.nanoTime();
             long startTime = System.currentTimeMillis();
             long totalKeysWritten = 0;
@@ -172,54 +184,100 @@ public class CompactionTask extends AbstractCompactionTask
             // to both ifile and dfile and SSTR will throw deletion errors on Windows if it tries to delete before scanner is closed.
             // See CASSANDRA-8019 and CASSANDRA-8399
             int nowInSec = FBUtilities.nowInSeconds();
-            try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
-                 AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(actuallyCompact);
-                 CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+            List<Range<Token>> subRanges = getSubRanges(actuallyCompact);
+            if (subRanges != null)
             {
-                long lastCheckObsoletion = start;
-                inputSizeBytes = scanners.getTotalCompressedSize();
-                double compressionRatio = scanners.getCompressionRatio();
-                if (compressionRatio == MetadataCollector.NO_COMPRESSION_RATIO)
-                    compressionRatio = 1.0;
+                logger.debug("Compacting ({}) in {} token sub-ranges", taskId, subRanges.size());
+                List<SubRangeCompaction> compactions = new ArrayList<>(subRanges.size());
+                try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
+                     SharedLifecycleTransaction sharedTransaction = new SharedLifecycleTransaction(transaction))
+                {
+                    inputSizeBytes = SSTableReader.getTotalBytes(actuallyCompact);
+                    for (Range<Token> range : subRanges)
+                        compactions.add(new SubRangeCompaction(range, actuallyCompact, sharedTransaction, nowInSec, taskId));
 
-                long lastBytesScanned = 0;
+                    try
+                    {
+                        CompactionManager.instance.runOnIdleCompactors(compactions);
+                        newSStables = commitSubRanges(compactions);
+                    }
+                    finally
+                    {
+                        // aborts the writers of a failed compaction
+                        List<CompactionAwareWriter> writers = new ArrayList<>(compactions.size());
+                        for (SubRangeCompaction compaction : compactions)
+                        {
+                            if (compaction.writer != null)
+                                writers.add(compaction.writer);
+                        }
+                        Throwables.maybeFail(Throwables.close(null, writers));
+                    }
+                }
 
-                if (!controller.cfs.getCompactionStrategyManager().isActive())
-                    throw new CompactionInterruptedException(ci.getCompactionInfo());
+                mergedRowCounts = new long[0];
+                totalSourceCQLRows = 0;
+                for (SubRangeCompaction compaction : compactions)
+                {
+                    totalKeysWritten += compaction.keysWritten;
+                    estimatedKeys += compaction.estimatedKeys;
+                    totalSourceCQLRows += compaction.totalSourceCQLRows;
+                    if (compaction.mergedRowCounts.length > mergedRowCounts.length)
+                        mergedRowCounts = Arrays.copyOf(mergedRowCounts, compaction.mergedRowCounts.length);
+                    for (int i = 0; i < compaction.mergedRowCounts.length; i++)
+                        mergedRowCounts[i] += compaction.mergedRowCounts[i];
+                }
+            }
+            else
+            {
+                try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
+                     AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(actuallyCompact);
+                     CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+                {
+                    long lastCheckObsoletion = start;
+                    inputSizeBytes = scanners.getTotalCompressedSize();
+                    double compressionRatio = scanners.getCompressionRatio();
+                    if (compressionRatio == MetadataCollector.NO_COMPRESSION_RATIO)
+                        compressionRatio = 1.0;
 
-                activeCompactions.beginCompaction(ci);
+                    long lastBytesScanned = 0;
 
-                try (CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), transaction, actuallyCompact))
-                {
-                    estimatedKeys = writer.estimatedKeys();
-                    while (ci.hasNext())
+                    if (!controller.cfs.getCompactionStrategyManager().isActive())
+                        throw new CompactionInterruptedException(ci.getCompactionInfo());
+
+                    activeCompactions.beginCompaction(ci);
+
+                    try (CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), transaction, actuallyCompact))
                     {
-                        if (writer.append(ci.next()))
-                            totalKeysWritten++;
+                        estimatedKeys = writer.estimatedKeys();
+                        while (ci.hasNext())
+                        {
+                            if (writer.append(ci.next()))
+                                totalKeysWritten++;
 
 
-                        long bytesScanned = scanners.getTotalBytesScanned();
+                            long bytesScanned = scanners.getTotalBytesScanned();
 
-                        //Rate limit the scanners, and account for compression
-                        CompactionManager.compactionRateLimiterAcquire(limiter, bytesScanned, lastBytesScanned, compressionRatio);
+                            //Rate limit the scanners, and account for compression
+                            CompactionManager.compactionRateLimiterAcquire(limiter, bytesScanned, lastBytesScanned, compressionRatio);
 
-                        lastBytesScanned = bytesScanned;
+                            lastBytesScanned = bytesScanned;
 
-                        if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
-                        {
-                            controller.maybeRefreshOverlaps();
-                            lastCheckObsoletion = System.nanoTime();
+                            if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
+                            {
+                                controller.maybeRefreshOverlaps();
+                                lastCheckObsoletion = System.nanoTime();
+                            }
                         }
-                    }
 
-                    // point of no return
-                    newSStables = writer.finish();
-                }
-                finally
-                {
-                    activeCompactions.finishCompaction(ci);
-                    mergedRowCounts = ci.getMergedRowCounts();
-                    totalSourceCQLRows = ci.getTotalSourceCQLRows();
+                        // point of no return
+                        newSStables = writer.finish();
+                    }
+                    finally
+                    {
+                        activeCompactions.finishCompaction(ci);
+                        mergedRowCounts = ci.getMergedRowCounts();
+                        totalSourceCQLRows = ci.getTotalSourceCQLRows();
+                    }
                 }
             }
 
@@ -275,15 +333,172 @@ public class CompactionTask extends AbstractCompactionTask
         }
     }
 
+    /**
+     * Splits the token span of the given sstables into the sub-ranges to compact concurrently, when they are larger
+     * than compaction_split_size_in_mb, or returns null if the compaction isn't split.
+     */
+    protected List<Range<Token>> getSubRanges(Set<SSTableReader> sstables)
+    {
+        long splitSize = DatabaseDescriptor.getCompactionSplitSize();
+        if (splitSize <= 0 || sstables.isEmpty() || keepOriginals || transaction.isOffline() || compactionType != OperationType.COMPACTION)
+            return null;
+
+        IPartitioner partitioner = cfs.getPartitioner();
+        Optional<Splitter> splitter = partitioner.splitter();
+        if (!splitter.isPresent())
+            return null;
+
+        long size = SSTableReader.getTotalBytes(sstables);
+        int parts = (int) Math.min(DatabaseDescriptor.getConcurrentCompactors(), (size + splitSize - 1) / splitSize);
+        if (parts < 2)
+            return null;
+
+        Token first = Collections.min(sstables, SSTableReader.sstableComparator).first.getToken();
+        Token last = Collections.max(sstables, (s1, s2) -> s1.last.compareTo(s2.last)).last.getToken();
+        if (first.equals(last))
+            return null;
+
+        List<Token> boundaries = splitter.get().splitOwnedRanges(parts,
+                                                                 Collections.singletonList(new Splitter.WeightedRange(1.0, new Range<>(first, last))),
+                                                                 false);
+        if (boundaries.size() < 2)
+            return null;
+
+        // the sub-ranges cover the whole ring, the first one starting at the minimum token as ranges exclude their start
+        List<Range<Token>> subRanges = new ArrayList<>(boundaries.size());
+        Token left = partitioner.getMinimumToken();
+        for (Token right : boundaries)
+        {
+            subRanges.add(new Range<>(left, right));
+            left = right;
+        }
+        return subRanges;
+    }
+
+    /**
+     * Commits the sstables written by all the sub-ranges of the compaction at once, replacing the compacted sstables.
+     */
+    private Collection<SSTableReader> commitSubRanges(List<SubRangeCompaction> compactions)
+    {
+        for (SubRangeCompaction compaction : compactions)
+            compaction.writer.prepareToCommit();
+        transaction.checkpoint();
+        transaction.obsoleteOriginals();
+        transaction.prepareToCommit();
+
+        List<SSTableReader> newSSTables = new ArrayList<>();
+        for (SubRangeCompaction compaction : compactions)
+            newSSTables.addAll(compaction.writer.finished());
+
+        // point of no return
+        for (SubRangeCompaction compaction : compactions)
+            compaction.writer.commit();
+        transaction.commit();
+        return newSSTables;
+    }
+
+    /**
+     * The compaction of the partitions of a token sub-range of the compacted sstables, with its own scanners,
+     * controller and writer, so that the sub-ranges of a compaction run concurrently. The writers of all the
+     * sub-ranges share the transaction of the compaction, and are committed together by {@link #commitSubRanges}.
+     */
+    private class SubRangeCompaction implements Runnable
+    {
+        private final Range<Token> range;
+        private final Set<SSTableReader> actuallyCompact;
+        private final SharedLifecycleTransaction sharedTransaction;
+        private final int nowInSec;
+        private final UUID taskId;
+
+        private CompactionAwareWriter writer;
+        private long keysWritten;
+        private long estimatedKeys;
+        private long[] mergedRowCounts = new long[0];
+        private long totalSourceCQLRows;
+
+        private SubRangeCompaction(Range<Token> range, Set<SSTableReader> actuallyCompact, SharedLifecycleTransaction sharedTransaction, int nowInSec, UUID taskId)
+        {
+            this.range = range;
+            this.actuallyCompact = actuallyCompact;
+            this.sharedTransaction = sharedTransaction;
+            this.nowInSec = nowInSec;
+            this.taskId = taskId;
+        }
+
+        public void run()
+        {
+            RateLimiter limiter = CompactionManager.instance.getRateLimiter(compactionType, cfs);
+            try (CompactionController controller = getCompactionController(transaction.originals());
+                 AbstractCompactionStrategy.ScannerList scanners = cfs.getCompactionStrategyManager().getScanners(actuallyCompact, Collections.singleton(range));
+                 CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+            {
+                long lastCheckObsoletion = System.nanoTime();
+                double compressionRatio = scanners.getCompressionRatio();
+                if (compressionRatio == MetadataCollector.NO_COMPRESSION_RATIO)
+                    compressionRatio = 1.0;
+
+                long lastBytesScanned = 0;
+
+                if (!controller.cfs.getCompactionStrategyManager().isActive())
+                    throw new CompactionInterruptedException(ci.getCompactionInfo());
+
+                activeCompactions.beginCompaction(ci);
+                try
+                {
+                    for (SSTableReader sstable : actuallyCompact)
+                        estimatedKeys += sstable.estimatedKeysForRanges(Collections.singleton(range));
+                    writer = getCompactionAwareWriter(cfs, getDirectories(), sharedTransaction, actuallyCompact, range, estimatedKeys);
+                    while (ci.hasNext())
+                    {
+                        if (writer.append(ci.next()))
+                            keysWritten++;
+
+                        long bytesScanned = scanners.getTotalBytesScanned();
+                        CompactionManager.compactionRateLimiterAcquire(limiter, bytesScanned, lastBytesScanned, compressionRatio);
+                        lastBytesScanned = bytesScanned;
+
+                        if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
+                        {
+                            controller.maybeRefreshOverlaps();
+                            lastCheckObsoletion = System.nanoTime();
+                        }
+                    }
+                }
+                finally
+                {
+                    activeCompactions.finishCompaction(ci);
+                    mergedRowCounts = ci.getMergedRowCounts();
+                    totalSourceCQLRows = ci.getTotalSourceCQLRows();
+                }
+            }
+        }
+    }
+
     @Override
     public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
                                                           Directories directories,
-                                                          LifecycleTransaction transaction,
+                                                          ILifecycleTransaction transaction,
                                                           Set<SSTableReader> nonExpiredSSTables)
     {
         return new DefaultCompactionWriter(cfs, directories, transaction, nonExpiredSSTables, keepOriginals, getLevel());
     }
 
+    /**
+     * Returns the writer of the partitions of the given sstables within a token sub-range, when the compaction is
+     * split by {@link #getSubRanges}. Tasks overriding the writer of the whole compaction should override this too.
+     *
+     * @param estimatedTotalKeys the estimated number of keys of the sstables within the sub-range
+     */
+    protected CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
+                                                             Directories directories,
+                                                             ILifecycleTransaction transaction,
+                                                             Set<SSTableReader> nonExpiredSSTables,
+                                                             Range<Token> range,
+                                                             long estimatedTotalKeys)
+    {
+        return new DefaultCompactionWriter(cfs, directories, transaction, nonExpiredSSTables, keepOriginals, getLevel(), estimatedTotalKeys);
+    }
+
     public static String updateCompactionHistory(String keyspaceName, String columnFamilyName, long[] mergedRowCounts, long startSize, long endSize)
     {
         StringBuilder mergeSummary = new StringBuilder(mergedRowCounts.length * 10);
@@ -24,7 +24,10 @@ import org.apache.cassandra.db.Directories;
 import org.apache.cassandra.db.compaction.writers.CompactionAwareWriter;
 import org.apache.cassandra.db.compaction.writers.MajorLeveledCompactionWriter;
 import org.apache.cassandra.db.compaction.writers.MaxSSTableSizeWriter;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
 
 public class LeveledCompactionTask extends CompactionTask
@@ -44,7 +47,7 @@ public class LeveledCompactionTask extends CompactionTask
     @Override
     public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
                                                           Directories directories,
-                                                          LifecycleTransaction txn,
+                                                          ILifecycleTransaction txn,
                                                           Set<SSTableReader> nonExpiredSSTables)
     {
         if (majorCompaction)
@@ -52,6 +55,19 @@ public class LeveledCompactionTask extends CompactionTask
         return new MaxSSTableSizeWriter(cfs, directories, txn, nonExpiredSSTables, maxSSTableBytes, getLevel(), false);
     }
 
+    @Override
+    protected CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
+                                                             Directories directories,
+                                                             ILifecycleTransaction txn,
+                                                             Set<SSTableReader> nonExpiredSSTables,
+                                                             Range<Token> range,
+                                                             long estimatedTotalKeys)
+    {
+        if (majorCompaction)
+            return new MajorLeveledCompactionWriter(cfs, directories, txn, nonExpiredSSTables, maxSSTableBytes, false, estimatedTotalKeys);
+        return new MaxSSTableSizeWriter(cfs, directories, txn, nonExpiredSSTables, maxSSTableBytes, getLevel(), false, estimatedTotalKeys);
+    }
+
     @Override
     protected boolean partialCompactionsAcceptable()
     {
@@ -37,11 +37,13 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.lifecycle.SSTableIntervalTree;
 import org.apache.cassandra.dht.Bounds;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.Interval;
 import org.apache.cassandra.utils.Pair;
 
 public class LeveledManifest
@@ -65,8 +67,14 @@ public class LeveledManifest
     // dependent on maxSSTableSize.)
     public static final int MAX_LEVEL_COUNT = (int) Math.log10(1000 * 1000 * 1000);
     private final ColumnFamilyStore cfs;
+    // the sstables of each level; the levels above L0 are kept sorted by first key, which as they don't overlap also
+    // sorts them by last key, so that the sstables overlapping a range are found by binary search
     @VisibleForTesting
     protected final List<SSTableReader>[] generations;
+    // the total on-disk size of each level, maintained as sstables are added and removed
+    private final long[] levelBytes;
+    // the sstables of L0 overlap each other, so they are searched with an interval tree, built on demand after L0 changes
+    private SSTableIntervalTree l0Tree;
     private final PartitionPosition[] lastCompactedKeys;
     private final long maxSSTableSizeInBytes;
     private final SizeTieredCompactionStrategyOptions options;
@@ -81,6 +89,7 @@ public class LeveledManifest
         this.levelFanoutSize = fanoutSize;
 
         generations = new List[MAX_LEVEL_COUNT];
+        levelBytes = new long[MAX_LEVEL_COUNT];
         lastCompactedKeys = new PartitionPosition[MAX_LEVEL_COUNT];
         for (int i = 0; i < generations.length; i++)
         {
@@ -146,11 +155,15 @@ public class LeveledManifest
 
         assert level < generations.length : "Invalid level " + level + " out of " + (generations.length - 1);
         logDistribution();
-        if (canAddSSTable(reader))
+        int index = insertionIndex(reader);
+        if (index >= 0)
         {
             // adding the sstable does not cause overlap in the level
             logger.trace("Adding {} to L{}", reader, level);
-            generations[level].add(reader);
+            generations[level].add(index, reader);
+            levelBytes[level] += reader.onDiskLength();
+            if (level == 0)
+                l0Tree = null;
         }
         else
         {
@@ -174,6 +187,8 @@ public class LeveledManifest
             if (!contains(reader))
             {
                 generations[0].add(reader);
+                levelBytes[0] += reader.onDiskLength();
+                l0Tree = null;
             }
             else
             {
@@ -254,26 +269,86 @@ public class LeveledManifest
     /**
      * Checks if adding the sstable creates an overlap in the level
      * @param sstable the sstable to add
-     * @return true if it is safe to add the sstable in the level.
+     * @return the index at which the sstable keeps its level sorted, or -1 if adding it would create an overlap
      */
-    private boolean canAddSSTable(SSTableReader sstable)
+    private int insertionIndex(SSTableReader sstable)
     {
         int level = sstable.getSSTableLevel();
+        List<SSTableReader> sstables = generations[level];
         if (level == 0)
-            return true;
+            return sstables.size();
 
-        List<SSTableReader> copyLevel = new ArrayList<>(generations[level]);
-        copyLevel.add(sstable);
-        Collections.sort(copyLevel, SSTableReader.sstableComparator);
+        int index = firstStartingAfter(sstables, sstable.first);
+        if (index > 0 && sstables.get(index - 1).last.compareTo(sstable.first) >= 0)
+            return -1;
+        if (index < sstables.size() && sstables.get(index).first.compareTo(sstable.last) <= 0)
+            return -1;
+        return index;
+    }
 
-        SSTableReader previous = null;
-        for (SSTableReader current : copyLevel)
+    /**
+     * @return the index of the first sstable of the given sorted level that starts after the given position, or the
+     * size of the level if there is none.
+     */
+    private static int firstStartingAfter(List<SSTableReader> sstables, PartitionPosition position)
+    {
+        int low = 0, high = sstables.size();
+        while (low < high)
         {
-            if (previous != null && current.first.compareTo(previous.last) <= 0)
-                return false;
-            previous = current;
+            int mid = (low + high) >>> 1;
+            if (sstables.get(mid).first.compareTo(position) > 0)
+                high = mid;
+            else
+                low = mid + 1;
         }
-        return true;
+        return low;
+    }
+
+    /**
+     * @return the index of the first sstable of the given sorted level that ends at or after the given token, or the
+     * size of the level if there is none.
+     */
+    private static int firstEndingFrom(List<SSTableReader> sstables, Token token)
+    {
+        int low = 0, high = sstables.size();
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (sstables.get(mid).last.getToken().compareTo(token) >= 0)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    /**
+     * @return the sstables of the given level above L0 that contain keys between start and end, inclusive, in order.
+     */
+    private List<SSTableReader> overlappingInLevel(int level, Token start, Token end)
+    {
+        assert level > 0 && start.compareTo(end) <= 0;
+        List<SSTableReader> sstables = generations[level];
+        List<SSTableReader> overlapped = new ArrayList<>();
+        for (int i = firstEndingFrom(sstables, start); i < sstables.size() && sstables.get(i).first.getToken().compareTo(end) <= 0; i++)
+            overlapped.add(sstables.get(i));
+        return overlapped;
+    }
+
+    private Set<SSTableReader> overlappingInLevel(int level, Collection<SSTableReader> candidates)
+    {
+        Bounds<Token> bounds = tokenBounds(candidates);
+        return new HashSet<>(overlappingInLevel(level, bounds.left, bounds.right));
+    }
+
+    /**
+     * @return the sstables of L0 that contain keys between the first and last keys of the given sstable, inclusive.
+     */
+    private List<SSTableReader> overlappingInL0(SSTableReader sstable)
+    {
+        if (l0Tree == null)
+            l0Tree = SSTableIntervalTree.build(generations[0]);
+        return l0Tree.search(Interval.create(sstable.first.getToken().minKeyBound(), sstable.last.getToken().maxKeyBound()));
     }
 
     private synchronized void sendBackToL0(SSTableReader sstable)
@@ -377,9 +452,8 @@ public class LeveledManifest
             if (sstables.isEmpty())
                 continue; // mostly this just avoids polluting the debug log with zero scores
             // we want to calculate score excluding compacting ones
-            Set<SSTableReader> sstablesInLevel = Sets.newHashSet(sstables);
-            Set<SSTableReader> remaining = Sets.difference(sstablesInLevel, cfs.getTracker().getCompacting());
-            double score = (double) SSTableReader.getTotalBytes(remaining) / (double)maxBytesForLevel(i, maxSSTableSizeInBytes);
+            long remainingBytes = levelBytes[i] - SSTableReader.getTotalBytes(getCompacting(i));
+            double score = (double) remainingBytes / (double)maxBytesForLevel(i, maxSSTableSizeInBytes);
             logger.trace("Compaction score for level {} is {}", i, score);
 
             if (score > 1.001)
@@ -493,7 +567,7 @@ public class LeveledManifest
                         return candidates;
                     Set<SSTableReader> compacting = cfs.getTracker().getCompacting();
                     Range<PartitionPosition> boundaries = new Range<>(min, max);
-                    for (SSTableReader sstable : getLevel(i))
+                    for (SSTableReader sstable : overlappingInLevel(i, min.getToken(), max.getToken()))
                     {
                         Range<PartitionPosition> r = new Range<PartitionPosition>(sstable.first, sstable.last);
                         if (boundaries.contains(r) && !compacting.contains(sstable))
@@ -549,10 +623,26 @@ public class LeveledManifest
     {
         int level = reader.getSSTableLevel();
         assert level >= 0 : reader + " not present in manifest: "+level;
-        generations[level].remove(reader);
+        removeFromLevel(level, reader);
         return level;
     }
 
+    private boolean removeFromLevel(int level, SSTableReader reader)
+    {
+        List<SSTableReader> sstables = generations[level];
+        int index = level == 0 ? -1 : Collections.binarySearch(sstables, reader, SSTableReader.sstableComparator);
+        if (index < 0 || sstables.get(index) != reader)
+            index = sstables.indexOf(reader);
+        if (index < 0)
+            return false;
+
+        sstables.remove(index);
+        levelBytes[level] -= reader.onDiskLength();
+        if (level == 0)
+            l0Tree = null;
+        return true;
+    }
+
     public synchronized Set<SSTableReader> getSSTables()
     {
         ImmutableSet.Builder<SSTableReader> builder = ImmutableSet.builder();
@@ -577,7 +667,13 @@ public class LeveledManifest
          * Thus, the correct approach is to pick sstables overlapping anything between the first key in all
          * the candidate sstables, and the last.
          */
-        Iterator<SSTableReader> iter = candidates.iterator();
+        Bounds<Token> bounds = tokenBounds(candidates);
+        return overlapping(bounds.left, bounds.right, others);
+    }
+
+    private static Bounds<Token> tokenBounds(Collection<SSTableReader> sstables)
+    {
+        Iterator<SSTableReader> iter = sstables.iterator();
         SSTableReader sstable = iter.next();
         Token first = sstable.first.getToken();
         Token last = sstable.last.getToken();
@@ -587,12 +683,7 @@ public class LeveledManifest
             first = first.compareTo(sstable.first.getToken()) <= 0 ? first : sstable.first.getToken();
             last = last.compareTo(sstable.last.getToken()) >= 0 ? last : sstable.last.getToken();
         }
-        return overlapping(first, last, others);
-    }
-
-    private static Set<SSTableReader> overlappingWithBounds(SSTableReader sstable, Map<SSTableReader, Bounds<Token>> others)
-    {
-        return overlappingWithBounds(sstable.first.getToken(), sstable.last.getToken(), others);
+        return new Bounds<>(first, last);
     }
 
     /**
@@ -676,14 +767,15 @@ public class LeveledManifest
             // basically screwed, since we expect all or most L0 sstables to overlap with each L1 sstable.
             // So if an L1 sstable is suspect we can't do much besides try anyway and hope for the best.
             Set<SSTableReader> candidates = new HashSet<>();
-            Map<SSTableReader, Bounds<Token>> remaining = genBounds(Iterables.filter(getLevel(0), Predicates.not(suspectP)));
+            Set<SSTableReader> remaining = Sets.newHashSet(Iterables.filter(getLevel(0), Predicates.not(suspectP)));
 
-            for (SSTableReader sstable : ageSortedSSTables(remaining.keySet()))
+            for (SSTableReader sstable : ageSortedSSTables(remaining))
             {
                 if (candidates.contains(sstable))
                     continue;
 
-                Sets.SetView<SSTableReader> overlappedL0 = Sets.union(Collections.singleton(sstable), overlappingWithBounds(sstable, remaining));
+                Set<SSTableReader> overlappedL0 = Sets.newHashSet(Iterables.filter(overlappingInL0(sstable), remaining::contains));
+                overlappedL0.add(sstable);
                 if (!Sets.intersection(overlappedL0, compactingL0).isEmpty())
                     continue;
 
@@ -708,7 +800,7 @@ public class LeveledManifest
                 // add sstables from L1 that overlap candidates
                 // if the overlapping ones are already busy in a compaction, leave it out.
                 // TODO try to find a set of L0 sstables that only overlaps with non-busy L1 sstables
-                Set<SSTableReader> l1overlapping = overlapping(candidates, getLevel(1));
+                Set<SSTableReader> l1overlapping = overlappingInLevel(1, candidates);
                 if (Sets.intersection(l1overlapping, compacting).size() > 0)
                     return Collections.emptyList();
                 if (!overlapping(candidates, compactingL0).isEmpty())
@@ -722,25 +814,16 @@ public class LeveledManifest
         }
 
         // for non-L0 compactions, pick up where we left off last time
-        Collections.sort(getLevel(level), SSTableReader.sstableComparator);
-        int start = 0; // handles case where the prior compaction touched the very last range
-        for (int i = 0; i < getLevel(level).size(); i++)
-        {
-            SSTableReader sstable = getLevel(level).get(i);
-            if (sstable.first.compareTo(lastCompactedKeys[level]) > 0)
-            {
-                start = i;
-                break;
-            }
-        }
+        int start = firstStartingAfter(getLevel(level), lastCompactedKeys[level]);
+        if (start == getLevel(level).size())
+            start = 0; // handles case where the prior compaction touched the very last range
 
         // look for a non-suspect keyspace to compact with, starting with where we left off last time,
         // and wrapping back to the beginning of the generation if necessary
-        Map<SSTableReader, Bounds<Token>> sstablesNextLevel = genBounds(getLevel(level + 1));
         for (int i = 0; i < getLevel(level).size(); i++)
         {
             SSTableReader sstable = getLevel(level).get((start + i) % getLevel(level).size());
-            Set<SSTableReader> candidates = Sets.union(Collections.singleton(sstable), overlappingWithBounds(sstable, sstablesNextLevel));
+            Set<SSTableReader> candidates = Sets.union(Collections.singleton(sstable), Sets.newHashSet(overlappingInLevel(level + 1, sstable.first.getToken(), sstable.last.getToken())));
             if (Iterables.any(candidates, suspectP))
                 continue;
             if (Sets.intersection(candidates, compacting).isEmpty())
@@ -754,10 +837,23 @@ public class LeveledManifest
     private Set<SSTableReader> getCompacting(int level)
     {
         Set<SSTableReader> sstables = new HashSet<>();
-        Set<SSTableReader> levelSSTables = new HashSet<>(getLevel(level));
-        for (SSTableReader sstable : cfs.getTracker().getCompacting())
+        Set<SSTableReader> compacting = cfs.getTracker().getCompacting();
+        if (level == 0)
         {
-            if (levelSSTables.contains(sstable))
+            Set<SSTableReader> levelSSTables = new HashSet<>(getLevel(level));
+            for (SSTableReader sstable : compacting)
+            {
+                if (levelSSTables.contains(sstable))
+                    sstables.add(sstable);
+            }
+            return sstables;
+        }
+
+        // the compacting sstables are few, so look them up in the sorted level
+        for (SSTableReader sstable : compacting)
+        {
+            int index = Collections.binarySearch(getLevel(level), sstable, SSTableReader.sstableComparator);
+            if (index >= 0 && getLevel(level).get(index) == sstable)
                 sstables.add(sstable);
         }
         return sstables;
@@ -814,9 +910,8 @@ public class LeveledManifest
 
         for (int i = generations.length - 1; i >= 0; i--)
         {
-            List<SSTableReader> sstables = getLevel(i);
             // If there is 1 byte over TBL - (MBL * 1.001), there is still a task left, so we need to round up.
-            estimated[i] = (long)Math.ceil((double)Math.max(0L, SSTableReader.getTotalBytes(sstables) - (long)(maxBytesForLevel(i, maxSSTableSizeInBytes) * 1.001)) / (double)maxSSTableSizeInBytes);
+            estimated[i] = (long)Math.ceil((double)Math.max(0L, levelBytes[i] - (long)(maxBytesForLevel(i, maxSSTableSizeInBytes) * 1.001)) / (double)maxSSTableSizeInBytes);
             tasks += estimated[i];
         }
 
@@ -868,7 +963,7 @@ public class LeveledManifest
 
     public synchronized void newLevel(SSTableReader sstable, int oldLevel)
     {
-        boolean removed = generations[oldLevel].remove(sstable);
+        boolean removed = removeFromLevel(oldLevel, sstable);
         assert removed : "Could not remove " + sstable +" from " + oldLevel;
         add(sstable);
         lastCompactedKeys[oldLevel] = sstable.last;
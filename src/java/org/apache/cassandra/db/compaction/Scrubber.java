@@ -116,12 +116,13 @@ public class Scrubber implements Closeable
         this.destination = cfs.getDirectories().getLocationForDisk(cfs.getDiskBoundaries().getCorrectDiskForSSTable(sstable));
         this.isCommutative = cfs.metadata().isCounter();
 
-        boolean hasIndexFile = (new File(sstable.descriptor.filenameFor(Component.PRIMARY_INDEX))).exists();
+        Component indexComponent = sstable.descriptor.getFormat().primaryIndexComponent();
+        boolean hasIndexFile = (new File(sstable.descriptor.filenameFor(indexComponent))).exists();
         this.isIndex = cfs.isIndex();
         if (!hasIndexFile)
         {
             // if there's any corruption in the -Data.db then rows can't be skipped over. but it's worth a shot.
-            outputHandler.warn("Missing component: " + sstable.descriptor.filenameFor(Component.PRIMARY_INDEX));
+            outputHandler.warn("Missing component: " + sstable.descriptor.filenameFor(indexComponent));
         }
         this.checkData = checkData && !this.isIndex; //LocalByPartitionerType does not support validation
         this.expectedBloomFilterSize = Math.max(
@@ -134,9 +135,11 @@ public class Scrubber implements Closeable
         // "ahead" of the data file.)
         this.dataFile = transaction.isOffline()
                         ? sstable.openDataReader()
-                        : sstable.openDataReader(CompactionManager.instance.getRateLimiter());
+                        : sstable.openDataReader(CompactionManager.instance.getRateLimiter(OperationType.SCRUB, cfs));
 
-        this.indexFile = hasIndexFile
+        // only the primary index can be read along the data file, the partitions of other formats are only found
+        // by their position in the data file
+        this.indexFile = hasIndexFile && indexComponent == Component.PRIMARY_INDEX
                 ? RandomAccessReader.open(new File(sstable.descriptor.filenameFor(Component.PRIMARY_INDEX)))
                 : null;
 
@@ -30,7 +30,10 @@ import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.Directories;
 import org.apache.cassandra.db.compaction.writers.CompactionAwareWriter;
 import org.apache.cassandra.db.compaction.writers.SplittingSizeTieredCompactionWriter;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.schema.CompactionParams;
@@ -364,10 +367,21 @@ public class SizeTieredCompactionStrategy extends AbstractCompactionStrategy
         @Override
         public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
                                                               Directories directories,
-                                                              LifecycleTransaction txn,
+                                                              ILifecycleTransaction txn,
                                                               Set<SSTableReader> nonExpiredSSTables)
         {
             return new SplittingSizeTieredCompactionWriter(cfs, directories, txn, nonExpiredSSTables);
         }
+
+        @Override
+        protected CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
+                                                                 Directories directories,
+                                                                 ILifecycleTransaction txn,
+                                                                 Set<SSTableReader> nonExpiredSSTables,
+                                                                 Range<Token> range,
+                                                                 long estimatedTotalKeys)
+        {
+            return new SplittingSizeTieredCompactionWriter(cfs, directories, txn, nonExpiredSSTables, SplittingSizeTieredCompactionWriter.DEFAULT_SMALLEST_SSTABLE_BYTES, estimatedTotalKeys);
+        }
     }
 }
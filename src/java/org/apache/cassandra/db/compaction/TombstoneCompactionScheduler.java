@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.Bounds;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.utils.FBUtilities;
+
+/**
+ * Schedules single-sstable tombstone compactions across all the tables, in addition to the ones of their compaction
+ * strategies, within a global budget of compacted bytes set by tombstone_compaction_throughput_mb_per_sec.
+ * <p>
+ * The strategies only consider the sstables of their own table, and compact one as soon as its ratio of droppable
+ * tombstones exceeds the tombstone threshold of the table. This instead ranks the sstables of all the tables by the
+ * ratio of their cells that are tombstones compaction would actually purge, given the sstables they overlap (see
+ * {@link #purgeableTombstoneRatio}), and compacts the best ones on the idle compaction threads.
+ */
+public class TombstoneCompactionScheduler implements Runnable
+{
+    private static final Logger logger = LoggerFactory.getLogger(TombstoneCompactionScheduler.class);
+
+    public static final long INTERVAL_SECONDS = 60;
+
+    public static final TombstoneCompactionScheduler instance = new TombstoneCompactionScheduler();
+
+    // the bytes that can still be compacted, negative once compactions exceeded the budget
+    private long budget;
+    private long lastRunNanos = System.nanoTime();
+
+    @VisibleForTesting
+    TombstoneCompactionScheduler()
+    {
+    }
+
+    public void run()
+    {
+        schedule(ColumnFamilyStore.all(), FBUtilities.nowInSeconds());
+    }
+
+    /**
+     * Submits the compactions of the sstables of the given tables with the most purgeable tombstones, as long as the
+     * budget isn't exhausted and compaction threads are idle.
+     */
+    @VisibleForTesting
+    synchronized List<Future<?>> schedule(Iterable<ColumnFamilyStore> tables, int nowInSec)
+    {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastRunNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastRunNanos = now;
+
+        long throughput = DatabaseDescriptor.getTombstoneCompactionThroughputMbPerSec() * 1024L * 1024L;
+        if (throughput == 0)
+        {
+            budget = 0;
+            return Collections.emptyList();
+        }
+
+        // the budget doesn't accumulate over more than an interval, so that idle periods don't lead to bursts
+        budget = Math.min(budget + (long) (throughput * elapsedSeconds), throughput * INTERVAL_SECONDS);
+        int idleCompactors = CompactionManager.instance.getIdleCompactors();
+        if (budget <= 0 || idleCompactors == 0)
+            return Collections.emptyList();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Candidate candidate : getCandidates(tables, nowInSec))
+        {
+            if (budget <= 0 || futures.size() >= idleCompactors)
+                break;
+
+            LifecycleTransaction txn = candidate.cfs.getTracker().tryModify(candidate.sstable, OperationType.TOMBSTONE_COMPACTION);
+            if (txn == null)
+                continue;
+
+            logger.debug("Compacting {} to purge an estimated {}% of its cells", candidate.sstable, (int) (candidate.purgeableRatio * 100));
+            futures.add(CompactionManager.instance.submitTombstoneCompaction(candidate.cfs, txn, candidate.gcBefore));
+            // a large sstable can exceed the budget, which then delays the next compactions
+            budget -= candidate.sstable.onDiskLength();
+        }
+        return futures;
+    }
+
+    /**
+     * Returns the sstables of the given tables that are worth compacting alone to purge their tombstones, the ones with
+     * the highest ratio of purgeable tombstones first. The tombstone compaction options of the tables apply, with the
+     * tombstone threshold being the minimum ratio of purgeable tombstones.
+     */
+    @VisibleForTesting
+    static List<Candidate> getCandidates(Iterable<ColumnFamilyStore> tables, int nowInSec)
+    {
+        List<Candidate> candidates = new ArrayList<>();
+        for (ColumnFamilyStore cfs : tables)
+        {
+            CompactionStrategyManager manager = cfs.getCompactionStrategyManager();
+            if (!cfs.isValid() || !manager.isEnabled() || CompactionController.NEVER_PURGE_TOMBSTONES || cfs.getNeverPurgeTombstones())
+                continue;
+
+            int gcBefore = CompactionManager.getDefaultGcBefore(cfs, nowInSec);
+            Set<SSTableReader> compacting = cfs.getTracker().getCompacting();
+            for (SSTableReader sstable : cfs.getLiveSSTables())
+            {
+                if (compacting.contains(sstable) || sstable.isMarkedSuspect() || sstable.isPendingRepair())
+                    continue;
+
+                AbstractCompactionStrategy strategy = manager.getCompactionStrategyFor(sstable);
+                // as for the strategies, the interval keeps from compacting again an sstable whose tombstones couldn't be purged
+                if (strategy.disableTombstoneCompactions
+                    || System.currentTimeMillis() < sstable.getCreationTimeFor(Component.DATA) + strategy.tombstoneCompactionInterval * 1000
+                    || sstable.getEstimatedDroppableTombstoneRatio(gcBefore) <= strategy.tombstoneThreshold)
+                    continue;
+
+                double purgeableRatio = purgeableTombstoneRatio(cfs, sstable, gcBefore);
+                if (purgeableRatio > strategy.tombstoneThreshold)
+                    candidates.add(new Candidate(cfs, sstable, gcBefore, purgeableRatio));
+            }
+        }
+        candidates.sort((c1, c2) -> Double.compare(c2.purgeableRatio, c1.purgeableRatio));
+        return candidates;
+    }
+
+    /**
+     * Estimates the ratio of the cells of the given sstable that are tombstones compacting it alone would purge, that
+     * is its droppable tombstones outside of the token ranges of the overlapping sstables with data older than them.
+     * An sstable that is fully expired is entirely dropped, which is a ratio of 1.
+     */
+    @VisibleForTesting
+    static double purgeableTombstoneRatio(ColumnFamilyStore cfs, SSTableReader sstable, int gcBefore)
+    {
+        double droppableRatio = sstable.getEstimatedDroppableTombstoneRatio(gcBefore);
+        if (droppableRatio <= 0)
+            return 0;
+
+        Collection<SSTableReader> overlaps = cfs.getOverlappingLiveSSTables(Collections.singleton(sstable));
+        if (!CompactionController.getFullyExpiredSSTables(cfs, Collections.singleton(sstable), overlaps, gcBefore).isEmpty())
+            return 1;
+
+        // the tombstones of the sstable can't shadow data newer than them
+        // (bounds rather than ranges, so that they include the first key of the overlapping sstable and don't wrap
+        // around the ring for an sstable with a single partition)
+        Set<Bounds<Token>> bounds = new HashSet<>(overlaps.size());
+        for (SSTableReader overlap : overlaps)
+        {
+            if (overlap.getMinTimestamp() <= sstable.getMaxTimestamp())
+                bounds.add(new Bounds<>(overlap.first.getToken(), overlap.last.getToken()));
+        }
+        if (bounds.isEmpty())
+            return droppableRatio;
+
+        // we have too few samples to estimate the overlapping keys
+        long keys = sstable.estimatedKeys();
+        if (keys <= 0 || (sstable.hasIndexSummary() && sstable.getIndexSummarySize() < 2))
+            return 0;
+
+        long overlappingKeys = Math.min(keys, sstable.estimatedKeysForBounds(bounds));
+        return droppableRatio * (keys - overlappingKeys) / keys;
+    }
+
+    @VisibleForTesting
+    static class Candidate
+    {
+        final ColumnFamilyStore cfs;
+        final SSTableReader sstable;
+        final int gcBefore;
+        final double purgeableRatio;
+
+        Candidate(ColumnFamilyStore cfs, SSTableReader sstable, int gcBefore, double purgeableRatio)
+        {
+            this.cfs = cfs;
+            this.sstable = sstable;
+            this.gcBefore = gcBefore;
+            this.purgeableRatio = purgeableRatio;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.*;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.compaction.writers.CompactionAwareWriter;
+import org.apache.cassandra.db.compaction.writers.ShardedCompactionWriter;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Splitter;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.schema.CompactionParams;
+import org.apache.cassandra.utils.Pair;
+
+import static com.google.common.collect.Iterables.filter;
+
+/**
+ * A compaction strategy grouping sstables by density, that is their size divided by the fraction of the token ring
+ * they cover, rather than by size.
+ * <p>
+ * The token ring is split into a fixed number of shards, and compactions write a separate sstable for each shard they
+ * cover (see {@link ShardedCompactionWriter}). Each sstable belongs to the shard of its first token, and to the level
+ * of its density: level 0 holds the densities below {@code min_sstable_size_in_mb * fanout}, and each following level
+ * holds densities {@code fanout} times larger. The sstables of a shard and level are compacted together
+ * once there are {@code threshold} of them; as the sstables of different shards never compact together, the shards
+ * compact in parallel. The fanout and threshold both derive from the scaling parameter, that makes the strategy
+ * behave leveled or tiered (see {@link UnifiedCompactionStrategyOptions}).
+ * <p>
+ * Using densities rather than sizes makes the sstables written by flushes, that cover the whole ring, comparable to
+ * the smaller sstables compactions write for each shard.
+ */
+public class UnifiedCompactionStrategy extends AbstractCompactionStrategy
+{
+    private static final Logger logger = LoggerFactory.getLogger(UnifiedCompactionStrategy.class);
+
+    /**
+     * The smallest token span considered for an sstable, as a fraction of the span of a shard, so that the sstables
+     * of a handful of partitions are not considered denser than all the others.
+     */
+    private static final double MINIMUM_SHARD_SPAN = 1.0 / 1024;
+
+    protected final UnifiedCompactionStrategyOptions unifiedOptions;
+    protected volatile int estimatedRemainingTasks;
+    @VisibleForTesting
+    protected final Set<SSTableReader> sstables = new HashSet<>();
+    private final List<Token> shardBoundaries;
+    private final boolean hasTokenSpans;
+
+    public UnifiedCompactionStrategy(ColumnFamilyStore cfs, Map<String, String> options)
+    {
+        super(cfs, options);
+        this.estimatedRemainingTasks = 0;
+        this.unifiedOptions = new UnifiedCompactionStrategyOptions(options);
+        IPartitioner partitioner = cfs.getPartitioner();
+        this.hasTokenSpans = partitioner.splitter().isPresent();
+        this.shardBoundaries = computeShardBoundaries(partitioner, unifiedOptions.shardCount);
+    }
+
+    /**
+     * Splits the token ring into the given number of shards of equal spans, returning their upper bounds. The
+     * boundaries don't depend on the ranges the node owns, so that they don't change with the topology. Partitioners
+     * not able to split the ring use a single shard.
+     */
+    @VisibleForTesting
+    static List<Token> computeShardBoundaries(IPartitioner partitioner, int shardCount)
+    {
+        Optional<Splitter> splitter = partitioner.splitter();
+        if (!splitter.isPresent())
+            return Collections.singletonList(partitioner.getMaximumToken());
+
+        Range<Token> ring = new Range<>(partitioner.getMinimumToken(), partitioner.getMaximumToken());
+        return splitter.get().splitOwnedRanges(shardCount, Collections.singletonList(new Splitter.WeightedRange(1.0, ring)), false);
+    }
+
+    /**
+     * Returns the level of the sstables of the given density: 0 below {@code minSize * fanout}, and then one more for
+     * each multiplication of the density by {@code fanout}.
+     */
+    @VisibleForTesting
+    static int level(double density, long minSize, int fanout)
+    {
+        double base = Math.max(minSize, 1);
+        if (density < base * fanout)
+            return 0;
+        // rounding errors would otherwise put the exact powers of the fanout in the level below
+        return (int) Math.floor(Math.log(density / base) / Math.log(fanout) + 1e-9);
+    }
+
+    @VisibleForTesting
+    double density(SSTableReader sstable)
+    {
+        if (!hasTokenSpans)
+            return sstable.onDiskLength();
+
+        Token first = sstable.first.getToken();
+        Token last = sstable.last.getToken();
+        // Token.size() returns the full ring for equal tokens
+        double span = first.equals(last) ? 0 : first.size(last);
+        return sstable.onDiskLength() / Math.max(span, MINIMUM_SHARD_SPAN / shardBoundaries.size());
+    }
+
+    @VisibleForTesting
+    List<Token> getShardBoundaries()
+    {
+        return shardBoundaries;
+    }
+
+    private synchronized List<SSTableReader> getNextBackgroundSSTables(final int gcBefore)
+    {
+        int threshold = unifiedOptions.threshold();
+        // make local copies so they can't be changed out from under us mid-method
+        int maxThreshold = Math.max(threshold, cfs.getMaximumCompactionThreshold());
+
+        Iterable<SSTableReader> candidates = filterSuspectSSTables(filter(cfs.getUncompactingSSTables(), sstables::contains));
+
+        List<List<SSTableReader>> buckets = getBuckets(candidates);
+        logger.trace("Compaction buckets are {}", buckets);
+        estimatedRemainingTasks = getEstimatedCompactions(buckets, threshold);
+        cfs.getCompactionStrategyManager().compactionLogger.pending(this, estimatedRemainingTasks);
+
+        List<SSTableReader> fullest = fullestBucket(buckets, threshold, maxThreshold);
+        if (!fullest.isEmpty())
+            return fullest;
+
+        // if there is no sstable to compact in standard way, try compacting single sstable whose droppable tombstone
+        // ratio is greater than threshold.
+        List<SSTableReader> sstablesWithTombstones = new ArrayList<>();
+        for (SSTableReader sstable : candidates)
+        {
+            if (worthDroppingTombstones(sstable, gcBefore))
+                sstablesWithTombstones.add(sstable);
+        }
+        if (sstablesWithTombstones.isEmpty())
+            return Collections.emptyList();
+
+        return Collections.singletonList(Collections.max(sstablesWithTombstones, SSTableReader.sizeComparator));
+    }
+
+    /**
+     * Groups the given sstables by shard and level, each bucket being sorted by increasing density.
+     */
+    @VisibleForTesting
+    List<List<SSTableReader>> getBuckets(Iterable<SSTableReader> candidates)
+    {
+        Map<Pair<Integer, Integer>, List<Pair<SSTableReader, Double>>> buckets = new TreeMap<>((b1, b2) -> {
+            int comparison = Integer.compare(b1.left, b2.left);
+            return comparison != 0 ? comparison : Integer.compare(b1.right, b2.right);
+        });
+        for (SSTableReader sstable : candidates)
+        {
+            double density = density(sstable);
+            int shard = ShardedCompactionWriter.shardOf(shardBoundaries, sstable.first.getToken());
+            int level = level(density, unifiedOptions.minSSTableSize, unifiedOptions.fanout());
+            buckets.computeIfAbsent(Pair.create(shard, level), k -> new ArrayList<>()).add(Pair.create(sstable, density));
+        }
+
+        List<List<SSTableReader>> result = new ArrayList<>(buckets.size());
+        for (List<Pair<SSTableReader, Double>> bucket : buckets.values())
+        {
+            bucket.sort((p1, p2) -> Double.compare(p1.right, p2.right));
+            List<SSTableReader> sstables = new ArrayList<>(bucket.size());
+            for (Pair<SSTableReader, Double> pair : bucket)
+                sstables.add(pair.left);
+            result.add(sstables);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the least dense sstables of the bucket holding the most sstables, if it holds at least threshold of them.
+     * Ties go to the lowest level of the first shard, as the buckets are sorted by shard and level.
+     */
+    private static List<SSTableReader> fullestBucket(List<List<SSTableReader>> buckets, int threshold, int maxThreshold)
+    {
+        List<SSTableReader> fullest = Collections.emptyList();
+        for (List<SSTableReader> bucket : buckets)
+        {
+            if (bucket.size() >= threshold && bucket.size() > fullest.size())
+                fullest = bucket;
+        }
+        return fullest.subList(0, Math.min(fullest.size(), maxThreshold));
+    }
+
+    private static int getEstimatedCompactions(List<List<SSTableReader>> buckets, int threshold)
+    {
+        int n = 0;
+        for (List<SSTableReader> bucket : buckets)
+            n += bucket.size() / threshold;
+        return n;
+    }
+
+    @SuppressWarnings("resource")
+    public AbstractCompactionTask getNextBackgroundTask(int gcBefore)
+    {
+        List<SSTableReader> previousCandidate = null;
+        while (true)
+        {
+            List<SSTableReader> bucket = getNextBackgroundSSTables(gcBefore);
+
+            if (bucket.isEmpty())
+                return null;
+
+            // Already tried acquiring references without success. It means there is a race with
+            // the tracker but candidate SSTables were not yet replaced in the compaction strategy manager
+            if (bucket.equals(previousCandidate))
+            {
+                logger.warn("Could not acquire references for compacting SSTables {} which is not a problem per se," +
+                            "unless it happens frequently, in which case it must be reported. Will retry later.",
+                            bucket);
+                return null;
+            }
+
+            LifecycleTransaction transaction = cfs.getTracker().tryModify(bucket, OperationType.COMPACTION);
+            if (transaction != null)
+                return new ShardedCompactionTask(cfs, transaction, gcBefore, shardBoundaries);
+            previousCandidate = bucket;
+        }
+    }
+
+    @SuppressWarnings("resource")
+    public synchronized Collection<AbstractCompactionTask> getMaximalTask(final int gcBefore, boolean splitOutput)
+    {
+        Iterable<SSTableReader> filteredSSTables = filterSuspectSSTables(sstables);
+        if (Iterables.isEmpty(filteredSSTables))
+            return null;
+        LifecycleTransaction txn = cfs.getTracker().tryModify(filteredSSTables, OperationType.COMPACTION);
+        if (txn == null)
+            return null;
+        // the output is always split by shard
+        return Collections.singletonList(new ShardedCompactionTask(cfs, txn, gcBefore, shardBoundaries));
+    }
+
+    @SuppressWarnings("resource")
+    public AbstractCompactionTask getUserDefinedTask(Collection<SSTableReader> sstables, final int gcBefore)
+    {
+        assert !sstables.isEmpty(); // checked for by CM.submitUserDefined
+
+        LifecycleTransaction transaction = cfs.getTracker().tryModify(sstables, OperationType.COMPACTION);
+        if (transaction == null)
+        {
+            logger.trace("Unable to mark {} for compaction; probably a background compaction got to it first.  You can disable background compactions temporarily if this is a problem", sstables);
+            return null;
+        }
+
+        return new ShardedCompactionTask(cfs, transaction, gcBefore, shardBoundaries).setUserDefined(true);
+    }
+
+    public int getEstimatedRemainingTasks()
+    {
+        return estimatedRemainingTasks;
+    }
+
+    public long getMaxSSTableBytes()
+    {
+        return Long.MAX_VALUE;
+    }
+
+    public static Map<String, String> validateOptions(Map<String, String> options) throws ConfigurationException
+    {
+        Map<String, String> uncheckedOptions = AbstractCompactionStrategy.validateOptions(options);
+        uncheckedOptions = UnifiedCompactionStrategyOptions.validateOptions(options, uncheckedOptions);
+
+        uncheckedOptions.remove(CompactionParams.Option.MIN_THRESHOLD.toString());
+        uncheckedOptions.remove(CompactionParams.Option.MAX_THRESHOLD.toString());
+
+        return uncheckedOptions;
+    }
+
+    @Override
+    public synchronized void addSSTable(SSTableReader added)
+    {
+        sstables.add(added);
+    }
+
+    @Override
+    public synchronized void removeSSTable(SSTableReader sstable)
+    {
+        sstables.remove(sstable);
+    }
+
+    @Override
+    protected Set<SSTableReader> getSSTables()
+    {
+        return ImmutableSet.copyOf(sstables);
+    }
+
+    public String toString()
+    {
+        return String.format("UnifiedCompactionStrategy[fanout: %d, threshold: %d, shards: %d]",
+                             unifiedOptions.fanout(),
+                             unifiedOptions.threshold(),
+                             shardBoundaries.size());
+    }
+
+    private static class ShardedCompactionTask extends CompactionTask
+    {
+        private final List<Token> shardBoundaries;
+
+        public ShardedCompactionTask(ColumnFamilyStore cfs, LifecycleTransaction txn, int gcBefore, List<Token> shardBoundaries)
+        {
+            super(cfs, txn, gcBefore);
+            this.shardBoundaries = shardBoundaries;
+        }
+
+        @Override
+        public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
+                                                              Directories directories,
+                                                              ILifecycleTransaction txn,
+                                                              Set<SSTableReader> nonExpiredSSTables)
+        {
+            return new ShardedCompactionWriter(cfs, directories, txn, nonExpiredSSTables, shardBoundaries);
+        }
+
+        @Override
+        protected CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
+                                                                 Directories directories,
+                                                                 ILifecycleTransaction txn,
+                                                                 Set<SSTableReader> nonExpiredSSTables,
+                                                                 Range<Token> range,
+                                                                 long estimatedTotalKeys)
+        {
+            return new ShardedCompactionWriter(cfs, directories, txn, nonExpiredSSTables, shardBoundaries, range, estimatedTotalKeys);
+        }
+    }
+}
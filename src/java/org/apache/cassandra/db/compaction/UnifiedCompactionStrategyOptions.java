@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.Map;
+
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+/**
+ * The options of {@link UnifiedCompactionStrategy}.
+ * <p>
+ * The scaling parameter W is the single knob trading read amplification for write amplification:
+ * <ul>
+ *     <li>W < 0 compacts as soon as 2 sstables share a level, with a fanout of 2 - W between levels (leveled,
+ *     written as {@code L<fanout>}),</li>
+ *     <li>W > 0 waits for 2 + W sstables in a level, with the same fanout (tiered, written as {@code T<threshold>}),</li>
+ *     <li>W = 0 compacts pairs of sstables with a fanout of 2 (written as {@code N}).</li>
+ * </ul>
+ */
+public final class UnifiedCompactionStrategyOptions
+{
+    protected static final int DEFAULT_SCALING_PARAMETER = 2;
+    protected static final int DEFAULT_SHARD_COUNT = 4;
+    protected static final long DEFAULT_MIN_SSTABLE_SIZE = 100L * 1024L * 1024L;
+    protected static final String SCALING_PARAMETER_KEY = "scaling_parameter";
+    protected static final String SHARD_COUNT_KEY = "shard_count";
+    protected static final String MIN_SSTABLE_SIZE_KEY = "min_sstable_size_in_mb";
+
+    protected final int scalingParameter;
+    protected final int shardCount;
+    protected final long minSSTableSize;
+
+    public UnifiedCompactionStrategyOptions(Map<String, String> options)
+    {
+        String optionValue = options.get(SCALING_PARAMETER_KEY);
+        scalingParameter = optionValue == null ? DEFAULT_SCALING_PARAMETER : parseScalingParameter(optionValue);
+        optionValue = options.get(SHARD_COUNT_KEY);
+        shardCount = optionValue == null ? DEFAULT_SHARD_COUNT : Integer.parseInt(optionValue);
+        optionValue = options.get(MIN_SSTABLE_SIZE_KEY);
+        minSSTableSize = optionValue == null ? DEFAULT_MIN_SSTABLE_SIZE : Long.parseLong(optionValue) * 1024L * 1024L;
+    }
+
+    public UnifiedCompactionStrategyOptions()
+    {
+        scalingParameter = DEFAULT_SCALING_PARAMETER;
+        shardCount = DEFAULT_SHARD_COUNT;
+        minSSTableSize = DEFAULT_MIN_SSTABLE_SIZE;
+    }
+
+    /**
+     * The ratio between the densities of consecutive levels.
+     */
+    public int fanout()
+    {
+        return 2 + Math.abs(scalingParameter);
+    }
+
+    /**
+     * The number of sstables of a level and shard that triggers their compaction.
+     */
+    public int threshold()
+    {
+        return scalingParameter <= 0 ? 2 : 2 + scalingParameter;
+    }
+
+    /**
+     * Parses a scaling parameter given as an integer, or as {@code T<threshold>}, {@code L<fanout>} or {@code N}.
+     */
+    static int parseScalingParameter(String value)
+    {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("N"))
+            return 0;
+
+        char type = Character.toUpperCase(trimmed.isEmpty() ? ' ' : trimmed.charAt(0));
+        if (type != 'T' && type != 'L')
+            return Integer.parseInt(trimmed);
+
+        int fanout = Integer.parseInt(trimmed.substring(1));
+        if (fanout < 2)
+            throw new NumberFormatException(String.format("%s must be at least 2", trimmed.substring(1)));
+        return type == 'T' ? fanout - 2 : 2 - fanout;
+    }
+
+    public static Map<String, String> validateOptions(Map<String, String> options, Map<String, String> uncheckedOptions) throws ConfigurationException
+    {
+        String optionValue = options.get(SCALING_PARAMETER_KEY);
+        try
+        {
+            if (optionValue != null)
+                parseScalingParameter(optionValue);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(String.format("%s is not a valid value for %s, it must be an integer, T<n>, L<n> or N with n >= 2",
+                                                           optionValue, SCALING_PARAMETER_KEY), e);
+        }
+
+        optionValue = options.get(SHARD_COUNT_KEY);
+        try
+        {
+            int shardCount = optionValue == null ? DEFAULT_SHARD_COUNT : Integer.parseInt(optionValue);
+            if (shardCount < 1)
+                throw new ConfigurationException(String.format("%s must be at least 1: %d", SHARD_COUNT_KEY, shardCount));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(String.format("%s is not a parsable int (base10) for %s", optionValue, SHARD_COUNT_KEY), e);
+        }
+
+        optionValue = options.get(MIN_SSTABLE_SIZE_KEY);
+        try
+        {
+            long minSSTableSize = optionValue == null ? DEFAULT_MIN_SSTABLE_SIZE : Long.parseLong(optionValue);
+            if (minSSTableSize < 0)
+                throw new ConfigurationException(String.format("%s must be non negative: %d", MIN_SSTABLE_SIZE_KEY, minSSTableSize));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(String.format("%s is not a parsable int (base10) for %s", optionValue, MIN_SSTABLE_SIZE_KEY), e);
+        }
+
+        uncheckedOptions.remove(SCALING_PARAMETER_KEY);
+        uncheckedOptions.remove(SHARD_COUNT_KEY);
+        uncheckedOptions.remove(MIN_SSTABLE_SIZE_KEY);
+
+        return uncheckedOptions;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("scaling parameter: %d, shard count: %d, min sstable size: %d", scalingParameter, shardCount, minSSTableSize);
+    }
+}
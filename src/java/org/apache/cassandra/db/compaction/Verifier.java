@@ -72,6 +72,8 @@ public class Verifier implements Closeable
 
     private final RandomAccessReader dataFile;
     private final RandomAccessReader indexFile;
+    // the keys and positions of the sstables without primary index
+    private final KeyIterator indexKeys;
     private final VerifyInfo verifyInfo;
     private final RowIndexEntry.IndexSerializer rowIndexEntrySerializer;
     private final Options options;
@@ -98,8 +100,10 @@ public class Verifier implements Closeable
 
         this.dataFile = isOffline
                         ? sstable.openDataReader()
-                        : sstable.openDataReader(CompactionManager.instance.getRateLimiter());
-        this.indexFile = RandomAccessReader.open(new File(sstable.descriptor.filenameFor(Component.PRIMARY_INDEX)));
+                        : sstable.openDataReader(CompactionManager.instance.getRateLimiter(OperationType.VERIFY, cfs));
+        boolean hasPrimaryIndex = sstable.descriptor.getFormat().primaryIndexComponent() == Component.PRIMARY_INDEX;
+        this.indexFile = hasPrimaryIndex ? RandomAccessReader.open(new File(sstable.descriptor.filenameFor(Component.PRIMARY_INDEX))) : null;
+        this.indexKeys = hasPrimaryIndex ? null : new KeyIterator(sstable.descriptor, sstable.metadata());
         this.verifyInfo = new VerifyInfo(dataFile, sstable);
         this.options = options;
         this.isOffline = isOffline;
@@ -145,16 +149,19 @@ public class Verifier implements Closeable
             markAndThrow();
         }
 
-        try
-        {
-            outputHandler.debug("Deserializing index summary for "+sstable);
-            deserializeIndexSummary(sstable);
-        }
-        catch (Throwable t)
+        if (sstable.descriptor.getFormat().indexComponents().contains(Component.SUMMARY))
         {
-            outputHandler.output("Index summary is corrupt - if it is removed it will get rebuilt on startup "+sstable.descriptor.filenameFor(Component.SUMMARY));
-            outputHandler.debug(t.getMessage());
-            markAndThrow(false);
+            try
+            {
+                outputHandler.debug("Deserializing index summary for "+sstable);
+                deserializeIndexSummary(sstable);
+            }
+            catch (Throwable t)
+            {
+                outputHandler.output("Index summary is corrupt - if it is removed it will get rebuilt on startup "+sstable.descriptor.filenameFor(Component.SUMMARY));
+                outputHandler.debug(t.getMessage());
+                markAndThrow(false);
+            }
         }
 
         try
@@ -228,9 +235,9 @@ public class Verifier implements Closeable
 
         try
         {
-            ByteBuffer nextIndexKey = ByteBufferUtil.readWithShortLength(indexFile);
+            ByteBuffer nextIndexKey = readIndexKey();
             {
-                long firstRowPositionFromIndex = rowIndexEntrySerializer.deserializePositionAndSkip(indexFile);
+                long firstRowPositionFromIndex = readIndexPosition();
                 if (firstRowPositionFromIndex != 0)
                     markAndThrow();
             }
@@ -276,10 +283,8 @@ public class Verifier implements Closeable
                 long nextRowPositionFromIndex = 0;
                 try
                 {
-                    nextIndexKey = indexFile.isEOF() ? null : ByteBufferUtil.readWithShortLength(indexFile);
-                    nextRowPositionFromIndex = indexFile.isEOF()
-                                             ? dataFile.length()
-                                             : rowIndexEntrySerializer.deserializePositionAndSkip(indexFile);
+                    nextIndexKey = readIndexKey();
+                    nextRowPositionFromIndex = readIndexPosition();
                 }
                 catch (Throwable th)
                 {
@@ -296,7 +301,7 @@ public class Verifier implements Closeable
                 String keyName = key == null ? "(unreadable key)" : ByteBufferUtil.bytesToHex(key.getKey());
                 outputHandler.debug(String.format("row %s is %s", keyName, FBUtilities.prettyPrintMemory(dataSize)));
 
-                assert currentIndexKey != null || indexFile.isEOF();
+                assert currentIndexKey != null || nextIndexKey == null;
 
                 try
                 {
@@ -398,8 +403,40 @@ public class Verifier implements Closeable
         }
     }
 
+    /**
+     * @return the next key of the index, or null if there are no more
+     */
+    private ByteBuffer readIndexKey() throws IOException
+    {
+        if (indexFile == null)
+            return indexKeys.hasNext() ? indexKeys.next().getKey() : null;
+        return indexFile.isEOF() ? null : ByteBufferUtil.readWithShortLength(indexFile);
+    }
+
+    /**
+     * @return the position in the data file of the key last read by {@link #readIndexKey()}, or the length of the
+     * data file if there are no more keys
+     */
+    private long readIndexPosition() throws IOException
+    {
+        if (indexFile == null)
+            return indexKeys.getKeyPosition();
+        return indexFile.isEOF() ? dataFile.length() : rowIndexEntrySerializer.deserializePositionAndSkip(indexFile);
+    }
+
     private void deserializeIndex(SSTableReader sstable) throws IOException
     {
+        if (sstable.descriptor.getFormat().primaryIndexComponent() != Component.PRIMARY_INDEX)
+        {
+            // read all the keys through the partition index
+            try (KeyIterator keys = new KeyIterator(sstable.descriptor, sstable.metadata()))
+            {
+                while (keys.hasNext())
+                    keys.next();
+            }
+            return;
+        }
+
         try (RandomAccessReader primaryIndex = RandomAccessReader.open(new File(sstable.descriptor.filenameFor(Component.PRIMARY_INDEX))))
         {
             long indexSize = primaryIndex.length();
@@ -440,6 +477,7 @@ public class Verifier implements Closeable
     {
         FileUtils.closeQuietly(dataFile);
         FileUtils.closeQuietly(indexFile);
+        FileUtils.closeQuietly(indexKeys);
     }
 
     private void throwIfFatal(Throwable th)
@@ -25,7 +25,7 @@ import org.apache.cassandra.db.RowIndexEntry;
 import org.apache.cassandra.db.SerializationHeader;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.db.compaction.LeveledManifest;
-import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.format.SSTableWriter;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
@@ -44,7 +44,7 @@ public class MajorLeveledCompactionWriter extends CompactionAwareWriter
 
     public MajorLeveledCompactionWriter(ColumnFamilyStore cfs,
                                         Directories directories,
-                                        LifecycleTransaction txn,
+                                        ILifecycleTransaction txn,
                                         Set<SSTableReader> nonExpiredSSTables,
                                         long maxSSTableSize)
     {
@@ -54,7 +54,7 @@ public class MajorLeveledCompactionWriter extends CompactionAwareWriter
     @Deprecated
     public MajorLeveledCompactionWriter(ColumnFamilyStore cfs,
                                         Directories directories,
-                                        LifecycleTransaction txn,
+                                        ILifecycleTransaction txn,
                                         Set<SSTableReader> nonExpiredSSTables,
                                         long maxSSTableSize,
                                         boolean offline,
@@ -66,7 +66,7 @@ public class MajorLeveledCompactionWriter extends CompactionAwareWriter
     @SuppressWarnings("resource")
     public MajorLeveledCompactionWriter(ColumnFamilyStore cfs,
                                         Directories directories,
-                                        LifecycleTransaction txn,
+                                        ILifecycleTransaction txn,
                                         Set<SSTableReader> nonExpiredSSTables,
                                         long maxSSTableSize,
                                         boolean keepOriginals)
@@ -74,8 +74,32 @@ public class MajorLeveledCompactionWriter extends CompactionAwareWriter
         super(cfs, directories, txn, nonExpiredSSTables, keepOriginals);
         this.maxSSTableSize = maxSSTableSize;
         this.levelFanoutSize = cfs.getLevelFanoutSize();
-        long estimatedSSTables = Math.max(1, SSTableReader.getTotalBytes(nonExpiredSSTables) / maxSSTableSize);
-        keysPerSSTable = estimatedTotalKeys / estimatedSSTables;
+        keysPerSSTable = estimatedTotalKeys / estimatedSSTables(nonExpiredSSTables, maxSSTableSize);
+    }
+
+    /**
+     * @param estimatedTotalKeys the estimated number of keys to write, for writers of only a part of the given sstables
+     */
+    @SuppressWarnings("resource")
+    public MajorLeveledCompactionWriter(ColumnFamilyStore cfs,
+                                        Directories directories,
+                                        ILifecycleTransaction txn,
+                                        Set<SSTableReader> nonExpiredSSTables,
+                                        long maxSSTableSize,
+                                        boolean keepOriginals,
+                                        long estimatedTotalKeys)
+    {
+        super(cfs, directories, txn, nonExpiredSSTables, keepOriginals, estimatedTotalKeys);
+        this.maxSSTableSize = maxSSTableSize;
+        this.levelFanoutSize = cfs.getLevelFanoutSize();
+        // the written sstables are as full as if all the keys were written, unless there are fewer keys to write
+        long allKeys = SSTableReader.getApproximateKeyCount(nonExpiredSSTables);
+        keysPerSSTable = Math.min(estimatedTotalKeys, allKeys / estimatedSSTables(nonExpiredSSTables, maxSSTableSize));
+    }
+
+    private static long estimatedSSTables(Set<SSTableReader> nonExpiredSSTables, long maxSSTableSize)
+    {
+        return Math.max(1, SSTableReader.getTotalBytes(nonExpiredSSTables) / maxSSTableSize);
     }
 
     @Override
@@ -111,7 +135,7 @@ public class MajorLeveledCompactionWriter extends CompactionAwareWriter
                 isTransient,
                 cfs.metadata,
                 new MetadataCollector(txn.originals(), cfs.metadata().comparator, currentLevel),
-                SerializationHeader.make(cfs.metadata(), txn.originals()),
+                SerializationHeader.makeForCompaction(cfs.metadata(), txn.originals()),
                 cfs.indexManager.listIndexes(),
                 txn));
         partitionsWritten = 0;
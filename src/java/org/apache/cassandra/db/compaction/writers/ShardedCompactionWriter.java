@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction.writers;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+
+/**
+ * A compaction writer starting a new sstable each time the written partitions cross a shard boundary, so that no
+ * output sstable spans more than one shard.
+ */
+public class ShardedCompactionWriter extends CompactionAwareWriter
+{
+    private static final Logger logger = LoggerFactory.getLogger(ShardedCompactionWriter.class);
+
+    private final List<Token> shardBoundaries;
+    private final long estimatedKeysPerShard;
+    private Directories.DataDirectory sstableDirectory;
+    private int currentShard = -1;
+
+    /**
+     * @param shardBoundaries the sorted upper bounds (inclusive) of the shards, the last one being the maximum token
+     */
+    public ShardedCompactionWriter(ColumnFamilyStore cfs,
+                                   Directories directories,
+                                   ILifecycleTransaction txn,
+                                   Set<SSTableReader> nonExpiredSSTables,
+                                   List<Token> shardBoundaries)
+    {
+        super(cfs, directories, txn, nonExpiredSSTables, false);
+        this.shardBoundaries = shardBoundaries;
+        this.estimatedKeysPerShard = Math.max(1, estimatedTotalKeys / spannedShards(nonExpiredSSTables, null));
+    }
+
+    /**
+     * @param range the token sub-range of the given sstables to write
+     * @param estimatedTotalKeys the estimated number of keys within that sub-range
+     */
+    public ShardedCompactionWriter(ColumnFamilyStore cfs,
+                                   Directories directories,
+                                   ILifecycleTransaction txn,
+                                   Set<SSTableReader> nonExpiredSSTables,
+                                   List<Token> shardBoundaries,
+                                   Range<Token> range,
+                                   long estimatedTotalKeys)
+    {
+        super(cfs, directories, txn, nonExpiredSSTables, false, estimatedTotalKeys);
+        this.shardBoundaries = shardBoundaries;
+        this.estimatedKeysPerShard = Math.max(1, estimatedTotalKeys / spannedShards(nonExpiredSSTables, range));
+    }
+
+    /**
+     * Returns the number of shards the given sstables span, within the given range if not null.
+     */
+    private int spannedShards(Set<SSTableReader> sstables, Range<Token> range)
+    {
+        if (sstables.isEmpty())
+            return 1;
+
+        Token first = Collections.min(sstables, SSTableReader.sstableComparator).first.getToken();
+        Token last = Collections.max(sstables, (s1, s2) -> s1.last.compareTo(s2.last)).last.getToken();
+        if (range != null)
+        {
+            if (range.left.compareTo(first) > 0)
+                first = range.left;
+            if (!range.right.isMinimum() && range.right.compareTo(last) < 0)
+                last = range.right;
+        }
+        return Math.max(1, shardOf(shardBoundaries, last) - shardOf(shardBoundaries, first) + 1);
+    }
+
+    /**
+     * Returns the index of the shard the given token belongs to.
+     */
+    public static int shardOf(List<Token> shardBoundaries, Token token)
+    {
+        int index = Collections.binarySearch(shardBoundaries, token);
+        return Math.min(index < 0 ? -index - 1 : index, shardBoundaries.size() - 1);
+    }
+
+    @Override
+    protected void maybeSwitchWriter(DecoratedKey key)
+    {
+        super.maybeSwitchWriter(key);
+
+        int shard = shardOf(shardBoundaries, key.getToken());
+        if (shard == currentShard)
+            return;
+
+        // a writer that was just switched to a new disk hasn't written anything yet
+        if (currentShard >= 0 && sstableWriter.currentWriter().getFilePointer() > 0)
+        {
+            logger.debug("Switching to a new sstable for shard {}", shard);
+            switchCompactionLocation(sstableDirectory);
+        }
+        currentShard = shard;
+    }
+
+    protected boolean realAppend(UnfilteredRowIterator partition)
+    {
+        RowIndexEntry rie = sstableWriter.append(partition);
+        return rie != null;
+    }
+
+    @Override
+    public void switchCompactionLocation(Directories.DataDirectory location)
+    {
+        sstableDirectory = location;
+        @SuppressWarnings("resource")
+        SSTableWriter writer = SSTableWriter.create(cfs.newSSTableDescriptor(getDirectories().getLocationForDisk(sstableDirectory)),
+                                                    estimatedKeysPerShard,
+                                                    minRepairedAt,
+                                                    pendingRepair,
+                                                    isTransient,
+                                                    cfs.metadata,
+                                                    new MetadataCollector(txn.originals(), cfs.metadata().comparator, 0),
+                                                    SerializationHeader.makeForCompaction(cfs.metadata(), nonExpiredSSTables),
+                                                    cfs.indexManager.listIndexes(),
+                                                    txn);
+
+        sstableWriter.switchWriter(writer);
+    }
+}
@@ -18,6 +18,8 @@
 package org.apache.cassandra.db.filter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.partitions.CachedPartition;
@@ -148,6 +150,17 @@ public interface ClusteringIndexFilter
      */
     public boolean shouldInclude(SSTableReader sstable);
 
+    /**
+     * Whether data with clusterings between the provided bounds may be selected by this filter.
+     *
+     * @param comparator the comparator of the table the bounds are from.
+     * @param minClusteringValues the smallest values for each clustering column of the data.
+     * @param maxClusteringValues the biggest values for each clustering column of the data.
+     *
+     * @return whether data between {@code minClusteringValues} and {@code maxClusteringValues} may be selected by this filter.
+     */
+    public boolean intersects(ClusteringComparator comparator, List<ByteBuffer> minClusteringValues, List<ByteBuffer> maxClusteringValues);
+
     public Kind kind();
 
     public String toString(TableMetadata metadata);
@@ -164,11 +164,14 @@ public class ClusteringIndexNamesFilter extends AbstractClusteringIndexFilter
 
     public boolean shouldInclude(SSTableReader sstable)
     {
-        ClusteringComparator comparator = sstable.metadata().comparator;
-        List<ByteBuffer> minClusteringValues = sstable.getSSTableMetadata().minClusteringValues;
-        List<ByteBuffer> maxClusteringValues = sstable.getSSTableMetadata().maxClusteringValues;
+        return intersects(sstable.metadata().comparator,
+                          sstable.getSSTableMetadata().minClusteringValues,
+                          sstable.getSSTableMetadata().maxClusteringValues);
+    }
 
-        // If any of the requested clustering is within the bounds covered by the sstable, we need to include the sstable
+    public boolean intersects(ClusteringComparator comparator, List<ByteBuffer> minClusteringValues, List<ByteBuffer> maxClusteringValues)
+    {
+        // If any of the requested clustering is within the bounds, we need to include the data
         for (Clustering clustering : clusterings)
         {
             if (Slice.make(clustering).intersects(comparator, minClusteringValues, maxClusteringValues))
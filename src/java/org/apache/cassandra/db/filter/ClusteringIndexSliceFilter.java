@@ -121,9 +121,13 @@ public class ClusteringIndexSliceFilter extends AbstractClusteringIndexFilter
 
     public boolean shouldInclude(SSTableReader sstable)
     {
-        List<ByteBuffer> minClusteringValues = sstable.getSSTableMetadata().minClusteringValues;
-        List<ByteBuffer> maxClusteringValues = sstable.getSSTableMetadata().maxClusteringValues;
+        return intersects(sstable.metadata().comparator,
+                          sstable.getSSTableMetadata().minClusteringValues,
+                          sstable.getSSTableMetadata().maxClusteringValues);
+    }
 
+    public boolean intersects(ClusteringComparator comparator, List<ByteBuffer> minClusteringValues, List<ByteBuffer> maxClusteringValues)
+    {
         if (minClusteringValues.isEmpty() || maxClusteringValues.isEmpty())
             return true;
 
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.lifecycle;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+/**
+ * A transaction shared by multiple writers producing different sets of sstables that all logically replace the
+ * originals of the underlying transaction.
+ * <p>
+ * The SSTableRewriter assumes it has exclusive control over the transaction state, and this would lead to temporarily
+ * inconsistent sstable/tracker state if we did not take special measures to avoid it. Specifically, if a number of
+ * rewriters have prepareToCommit() invoked in sequence, then two problematic things happen:
+ * <ol>
+ *   <li>The obsoleteOriginals() call of the first rewriter immediately removes the originals from the tracker, despite
+ *   their having been only partially replaced. To avoid this, we must either avoid obsoleteOriginals() or
+ *   checkpoint().</li>
+ *   <li>The LifecycleTransaction may only have prepareToCommit() invoked once, and this will checkpoint() also.</li>
+ * </ol>
+ * Similarly commit() would finalise partially complete on-disk state.
+ * <p>
+ * This proxies all calls onto the underlying transaction except prepareToCommit(), checkpoint(), obsoleteOriginals(),
+ * commit() and close(). The owner of the underlying transaction invokes these directly once each of the rewriters has
+ * updated the transaction with its share of replacements. The writers must not open their sstables early, as moving
+ * the starts of the originals would hide the data the other writers have yet to write.
+ * <p>
+ * The proxied calls are synchronized, so that the writers can run concurrently.
+ */
+public class SharedLifecycleTransaction extends WrappedLifecycleTransaction
+{
+    public SharedLifecycleTransaction(ILifecycleTransaction delegate)
+    {
+        super(delegate);
+    }
+
+    public Throwable commit(Throwable accumulate)
+    {
+        return accumulate;
+    }
+
+    public void prepareToCommit()
+    {
+    }
+
+    public void checkpoint()
+    {
+    }
+
+    public void obsoleteOriginals()
+    {
+    }
+
+    public void close()
+    {
+    }
+
+    public synchronized void update(SSTableReader reader, boolean original)
+    {
+        super.update(reader, original);
+    }
+
+    public synchronized void update(Collection<SSTableReader> readers, boolean original)
+    {
+        super.update(readers, original);
+    }
+
+    public synchronized SSTableReader current(SSTableReader reader)
+    {
+        return super.current(reader);
+    }
+
+    public synchronized void obsolete(SSTableReader reader)
+    {
+        super.obsolete(reader);
+    }
+
+    public synchronized Set<SSTableReader> originals()
+    {
+        return super.originals();
+    }
+
+    public synchronized boolean isObsolete(SSTableReader reader)
+    {
+        return super.isObsolete(reader);
+    }
+
+    public synchronized Throwable abort(Throwable accumulate)
+    {
+        return super.abort(accumulate);
+    }
+
+    public synchronized void trackNew(SSTable table)
+    {
+        super.trackNew(table);
+    }
+
+    public synchronized void untrackNew(SSTable table)
+    {
+        super.untrackNew(table);
+    }
+}
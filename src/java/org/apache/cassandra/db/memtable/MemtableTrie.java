@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.collect.AbstractIterator;
+
+import org.apache.cassandra.utils.FastByteOperations;
+import org.apache.cassandra.utils.ObjectSizes;
+
+/**
+ * A trie mapping byte-comparable keys to values, used to index the partitions of a {@link ShardedTrieMemtable}.
+ * <p>
+ * The trie supports a single writer and any number of concurrent readers: calls to {@link #putIfAbsent} must be
+ * serialized by the caller, while {@link #get} and {@link #iterator} need no synchronization. Entries are never
+ * removed. Keys must be prefix-free, that is no key may be a prefix of another one.
+ * <p>
+ * A key that is the only one below some position of the trie is stored as a leaf at that position, so that the
+ * depth of the trie only depends on the length of the prefixes keys have in common. Inner nodes come in two kinds.
+ * Sparse nodes keep up to {@link #SPARSE_CAPACITY} transitions in sorted arrays and are immutable: modifying one
+ * means copying it, as well as its sparse ancestors up to the closest dense node, and publishing the copy with a
+ * volatile write. Dense nodes have a slot for every byte value and are modified in place.
+ */
+public class MemtableTrie<V>
+{
+    static final int SPARSE_CAPACITY = 8;
+
+    /**
+     * The approximate on-heap size of a leaf and of its share of the inner nodes, excluding the key bytes.
+     */
+    static final long ENTRY_OVERHEAD = ObjectSizes.measure(new Leaf<>(null, null))
+                                       + ObjectSizes.measureDeep(new Sparse(new byte[2], new Object[2])) / 2;
+
+    private volatile Object root;
+
+    private static final class Leaf<V>
+    {
+        final byte[] key;
+        final V value;
+
+        Leaf(byte[] key, V value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final class Sparse
+    {
+        final byte[] transitions;
+        final Object[] children;
+
+        Sparse(byte[] transitions, Object[] children)
+        {
+            this.transitions = transitions;
+            this.children = children;
+        }
+
+        int indexOf(int transition)
+        {
+            for (int i = 0; i < transitions.length; i++)
+            {
+                int t = transitions[i] & 0xFF;
+                if (t >= transition)
+                    return t == transition ? i : -1;
+            }
+            return -1;
+        }
+
+        /**
+         * @return the index of the first transition greater than or equal to the given one
+         */
+        int ceilingIndex(int transition)
+        {
+            int i = 0;
+            while (i < transitions.length && (transitions[i] & 0xFF) < transition)
+                i++;
+            return i;
+        }
+    }
+
+    private static final class Dense
+    {
+        final AtomicReferenceArray<Object> children = new AtomicReferenceArray<>(256);
+    }
+
+    /**
+     * @return the value stored for the given key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(byte[] key)
+    {
+        Object node = root;
+        for (int depth = 0; node != null; depth++)
+        {
+            if (node instanceof Leaf)
+            {
+                Leaf<V> leaf = (Leaf<V>) node;
+                return Arrays.equals(leaf.key, key) ? leaf.value : null;
+            }
+
+            if (depth == key.length)
+                return null;
+
+            node = child(node, key[depth] & 0xFF);
+        }
+        return null;
+    }
+
+    /**
+     * Adds the given value for the given key, unless the key is already present. Must not be called concurrently.
+     *
+     * @return the value already stored for the key, or null if the given value was added
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(byte[] key, V value)
+    {
+        // path[d] is the inner node reached after consuming the first d bytes of the key
+        Object[] path = new Object[key.length + 1];
+        Object node = root;
+        int depth = 0;
+        while (node != null && !(node instanceof Leaf))
+        {
+            if (depth == key.length)
+                throw new IllegalArgumentException("Keys stored in a trie must be prefix-free");
+
+            path[depth] = node;
+            int transition = key[depth] & 0xFF;
+            Object child = child(node, transition);
+            if (child == null)
+            {
+                Object updated = withChild(node, transition, new Leaf<>(key, value));
+                if (updated != node)
+                    replace(path, key, depth, updated);
+                return null;
+            }
+            node = child;
+            depth++;
+        }
+
+        Leaf<V> leaf = new Leaf<>(key, value);
+        if (node == null)
+        {
+            root = leaf;
+            return null;
+        }
+
+        Leaf<V> existing = (Leaf<V>) node;
+        if (Arrays.equals(existing.key, key))
+            return existing.value;
+
+        // Both keys share the bytes up to mismatch: replace the existing leaf by a chain of single-transition
+        // nodes leading to a node that branches to both leaves.
+        int mismatch = depth;
+        while (mismatch < key.length && mismatch < existing.key.length && key[mismatch] == existing.key[mismatch])
+            mismatch++;
+        if (mismatch == key.length || mismatch == existing.key.length)
+            throw new IllegalArgumentException("Keys stored in a trie must be prefix-free");
+
+        Object subtree = (key[mismatch] & 0xFF) < (existing.key[mismatch] & 0xFF)
+                         ? new Sparse(new byte[]{ key[mismatch], existing.key[mismatch] }, new Object[]{ leaf, existing })
+                         : new Sparse(new byte[]{ existing.key[mismatch], key[mismatch] }, new Object[]{ existing, leaf });
+        for (int d = mismatch - 1; d >= depth; d--)
+            subtree = new Sparse(new byte[]{ key[d] }, new Object[]{ subtree });
+
+        replace(path, key, depth, subtree);
+        return null;
+    }
+
+    /**
+     * Returns the values whose keys are greater than or equal to {@code from} in unsigned lexicographic order, or
+     * all values if {@code from} is null, in key order. Concurrent additions may or may not be reflected.
+     */
+    public Iterator<V> iterator(byte[] from)
+    {
+        return new TrieIterator<>(root, from);
+    }
+
+    private static Object child(Object node, int transition)
+    {
+        if (node instanceof Dense)
+            return ((Dense) node).children.get(transition);
+
+        Sparse sparse = (Sparse) node;
+        int index = sparse.indexOf(transition);
+        return index < 0 ? null : sparse.children[index];
+    }
+
+    /**
+     * Adds a new transition to the given node. Dense nodes are modified in place, sparse nodes are copied.
+     *
+     * @return the node that has the new transition
+     */
+    private static Object withChild(Object node, int transition, Object child)
+    {
+        if (node instanceof Dense)
+        {
+            ((Dense) node).children.set(transition, child);
+            return node;
+        }
+
+        Sparse sparse = (Sparse) node;
+        int count = sparse.transitions.length;
+        if (count == SPARSE_CAPACITY)
+        {
+            Dense dense = new Dense();
+            for (int i = 0; i < count; i++)
+                dense.children.lazySet(sparse.transitions[i] & 0xFF, sparse.children[i]);
+            dense.children.lazySet(transition, child);
+            return dense;
+        }
+
+        int index = sparse.ceilingIndex(transition);
+        byte[] transitions = new byte[count + 1];
+        Object[] children = new Object[count + 1];
+        System.arraycopy(sparse.transitions, 0, transitions, 0, index);
+        System.arraycopy(sparse.children, 0, children, 0, index);
+        transitions[index] = (byte) transition;
+        children[index] = child;
+        System.arraycopy(sparse.transitions, index, transitions, index + 1, count - index);
+        System.arraycopy(sparse.children, index, children, index + 1, count - index);
+        return new Sparse(transitions, children);
+    }
+
+    /**
+     * Makes {@code node} the node reached after consuming the first {@code depth} bytes of the key, copying
+     * sparse ancestors as needed.
+     */
+    private void replace(Object[] path, byte[] key, int depth, Object node)
+    {
+        while (depth > 0)
+        {
+            Object parent = path[depth - 1];
+            int transition = key[depth - 1] & 0xFF;
+            if (parent instanceof Dense)
+            {
+                ((Dense) parent).children.set(transition, node);
+                return;
+            }
+
+            Sparse sparse = (Sparse) parent;
+            Object[] children = sparse.children.clone();
+            children[sparse.indexOf(transition)] = node;
+            node = new Sparse(sparse.transitions, children);
+            depth--;
+        }
+        root = node;
+    }
+
+    private static final class TrieIterator<V> extends AbstractIterator<V>
+    {
+        private final byte[] from;
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        private Object pendingLeaf;
+
+        private static final class Frame
+        {
+            final Object node;
+            final int depth;
+            // whether the keys below this node can still be smaller than the lower bound
+            final boolean bounded;
+            int next;
+
+            Frame(Object node, int depth, boolean bounded, int next)
+            {
+                this.node = node;
+                this.depth = depth;
+                this.bounded = bounded;
+                this.next = next;
+            }
+        }
+
+        TrieIterator(Object root, byte[] from)
+        {
+            this.from = from;
+            boolean bounded = from != null && from.length > 0;
+            if (root instanceof Leaf)
+                pendingLeaf = root;
+            else if (root != null)
+                push(root, 0, bounded);
+        }
+
+        private void push(Object node, int depth, boolean bounded)
+        {
+            int start = 0;
+            if (bounded)
+            {
+                int transition = from[depth] & 0xFF;
+                start = node instanceof Dense ? transition : ((Sparse) node).ceilingIndex(transition);
+            }
+            stack.push(new Frame(node, depth, bounded, start));
+        }
+
+        private boolean accepts(Leaf<?> leaf, boolean bounded)
+        {
+            return !bounded || FastByteOperations.compareUnsigned(leaf.key, 0, leaf.key.length, from, 0, from.length) >= 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        protected V computeNext()
+        {
+            if (pendingLeaf != null)
+            {
+                Leaf<V> leaf = (Leaf<V>) pendingLeaf;
+                pendingLeaf = null;
+                if (accepts(leaf, from != null))
+                    return leaf.value;
+            }
+
+            while (!stack.isEmpty())
+            {
+                Frame frame = stack.peek();
+                int transition;
+                Object child;
+                if (frame.node instanceof Dense)
+                {
+                    AtomicReferenceArray<Object> children = ((Dense) frame.node).children;
+                    while (frame.next < 256 && children.get(frame.next) == null)
+                        frame.next++;
+                    if (frame.next == 256)
+                    {
+                        stack.pop();
+                        continue;
+                    }
+                    transition = frame.next++;
+                    child = children.get(transition);
+                }
+                else
+                {
+                    Sparse sparse = (Sparse) frame.node;
+                    if (frame.next == sparse.transitions.length)
+                    {
+                        stack.pop();
+                        continue;
+                    }
+                    transition = sparse.transitions[frame.next] & 0xFF;
+                    child = sparse.children[frame.next++];
+                }
+
+                // only the child following the bound's own transition can hold keys smaller than the bound
+                boolean bounded = frame.bounded
+                                  && transition == (from[frame.depth] & 0xFF)
+                                  && frame.depth + 1 < from.length;
+                if (child instanceof Leaf)
+                {
+                    Leaf<V> leaf = (Leaf<V>) child;
+                    if (accepts(leaf, frame.bounded && transition == (from[frame.depth] & 0xFF)))
+                        return leaf.value;
+                }
+                else
+                {
+                    push(child, frame.depth + 1, bounded);
+                }
+            }
+            return endOfData();
+        }
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.collect.AbstractIterator;
+
+import org.apache.cassandra.utils.ObjectSizes;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+import org.apache.cassandra.utils.memory.NativeAllocator;
+
+/**
+ * A variant of {@link MemtableTrie} whose nodes and keys live in the native memory of a {@link NativeAllocator},
+ * used by the {@link ShardedTrieMemtable} when the memtable allocation type is {@code offheap_objects_full}.
+ * <p>
+ * The same concurrency contract applies: a single writer, any number of concurrent readers, no removal and
+ * prefix-free keys. The memory is owned by the allocator and released with the memtable, once no read can still
+ * reference it, so nodes are never freed individually.
+ * <p>
+ * Nodes are referenced by their address, aligned to 8 bytes, whose low bits hold the node type; 0 stands for no
+ * node. Leaves hold the key bytes and the index of the value, as the values themselves are Java objects kept in
+ * an on-heap table. Sparse nodes have room for {@link #SPARSE_CAPACITY} transitions, stored in insertion order
+ * and published by a volatile write of their count, and are replaced by a dense node with 256 slots once full.
+ * Every modification is made visible to readers by a single volatile write, so unlike {@link MemtableTrie} no
+ * node ever needs to be copied except when a sparse node grows into a dense one.
+ */
+public class NativeMemtableTrie<V>
+{
+    static final int SPARSE_CAPACITY = 8;
+
+    private static final int TYPE_MASK = 0x7;
+    private static final int LEAF = 1;
+    private static final int SPARSE = 2;
+    private static final int DENSE = 3;
+
+    // leaf: key length (int), value index (int), key bytes
+    private static final int LEAF_KEY_LENGTH_OFFSET = 0;
+    private static final int LEAF_VALUE_OFFSET = 4;
+    private static final int LEAF_KEY_OFFSET = 8;
+
+    // sparse: count (int), padding, transitions (SPARSE_CAPACITY bytes), children (SPARSE_CAPACITY longs)
+    private static final int SPARSE_COUNT_OFFSET = 0;
+    private static final int SPARSE_TRANSITIONS_OFFSET = 8;
+    private static final int SPARSE_CHILDREN_OFFSET = SPARSE_TRANSITIONS_OFFSET + SPARSE_CAPACITY;
+    private static final int SPARSE_SIZE = SPARSE_CHILDREN_OFFSET + SPARSE_CAPACITY * 8;
+
+    // dense: children (256 longs)
+    private static final int DENSE_SIZE = 256 * 8;
+
+    private static final int VALUE_CHUNK_SHIFT = 10;
+    private static final int VALUE_CHUNK_SIZE = 1 << VALUE_CHUNK_SHIFT;
+
+    /**
+     * The on-heap size of an entry: its slot in the value table.
+     */
+    static final long ENTRY_OVERHEAD = ObjectSizes.sizeOfReferenceArray(VALUE_CHUNK_SIZE) / VALUE_CHUNK_SIZE;
+
+    private final NativeAllocator allocator;
+
+    private volatile long root;
+
+    // the values, in chunks so that growing the table does not require copying them; only the chunk table is copied
+    private volatile Object[][] values = new Object[0][];
+    private int valueCount;
+
+    public NativeMemtableTrie(NativeAllocator allocator)
+    {
+        this.allocator = allocator;
+    }
+
+    /**
+     * @return the value stored for the given key, or null if there is none
+     */
+    public V get(byte[] key)
+    {
+        long node = root;
+        for (int depth = 0; node != 0; depth++)
+        {
+            if (type(node) == LEAF)
+                return keyEquals(node, key) ? value(node) : null;
+
+            if (depth == key.length)
+                return null;
+
+            node = child(node, key[depth] & 0xFF);
+        }
+        return null;
+    }
+
+    /**
+     * Adds the given value for the given key, unless the key is already present. Must not be called concurrently.
+     *
+     * @return the value already stored for the key, or null if the given value was added
+     */
+    public V putIfAbsent(byte[] key, V value, OpOrder.Group opGroup)
+    {
+        // the address of the slot referencing the current node, 0 for the root
+        long slot = 0;
+        long node = root;
+        int depth = 0;
+        while (node != 0 && type(node) != LEAF)
+        {
+            if (depth == key.length)
+                throw new IllegalArgumentException("Keys stored in a trie must be prefix-free");
+
+            int transition = key[depth] & 0xFF;
+            long childSlot = childSlot(node, transition);
+            if (childSlot == 0 || MemoryUtil.getLongVolatile(childSlot) == 0)
+            {
+                addChild(slot, node, transition, leaf(key, value, opGroup), opGroup);
+                return null;
+            }
+            slot = childSlot;
+            node = MemoryUtil.getLongVolatile(childSlot);
+            depth++;
+        }
+
+        if (node == 0)
+        {
+            root = leaf(key, value, opGroup);
+            return null;
+        }
+
+        if (keyEquals(node, key))
+            return value(node);
+
+        // Both keys share the bytes up to mismatch: replace the existing leaf by a chain of single-transition
+        // nodes leading to a node that branches to both leaves.
+        int existingLength = MemoryUtil.getInt(address(node) + LEAF_KEY_LENGTH_OFFSET);
+        int mismatch = depth;
+        while (mismatch < key.length && mismatch < existingLength && key[mismatch] == keyByte(node, mismatch))
+            mismatch++;
+        if (mismatch == key.length || mismatch == existingLength)
+            throw new IllegalArgumentException("Keys stored in a trie must be prefix-free");
+
+        long subtree = sparse(opGroup);
+        appendToSparse(subtree, key[mismatch] & 0xFF, leaf(key, value, opGroup));
+        appendToSparse(subtree, keyByte(node, mismatch) & 0xFF, node);
+        for (int d = mismatch - 1; d >= depth; d--)
+        {
+            long chain = sparse(opGroup);
+            appendToSparse(chain, key[d] & 0xFF, subtree);
+            subtree = chain;
+        }
+
+        publish(slot, subtree);
+        return null;
+    }
+
+    /**
+     * Returns the values whose keys are greater than or equal to {@code from} in unsigned lexicographic order, or
+     * all values if {@code from} is null, in key order. Concurrent additions may or may not be reflected.
+     */
+    public Iterator<V> iterator(byte[] from)
+    {
+        return new TrieIterator(root, from);
+    }
+
+    private static int type(long node)
+    {
+        return (int) node & TYPE_MASK;
+    }
+
+    private static long address(long node)
+    {
+        return node & ~TYPE_MASK;
+    }
+
+    /**
+     * @return the address of the slot holding the child of the given node for the given transition, or 0 if the
+     * node is sparse and does not have that transition
+     */
+    private static long childSlot(long node, int transition)
+    {
+        long address = address(node);
+        if (type(node) == DENSE)
+            return address + transition * 8L;
+
+        int count = MemoryUtil.getIntVolatile(address + SPARSE_COUNT_OFFSET);
+        for (int i = 0; i < count; i++)
+            if ((MemoryUtil.getByte(address + SPARSE_TRANSITIONS_OFFSET + i) & 0xFF) == transition)
+                return address + SPARSE_CHILDREN_OFFSET + i * 8L;
+        return 0;
+    }
+
+    private static long child(long node, int transition)
+    {
+        long slot = childSlot(node, transition);
+        return slot == 0 ? 0 : MemoryUtil.getLongVolatile(slot);
+    }
+
+    private long allocate(int size, OpOrder.Group opGroup)
+    {
+        // the allocator does not align its allocations, but volatile accesses need aligned addresses
+        long peer = allocator.allocate(size + 7, opGroup);
+        long address = (peer + 7) & ~7L;
+        MemoryUtil.setByte(address, size, (byte) 0);
+        return address;
+    }
+
+    private long leaf(byte[] key, V value, OpOrder.Group opGroup)
+    {
+        long address = allocate(LEAF_KEY_OFFSET + key.length, opGroup);
+        MemoryUtil.setInt(address + LEAF_KEY_LENGTH_OFFSET, key.length);
+        MemoryUtil.setInt(address + LEAF_VALUE_OFFSET, addValue(value));
+        MemoryUtil.setBytes(address + LEAF_KEY_OFFSET, key, 0, key.length);
+        return address | LEAF;
+    }
+
+    private long sparse(OpOrder.Group opGroup)
+    {
+        return allocate(SPARSE_SIZE, opGroup) | SPARSE;
+    }
+
+    private static void appendToSparse(long node, int transition, long child)
+    {
+        long address = address(node);
+        int count = MemoryUtil.getInt(address + SPARSE_COUNT_OFFSET);
+        MemoryUtil.setByte(address + SPARSE_TRANSITIONS_OFFSET + count, (byte) transition);
+        MemoryUtil.setLongVolatile(address + SPARSE_CHILDREN_OFFSET + count * 8L, child);
+        MemoryUtil.setIntVolatile(address + SPARSE_COUNT_OFFSET, count + 1);
+    }
+
+    /**
+     * Adds a new transition to the given node, which is referenced by the given slot. Full sparse nodes are replaced
+     * by a dense copy.
+     */
+    private void addChild(long slot, long node, int transition, long child, OpOrder.Group opGroup)
+    {
+        long address = address(node);
+        if (type(node) == DENSE)
+        {
+            MemoryUtil.setLongVolatile(address + transition * 8L, child);
+            return;
+        }
+
+        int count = MemoryUtil.getInt(address + SPARSE_COUNT_OFFSET);
+        if (count < SPARSE_CAPACITY)
+        {
+            appendToSparse(node, transition, child);
+            return;
+        }
+
+        long dense = allocate(DENSE_SIZE, opGroup);
+        for (int i = 0; i < count; i++)
+        {
+            int t = MemoryUtil.getByte(address + SPARSE_TRANSITIONS_OFFSET + i) & 0xFF;
+            MemoryUtil.setLong(dense + t * 8L, MemoryUtil.getLong(address + SPARSE_CHILDREN_OFFSET + i * 8L));
+        }
+        MemoryUtil.setLong(dense + transition * 8L, child);
+        publish(slot, dense | DENSE);
+    }
+
+    private void publish(long slot, long node)
+    {
+        if (slot == 0)
+            root = node;
+        else
+            MemoryUtil.setLongVolatile(slot, node);
+    }
+
+    private int addValue(V value)
+    {
+        int index = valueCount;
+        Object[][] chunks = values;
+        int chunk = index >>> VALUE_CHUNK_SHIFT;
+        if (chunk == chunks.length)
+        {
+            chunks = Arrays.copyOf(chunks, chunk + 1);
+            chunks[chunk] = new Object[VALUE_CHUNK_SIZE];
+            values = chunks;
+        }
+        // made visible to readers by the volatile write publishing the leaf
+        chunks[chunk][index & (VALUE_CHUNK_SIZE - 1)] = value;
+        valueCount = index + 1;
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(long leaf)
+    {
+        int index = MemoryUtil.getInt(address(leaf) + LEAF_VALUE_OFFSET);
+        return (V) values[index >>> VALUE_CHUNK_SHIFT][index & (VALUE_CHUNK_SIZE - 1)];
+    }
+
+    private static byte keyByte(long leaf, int index)
+    {
+        return MemoryUtil.getByte(address(leaf) + LEAF_KEY_OFFSET + index);
+    }
+
+    private static boolean keyEquals(long leaf, byte[] key)
+    {
+        return compareKey(leaf, key) == 0 && MemoryUtil.getInt(address(leaf) + LEAF_KEY_LENGTH_OFFSET) == key.length;
+    }
+
+    /**
+     * Compares the key of the given leaf with the given bytes in unsigned lexicographic order.
+     */
+    private static int compareKey(long leaf, byte[] key)
+    {
+        long address = address(leaf);
+        int length = MemoryUtil.getInt(address + LEAF_KEY_LENGTH_OFFSET);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++)
+        {
+            int cmp = Integer.compare(MemoryUtil.getByte(address + LEAF_KEY_OFFSET + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0)
+                return cmp;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private final class TrieIterator extends AbstractIterator<V>
+    {
+        private final byte[] from;
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        private long pendingLeaf;
+
+        private final class Frame
+        {
+            final long node;
+            final int depth;
+            // whether the keys below this node can still be smaller than the lower bound
+            final boolean bounded;
+            // for sparse nodes, the (transition, index) pairs of the children that existed when the node was
+            // reached, packed in ints and sorted by transition
+            final int[] sorted;
+            int next;
+
+            Frame(long node, int depth, boolean bounded)
+            {
+                this.node = node;
+                this.depth = depth;
+                this.bounded = bounded;
+                this.sorted = type(node) == SPARSE ? sortedTransitions(address(node)) : null;
+                int start = bounded ? from[depth] & 0xFF : 0;
+                if (sorted == null)
+                {
+                    next = start;
+                }
+                else
+                {
+                    while (next < sorted.length && (sorted[next] >>> 8) < start)
+                        next++;
+                }
+            }
+        }
+
+        TrieIterator(long root, byte[] from)
+        {
+            this.from = from;
+            if (root == 0)
+                return;
+            if (type(root) == LEAF)
+                pendingLeaf = root;
+            else
+                stack.push(new Frame(root, 0, from != null && from.length > 0));
+        }
+
+        private int[] sortedTransitions(long address)
+        {
+            int count = MemoryUtil.getIntVolatile(address + SPARSE_COUNT_OFFSET);
+            int[] sorted = new int[count];
+            for (int i = 0; i < count; i++)
+                sorted[i] = (MemoryUtil.getByte(address + SPARSE_TRANSITIONS_OFFSET + i) & 0xFF) << 8 | i;
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private boolean accepts(long leaf, boolean bounded)
+        {
+            return !bounded || compareKey(leaf, from) >= 0;
+        }
+
+        protected V computeNext()
+        {
+            if (pendingLeaf != 0)
+            {
+                long leaf = pendingLeaf;
+                pendingLeaf = 0;
+                if (accepts(leaf, from != null))
+                    return value(leaf);
+            }
+
+            while (!stack.isEmpty())
+            {
+                Frame frame = stack.peek();
+                long address = address(frame.node);
+                int transition;
+                long child;
+                if (frame.sorted == null)
+                {
+                    while (frame.next < 256 && MemoryUtil.getLongVolatile(address + frame.next * 8L) == 0)
+                        frame.next++;
+                    if (frame.next == 256)
+                    {
+                        stack.pop();
+                        continue;
+                    }
+                    transition = frame.next++;
+                    child = MemoryUtil.getLongVolatile(address + transition * 8L);
+                }
+                else
+                {
+                    if (frame.next == frame.sorted.length)
+                    {
+                        stack.pop();
+                        continue;
+                    }
+                    int entry = frame.sorted[frame.next++];
+                    transition = entry >>> 8;
+                    child = MemoryUtil.getLongVolatile(address + SPARSE_CHILDREN_OFFSET + (entry & 0xFF) * 8L);
+                }
+
+                // only the child following the bound's own transition can hold keys smaller than the bound
+                boolean onBound = frame.bounded && transition == (from[frame.depth] & 0xFF);
+                if (type(child) == LEAF)
+                {
+                    if (accepts(child, onBound))
+                        return value(child);
+                }
+                else
+                {
+                    stack.push(new Frame(child, frame.depth + 1, onBound && frame.depth + 1 < from.length));
+                }
+            }
+            return endOfData();
+        }
+    }
+}
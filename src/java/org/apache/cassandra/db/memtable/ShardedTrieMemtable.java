@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.PartitionPositionEncoding;
+import org.apache.cassandra.db.commitlog.CommitLogPosition;
+import org.apache.cassandra.db.partitions.AtomicBTreePartition;
+import org.apache.cassandra.dht.ByteOrderedPartitioner;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.RandomPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Splitter;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.ObjectSizes;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.NativeAllocator;
+
+import static java.lang.String.format;
+
+/**
+ * A memtable that splits the token ring into shards, each indexing its partitions in a {@link MemtableTrie}
+ * keyed by the byte-comparable encoding of the partition keys.
+ * <p>
+ * Adding a partition locks its shard only; updates to existing partitions and reads are lock-free. Shards are
+ * ordered by token, so range reads and flushes simply walk the shards in turn without any merging.
+ * <p>
+ * The trie needs a byte-comparable representation of the tokens, which is only implemented for the
+ * {@link Murmur3Partitioner}, the {@link RandomPartitioner} and the {@link ByteOrderedPartitioner}. Tables using
+ * another partitioner (like secondary index tables) get a {@link SkipListMemtable} instead.
+ * <p>
+ * With the {@code offheap_objects_full} memtable allocation type, the tries are {@link NativeMemtableTrie}s
+ * keeping their nodes and keys in the native memory of the memtable allocator, which leaves a single reference
+ * per partition on heap for the index.
+ */
+public class ShardedTrieMemtable extends Memtable
+{
+    public static final String SHARDS_OPTION = "shards";
+
+    private static final long EMPTY_BYTE_ARRAY_SIZE = ObjectSizes.sizeOfArray(new byte[0]);
+
+    /**
+     * The upper bounds (inclusive) of the tokens covered by each shard but the last one.
+     */
+    private final Token[] shardBoundaries;
+    private final Shard[] shards;
+
+    private final boolean offHeapIndex;
+
+    private static abstract class Shard
+    {
+        // only written while holding the shard's monitor
+        private volatile int size;
+
+        abstract AtomicBTreePartition get(byte[] key);
+
+        abstract AtomicBTreePartition putIfAbsent(byte[] key, AtomicBTreePartition partition, OpOrder.Group opGroup);
+
+        abstract Iterator<AtomicBTreePartition> iterator(byte[] from);
+    }
+
+    private static final class OnHeapShard extends Shard
+    {
+        private final MemtableTrie<AtomicBTreePartition> partitions = new MemtableTrie<>();
+
+        AtomicBTreePartition get(byte[] key)
+        {
+            return partitions.get(key);
+        }
+
+        AtomicBTreePartition putIfAbsent(byte[] key, AtomicBTreePartition partition, OpOrder.Group opGroup)
+        {
+            return partitions.putIfAbsent(key, partition);
+        }
+
+        Iterator<AtomicBTreePartition> iterator(byte[] from)
+        {
+            return partitions.iterator(from);
+        }
+    }
+
+    private static final class OffHeapShard extends Shard
+    {
+        private final NativeMemtableTrie<AtomicBTreePartition> partitions;
+
+        OffHeapShard(NativeAllocator allocator)
+        {
+            this.partitions = new NativeMemtableTrie<>(allocator);
+        }
+
+        AtomicBTreePartition get(byte[] key)
+        {
+            return partitions.get(key);
+        }
+
+        AtomicBTreePartition putIfAbsent(byte[] key, AtomicBTreePartition partition, OpOrder.Group opGroup)
+        {
+            return partitions.putIfAbsent(key, partition, opGroup);
+        }
+
+        Iterator<AtomicBTreePartition> iterator(byte[] from)
+        {
+            return partitions.iterator(from);
+        }
+    }
+
+    @VisibleForTesting
+    public ShardedTrieMemtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs, int shardCount)
+    {
+        super(commitLogLowerBound, cfs);
+        this.shardBoundaries = shardBoundaries(cfs.getPartitioner(), shardCount);
+        this.offHeapIndex = DatabaseDescriptor.getMemtableAllocationType() == Config.MemtableAllocationType.offheap_objects_full
+                            && getAllocator() instanceof NativeAllocator;
+        this.shards = new Shard[shardBoundaries.length + 1];
+        for (int i = 0; i < shards.length; i++)
+            shards[i] = offHeapIndex ? new OffHeapShard((NativeAllocator) getAllocator()) : new OnHeapShard();
+    }
+
+    /**
+     * Called reflectively by {@link org.apache.cassandra.schema.MemtableParams}.
+     */
+    public static Factory factory(Map<String, String> options)
+    {
+        Map<String, String> unknownOptions = new HashMap<>(options);
+        String shardsValue = unknownOptions.remove(SHARDS_OPTION);
+        if (!unknownOptions.isEmpty())
+            throw new ConfigurationException(format("Properties specified %s are not understood by %s",
+                                                    unknownOptions.keySet(),
+                                                    ShardedTrieMemtable.class.getSimpleName()));
+
+        int shardCount = FBUtilities.getAvailableProcessors();
+        if (shardsValue != null)
+        {
+            try
+            {
+                shardCount = Integer.parseInt(shardsValue);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new ConfigurationException(format("Invalid value %s for '%s' memtable sub-option - must be an integer",
+                                                        shardsValue, SHARDS_OPTION));
+            }
+            if (shardCount < 1)
+                throw new ConfigurationException(format("'%s' memtable sub-option must be at least 1 (got %d)",
+                                                        SHARDS_OPTION, shardCount));
+        }
+
+        final int shards = shardCount;
+        return (commitLogLowerBound, cfs) -> supports(cfs.getPartitioner())
+                                             ? new ShardedTrieMemtable(commitLogLowerBound, cfs, shards)
+                                             : new SkipListMemtable(commitLogLowerBound, cfs);
+    }
+
+    static boolean supports(IPartitioner partitioner)
+    {
+        return PartitionPositionEncoding.supports(partitioner);
+    }
+
+    private static Token[] shardBoundaries(IPartitioner partitioner, int shardCount)
+    {
+        if (shardCount == 1 || !partitioner.splitter().isPresent())
+            return new Token[0];
+
+        Splitter splitter = partitioner.splitter().get();
+        Range<Token> ring = new Range<>(partitioner.getMinimumToken(), partitioner.getMaximumToken());
+        List<Token> boundaries = splitter.splitOwnedRanges(shardCount,
+                                                           Collections.singletonList(new Splitter.WeightedRange(1.0, ring)),
+                                                           false);
+        // the last boundary is the maximum token, which the last shard covers anyway
+        return boundaries.subList(0, boundaries.size() - 1).toArray(new Token[0]);
+    }
+
+    @VisibleForTesting
+    boolean hasOffHeapIndex()
+    {
+        return offHeapIndex;
+    }
+
+    @VisibleForTesting
+    int shardCount()
+    {
+        return shards.length;
+    }
+
+    private int shardIndex(Token token)
+    {
+        int low = 0;
+        int high = shardBoundaries.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (token.compareTo(shardBoundaries[mid]) <= 0)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    public boolean isClean()
+    {
+        for (Shard shard : shards)
+            if (shard.size > 0)
+                return false;
+        return true;
+    }
+
+    public int partitionCount()
+    {
+        int count = 0;
+        for (Shard shard : shards)
+            count += shard.size;
+        return count;
+    }
+
+    public AtomicBTreePartition getPartition(DecoratedKey key)
+    {
+        return shards[shardIndex(key.getToken())].get(PartitionPositionEncoding.encode(key));
+    }
+
+    protected AtomicBTreePartition putIfAbsent(DecoratedKey key, AtomicBTreePartition partition, OpOrder.Group opGroup)
+    {
+        Shard shard = shards[shardIndex(key.getToken())];
+        byte[] encodedKey = PartitionPositionEncoding.encode(key);
+        synchronized (shard)
+        {
+            AtomicBTreePartition previous = shard.putIfAbsent(encodedKey, partition, opGroup);
+            if (previous == null)
+                shard.size++;
+            return previous;
+        }
+    }
+
+    protected Iterator<AtomicBTreePartition> partitionIterator(PartitionPosition from, boolean inclusiveFrom,
+                                                               PartitionPosition to, boolean inclusiveTo)
+    {
+        int first = from == null ? 0 : shardIndex(from.getToken());
+        int last = to == null ? shards.length - 1 : shardIndex(to.getToken());
+        if (first > last)
+            return Collections.emptyIterator();
+
+        // seek to the first key with the start token, the ones before the start position are skipped below
+        List<Iterator<AtomicBTreePartition>> iterators = new ArrayList<>(last - first + 1);
+        iterators.add(shards[first].iterator(from == null ? null : PartitionPositionEncoding.encodeToken(from.getToken())));
+        for (int i = first + 1; i <= last; i++)
+            iterators.add(shards[i].iterator(null));
+        Iterator<AtomicBTreePartition> partitions = Iterators.concat(iterators.iterator());
+
+        return new AbstractIterator<AtomicBTreePartition>()
+        {
+            private boolean started = from == null;
+
+            protected AtomicBTreePartition computeNext()
+            {
+                while (partitions.hasNext())
+                {
+                    AtomicBTreePartition partition = partitions.next();
+                    DecoratedKey key = partition.partitionKey();
+                    if (!started)
+                    {
+                        int cmp = key.compareTo(from);
+                        if (cmp < 0 || (cmp == 0 && !inclusiveFrom))
+                            continue;
+                        started = true;
+                    }
+                    if (to != null)
+                    {
+                        int cmp = key.compareTo(to);
+                        if (cmp > 0 || (cmp == 0 && !inclusiveTo))
+                            return endOfData();
+                    }
+                    return partition;
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    protected long partitionOverhead(DecoratedKey key)
+    {
+        // the native memory of the off-heap index is accounted for by the allocator itself
+        if (offHeapIndex)
+            return NativeMemtableTrie.ENTRY_OVERHEAD + AtomicBTreePartition.EMPTY_SIZE;
+
+        return MemtableTrie.ENTRY_OVERHEAD
+               + EMPTY_BYTE_ARRAY_SIZE + PartitionPositionEncoding.encodedLength(key)
+               + AtomicBTreePartition.EMPTY_SIZE;
+    }
+}
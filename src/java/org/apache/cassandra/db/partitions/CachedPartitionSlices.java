@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.partitions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+
+import org.apache.cassandra.cache.IRowCacheEntry;
+import org.apache.cassandra.db.Clustering;
+import org.apache.cassandra.db.ClusteringBound;
+import org.apache.cassandra.db.ClusteringComparator;
+import org.apache.cassandra.db.ClusteringPrefix;
+import org.apache.cassandra.db.RangeTombstone;
+import org.apache.cassandra.db.Slice;
+import org.apache.cassandra.db.Slices;
+import org.apache.cassandra.db.TypeSizes;
+import org.apache.cassandra.db.filter.ClusteringIndexFilter;
+import org.apache.cassandra.db.filter.ClusteringIndexNamesFilter;
+import org.apache.cassandra.db.filter.ClusteringIndexSliceFilter;
+import org.apache.cassandra.db.rows.Row;
+import org.apache.cassandra.io.ISerializer;
+import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.schema.TableMetadata;
+
+/**
+ * The slices of a partition stored in the row cache, for the tables caching the slices that queries read rather than
+ * the head of their partitions (see {@link org.apache.cassandra.schema.CachingParams#cacheSlices()}).
+ * <p>
+ * Each slice is cached as a partition holding all the data of the slice, with all the columns, so that it can answer
+ * any query selecting data within the slice. The slices are sorted and don't overlap.
+ * <p>
+ * Instances are immutable: caching a slice or invalidating the slices a write overlaps replaces the entry of the
+ * partition. As the caches compare the entry to replace by equality, each instance has a unique version.
+ */
+public final class CachedPartitionSlices implements IRowCacheEntry
+{
+    public static final ISerializer<CachedPartitionSlices> cacheSerializer = new Serializer();
+
+    private static final AtomicLong generator = new AtomicLong();
+
+    public static final CachedPartitionSlices EMPTY = new CachedPartitionSlices(new Slice[0], new CachedPartition[0]);
+
+    private final long version;
+    private final Slice[] slices;
+    private final CachedPartition[] partitions;
+
+    private CachedPartitionSlices(Slice[] slices, CachedPartition[] partitions)
+    {
+        this(generator.getAndIncrement(), slices, partitions);
+    }
+
+    private CachedPartitionSlices(long version, Slice[] slices, CachedPartition[] partitions)
+    {
+        assert slices.length == partitions.length;
+        this.version = version;
+        this.slices = slices;
+        this.partitions = partitions;
+    }
+
+    public int size()
+    {
+        return slices.length;
+    }
+
+    public boolean isEmpty()
+    {
+        return slices.length == 0;
+    }
+
+    public Slice slice(int i)
+    {
+        return slices[i];
+    }
+
+    /**
+     * Returns the cached slice holding all the data the given filter selects, or null if no cached slice does.
+     */
+    public CachedPartition covering(ClusteringIndexFilter filter, ClusteringComparator comparator)
+    {
+        if (isEmpty())
+            return null;
+
+        if (filter instanceof ClusteringIndexSliceFilter)
+        {
+            Slices requested = ((ClusteringIndexSliceFilter) filter).requestedSlices();
+            // a filter selecting no slice only queries the static row, that all the cached slices hold
+            if (requested.isEmpty())
+                return partitions[0];
+
+            int i = indexOf(requested.get(0).start(), comparator);
+            if (i < 0 || comparator.compare(requested.get(requested.size() - 1).end(), slices[i].end()) > 0)
+                return null;
+            return partitions[i];
+        }
+
+        if (filter instanceof ClusteringIndexNamesFilter)
+        {
+            int i = -1;
+            for (Clustering clustering : ((ClusteringIndexNamesFilter) filter).requestedRows())
+            {
+                if (i < 0)
+                    i = indexOf(clustering, comparator);
+                if (i < 0 || !slices[i].includes(comparator, clustering))
+                    return null;
+            }
+            return i < 0 ? partitions[0] : partitions[i];
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the cached slice holding the start of the given slice when read in the given order, and so the first rows
+     * a query of the slice reads, or null if no cached slice does.
+     */
+    public CachedPartition holdingStart(Slice slice, boolean reversed, ClusteringComparator comparator)
+    {
+        ClusteringBound start = reversed ? slice.end() : slice.start();
+        int i = indexOf(start, comparator);
+        if (i < 0 || comparator.compare(start, slices[i].end()) > 0)
+            return null;
+        return partitions[i];
+    }
+
+    /**
+     * Returns these slices with the given one, replacing the cached slices it overlaps.
+     */
+    public CachedPartitionSlices with(Slice slice, CachedPartition partition, ClusteringComparator comparator)
+    {
+        List<Slice> newSlices = new ArrayList<>(slices.length + 1);
+        List<CachedPartition> newPartitions = new ArrayList<>(slices.length + 1);
+        boolean added = false;
+        for (int i = 0; i < slices.length; i++)
+        {
+            if (overlaps(slices[i], slice, comparator))
+                continue;
+
+            if (!added && comparator.compare(slice.start(), slices[i].start()) < 0)
+            {
+                newSlices.add(slice);
+                newPartitions.add(partition);
+                added = true;
+            }
+            newSlices.add(slices[i]);
+            newPartitions.add(partitions[i]);
+        }
+        if (!added)
+        {
+            newSlices.add(slice);
+            newPartitions.add(partition);
+        }
+        return new CachedPartitionSlices(newSlices.toArray(new Slice[0]), newPartitions.toArray(new CachedPartition[0]));
+    }
+
+    /**
+     * Returns these slices without the ones the given slice overlaps, or this instance if it overlaps none of them.
+     */
+    public CachedPartitionSlices without(Slice slice, ClusteringComparator comparator)
+    {
+        boolean[] invalidated = new boolean[slices.length];
+        for (int i = 0; i < slices.length; i++)
+            invalidated[i] = overlaps(slices[i], slice, comparator);
+        return without(invalidated);
+    }
+
+    /**
+     * Returns these slices without the ones the data of the given update overlaps, or this instance if it overlaps none
+     * of them. A partition deletion or a static row invalidates all the slices, as they all hold them.
+     */
+    public CachedPartitionSlices without(PartitionUpdate update)
+    {
+        if (isEmpty())
+            return this;
+
+        if (!update.partitionLevelDeletion().isLive() || !update.staticRow().isEmpty())
+            return EMPTY;
+
+        ClusteringComparator comparator = update.metadata().comparator;
+        boolean[] invalidated = new boolean[slices.length];
+        for (Row row : update)
+        {
+            int i = indexOf(row.clustering(), comparator);
+            if (i >= 0 && slices[i].includes(comparator, row.clustering()))
+                invalidated[i] = true;
+        }
+
+        for (Iterator<RangeTombstone> iter = update.deletionInfo().rangeIterator(false); iter.hasNext(); )
+        {
+            Slice deleted = iter.next().deletedSlice();
+            for (int i = 0; i < slices.length; i++)
+                invalidated[i] |= overlaps(slices[i], deleted, comparator);
+        }
+        return without(invalidated);
+    }
+
+    private CachedPartitionSlices without(boolean[] invalidated)
+    {
+        List<Slice> newSlices = new ArrayList<>(slices.length);
+        List<CachedPartition> newPartitions = new ArrayList<>(slices.length);
+        for (int i = 0; i < slices.length; i++)
+        {
+            if (invalidated[i])
+                continue;
+
+            newSlices.add(slices[i]);
+            newPartitions.add(partitions[i]);
+        }
+
+        if (newSlices.size() == slices.length)
+            return this;
+
+        return newSlices.isEmpty()
+             ? EMPTY
+             : new CachedPartitionSlices(newSlices.toArray(new Slice[0]), newPartitions.toArray(new CachedPartition[0]));
+    }
+
+    /**
+     * Returns the index of the last slice starting before the given clustering or bound, or -1 if there is none.
+     */
+    private int indexOf(ClusteringPrefix prefix, ClusteringComparator comparator)
+    {
+        int low = 0;
+        int high = slices.length - 1;
+        int result = -1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(slices[mid].start(), prefix) <= 0)
+            {
+                result = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private static boolean overlaps(Slice s1, Slice s2, ClusteringComparator comparator)
+    {
+        return comparator.compare(s1.start(), s2.end()) <= 0 && comparator.compare(s2.start(), s1.end()) <= 0;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof CachedPartitionSlices))
+            return false;
+
+        CachedPartitionSlices other = (CachedPartitionSlices) o;
+        return version == other.version;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hashCode(version);
+    }
+
+    static class Serializer implements ISerializer<CachedPartitionSlices>
+    {
+        public void serialize(CachedPartitionSlices entry, DataOutputPlus out) throws IOException
+        {
+            int version = MessagingService.current_version;
+
+            out.writeLong(entry.version);
+            out.writeUnsignedVInt(entry.slices.length);
+            for (int i = 0; i < entry.slices.length; i++)
+            {
+                CachedPartition.cacheSerializer.serialize(entry.partitions[i], out);
+                Slice.serializer.serialize(entry.slices[i], out, version, entry.partitions[i].metadata().comparator.subtypes());
+            }
+        }
+
+        public CachedPartitionSlices deserialize(DataInputPlus in) throws IOException
+        {
+            int version = MessagingService.current_version;
+
+            long entryVersion = in.readLong();
+            int size = (int) in.readUnsignedVInt();
+            Slice[] slices = new Slice[size];
+            CachedPartition[] partitions = new CachedPartition[size];
+            for (int i = 0; i < size; i++)
+            {
+                // the slice bounds are serialized after the partition, that gives the table they belong to
+                partitions[i] = CachedPartition.cacheSerializer.deserialize(in);
+                TableMetadata metadata = partitions[i].metadata();
+                slices[i] = Slice.serializer.deserialize(in, version, metadata.comparator.subtypes());
+            }
+            return new CachedPartitionSlices(entryVersion, slices, partitions);
+        }
+
+        public long serializedSize(CachedPartitionSlices entry)
+        {
+            int version = MessagingService.current_version;
+
+            long size = TypeSizes.sizeof(entry.version) + TypeSizes.sizeofUnsignedVInt(entry.slices.length);
+            for (int i = 0; i < entry.slices.length; i++)
+            {
+                size += CachedPartition.cacheSerializer.serializedSize(entry.partitions[i]);
+                size += Slice.serializer.serializedSize(entry.slices[i], version, entry.partitions[i].metadata().comparator.subtypes());
+            }
+            return size;
+        }
+    }
+}
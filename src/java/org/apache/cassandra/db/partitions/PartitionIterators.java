@@ -59,20 +59,30 @@ public abstract class PartitionIterators
         return Transformation.apply(toReturn, new Close());
     }
 
+    /**
+     * Concatenates the provided iterators.
+     * <p>
+     * Each iterator is only referenced until the concatenation moves on to the next one, so that what backs the
+     * partitions already returned, like the replica responses they were resolved from, can be collected before the
+     * whole concatenation is consumed.
+     */
     @SuppressWarnings("resource") // The created resources are returned right away
     public static PartitionIterator concat(final List<PartitionIterator> iterators)
     {
         if (iterators.size() == 1)
             return iterators.get(0);
 
+        final PartitionIterator[] remaining = iterators.toArray(new PartitionIterator[0]);
         class Extend implements MorePartitions<PartitionIterator>
         {
             int i = 0;
             public PartitionIterator moreContents()
             {
-                if (i >= iterators.size())
+                if (i >= remaining.length)
                     return null;
-                return iterators.get(i++);
+                PartitionIterator next = remaining[i];
+                remaining[i++] = null;
+                return next;
             }
         }
 
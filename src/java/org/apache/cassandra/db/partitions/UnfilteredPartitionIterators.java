@@ -50,6 +50,15 @@ public abstract class UnfilteredPartitionIterators
         public UnfilteredRowIterators.MergeListener getRowMergeListener(DecoratedKey partitionKey, List<UnfilteredRowIterator> versions);
         public void close();
 
+        /**
+         * Whether the provided partition, which only one of the merged iterators has, should be returned as is rather
+         * than through a merge. {@link #getRowMergeListener} isn't called for such a partition.
+         */
+        public default boolean skipMerge(UnfilteredRowIterator partition)
+        {
+            return false;
+        }
+
         public static MergeListener NOOP = new MergeListener()
         {
             public UnfilteredRowIterators.MergeListener getRowMergeListener(DecoratedKey partitionKey, List<UnfilteredRowIterator> versions)
@@ -88,22 +97,31 @@ public abstract class UnfilteredPartitionIterators
         return Transformation.apply(toReturn, new Close());
     }
 
+    /**
+     * Concatenates the provided iterators, only referencing each of them until the concatenation moves on to the next
+     * one, see {@link PartitionIterators#concat}.
+     */
     public static UnfilteredPartitionIterator concat(final List<UnfilteredPartitionIterator> iterators)
     {
         if (iterators.size() == 1)
             return iterators.get(0);
 
+        final UnfilteredPartitionIterator[] remaining = iterators.toArray(new UnfilteredPartitionIterator[0]);
         class Extend implements MorePartitions<UnfilteredPartitionIterator>
         {
             int i = 1;
             public UnfilteredPartitionIterator moreContents()
             {
-                if (i >= iterators.size())
+                if (i >= remaining.length)
                     return null;
-                return iterators.get(i++);
+                UnfilteredPartitionIterator next = remaining[i];
+                remaining[i++] = null;
+                return next;
             }
         }
-        return MorePartitions.extend(iterators.get(0), new Extend());
+        UnfilteredPartitionIterator first = remaining[0];
+        remaining[0] = null;
+        return MorePartitions.extend(first, new Extend());
     }
 
     public static PartitionIterator filter(final UnfilteredPartitionIterator iterator, final int nowInSec)
@@ -125,11 +143,16 @@ public abstract class UnfilteredPartitionIterators
 
             private DecoratedKey partitionKey;
             private boolean isReverseOrder;
+            private UnfilteredRowIterator single;
 
             public void reduce(int idx, UnfilteredRowIterator current)
             {
+                // the only version of a partition might be returned without being read at all, so we only read the
+                // order of partitions that are merged
+                single = partitionKey == null ? current : null;
                 partitionKey = current.partitionKey();
-                isReverseOrder = current.isReverseOrder();
+                if (single == null)
+                    isReverseOrder = current.isReverseOrder();
 
                 // Note that because the MergeListener cares about it, we want to preserve the index of the iterator.
                 // Non-present iterator will thus be set to empty in getReduced.
@@ -139,6 +162,13 @@ public abstract class UnfilteredPartitionIterators
             @SuppressWarnings("resource")
             protected UnfilteredRowIterator getReduced()
             {
+                if (single != null)
+                {
+                    if (listener.skipMerge(single))
+                        return single;
+                    isReverseOrder = single.isReverseOrder();
+                }
+
                 UnfilteredRowIterators.MergeListener rowListener = listener.getRowMergeListener(partitionKey, toMerge);
 
                 // Make a single empty iterator object to merge, we don't need toMerge.size() copiess
@@ -163,6 +193,8 @@ public abstract class UnfilteredPartitionIterators
                 toMerge.clear();
                 for (int i = 0; i < iterators.size(); i++)
                     toMerge.add(null);
+                partitionKey = null;
+                single = null;
             }
         });
 
@@ -20,6 +20,7 @@ package org.apache.cassandra.db.streaming;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
@@ -38,6 +39,7 @@ import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.KeyIterator;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.DataOutputStreamPlus;
 import org.apache.cassandra.net.AsyncStreamingOutputPlus;
@@ -56,7 +58,9 @@ public class CassandraOutgoingFile implements OutgoingStream
 {
     public static final List<Component> STREAM_COMPONENTS = ImmutableList.of(Component.DATA, Component.PRIMARY_INDEX, Component.STATS,
                                                                              Component.COMPRESSION_INFO, Component.FILTER, Component.SUMMARY,
-                                                                             Component.DIGEST, Component.CRC);
+                                                                             Component.DIGEST, Component.CRC,
+                                                                             Component.PARTITION_INDEX, Component.ROW_INDEX,
+                                                                             Component.SYNOPSIS);
 
     private final Ref<SSTableReader> ref;
     private final long estimatedKeys;
@@ -82,22 +86,26 @@ public class CassandraOutgoingFile implements OutgoingStream
         this.filename = ref.get().getFilename();
         this.manifest = getComponentManifest(ref.get());
 
-        SSTableReader sstable = ref.get();
         keepSSTableLevel = operation == StreamOperation.BOOTSTRAP || operation == StreamOperation.REBUILD;
-        this.header =
-            CassandraStreamHeader.builder()
-                                 .withSSTableFormat(sstable.descriptor.formatType)
-                                 .withSSTableVersion(sstable.descriptor.version)
-                                 .withSSTableLevel(keepSSTableLevel ? sstable.getSSTableLevel() : 0)
-                                 .withEstimatedKeys(estimatedKeys)
-                                 .withSections(sections)
-                                 .withCompressionMetadata(sstable.compression ? sstable.getCompressionMetadata() : null)
-                                 .withSerializationHeader(sstable.header.toComponent())
-                                 .isEntireSSTable(shouldStreamEntireSSTable())
-                                 .withComponentManifest(manifest)
-                                 .withFirstKey(sstable.first)
-                                 .withTableId(sstable.metadata().id)
-                                 .build();
+        this.header = createHeader(ref.get(), sections, shouldStreamEntireSSTable(), manifest);
+    }
+
+    private CassandraStreamHeader createHeader(SSTableReader sstable, List<SSTableReader.PartitionPositionBounds> sections,
+                                               boolean isEntireSSTable, ComponentManifest manifest)
+    {
+        return CassandraStreamHeader.builder()
+                                    .withSSTableFormat(sstable.descriptor.formatType)
+                                    .withSSTableVersion(sstable.descriptor.version)
+                                    .withSSTableLevel(keepSSTableLevel ? sstable.getSSTableLevel() : 0)
+                                    .withEstimatedKeys(estimatedKeys)
+                                    .withSections(sections)
+                                    .withCompressionMetadata(sstable.compression ? sstable.getCompressionMetadata() : null)
+                                    .withSerializationHeader(sstable.header.toComponent())
+                                    .isEntireSSTable(isEntireSSTable)
+                                    .withComponentManifest(manifest)
+                                    .withFirstKey(sstable.first)
+                                    .withTableId(sstable.metadata().id)
+                                    .build();
     }
 
     @VisibleForTesting
@@ -159,6 +167,19 @@ public class CassandraOutgoingFile implements OutgoingStream
     @Override
     public void write(StreamSession session, DataOutputStreamPlus out, int version) throws IOException
     {
+        if (out instanceof AsyncStreamingOutputPlus && shouldStreamSlice())
+        {
+            try (CassandraSSTableSlice slice = CassandraSSTableSlice.create(ColumnFamilyStore.getIfExists(getTableId()), ref.get(),
+                                                                            normalizedRanges, estimatedKeys))
+            {
+                if (slice != null)
+                {
+                    writeEntireSSTable(slice.sstable(), session, (AsyncStreamingOutputPlus) out, version);
+                    return;
+                }
+            }
+        }
+
         SSTableReader sstable = ref.get();
         CassandraStreamHeader.serializer.serialize(header, out, version);
         out.flush();
@@ -178,6 +199,45 @@ public class CassandraOutgoingFile implements OutgoingStream
         }
     }
 
+    /**
+     * Streams the given slice of the sstable as an entire sstable, which the receiver adds as it is.
+     */
+    private void writeEntireSSTable(SSTableReader slice, StreamSession session, AsyncStreamingOutputPlus out, int version) throws IOException
+    {
+        ComponentManifest sliceManifest = getComponentManifest(slice);
+        List<SSTableReader.PartitionPositionBounds> sliceSections =
+            Collections.singletonList(new SSTableReader.PartitionPositionBounds(0, slice.uncompressedLength()));
+        CassandraStreamHeader.serializer.serialize(createHeader(slice, sliceSections, true, sliceManifest), out, version);
+        out.flush();
+
+        CassandraEntireSSTableStreamWriter writer = new CassandraEntireSSTableStreamWriter(slice, session, sliceManifest);
+        writer.write(out);
+    }
+
+    /**
+     * Whether the part of the sstable in the streamed ranges should be sliced to a temporary sstable, to be streamed
+     * entirely rather than deserialized by the receiver. The partitions are only copied to the slice without being
+     * deserialized if the sstable has the latest version of the big format (see {@link CassandraSSTableSlice}).
+     */
+    @VisibleForTesting
+    public boolean shouldStreamSlice()
+    {
+        if (!DatabaseDescriptor.streamEntireSSTables() || !DatabaseDescriptor.streamEntireSSTableSlices() || shouldStreamEntireSSTable())
+            return false;
+
+        SSTableReader sstable = ref.get();
+        if (sstable.getSSTableMetadata().hasLegacyCounterShards
+            || sstable.descriptor.formatType != SSTableFormat.Type.BIG
+            || !sstable.descriptor.version.equals(SSTableFormat.Type.BIG.info.getLatestVersion()))
+            return false;
+
+        if (ColumnFamilyStore.getIfExists(getTableId()) == null)
+            return false;
+
+        // the slice is at most the size of the streamed sections
+        return sstable.descriptor.directory.getUsableSpace() > getSize();
+    }
+
     @VisibleForTesting
     public boolean shouldStreamEntireSSTable()
     {
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.db.streaming;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.compaction.OperationType;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+
+import static org.apache.cassandra.utils.Throwables.maybeFail;
+
+/**
+ * A temporary sstable holding the partitions of an sstable that are in the streamed ranges, so that the part of an
+ * sstable that isn't fully contained in the streamed ranges can be streamed entirely, without the receiver having
+ * to deserialize it.
+ * <p>
+ * The partitions are appended to the slice as they are serialized in the sliced sstable (see
+ * {@link org.apache.cassandra.io.sstable.CopyablePartition}), and the index, summary, filter and stats components of
+ * the slice are derived from them. The slice is written under an offline transaction, and deleted when closed or on
+ * restart if the node goes down while streaming it.
+ */
+public class CassandraSSTableSlice implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(CassandraSSTableSlice.class);
+
+    private final SSTableReader sstable;
+    private final LifecycleTransaction txn;
+
+    private CassandraSSTableSlice(SSTableReader sstable, LifecycleTransaction txn)
+    {
+        this.sstable = sstable;
+        this.txn = txn;
+    }
+
+    /**
+     * Writes the partitions of the given sstable in the given normalized ranges to a new sstable next to it.
+     *
+     * @return the slice, or null if the sstable has no partition in the ranges
+     */
+    @SuppressWarnings("resource")
+    public static CassandraSSTableSlice create(ColumnFamilyStore cfs, SSTableReader source, List<Range<Token>> normalizedRanges, long estimatedKeys)
+    {
+        LifecycleTransaction txn = LifecycleTransaction.offline(OperationType.STREAM);
+        Descriptor descriptor = cfs.newSSTableDescriptor(source.descriptor.directory, source.descriptor.version, source.descriptor.formatType);
+        SSTableReader slice = null;
+        try
+        {
+            try (ISSTableScanner scanner = source.getScanner(normalizedRanges);
+                 SSTableWriter writer = SSTableWriter.create(cfs.metadata, descriptor, estimatedKeys, source.getRepairedAt(),
+                                                             source.getPendingRepair(), source.isTransient(), source.getSSTableLevel(),
+                                                             source.header, Collections.emptyList(), txn))
+            {
+                while (scanner.hasNext())
+                {
+                    try (UnfilteredRowIterator partition = scanner.next())
+                    {
+                        writer.append(partition);
+                    }
+                }
+
+                if (writer.getFilePointer() > 0)
+                    slice = writer.finish(true);
+            }
+
+            if (slice == null)
+            {
+                txn.abort();
+                return null;
+            }
+
+            logger.debug("Sliced {} to {} for ranges {}", source, slice, normalizedRanges);
+            return new CassandraSSTableSlice(slice, txn);
+        }
+        catch (Throwable t)
+        {
+            if (slice != null)
+                t = slice.selfRef().ensureReleased(t);
+            t = txn.abort(t);
+            Throwables.throwIfUnchecked(t);
+            throw new RuntimeException(t);
+        }
+    }
+
+    public SSTableReader sstable()
+    {
+        return sstable;
+    }
+
+    /**
+     * Releases the slice and deletes its files.
+     */
+    public void close()
+    {
+        maybeFail(txn.abort(sstable.selfRef().ensureReleased(null)));
+    }
+}
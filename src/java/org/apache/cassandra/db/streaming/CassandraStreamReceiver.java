@@ -22,6 +22,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
@@ -32,6 +35,7 @@ import org.apache.cassandra.streaming.StreamReceiveTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.Mutation;
@@ -51,6 +55,7 @@ import org.apache.cassandra.streaming.IncomingStream;
 import org.apache.cassandra.streaming.StreamReceiver;
 import org.apache.cassandra.streaming.StreamSession;
 import org.apache.cassandra.utils.CloseableIterator;
+import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.Throwables;
 import org.apache.cassandra.utils.concurrent.Refs;
 
@@ -60,6 +65,10 @@ public class CassandraStreamReceiver implements StreamReceiver
 
     private static final int MAX_ROWS_PER_BATCH = Integer.getInteger("cassandra.repair.mutation_repair_rows_per_batch", 100);
 
+    private static final ExecutorService writePathExecutor = DebuggableThreadPoolExecutor.createWithMaximumPoolSize("StreamWritePath",
+                                                                                                                  FBUtilities.getAvailableProcessors(),
+                                                                                                                  60, TimeUnit.SECONDS);
+
     private final ColumnFamilyStore cfs;
     private final StreamSession session;
 
@@ -71,6 +80,8 @@ public class CassandraStreamReceiver implements StreamReceiver
 
     private final boolean requiresWritePath;
 
+    private boolean aborted;
+
 
     public CassandraStreamReceiver(ColumnFamilyStore cfs, StreamSession session, int totalFiles)
     {
@@ -95,9 +106,13 @@ public class CassandraStreamReceiver implements StreamReceiver
         return (CassandraIncomingFile) stream;
     }
 
+    /**
+     * Finishes the sstables of a received stream. The streams received over several channels are finished
+     * concurrently.
+     */
     @Override
     @SuppressWarnings("resource")
-    public synchronized void received(IncomingStream stream)
+    public void received(IncomingStream stream)
     {
         CassandraIncomingFile file = getFile(stream);
 
@@ -111,8 +126,18 @@ public class CassandraStreamReceiver implements StreamReceiver
         {
             Throwables.maybeFail(sstable.abort(t));
         }
-        txn.update(finished, false);
-        sstables.addAll(finished);
+
+        synchronized (this)
+        {
+            if (aborted)
+            {
+                // the aborted transaction already deleted the files of the sstables
+                Throwables.maybeFail(Refs.release(Refs.selfRefs(finished), null));
+                return;
+            }
+            txn.update(finished, false);
+            sstables.addAll(finished);
+        }
     }
 
     @Override
@@ -158,6 +183,7 @@ public class CassandraStreamReceiver implements StreamReceiver
     @Override
     public synchronized void abort()
     {
+        aborted = true;
         sstables.clear();
         txn.abort();
     }
@@ -188,28 +214,34 @@ public class CassandraStreamReceiver implements StreamReceiver
     private void sendThroughWritePath(ColumnFamilyStore cfs, Collection<SSTableReader> readers) {
         boolean hasCdc = hasCDC(cfs);
         ColumnFilter filter = ColumnFilter.all(cfs.metadata());
+        // the sstables are applied concurrently, as the mutations of distinct partitions are independent and the
+        // mutations of a same partition are ordered by their timestamps
+        List<Future<?>> futures = new ArrayList<>(readers.size());
         for (SSTableReader reader : readers)
         {
-            Keyspace ks = Keyspace.open(reader.getKeyspaceName());
-            // When doing mutation-based repair we split each partition into smaller batches
-            // ({@link Stream MAX_ROWS_PER_BATCH}) to avoid OOMing and generating heap pressure
-            try (ISSTableScanner scanner = reader.getScanner();
-                 CloseableIterator<UnfilteredRowIterator> throttledPartitions = ThrottledUnfilteredIterator.throttle(scanner, MAX_ROWS_PER_BATCH))
-            {
-                while (throttledPartitions.hasNext())
+            futures.add(writePathExecutor.submit(() -> {
+                Keyspace ks = Keyspace.open(reader.getKeyspaceName());
+                // When doing mutation-based repair we split each partition into smaller batches
+                // ({@link Stream MAX_ROWS_PER_BATCH}) to avoid OOMing and generating heap pressure
+                try (ISSTableScanner scanner = reader.getScanner();
+                     CloseableIterator<UnfilteredRowIterator> throttledPartitions = ThrottledUnfilteredIterator.throttle(scanner, MAX_ROWS_PER_BATCH))
                 {
-                    // MV *can* be applied unsafe if there's no CDC on the CFS as we flush
-                    // before transaction is done.
-                    //
-                    // If the CFS has CDC, however, these updates need to be written to the CommitLog
-                    // so they get archived into the cdc_raw folder
-                    ks.apply(new Mutation(PartitionUpdate.fromIterator(throttledPartitions.next(), filter)),
-                             hasCdc,
-                             true,
-                             false);
+                    while (throttledPartitions.hasNext())
+                    {
+                        // MV *can* be applied unsafe if there's no CDC on the CFS as we flush
+                        // before transaction is done.
+                        //
+                        // If the CFS has CDC, however, these updates need to be written to the CommitLog
+                        // so they get archived into the cdc_raw folder
+                        ks.apply(new Mutation(PartitionUpdate.fromIterator(throttledPartitions.next(), filter)),
+                                 hasCdc,
+                                 true,
+                                 false);
+                    }
                 }
-            }
+            }));
         }
+        FBUtilities.waitOnFutures(futures);
     }
 
     public synchronized  void finishTransaction()
@@ -42,7 +42,7 @@ abstract class AbstractSSTableSimpleWriter implements Closeable
     protected final File directory;
     protected final TableMetadataRef metadata;
     protected final RegularAndStaticColumns columns;
-    protected SSTableFormat.Type formatType = SSTableFormat.Type.current();
+    protected SSTableFormat.Type formatType;
     protected static AtomicInteger generation = new AtomicInteger(0);
     protected boolean makeRangeAware = false;
 
@@ -51,6 +51,7 @@ abstract class AbstractSSTableSimpleWriter implements Closeable
         this.metadata = metadata;
         this.directory = directory;
         this.columns = columns;
+        this.formatType = SSTableFormat.Type.current(metadata.get().partitioner);
     }
 
     protected void setSSTableFormatType(SSTableFormat.Type type)
@@ -58,6 +58,12 @@ public class Component
         SUMMARY("Summary.db"),
         // table of contents, stores the list of all components for the sstable
         TOC("TOC.txt"),
+        // byte-comparable trie of the partition keys with pointers to their positions in the data or row index file
+        PARTITION_INDEX("Partitions.db"),
+        // column indexes of the partitions spanning several index blocks, for sstables with a partition index
+        ROW_INDEX("Rows.db"),
+        // clustering bounds of the large partitions and value bounds of the columns, to skip the sstable on reads
+        SYNOPSIS("Synopsis.db"),
         // built-in secondary index (may be multiple per sstable)
         SECONDARY_INDEX("SI_.*.db"),
         // custom component, used by e.g. custom compaction strategy
@@ -91,6 +97,9 @@ public class Component
     public final static Component CRC = new Component(Type.CRC);
     public final static Component SUMMARY = new Component(Type.SUMMARY);
     public final static Component TOC = new Component(Type.TOC);
+    public final static Component PARTITION_INDEX = new Component(Type.PARTITION_INDEX);
+    public final static Component ROW_INDEX = new Component(Type.ROW_INDEX);
+    public final static Component SYNOPSIS = new Component(Type.SYNOPSIS);
 
     public final Type type;
     public final String name;
@@ -141,6 +150,9 @@ public class Component
             case CRC:              return Component.CRC;
             case SUMMARY:          return Component.SUMMARY;
             case TOC:              return Component.TOC;
+            case PARTITION_INDEX:  return Component.PARTITION_INDEX;
+            case ROW_INDEX:        return Component.ROW_INDEX;
+            case SYNOPSIS:         return Component.SYNOPSIS;
             case SECONDARY_INDEX:  return new Component(Type.SECONDARY_INDEX, name);
             case CUSTOM:           return new Component(Type.CUSTOM, name);
             default:               throw new AssertionError();
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.IOException;
+
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.DataOutputPlus;
+
+/**
+ * A partition read in full from an sstable, that can be written to another sstable by copying its serialized bytes
+ * rather than by deserializing and re-serializing its content, provided that both sstables use the same format version
+ * and serialization header.
+ * <p>
+ * This is only an optimization: a copyable partition remains a regular iterator over its content.
+ */
+public interface CopyablePartition extends UnfilteredRowIterator
+{
+    /**
+     * The sstable the partition is read from.
+     */
+    public SSTableReader sstable();
+
+    /**
+     * Whether the partition can be copied, that is if it hasn't been iterated yet and its serialized form doesn't
+     * depend on its position in the sstable, as the row index of wide partitions does.
+     */
+    public boolean isCopyable();
+
+    /**
+     * Writes the partition as it is serialized in the data file of its sstable, starting with its key.
+     */
+    public void copyTo(DataOutputPlus out) throws IOException;
+}
@@ -29,6 +29,7 @@ import java.util.concurrent.TimeoutException;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -186,7 +187,9 @@ public class IndexSummaryManager implements IndexSummaryManagerMBean
         for (Keyspace ks : Keyspace.all())
         {
             for (ColumnFamilyStore cfStore: ks.getColumnFamilyStores())
-                result.addAll(cfStore.getLiveSSTables());
+                for (SSTableReader sstable : cfStore.getLiveSSTables())
+                    if (sstable.hasIndexSummary())
+                        result.add(sstable);
         }
 
         return result;
@@ -213,7 +216,8 @@ public class IndexSummaryManager implements IndexSummaryManagerMBean
                 do
                 {
                     View view = cfStore.getTracker().getView();
-                    allSSTables = ImmutableSet.copyOf(view.select(SSTableSet.CANONICAL));
+                    // the sstables of formats without index summary have nothing to redistribute
+                    allSSTables = ImmutableSet.copyOf(Iterables.filter(view.select(SSTableSet.CANONICAL), SSTableReader::hasIndexSummary));
                     nonCompacting = ImmutableSet.copyOf(view.getUncompacting(allSSTables));
                 }
                 while (null == (txn = cfStore.getTracker().tryModify(nonCompacting, OperationType.UNKNOWN)));
@@ -23,7 +23,9 @@ import java.io.IOException;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.RowIndexEntry;
 import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.io.sstable.format.trie.TrieIndexKeyReader;
 import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.io.util.RandomAccessReader;
 import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.utils.AbstractIterator;
@@ -82,20 +84,39 @@ public class KeyIterator extends AbstractIterator<DecoratedKey> implements Close
     private final Descriptor desc;
     private final In in;
     private final IPartitioner partitioner;
+    // the keys of the sstables without primary index, which are read through their partition index
+    private TrieIndexKeyReader trieKeys;
 
     private long keyPosition;
 
     public KeyIterator(Descriptor desc, TableMetadata metadata)
     {
         this.desc = desc;
-        in = new In(new File(desc.filenameFor(Component.PRIMARY_INDEX)));
+        in = desc.getFormat().primaryIndexComponent() == Component.PRIMARY_INDEX
+             ? new In(new File(desc.filenameFor(Component.PRIMARY_INDEX)))
+             : null;
         partitioner = metadata.partitioner;
     }
 
+    @SuppressWarnings("resource")
+    private TrieIndexKeyReader trieKeys() throws IOException
+    {
+        if (trieKeys == null)
+            trieKeys = new TrieIndexKeyReader(desc, partitioner);
+        return trieKeys;
+    }
+
     protected DecoratedKey computeNext()
     {
         try
         {
+            if (in == null)
+            {
+                DecoratedKey key = trieKeys().next();
+                keyPosition = trieKeys.keyPosition();
+                return key == null ? endOfData() : key;
+            }
+
             if (in.isEOF())
                 return endOfData();
 
@@ -112,17 +133,31 @@ public class KeyIterator extends AbstractIterator<DecoratedKey> implements Close
 
     public void close()
     {
-        in.close();
+        if (in != null)
+            in.close();
+        else if (trieKeys != null)
+            FileUtils.closeQuietly(trieKeys);
     }
 
     public long getBytesRead()
     {
+        if (in == null)
+            return Math.max(keyPosition, 0);
         return in.getFilePointer();
     }
 
     public long getTotalBytes()
     {
-        return in.length();
+        if (in != null)
+            return in.length();
+        try
+        {
+            return trieKeys().length();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
     }
 
     public long getKeyPosition()
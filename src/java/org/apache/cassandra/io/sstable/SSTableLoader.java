@@ -90,7 +90,7 @@ public class SSTableLoader implements StreamEventHandler
                                           if (p == null || !p.right.equals(Component.DATA))
                                               return false;
 
-                                          if (!new File(desc.filenameFor(Component.PRIMARY_INDEX)).exists())
+                                          if (!new File(desc.filenameFor(desc.getFormat().primaryIndexComponent())).exists())
                                           {
                                               outputHandler.output(String.format("Skipping file %s because index is missing", name));
                                               return false;
@@ -105,9 +105,9 @@ public class SSTableLoader implements StreamEventHandler
 
                                           Set<Component> components = new HashSet<>();
                                           components.add(Component.DATA);
-                                          components.add(Component.PRIMARY_INDEX);
-                                          if (new File(desc.filenameFor(Component.SUMMARY)).exists())
-                                              components.add(Component.SUMMARY);
+                                          for (Component indexComponent : desc.getFormat().indexComponents())
+                                              if (new File(desc.filenameFor(indexComponent)).exists())
+                                                  components.add(indexComponent);
                                           if (new File(desc.filenameFor(Component.COMPRESSION_INFO)).exists())
                                               components.add(Component.COMPRESSION_INFO);
                                           if (new File(desc.filenameFor(Component.STATS)).exists())
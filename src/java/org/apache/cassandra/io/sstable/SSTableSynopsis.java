@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ClusteringPrefix;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.DeletionTime;
+import org.apache.cassandra.io.util.DataInputPlus;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * A synopsis of the content of an sstable, finer than its {@link org.apache.cassandra.io.sstable.metadata.StatsMetadata},
+ * that is persisted as the {@link Component#SYNOPSIS} component and kept on heap by the readers.
+ * <p>
+ * It holds the clustering bounds of the partitions that are large enough to have a row index, and whether they have
+ * a partition level deletion. Reads can then skip the sstable without looking its partition up in the index when the
+ * queried clusterings are outside the bounds of the partition, even though they are inside those of the sstable.
+ * <p>
+ * Sstables written before the synopsis existed have the {@link #EMPTY} one, which knows nothing about any partition.
+ */
+public class SSTableSynopsis
+{
+    public static final SSTableSynopsis EMPTY = new SSTableSynopsis(Collections.emptyMap());
+
+    public static final Serializer serializer = new Serializer();
+
+    private final Map<ByteBuffer, PartitionBounds> partitions;
+
+    private SSTableSynopsis(Map<ByteBuffer, PartitionBounds> partitions)
+    {
+        this.partitions = partitions;
+    }
+
+    /**
+     * @return the bounds of the partition with the provided key, or {@code null} if the synopsis doesn't know them,
+     * either because the partition isn't in the sstable or because it is too small to have been recorded.
+     */
+    public PartitionBounds partitionBounds(DecoratedKey key)
+    {
+        return partitions.isEmpty() ? null : partitions.get(key.getKey());
+    }
+
+    public int partitionCount()
+    {
+        return partitions.size();
+    }
+
+    /**
+     * Loads the synopsis of the sstable with the provided descriptor.
+     */
+    public static SSTableSynopsis load(Descriptor descriptor) throws IOException
+    {
+        try (RandomAccessReader in = RandomAccessReader.open(new File(descriptor.filenameFor(Component.SYNOPSIS))))
+        {
+            return serializer.deserialize(in);
+        }
+    }
+
+    /**
+     * The clustering bounds of a partition.
+     */
+    public static class PartitionBounds
+    {
+        public final List<ByteBuffer> minClusteringValues;
+        public final List<ByteBuffer> maxClusteringValues;
+        public final boolean hasPartitionDeletion;
+
+        PartitionBounds(List<ByteBuffer> minClusteringValues, List<ByteBuffer> maxClusteringValues, boolean hasPartitionDeletion)
+        {
+            this.minClusteringValues = minClusteringValues;
+            this.maxClusteringValues = maxClusteringValues;
+            this.hasPartitionDeletion = hasPartitionDeletion;
+        }
+    }
+
+    /**
+     * Builds the synopsis of an sstable from the partitions written to it, in order.
+     */
+    public static class Collector
+    {
+        private final boolean hasClusterings;
+        private final long minPartitionSize;
+        private final Map<ByteBuffer, PartitionBounds> partitions = new HashMap<>();
+
+        private ClusteringPrefix first;
+        private ClusteringPrefix last;
+
+        public Collector(TableMetadata metadata)
+        {
+            this.hasClusterings = metadata.comparator.size() > 0;
+            this.minPartitionSize = DatabaseDescriptor.getColumnIndexSize();
+        }
+
+        public void startPartition()
+        {
+            first = null;
+            last = null;
+        }
+
+        /**
+         * Updates the bounds of the current partition with the clustering of its next row or marker.
+         */
+        public void update(ClusteringPrefix clustering)
+        {
+            if (first == null)
+                first = clustering;
+            last = clustering;
+        }
+
+        /**
+         * Records the bounds of the partition that was just written, if it is large enough to be worth it.
+         */
+        public void partitionWritten(DecoratedKey key, DeletionTime partitionLevelDeletion, long partitionSize)
+        {
+            if (hasClusterings && first != null && partitionSize >= minPartitionSize)
+            {
+                List<ByteBuffer> minClusteringValues = values(first);
+                List<ByteBuffer> maxClusteringValues = values(last);
+                if (minClusteringValues != null && maxClusteringValues != null)
+                    partitions.put(ByteBufferUtil.minimalBufferFor(key.getKey()),
+                                   new PartitionBounds(minClusteringValues, maxClusteringValues, !partitionLevelDeletion.isLive()));
+            }
+            startPartition();
+        }
+
+        /**
+         * @return the values of the provided clustering, or {@code null} if some are null, as they can't be bounds.
+         */
+        private static List<ByteBuffer> values(ClusteringPrefix clustering)
+        {
+            ByteBuffer[] values = new ByteBuffer[clustering.size()];
+            for (int i = 0; i < values.length; i++)
+            {
+                ByteBuffer value = clustering.get(i);
+                if (value == null)
+                    return null;
+                values[i] = ByteBufferUtil.minimalBufferFor(value);
+            }
+            return Arrays.asList(values);
+        }
+
+        public SSTableSynopsis build()
+        {
+            return new SSTableSynopsis(new HashMap<>(partitions));
+        }
+    }
+
+    public static class Serializer
+    {
+        public void serialize(SSTableSynopsis synopsis, DataOutputPlus out) throws IOException
+        {
+            out.writeInt(synopsis.partitions.size());
+            for (Map.Entry<ByteBuffer, PartitionBounds> entry : synopsis.partitions.entrySet())
+            {
+                PartitionBounds bounds = entry.getValue();
+                ByteBufferUtil.writeWithShortLength(entry.getKey(), out);
+                out.writeBoolean(bounds.hasPartitionDeletion);
+                serializeValues(bounds.minClusteringValues, out);
+                serializeValues(bounds.maxClusteringValues, out);
+            }
+        }
+
+        public SSTableSynopsis deserialize(DataInputPlus in) throws IOException
+        {
+            int partitionCount = in.readInt();
+            Map<ByteBuffer, PartitionBounds> partitions = new HashMap<>(partitionCount);
+            for (int i = 0; i < partitionCount; i++)
+            {
+                ByteBuffer key = ByteBufferUtil.readWithShortLength(in);
+                boolean hasPartitionDeletion = in.readBoolean();
+                List<ByteBuffer> minClusteringValues = deserializeValues(in);
+                List<ByteBuffer> maxClusteringValues = deserializeValues(in);
+                partitions.put(key, new PartitionBounds(minClusteringValues, maxClusteringValues, hasPartitionDeletion));
+            }
+
+            return partitions.isEmpty() ? EMPTY : new SSTableSynopsis(partitions);
+        }
+
+        private static void serializeValues(List<ByteBuffer> values, DataOutputPlus out) throws IOException
+        {
+            out.writeInt(values.size());
+            for (ByteBuffer value : values)
+                ByteBufferUtil.writeWithShortLength(value, out);
+        }
+
+        private static List<ByteBuffer> deserializeValues(DataInputPlus in) throws IOException
+        {
+            int size = in.readInt();
+            ByteBuffer[] values = new ByteBuffer[size];
+            for (int i = 0; i < size; i++)
+                values[i] = ByteBufferUtil.readWithShortLength(in);
+            return Arrays.asList(values);
+        }
+    }
+}
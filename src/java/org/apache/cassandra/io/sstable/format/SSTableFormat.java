@@ -17,12 +17,20 @@
  */
 package org.apache.cassandra.io.sstable.format;
 
+import java.util.Arrays;
+import java.util.Set;
+
 import com.google.common.base.CharMatcher;
 
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.db.RowIndexEntry;
 import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.format.big.BigFormat;
+import org.apache.cassandra.io.sstable.format.trie.TrieIndexFormat;
 
 /**
  * Provides the accessors to data on disk.
@@ -40,17 +48,54 @@ public interface SSTableFormat
 
     RowIndexEntry.IndexSerializer<?> getIndexSerializer(TableMetadata metadata, Version version, SerializationHeader header);
 
+    /**
+     * @return the index component the sstables of this format cannot be read without
+     */
+    Component primaryIndexComponent();
+
+    /**
+     * @return the components holding the partition and row indexes of the sstables of this format
+     */
+    Set<Component> indexComponents();
+
+    /**
+     * @return whether the sstables of this format can hold the partitions of the given partitioner
+     */
+    boolean supports(IPartitioner partitioner);
+
     public static enum Type
     {
         //The original sstable format
-        BIG("big", BigFormat.instance);
+        BIG("big", BigFormat.instance),
+        //Partition and row indexes stored as byte-comparable tries
+        BTI("bti", TrieIndexFormat.instance);
 
         public final SSTableFormat info;
         public final String name;
 
+        /**
+         * @return the format of the new sstables, as configured by {@code sstable_format}
+         */
         public static Type current()
         {
-            return BIG;
+            String name = DatabaseDescriptor.getSSTableFormat();
+            for (Type type : Type.values())
+            {
+                if (type.name.equals(name))
+                    return type;
+            }
+
+            throw new ConfigurationException(String.format("Unknown sstable_format %s, should be one of %s", name, Arrays.toString(Type.values())));
+        }
+
+        /**
+         * @return the format of the new sstables of tables using the given partitioner: the configured format if
+         * it supports the partitioner, the original format otherwise
+         */
+        public static Type current(IPartitioner partitioner)
+        {
+            Type current = current();
+            return current.info.supports(partitioner) ? current : BIG;
         }
 
         private Type(String name, SSTableFormat info)
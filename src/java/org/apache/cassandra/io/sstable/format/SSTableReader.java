@@ -42,6 +42,7 @@ import com.clearspring.analytics.stream.cardinality.ICardinality;
 import org.apache.cassandra.cache.ChunkCache;
 import org.apache.cassandra.cache.InstrumentingCache;
 import org.apache.cassandra.cache.KeyCacheKey;
+import org.apache.cassandra.cache.OffHeapKeyCache;
 import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
 import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.concurrent.ScheduledExecutors;
@@ -75,6 +76,7 @@ import org.apache.cassandra.service.CacheService;
 import org.apache.cassandra.utils.*;
 import org.apache.cassandra.utils.concurrent.OpOrder;
 import org.apache.cassandra.utils.concurrent.Ref;
+import org.apache.cassandra.utils.concurrent.SharedCloseable;
 import org.apache.cassandra.utils.concurrent.SelfRefCounted;
 import org.apache.cassandra.utils.BloomFilterSerializer;
 
@@ -208,6 +210,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
     protected FileHandle dfile;
     protected IndexSummary indexSummary;
     protected IFilter bf;
+    protected volatile SSTableSynopsis synopsis = SSTableSynopsis.EMPTY;
 
     protected final RowIndexEntry.IndexSerializer rowIndexEntrySerializer;
 
@@ -401,7 +404,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
     {
         // Minimum components without which we can't do anything
         assert components.contains(Component.DATA) : "Data component is missing for sstable " + descriptor;
-        assert components.contains(Component.PRIMARY_INDEX) : "Primary index component is missing for sstable " + descriptor;
+        assert components.contains(descriptor.getFormat().primaryIndexComponent()) : "Primary index component is missing for sstable " + descriptor;
 
         EnumSet<MetadataType> types = EnumSet.of(MetadataType.VALIDATION, MetadataType.STATS, MetadataType.HEADER);
         Map<MetadataType, MetadataComponent> sstableMetadata;
@@ -449,32 +452,41 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
             throw new IllegalStateException(e);
         }
 
-        try(FileHandle.Builder ibuilder = new FileHandle.Builder(sstable.descriptor.filenameFor(Component.PRIMARY_INDEX))
+        sstable.loadForBatch();
+        sstable.setup(false);
+        return sstable;
+    }
+
+    /**
+     * Loads the files and the index summary of an sstable opened by {@link #openForBatch}, without any bloom filter.
+     */
+    protected void loadForBatch()
+    {
+        try(FileHandle.Builder ibuilder = new FileHandle.Builder(descriptor.filenameFor(Component.PRIMARY_INDEX))
                                                      .mmapped(DatabaseDescriptor.getIndexAccessMode() == Config.DiskAccessMode.mmap)
                                                      .withChunkCache(ChunkCache.instance);
-            FileHandle.Builder dbuilder = new FileHandle.Builder(sstable.descriptor.filenameFor(Component.DATA)).compressed(sstable.compression)
+            FileHandle.Builder dbuilder = new FileHandle.Builder(descriptor.filenameFor(Component.DATA)).compressed(compression)
                                                      .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap)
+                                                     .readAheadChunks(optimizationStrategy.readAheadChunks())
                                                      .withChunkCache(ChunkCache.instance))
         {
-            if (!sstable.loadSummary())
+            if (!loadSummary())
             {
                 try
                 {
-                    sstable.buildSummary(false, false, Downsampling.BASE_SAMPLING_LEVEL);
+                    buildSummary(false, false, Downsampling.BASE_SAMPLING_LEVEL);
                 }
                 catch(IOException e)
                 {
-                    throw new CorruptSSTableException(e, sstable.getFilename());
+                    throw new CorruptSSTableException(e, descriptor.filenameFor(Component.PRIMARY_INDEX));
                 }
             }
             long indexFileLength = new File(descriptor.filenameFor(Component.PRIMARY_INDEX)).length();
-            int dataBufferSize = sstable.optimizationStrategy.bufferSize(statsMetadata.estimatedPartitionSize.percentile(DatabaseDescriptor.getDiskOptimizationEstimatePercentile()));
-            int indexBufferSize = sstable.optimizationStrategy.bufferSize(indexFileLength / sstable.indexSummary.size());
-            sstable.ifile = ibuilder.bufferSize(indexBufferSize).complete();
-            sstable.dfile = dbuilder.bufferSize(dataBufferSize).complete();
-            sstable.bf = FilterFactory.AlwaysPresent;
-            sstable.setup(false);
-            return sstable;
+            int dataBufferSize = optimizationStrategy.bufferSize(sstableMetadata.estimatedPartitionSize.percentile(DatabaseDescriptor.getDiskOptimizationEstimatePercentile()));
+            int indexBufferSize = optimizationStrategy.bufferSize(indexFileLength / indexSummary.size());
+            ifile = ibuilder.bufferSize(indexBufferSize).complete();
+            dfile = dbuilder.bufferSize(dataBufferSize).complete();
+            bf = FilterFactory.AlwaysPresent;
         }
     }
 
@@ -497,7 +509,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
     {
         // Minimum components without which we can't do anything
         assert components.contains(Component.DATA) : "Data component is missing for sstable " + descriptor;
-        assert !validate || components.contains(Component.PRIMARY_INDEX) : "Primary index component is missing for sstable " + descriptor;
+        assert !validate || components.contains(descriptor.getFormat().primaryIndexComponent()) : "Primary index component is missing for sstable " + descriptor;
 
         // For the 3.0+ sstable format, the (misnomed) stats component hold the serialization header which we need to deserialize the sstable content
         assert components.contains(Component.STATS) : "Stats component is missing for sstable " + descriptor;
@@ -554,6 +566,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
             // load index and filter
             long start = System.nanoTime();
             sstable.load(validationMetadata, isOffline);
+            sstable.loadSynopsis();
             logger.trace("INDEX LOAD TIME for {}: {} ms.", descriptor, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
             sstable.setup(!isOffline); // Don't track hotness if we're offline.
@@ -724,7 +737,14 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
 
         final ColumnFamilyStore cfs = Schema.instance.getColumnFamilyStoreInstance(metadata().id);
         if (cfs != null)
+        {
             setCrcCheckChance(cfs.getCrcCheckChance());
+            if (ChunkCache.instance != null)
+            {
+                ChunkCache.instance.setTable(dfile, metadata(), cfs.metric);
+                ChunkCache.instance.setTable(ifile, metadata(), cfs.metric);
+            }
+        }
     }
 
     /**
@@ -733,7 +753,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
      * @param isOffline Whether the SSTable is being loaded by an offline tool (sstabledump, scrub, etc)
      * @throws IOException
      */
-    private void load(ValidationMetadata validation, boolean isOffline) throws IOException
+    protected void load(ValidationMetadata validation, boolean isOffline) throws IOException
     {
         if (metadata().params.bloomFilterFpChance == 1.0)
         {
@@ -762,13 +782,22 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         }
     }
 
+    /**
+     * Loads the synopsis from the Synopsis.db file, if the sstable has one.
+     */
+    protected void loadSynopsis() throws IOException
+    {
+        if (components.contains(Component.SYNOPSIS))
+            synopsis = SSTableSynopsis.load(descriptor);
+    }
+
     /**
      * Load bloom filter from Filter.db file.
      *
      * @throws IOException
      * @param oldBfFormat
      */
-    private void loadBloomFilter(boolean oldBfFormat) throws IOException
+    protected void loadBloomFilter(boolean oldBfFormat) throws IOException
     {
         try (DataInputStream stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(descriptor.filenameFor(Component.FILTER))))))
         {
@@ -789,6 +818,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                                                      .withChunkCache(ChunkCache.instance);
             FileHandle.Builder dbuilder = new FileHandle.Builder(descriptor.filenameFor(Component.DATA)).compressed(compression)
                                                      .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap)
+                                                     .readAheadChunks(optimizationStrategy.readAheadChunks())
                                                      .withChunkCache(ChunkCache.instance))
         {
             boolean summaryLoaded = loadSummary();
@@ -861,7 +891,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                     : estimateRowsFromIndex(primaryIndex); // statistics is supposed to be optional
 
             if (recreateBloomFilter)
-                bf = FilterFactory.getFilter(estimatedKeys, metadata().params.bloomFilterFpChance);
+                bf = FilterFactory.getFilter(estimatedKeys, metadata().params.bloomFilterFpChance, metadata().params.compaction.blockedBloomFilter());
 
             try (IndexSummaryBuilder summaryBuilder = summaryLoaded ? null : new IndexSummaryBuilder(estimatedKeys, metadata().params.minIndexInterval, samplingLevel))
             {
@@ -1064,7 +1094,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
      *
      * @return the cloned reader. That reader is set as a replacement by the method.
      */
-    private SSTableReader cloneAndReplace(DecoratedKey newFirst, OpenReason reason)
+    protected SSTableReader cloneAndReplace(DecoratedKey newFirst, OpenReason reason)
     {
         return cloneAndReplace(newFirst, reason, indexSummary.sharedCopy());
     }
@@ -1094,6 +1124,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                                                  header);
         replacement.first = newFirst;
         replacement.last = last;
+        replacement.synopsis = synopsis;
         replacement.isSuspect.set(isSuspect.get());
         return replacement;
     }
@@ -1145,7 +1176,8 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         {
             dfile.dropPageCache(dfilePosition);
 
-            if (ifile != null)
+            // a position of 0 leaves nothing to drop, as dropping the cache up to 0 drops it for the whole file
+            if (ifile != null && ifilePosition > 0)
                 ifile.dropPageCache(ifilePosition);
             if (andThen != null)
                 andThen.run();
@@ -1243,7 +1275,15 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
 
     public long getIndexSummaryOffHeapSize()
     {
-        return indexSummary.getOffHeapSize();
+        return indexSummary == null ? 0 : indexSummary.getOffHeapSize();
+    }
+
+    /**
+     * @return whether partitions are looked up through an index summary, which is not the case of all sstable formats
+     */
+    public boolean hasIndexSummary()
+    {
+        return indexSummary != null;
     }
 
     public int getMinIndexInterval()
@@ -1340,6 +1380,11 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         bf = FilterFactory.AlwaysPresent;
     }
 
+    public SSTableSynopsis getSynopsis()
+    {
+        return synopsis;
+    }
+
     public IFilter getBloomFilter()
     {
         return bf;
@@ -1383,6 +1428,39 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return Math.max(1, estimatedKeys);
     }
 
+    /**
+     * @param bounds token bounds that, unlike ranges, include the keys of their left token, and don't wrap around
+     * the ring when both tokens are equal.
+     * @return An estimate of the number of keys for given bounds in this SSTable.
+     */
+    public long estimatedKeysForBounds(Collection<Bounds<Token>> bounds)
+    {
+        // the sample indexes of each bounds, merged so that overlapping bounds aren't counted twice
+        List<IndexesBounds> sampleIndexes = new ArrayList<>(bounds.size());
+        for (Bounds<Token> bound : bounds)
+        {
+            int left = -(indexSummary.binarySearch(bound.left.minKeyBound()) + 1);
+            int right = -(indexSummary.binarySearch(bound.right.maxKeyBound()) + 1) - 1;
+            if (left <= right)
+                sampleIndexes.add(new IndexesBounds(left, right));
+        }
+        sampleIndexes.sort(Comparator.comparingInt(b -> b.lowerPosition));
+
+        long sampleKeyCount = 0;
+        int covered = -1;
+        for (IndexesBounds sampleIndexRange : sampleIndexes)
+        {
+            int lower = Math.max(sampleIndexRange.lowerPosition, covered + 1);
+            if (lower <= sampleIndexRange.upperPosition)
+                sampleKeyCount += sampleIndexRange.upperPosition - lower + 1;
+            covered = Math.max(covered, sampleIndexRange.upperPosition);
+        }
+
+        // adjust for the current sampling level: (BSL / SL) * index_interval_at_full_sampling
+        long estimatedKeys = sampleKeyCount * ((long) Downsampling.BASE_SAMPLING_LEVEL * indexSummary.getMinIndexInterval()) / indexSummary.getSamplingLevel();
+        return Math.max(1, estimatedKeys);
+    }
+
     /**
      * Returns the number of entries in the IndexSummary.  At full sampling, this is approximately 1/INDEX_INTERVALth of
      * the keys in this SSTable.
@@ -1544,6 +1622,12 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         if (!caching.cacheKeys() || keyCache == null || keyCache.getCapacity() == 0)
             return;
 
+        if (keyCache.getCache() instanceof OffHeapKeyCache)
+        {
+            ((OffHeapKeyCache) keyCache.getCache()).put(metadata(), descriptor, key, info);
+            return;
+        }
+
         KeyCacheKey cacheKey = new KeyCacheKey(metadata(), descriptor, key.getKey());
         logger.trace("Adding cache entry for {} -> {}", cacheKey, info);
         keyCache.put(cacheKey, info);
@@ -1551,9 +1635,26 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
 
     public RowIndexEntry getCachedPosition(DecoratedKey key, boolean updateStats)
     {
-        if (isKeyCacheEnabled())
-            return getCachedPosition(new KeyCacheKey(metadata(), descriptor, key.getKey()), updateStats);
-        return null;
+        if (!isKeyCacheEnabled())
+            return null;
+
+        if (keyCache.getCache() instanceof OffHeapKeyCache)
+        {
+            // looks the key up without allocating a KeyCacheKey
+            RowIndexEntry cachedEntry = ((OffHeapKeyCache) keyCache.getCache()).get(descriptor, key);
+            if (updateStats)
+            {
+                keyCache.recordLookup(cachedEntry != null);
+                keyCacheRequest.incrementAndGet();
+                if (cachedEntry != null)
+                {
+                    keyCacheHit.incrementAndGet();
+                    bloomFilterTracker.addTruePositive();
+                }
+            }
+            return cachedEntry;
+        }
+        return getCachedPosition(new KeyCacheKey(metadata(), descriptor, key.getKey()), updateStats);
     }
 
     protected RowIndexEntry getCachedPosition(KeyCacheKey unifiedKey, boolean updateStats)
@@ -2138,7 +2239,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return selfRef.ref();
     }
 
-    void setup(boolean trackHotness)
+    protected void setup(boolean trackHotness)
     {
         tidy.setup(this, trackHotness);
         this.readMeter = tidy.global.readMeter;
@@ -2155,10 +2256,21 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         identities.add(this);
         identities.add(tidy.globalRef);
         dfile.addTo(identities);
-        ifile.addTo(identities);
+        if (ifile != null)
+            ifile.addTo(identities);
         bf.addTo(identities);
-        indexSummary.addTo(identities);
+        if (indexSummary != null)
+            indexSummary.addTo(identities);
+        for (SharedCloseable resource : otherSharedResources())
+            resource.addTo(identities);
+    }
 
+    /**
+     * @return the resources specific to the format of this reader, which are closed along with it
+     */
+    protected List<? extends SharedCloseable> otherSharedResources()
+    {
+        return Collections.emptyList();
     }
 
     /**
@@ -2179,6 +2291,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
 
         private FileHandle dfile;
         private FileHandle ifile;
+        private List<? extends SharedCloseable> otherResources;
         private Runnable runOnClose;
         private boolean isReplaced = false;
 
@@ -2196,6 +2309,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
             this.summary = reader.indexSummary;
             this.dfile = reader.dfile;
             this.ifile = reader.ifile;
+            this.otherResources = reader.otherSharedResources();
             // get a new reference to the shared descriptor-type tidy
             this.globalRef = GlobalTidy.get(reader);
             this.global = globalRef.get();
@@ -2251,6 +2365,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
                         dfile.close();
                     if (ifile != null)
                         ifile.close();
+                    Throwables.maybeFail(Throwables.close(null, otherResources));
                     globalRef.release();
 
                     if (logger.isTraceEnabled())
@@ -18,6 +18,8 @@
 
 package org.apache.cassandra.io.sstable.format;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -35,11 +37,14 @@ import org.apache.cassandra.io.FSWriteError;
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.SSTableSynopsis;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
 import org.apache.cassandra.io.sstable.metadata.MetadataComponent;
 import org.apache.cassandra.io.sstable.metadata.MetadataType;
 import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
 import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.io.util.SequentialWriterOption;
 import org.apache.cassandra.schema.Schema;
 import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.schema.TableMetadataRef;
@@ -59,6 +64,7 @@ public abstract class SSTableWriter extends SSTable implements Transactional
     protected long maxDataAge = -1;
     protected final long keyCount;
     protected final MetadataCollector metadataCollector;
+    protected final SSTableSynopsis.Collector synopsisCollector;
     protected final RowIndexEntry.IndexSerializer rowIndexEntrySerializer;
     protected final SerializationHeader header;
     protected final TransactionalProxy txnProxy = txnProxy();
@@ -84,12 +90,13 @@ public abstract class SSTableWriter extends SSTable implements Transactional
                             SerializationHeader header,
                             Collection<SSTableFlushObserver> observers)
     {
-        super(descriptor, components(metadata.get()), metadata, DatabaseDescriptor.getDiskOptimizationStrategy());
+        super(descriptor, components(descriptor, metadata.get()), metadata, DatabaseDescriptor.getDiskOptimizationStrategy());
         this.keyCount = keyCount;
         this.repairedAt = repairedAt;
         this.pendingRepair = pendingRepair;
         this.isTransient = isTransient;
         this.metadataCollector = metadataCollector;
+        this.synopsisCollector = new SSTableSynopsis.Collector(metadata.get());
         this.header = header;
         this.rowIndexEntrySerializer = descriptor.version.getSSTableFormat().getIndexSerializer(metadata.get(), descriptor.version, header);
         this.observers = observers == null ? Collections.emptySet() : observers;
@@ -152,14 +159,14 @@ public abstract class SSTableWriter extends SSTable implements Transactional
         return create(descriptor, keyCount, repairedAt, pendingRepair, isTransient, 0, header, indexes, lifecycleNewTracker);
     }
 
-    private static Set<Component> components(TableMetadata metadata)
+    private static Set<Component> components(Descriptor descriptor, TableMetadata metadata)
     {
         Set<Component> components = new HashSet<Component>(Arrays.asList(Component.DATA,
-                Component.PRIMARY_INDEX,
                 Component.STATS,
-                Component.SUMMARY,
                 Component.TOC,
-                Component.DIGEST));
+                Component.DIGEST,
+                Component.SYNOPSIS));
+        components.addAll(descriptor.getFormat().indexComponents());
 
         if (metadata.params.bloomFilterFpChance < 1.0)
             components.add(Component.FILTER);
@@ -325,6 +332,29 @@ public abstract class SSTableWriter extends SSTable implements Transactional
         return (StatsMetadata) finalizeMetadata().get(MetadataType.STATS);
     }
 
+    protected void writeSynopsis()
+    {
+        File file = new File(descriptor.filenameFor(Component.SYNOPSIS));
+        try (SequentialWriter out = new SequentialWriter(file, SequentialWriterOption.DEFAULT))
+        {
+            SSTableSynopsis.serializer.serialize(synopsisCollector.build(), out);
+            out.finish();
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, file.getPath());
+        }
+    }
+
+    /**
+     * Sets the synopsis of the partitions written so far on a reader opened on the sstable being written.
+     */
+    protected SSTableReader withSynopsis(SSTableReader sstable)
+    {
+        sstable.synopsis = synopsisCollector.build();
+        return sstable;
+    }
+
     public static void rename(Descriptor tmpdesc, Descriptor newdesc, Set<Component> components)
     {
         for (Component component : Sets.difference(components, Sets.newHashSet(Component.DATA, Component.SUMMARY)))
@@ -22,7 +22,9 @@ import java.util.Set;
 import java.util.UUID;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 
+import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.io.sstable.SSTable;
 import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.schema.TableMetadataRef;
@@ -45,6 +47,7 @@ public class BigFormat implements SSTableFormat
     public static final Version latestVersion = new BigVersion(BigVersion.current_version);
     private static final SSTableReader.Factory readerFactory = new ReaderFactory();
     private static final SSTableWriter.Factory writerFactory = new WriterFactory();
+    private static final Set<Component> INDEX_COMPONENTS = ImmutableSet.of(Component.PRIMARY_INDEX, Component.SUMMARY);
 
     private BigFormat()
     {
@@ -81,6 +84,24 @@ public class BigFormat implements SSTableFormat
         return new RowIndexEntry.Serializer(version, header);
     }
 
+    @Override
+    public Component primaryIndexComponent()
+    {
+        return Component.PRIMARY_INDEX;
+    }
+
+    @Override
+    public Set<Component> indexComponents()
+    {
+        return INDEX_COMPONENTS;
+    }
+
+    @Override
+    public boolean supports(IPartitioner partitioner)
+    {
+        return true;
+    }
+
     static class WriterFactory extends SSTableWriter.Factory
     {
         @Override
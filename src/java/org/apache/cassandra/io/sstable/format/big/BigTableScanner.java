@@ -36,11 +36,13 @@ import org.apache.cassandra.dht.AbstractBounds.Boundary;
 import org.apache.cassandra.dht.Bounds;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.CopyablePartition;
 import org.apache.cassandra.io.sstable.CorruptSSTableException;
 import org.apache.cassandra.io.sstable.ISSTableScanner;
 import org.apache.cassandra.io.sstable.SSTableIdentityIterator;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.format.SSTableReadsListener;
+import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.io.util.RandomAccessReader;
 import org.apache.cassandra.utils.ByteBufferUtil;
@@ -51,6 +53,8 @@ import static org.apache.cassandra.dht.AbstractBounds.minRight;
 
 public class BigTableScanner implements ISSTableScanner
 {
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
     protected final RandomAccessReader dfile;
     protected final RandomAccessReader ifile;
@@ -65,6 +69,7 @@ public class BigTableScanner implements ISSTableScanner
     private final SSTableReadsListener listener;
     private long startScan = -1;
     private long bytesScanned = 0;
+    private byte[] copyBuffer;
 
     protected Iterator<UnfilteredRowIterator> iterator;
 
@@ -117,7 +122,7 @@ public class BigTableScanner implements ISSTableScanner
         this.listener = listener;
     }
 
-    private static List<AbstractBounds<PartitionPosition>> makeBounds(SSTableReader sstable, Collection<Range<Token>> tokenRanges)
+    public static List<AbstractBounds<PartitionPosition>> makeBounds(SSTableReader sstable, Collection<Range<Token>> tokenRanges)
     {
         List<AbstractBounds<PartitionPosition>> boundsList = new ArrayList<>(tokenRanges.size());
         for (Range<Token> range : Range.normalize(tokenRanges))
@@ -125,14 +130,14 @@ public class BigTableScanner implements ISSTableScanner
         return boundsList;
     }
 
-    private static List<AbstractBounds<PartitionPosition>> makeBounds(SSTableReader sstable, DataRange dataRange)
+    public static List<AbstractBounds<PartitionPosition>> makeBounds(SSTableReader sstable, DataRange dataRange)
     {
         List<AbstractBounds<PartitionPosition>> boundsList = new ArrayList<>(2);
         addRange(sstable, dataRange.keyRange(), boundsList);
         return boundsList;
     }
 
-    private static AbstractBounds<PartitionPosition> fullRange(SSTableReader sstable)
+    public static AbstractBounds<PartitionPosition> fullRange(SSTableReader sstable)
     {
         return new Bounds<PartitionPosition>(sstable.first, sstable.last);
     }
@@ -285,6 +290,7 @@ public class BigTableScanner implements ISSTableScanner
         private RowIndexEntry nextEntry;
         private DecoratedKey currentKey;
         private RowIndexEntry currentEntry;
+        private long currentEnd;
 
         protected UnfilteredRowIterator computeNext()
         {
@@ -323,12 +329,14 @@ public class BigTableScanner implements ISSTableScanner
                 {
                     nextEntry = null;
                     nextKey = null;
+                    currentEnd = dfile.length();
                 }
                 else
                 {
                     // we need the position of the start of the next key, regardless of whether it falls in the current range
                     nextKey = sstable.decorateKey(ByteBufferUtil.readWithShortLength(ifile));
                     nextEntry = rowIndexEntrySerializer.deserialize(ifile, ifile.getFilePointer());
+                    currentEnd = nextEntry.position;
 
                     if (!currentRange.contains(nextKey))
                     {
@@ -342,38 +350,91 @@ public class BigTableScanner implements ISSTableScanner
                  * file unless we're explicitely asked to. This is important
                  * for PartitionRangeReadCommand#checkCacheFilter.
                  */
-                return new LazilyInitializedUnfilteredRowIterator(currentKey)
+                return new PartitionIterator(currentKey, currentEntry, currentEnd);
+            }
+            catch (CorruptSSTableException | IOException e)
+            {
+                sstable.markSuspect();
+                throw new CorruptSSTableException(e, sstable.getFilename());
+            }
+        }
+    }
+
+    /**
+     * A partition of the scanned sstable, only read from the data file once it is iterated, or copied.
+     */
+    private class PartitionIterator extends LazilyInitializedUnfilteredRowIterator implements CopyablePartition
+    {
+        private final RowIndexEntry entry;
+        private final long end;
+
+        private PartitionIterator(DecoratedKey key, RowIndexEntry entry, long end)
+        {
+            super(key);
+            this.entry = entry;
+            this.end = end;
+        }
+
+        protected UnfilteredRowIterator initializeIterator()
+        {
+
+            if (startScan != -1)
+                bytesScanned += dfile.getFilePointer() - startScan;
+
+            try
+            {
+                if (dataRange == null)
                 {
-                    protected UnfilteredRowIterator initializeIterator()
-                    {
+                    dfile.seek(entry.position);
+                    startScan = dfile.getFilePointer();
+                    ByteBufferUtil.skipShortLength(dfile); // key
+                    return SSTableIdentityIterator.create(sstable, dfile, partitionKey());
+                }
+                else
+                {
+                    startScan = dfile.getFilePointer();
+                }
 
-                        if (startScan != -1)
-                            bytesScanned += dfile.getFilePointer() - startScan;
+                ClusteringIndexFilter filter = dataRange.clusteringIndexFilter(partitionKey());
+                return sstable.iterator(dfile, partitionKey(), entry, filter.getSlices(BigTableScanner.this.metadata()), columns, filter.isReversed());
+            }
+            catch (CorruptSSTableException | IOException e)
+            {
+                sstable.markSuspect();
+                throw new CorruptSSTableException(e, sstable.getFilename());
+            }
+        }
 
-                        try
-                        {
-                            if (dataRange == null)
-                            {
-                                dfile.seek(currentEntry.position);
-                                startScan = dfile.getFilePointer();
-                                ByteBufferUtil.skipShortLength(dfile); // key
-                                return SSTableIdentityIterator.create(sstable, dfile, partitionKey());
-                            }
-                            else
-                            {
-                                startScan = dfile.getFilePointer();
-                            }
-
-                            ClusteringIndexFilter filter = dataRange.clusteringIndexFilter(partitionKey());
-                            return sstable.iterator(dfile, partitionKey(), currentEntry, filter.getSlices(BigTableScanner.this.metadata()), columns, filter.isReversed());
-                        }
-                        catch (CorruptSSTableException | IOException e)
-                        {
-                            sstable.markSuspect();
-                            throw new CorruptSSTableException(e, sstable.getFilename());
-                        }
-                    }
-                };
+        public SSTableReader sstable()
+        {
+            return sstable;
+        }
+
+        public boolean isCopyable()
+        {
+            // the index entries of wide partitions hold the positions of their index blocks in the data file
+            return dataRange == null && !entry.isIndexed() && !initialized();
+        }
+
+        public void copyTo(DataOutputPlus out) throws IOException
+        {
+            assert isCopyable();
+            if (startScan != -1)
+                bytesScanned += dfile.getFilePointer() - startScan;
+
+            try
+            {
+                dfile.seek(entry.position);
+                startScan = entry.position;
+                if (copyBuffer == null)
+                    copyBuffer = new byte[COPY_BUFFER_SIZE];
+                for (long remaining = end - entry.position; remaining > 0; )
+                {
+                    int length = (int) Math.min(remaining, copyBuffer.length);
+                    dfile.readFully(copyBuffer, 0, length);
+                    out.write(copyBuffer, 0, length);
+                    remaining -= length;
+                }
             }
             catch (CorruptSSTableException | IOException e)
             {
@@ -57,6 +57,7 @@ public class BigTableWriter extends SSTableWriter
     private DecoratedKey lastWrittenKey;
     private DataPosition dataMark;
     private long lastEarlyOpenLength = 0;
+    private final Set<Descriptor> copiedFrom = new HashSet<>();
     private final Optional<ChunkCache> chunkCache = Optional.ofNullable(ChunkCache.instance);
 
     private final SequentialWriterOption writerOption = SequentialWriterOption.newBuilder()
@@ -95,7 +96,8 @@ public class BigTableWriter extends SSTableWriter
                     writerOption);
         }
         dbuilder = new FileHandle.Builder(descriptor.filenameFor(Component.DATA)).compressed(compression)
-                                              .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap);
+                                              .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap)
+                                              .readAheadChunks(optimizationStrategy.readAheadChunks());
         chunkCache.ifPresent(dbuilder::withChunkCache);
         iwriter = new IndexWriter(keyCount);
 
@@ -157,6 +159,9 @@ public class BigTableWriter extends SSTableWriter
             return null;
         }
 
+        if (iterator instanceof CopyablePartition && canCopy((CopyablePartition) iterator))
+            return copy((CopyablePartition) iterator);
+
         if (iterator.isEmpty())
             return null;
 
@@ -166,7 +171,7 @@ public class BigTableWriter extends SSTableWriter
         //Reuse the writer for each row
         columnIndexWriter.reset();
 
-        try (UnfilteredRowIterator collecting = Transformation.apply(iterator, new StatsCollector(metadataCollector)))
+        try (UnfilteredRowIterator collecting = Transformation.apply(iterator, new StatsCollector(metadataCollector, synopsisCollector)))
         {
             columnIndexWriter.buildRowIndex(collecting);
 
@@ -187,6 +192,7 @@ public class BigTableWriter extends SSTableWriter
             long rowSize = endPosition - startPosition;
             maybeLogLargePartitionWarning(key, rowSize);
             metadataCollector.addPartitionSizeInBytes(rowSize);
+            synopsisCollector.partitionWritten(key, collecting.partitionLevelDeletion(), rowSize);
             afterAppend(key, endPosition, entry, columnIndexWriter.buffer());
             return entry;
         }
@@ -196,6 +202,54 @@ public class BigTableWriter extends SSTableWriter
         }
     }
 
+    /**
+     * Whether the provided partition can be copied to this sstable as it is serialized in its own sstable.
+     * <p>
+     * The stats of the copied partitions are those of their whole sstable, which is fine for the min and max values
+     * but not for the tombstone drop times: those of the partitions of the sstable that aren't copied would be counted
+     * twice. So only the partitions of sstables without tombstones nor expiring cells are copied.
+     */
+    private boolean canCopy(CopyablePartition partition)
+    {
+        SSTableReader source = partition.sstable();
+        return partition.isCopyable()
+               && observers.isEmpty()
+               && source.descriptor.version.equals(descriptor.version)
+               && source.header.hasSameEncoding(header)
+               && source.getSSTableMetadata().estimatedTombstoneDropTime.size() == 0;
+    }
+
+    /**
+     * Appends a partition by copying it as it is serialized in its sstable. The stats of the copied partitions are
+     * those of their sstables, as their content is not deserialized.
+     */
+    private RowIndexEntry copy(CopyablePartition partition)
+    {
+        DecoratedKey key = partition.partitionKey();
+        long startPosition = beforeAppend(key);
+        try
+        {
+            partition.copyTo(dataFile);
+
+            StatsMetadata sourceStats = partition.sstable().getSSTableMetadata();
+            if (copiedFrom.add(partition.sstable().descriptor))
+                metadataCollector.update(sourceStats);
+
+            // partitions are only copied if they have no row index, so their index entry is just their position
+            RowIndexEntry entry = new RowIndexEntry<>(startPosition);
+            long endPosition = dataFile.position();
+            long rowSize = endPosition - startPosition;
+            maybeLogLargePartitionWarning(key, rowSize);
+            metadataCollector.updateCopiedPartition(rowSize, sourceStats);
+            afterAppend(key, endPosition, entry, ByteBufferUtil.EMPTY_BYTE_BUFFER);
+            return entry;
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, dataFile.getPath());
+        }
+    }
+
     private RowIndexEntry.IndexSerializer<IndexInfo> getRowIndexEntrySerializer()
     {
         return (RowIndexEntry.IndexSerializer<IndexInfo>) rowIndexEntrySerializer;
@@ -210,14 +264,20 @@ public class BigTableWriter extends SSTableWriter
         }
     }
 
-    private static class StatsCollector extends Transformation
+    /**
+     * Collects the statistics of the partitions written to an sstable, whatever its format.
+     */
+    public static class StatsCollector extends Transformation
     {
         private final MetadataCollector collector;
+        private final SSTableSynopsis.Collector synopsis;
         private int cellCount;
 
-        StatsCollector(MetadataCollector collector)
+        public StatsCollector(MetadataCollector collector, SSTableSynopsis.Collector synopsis)
         {
             this.collector = collector;
+            this.synopsis = synopsis;
+            synopsis.startPartition();
         }
 
         @Override
@@ -232,6 +292,7 @@ public class BigTableWriter extends SSTableWriter
         public Row applyToRow(Row row)
         {
             collector.updateClusteringValues(row.clustering());
+            synopsis.update(row.clustering());
             cellCount += Rows.collectStats(row, collector);
             return row;
         }
@@ -240,6 +301,7 @@ public class BigTableWriter extends SSTableWriter
         public RangeTombstoneMarker applyToMarker(RangeTombstoneMarker marker)
         {
             collector.updateClusteringValues(marker.clustering());
+            synopsis.update(marker.clustering());
             if (marker.isBoundary())
             {
                 RangeTombstoneBoundaryMarker bm = (RangeTombstoneBoundaryMarker)marker;
@@ -346,7 +408,7 @@ public class BigTableWriter extends SSTableWriter
                                                            header);
         sstable.first = getMinimalKey(first);
         sstable.last = getMinimalKey(last);
-        return sstable;
+        return withSynopsis(sstable);
     }
 
     protected SSTableWriter.TransactionalProxy txnProxy()
@@ -364,6 +426,7 @@ public class BigTableWriter extends SSTableWriter
             // write sstable statistics
             dataFile.prepareToCommit();
             writeMetadata(descriptor, finalizeMetadata());
+            writeSynopsis();
 
             // save the table of components
             SSTable.appendTOC(descriptor, components);
@@ -440,7 +503,7 @@ public class BigTableWriter extends SSTableWriter
             builder = new FileHandle.Builder(descriptor.filenameFor(Component.PRIMARY_INDEX)).mmapped(DatabaseDescriptor.getIndexAccessMode() == Config.DiskAccessMode.mmap);
             chunkCache.ifPresent(builder::withChunkCache);
             summary = new IndexSummaryBuilder(keyCount, metadata().params.minIndexInterval, Downsampling.BASE_SAMPLING_LEVEL);
-            bf = FilterFactory.getFilter(keyCount, metadata().params.bloomFilterFpChance);
+            bf = FilterFactory.getFilter(keyCount, metadata().params.bloomFilterFpChance, metadata().params.compaction.blockedBloomFilter());
             // register listeners to be alerted when the data files are flushed
             indexFile.setPostFlushListener(() -> summary.markIndexSynced(indexFile.getLastFlushOffset()));
             dataFile.setPostFlushListener(() -> summary.markDataSynced(dataFile.getLastFlushOffset()));
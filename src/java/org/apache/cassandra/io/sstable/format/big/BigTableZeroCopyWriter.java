@@ -73,7 +73,10 @@ public class BigTableZeroCopyWriter extends SSTable implements SSTableMultiWrite
                         Component.COMPRESSION_INFO,
                         Component.FILTER,
                         Component.DIGEST,
-                        Component.CRC);
+                        Component.CRC,
+                        Component.PARTITION_INDEX,
+                        Component.ROW_INDEX,
+                        Component.SYNOPSIS);
 
     public BigTableZeroCopyWriter(Descriptor descriptor,
                                   TableMetadataRef metadata,
@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.concurrent.Ref;
+import org.apache.cassandra.utils.concurrent.SharedCloseable;
+
+/**
+ * The partition index of an sstable: an on-disk trie mapping the byte-comparable encoding of the partition keys
+ * (see {@link org.apache.cassandra.db.PartitionPositionEncoding}) to the position of the partitions in the data
+ * file, or to the position of their column index in the row index file for the partitions that have one.
+ * <p>
+ * The trie only stores the shortest prefix distinguishing each key from its neighbours, so a lookup returns the
+ * only partition that can have the searched key, which the caller must check against the key in the data file.
+ * Its size hence depends on the number of partitions but not on the size of their keys, and a lookup reads a
+ * handful of nodes, usually in the same page.
+ * <p>
+ * Each node is written as its number of transitions minus one (1 byte), the width of its values (1 byte), its
+ * transition bytes in increasing order, and its values as big-endian integers of that width. A value is either a
+ * leaf, {@code (payload << 1) | 1}, or a child, {@code distance << 1} where {@code distance} is the number of bytes
+ * between the child and its parent, which is always written after its children. The file ends with a footer holding
+ * the position of the root node, the number of keys, the first and last keys, and the position of the footer.
+ */
+public class PartitionIndex implements SharedCloseable
+{
+    public static final long NOT_FOUND = -1;
+
+    private static final byte[] EMPTY_KEY = new byte[0];
+
+    private final FileHandle fh;
+    private final long root;
+    private final long count;
+    private final DecoratedKey firstKey;
+    private final DecoratedKey lastKey;
+
+    private PartitionIndex(FileHandle fh, long root, long count, DecoratedKey firstKey, DecoratedKey lastKey)
+    {
+        this.fh = fh;
+        this.root = root;
+        this.count = count;
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+    }
+
+    @SuppressWarnings("resource")
+    public static PartitionIndex load(FileHandle.Builder builder, IPartitioner partitioner) throws IOException
+    {
+        FileHandle fh = builder.complete();
+        try (RandomAccessReader in = fh.createReader())
+        {
+            in.seek(in.length() - Long.BYTES);
+            in.seek(in.readLong());
+            long root = in.readLong();
+            long count = in.readLong();
+            ByteBuffer first = ByteBufferUtil.readWithShortLength(in);
+            ByteBuffer last = ByteBufferUtil.readWithShortLength(in);
+            return count == 0
+                   ? new PartitionIndex(fh, root, count, null, null)
+                   : new PartitionIndex(fh, root, count, partitioner.decorateKey(first), partitioner.decorateKey(last));
+        }
+        catch (Throwable t)
+        {
+            fh.close();
+            throw t;
+        }
+    }
+
+    public static long dataPayload(long dataPosition)
+    {
+        return dataPosition << 1;
+    }
+
+    public static long rowIndexPayload(long rowIndexPosition)
+    {
+        return (rowIndexPosition << 1) | 1;
+    }
+
+    /**
+     * @return whether the payload is the position of a column index in the row index file rather than the position
+     * of a partition in the data file
+     */
+    public static boolean isRowIndexPayload(long payload)
+    {
+        return (payload & 1) != 0;
+    }
+
+    public static long payloadPosition(long payload)
+    {
+        return payload >>> 1;
+    }
+
+    public long size()
+    {
+        return count;
+    }
+
+    public DecoratedKey firstKey()
+    {
+        return firstKey;
+    }
+
+    public DecoratedKey lastKey()
+    {
+        return lastKey;
+    }
+
+    public long sizeOnDisk()
+    {
+        return fh.dataLength();
+    }
+
+    public Reader openReader()
+    {
+        return new Reader(fh.createReader());
+    }
+
+    public PartitionIndex sharedCopy()
+    {
+        return new PartitionIndex(fh.sharedCopy(), root, count, firstKey, lastKey);
+    }
+
+    public void close()
+    {
+        fh.close();
+    }
+
+    public Throwable close(Throwable accumulate)
+    {
+        return fh.close(accumulate);
+    }
+
+    public void addTo(Ref.IdentityCollection identities)
+    {
+        fh.addTo(identities);
+    }
+
+    /**
+     * A cursor over the entries of the index, in key order.
+     */
+    public class Reader implements Closeable
+    {
+        private final RandomAccessReader in;
+        // the nodes on the path of the current entry
+        private final List<Node> path = new ArrayList<>();
+        private int depth;
+
+        private Reader(RandomAccessReader in)
+        {
+            this.in = in;
+        }
+
+        /**
+         * @return the payload of the only entry that can have the given key, or {@link #NOT_FOUND}
+         */
+        public long exactCandidate(byte[] key) throws IOException
+        {
+            long position = root;
+            Node node = node(0);
+            for (int i = 0; i < key.length && position != NOT_FOUND; i++)
+            {
+                node.load(position);
+                int index = node.search(key[i] & 0xFF);
+                if (index == node.size || node.transition(index) != (key[i] & 0xFF))
+                    return NOT_FOUND;
+
+                long value = node.value(index);
+                if (isLeaf(value))
+                    return value >>> 1;
+                position = node.position - (value >>> 1);
+            }
+            return NOT_FOUND;
+        }
+
+        /**
+         * Positions the cursor on the first entry that can have a key greater than or equal to the given one, which
+         * is either the only entry that can have a key equal to it, or the first entry with a greater key.
+         *
+         * @param key the byte-comparable encoding of a key or bound, or null for a bound past all the keys
+         * @return the payload of the entry, or {@link #NOT_FOUND} if there is none
+         */
+        public long ceiling(byte[] key) throws IOException
+        {
+            depth = 0;
+            if (root == NOT_FOUND || key == null)
+                return NOT_FOUND;
+
+            long position = root;
+            for (int i = 0; ; i++)
+            {
+                Node node = push(position);
+                if (i == key.length)
+                    return leftmost(0);
+
+                int b = key[i] & 0xFF;
+                int index = node.search(b);
+                if (index == node.size || node.transition(index) != b)
+                    return leftmost(index);
+
+                node.index = index;
+                long value = node.value(index);
+                if (isLeaf(value))
+                    return value >>> 1;
+                position = node.position - (value >>> 1);
+            }
+        }
+
+        /**
+         * @return the payload of the first entry of the index, or {@link #NOT_FOUND} if it is empty
+         */
+        public long first() throws IOException
+        {
+            return ceiling(EMPTY_KEY);
+        }
+
+        /**
+         * Moves the cursor to the next entry.
+         *
+         * @return the payload of the entry, or {@link #NOT_FOUND} if the cursor was on the last one
+         */
+        public long next() throws IOException
+        {
+            if (depth == 0)
+                return NOT_FOUND;
+            return leftmost(path.get(depth - 1).index + 1);
+        }
+
+        /**
+         * Descends to the leftmost leaf under the transitions of the top node starting at the given index, going up
+         * to the next transition of the parents when there is none.
+         */
+        private long leftmost(int index) throws IOException
+        {
+            Node node = path.get(depth - 1);
+            while (true)
+            {
+                if (index == node.size)
+                {
+                    if (--depth == 0)
+                        return NOT_FOUND;
+                    node = path.get(depth - 1);
+                    index = node.index + 1;
+                    continue;
+                }
+
+                node.index = index;
+                long value = node.value(index);
+                if (isLeaf(value))
+                    return value >>> 1;
+                node = push(node.position - (value >>> 1));
+                index = 0;
+            }
+        }
+
+        private Node push(long position) throws IOException
+        {
+            Node node = node(depth++);
+            node.load(position);
+            return node;
+        }
+
+        private Node node(int depth)
+        {
+            while (path.size() <= depth)
+                path.add(new Node());
+            return path.get(depth);
+        }
+
+        private boolean isLeaf(long value)
+        {
+            return (value & 1) != 0;
+        }
+
+        public void close()
+        {
+            in.close();
+        }
+
+        private final class Node
+        {
+            private final byte[] transitions = new byte[256];
+            private long position;
+            private int size;
+            private int width;
+            // the transition of the current entry
+            private int index;
+
+            void load(long position) throws IOException
+            {
+                in.seek(position);
+                this.position = position;
+                size = in.readUnsignedByte() + 1;
+                width = in.readUnsignedByte();
+                in.readFully(transitions, 0, size);
+            }
+
+            int transition(int index)
+            {
+                return transitions[index] & 0xFF;
+            }
+
+            /**
+             * @return the index of the first transition greater than or equal to the given byte, or the number of
+             * transitions if there is none
+             */
+            int search(int b)
+            {
+                int low = 0;
+                int high = size;
+                while (low < high)
+                {
+                    int mid = (low + high) >>> 1;
+                    if (transition(mid) < b)
+                        low = mid + 1;
+                    else
+                        high = mid;
+                }
+                return low;
+            }
+
+            long value(int index) throws IOException
+            {
+                in.seek(position + 2 + size + (long) index * width);
+                long value = 0;
+                for (int i = 0; i < width; i++)
+                    value = (value << 8) | in.readUnsignedByte();
+                return value;
+            }
+        }
+    }
+}
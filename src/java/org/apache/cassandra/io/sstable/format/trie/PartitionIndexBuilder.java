@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * Writes a {@link PartitionIndex} from byte-comparable keys added in increasing order.
+ * <p>
+ * Only the shortest prefix distinguishing each key from its neighbours is stored: a key's prefix is known once the
+ * next key is added, so entries are written one key late. Nodes are written as soon as no later key can go through
+ * them, i.e. children before their parent, which keeps in memory only the nodes on the path of the last prefix.
+ */
+public class PartitionIndexBuilder
+{
+    private final SequentialWriter writer;
+
+    // the last added key, whose prefix depends on the next one
+    private byte[] pendingKey;
+    private long pendingPayload;
+    // the length of the common prefix of the pending key and the key before it
+    private int pendingCommon;
+
+    // the path of the last written prefix, and its open nodes: the node at depth d holds the transitions on byte d
+    private byte[] lastPrefix;
+    private final List<Node> path = new ArrayList<>();
+    // written nodes, reused for the next prefixes
+    private final ArrayDeque<Node> free = new ArrayDeque<>();
+
+    private long count;
+    private boolean complete;
+
+    public PartitionIndexBuilder(SequentialWriter writer)
+    {
+        this.writer = writer;
+    }
+
+    /**
+     * @param key the byte-comparable encoding of the key, which must be greater than the previous one and not
+     * a prefix of another key
+     * @param payload the value to return when looking the key up, which must be positive
+     */
+    public void addEntry(byte[] key, long payload) throws IOException
+    {
+        assert !complete && payload >= 0;
+        if (pendingKey != null)
+        {
+            int common = commonPrefix(pendingKey, pendingKey.length, key, key.length);
+            assert common < pendingKey.length && common < key.length && (pendingKey[common] & 0xFF) < (key[common] & 0xFF)
+                : "Keys must be added in increasing order and must not be prefixes of each other";
+            add(pendingKey, Math.max(pendingCommon, common) + 1, pendingPayload);
+            pendingCommon = common;
+        }
+        pendingKey = key;
+        pendingPayload = payload;
+        count++;
+    }
+
+    public long count()
+    {
+        return count;
+    }
+
+    /**
+     * Writes the remaining nodes and the footer of the index. Can be called more than once.
+     *
+     * @param firstKey the first partition key of the sstable, or null if it is empty
+     * @param lastKey the last partition key of the sstable, or null if it is empty
+     */
+    public void complete(ByteBuffer firstKey, ByteBuffer lastKey) throws IOException
+    {
+        if (complete)
+            return;
+        complete = true;
+
+        long root = PartitionIndex.NOT_FOUND;
+        if (pendingKey != null)
+        {
+            add(pendingKey, pendingCommon + 1, pendingPayload);
+            closeNodes(1);
+            root = write(path.remove(0));
+        }
+
+        long footerPosition = writer.position();
+        writer.writeLong(root);
+        writer.writeLong(count);
+        ByteBufferUtil.writeWithShortLength(firstKey == null ? ByteBufferUtil.EMPTY_BYTE_BUFFER : firstKey, writer);
+        ByteBufferUtil.writeWithShortLength(lastKey == null ? ByteBufferUtil.EMPTY_BYTE_BUFFER : lastKey, writer);
+        writer.writeLong(footerPosition);
+    }
+
+    /**
+     * Adds a leaf for the first {@code length} bytes of the given key.
+     */
+    private void add(byte[] key, int length, long payload) throws IOException
+    {
+        int common = lastPrefix == null ? 0 : commonPrefix(lastPrefix, path.size(), key, length);
+        closeNodes(common + 1);
+        while (path.size() < length)
+            path.add(free.isEmpty() ? new Node() : free.pop());
+        path.get(length - 1).add(key[length - 1], (payload << 1) | 1);
+        lastPrefix = key;
+    }
+
+    /**
+     * Writes the open nodes at depth {@code depth} and deeper, and links each of them to its parent.
+     */
+    private void closeNodes(int depth) throws IOException
+    {
+        for (int d = path.size() - 1; d >= depth; d--)
+        {
+            long position = write(path.remove(d));
+            path.get(d - 1).addChild(lastPrefix[d - 1], position);
+        }
+    }
+
+    private long write(Node node) throws IOException
+    {
+        long position = writer.position();
+        long max = 0;
+        for (int i = 0; i < node.size; i++)
+        {
+            // children are stored as their distance to the parent, which has not been written yet
+            if ((node.values[i] & 1) == 0)
+                node.values[i] = (position - (node.values[i] >>> 1)) << 1;
+            max = Math.max(max, node.values[i]);
+        }
+        int width = Math.max(1, (64 - Long.numberOfLeadingZeros(max) + 7) / 8);
+
+        writer.writeByte(node.size - 1);
+        writer.writeByte(width);
+        writer.write(node.transitions, 0, node.size);
+        for (int i = 0; i < node.size; i++)
+            for (int shift = (width - 1) * 8; shift >= 0; shift -= 8)
+                writer.writeByte((int) (node.values[i] >>> shift));
+
+        node.size = 0;
+        free.push(node);
+        return position;
+    }
+
+    private static int commonPrefix(byte[] left, int leftLength, byte[] right, int rightLength)
+    {
+        int length = Math.min(leftLength, rightLength);
+        int i = 0;
+        while (i < length && left[i] == right[i])
+            i++;
+        return i;
+    }
+
+    private static final class Node
+    {
+        private final byte[] transitions = new byte[256];
+        // leaves are stored as (payload << 1) | 1, children as (position << 1) until their parent is written
+        private final long[] values = new long[256];
+        private int size;
+
+        void add(byte transition, long value)
+        {
+            assert size == 0 || (transitions[size - 1] & 0xFF) < (transition & 0xFF);
+            transitions[size] = transition;
+            values[size] = value;
+            size++;
+        }
+
+        void addChild(byte transition, long position)
+        {
+            add(transition, position << 1);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.apache.cassandra.db.PartitionPositionEncoding;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.lifecycle.LifecycleNewTracker;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.format.SSTableFlushObserver;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+import org.apache.cassandra.io.sstable.format.Version;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
+import org.apache.cassandra.net.MessagingService;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.schema.TableMetadataRef;
+
+/**
+ * Sstable format indexing partitions with an on-disk trie of their keys ({@link PartitionIndex}) instead of the
+ * primary index, index summary and key cache of the {@link org.apache.cassandra.io.sstable.format.big.BigFormat}.
+ * The data file is the same as the one of the latest big format version. The column indexes of the partitions that
+ * need one are stored in a separate row index file, and read from there.
+ * <p>
+ * The trie needs a byte-comparable encoding of the partition keys, so this format only supports the partitioners
+ * of {@link PartitionPositionEncoding}.
+ */
+public class TrieIndexFormat implements SSTableFormat
+{
+    public static final TrieIndexFormat instance = new TrieIndexFormat();
+    public static final Version latestVersion = new TrieIndexVersion(TrieIndexVersion.current_version);
+    private static final SSTableReader.Factory readerFactory = new ReaderFactory();
+    private static final SSTableWriter.Factory writerFactory = new WriterFactory();
+    private static final Set<Component> INDEX_COMPONENTS = ImmutableSet.of(Component.PARTITION_INDEX, Component.ROW_INDEX);
+
+    private TrieIndexFormat()
+    {
+    }
+
+    @Override
+    public Version getLatestVersion()
+    {
+        return latestVersion;
+    }
+
+    @Override
+    public Version getVersion(String version)
+    {
+        return new TrieIndexVersion(version);
+    }
+
+    @Override
+    public SSTableWriter.Factory getWriterFactory()
+    {
+        return writerFactory;
+    }
+
+    @Override
+    public SSTableReader.Factory getReaderFactory()
+    {
+        return readerFactory;
+    }
+
+    @Override
+    public RowIndexEntry.IndexSerializer getIndexSerializer(TableMetadata metadata, Version version, SerializationHeader header)
+    {
+        return new RowIndexEntry.Serializer(version, header);
+    }
+
+    @Override
+    public Component primaryIndexComponent()
+    {
+        return Component.PARTITION_INDEX;
+    }
+
+    @Override
+    public Set<Component> indexComponents()
+    {
+        return INDEX_COMPONENTS;
+    }
+
+    @Override
+    public boolean supports(IPartitioner partitioner)
+    {
+        return PartitionPositionEncoding.supports(partitioner);
+    }
+
+    static class WriterFactory extends SSTableWriter.Factory
+    {
+        @Override
+        public SSTableWriter open(Descriptor descriptor,
+                                  long keyCount,
+                                  long repairedAt,
+                                  UUID pendingRepair,
+                                  boolean isTransient,
+                                  TableMetadataRef metadata,
+                                  MetadataCollector metadataCollector,
+                                  SerializationHeader header,
+                                  Collection<SSTableFlushObserver> observers,
+                                  LifecycleNewTracker lifecycleNewTracker)
+        {
+            SSTable.validateRepairedMetadata(repairedAt, pendingRepair, isTransient);
+            return new TrieIndexSSTableWriter(descriptor, keyCount, repairedAt, pendingRepair, isTransient, metadata, metadataCollector, header, observers, lifecycleNewTracker);
+        }
+    }
+
+    static class ReaderFactory extends SSTableReader.Factory
+    {
+        @Override
+        public SSTableReader open(Descriptor descriptor, Set<Component> components, TableMetadataRef metadata, Long maxDataAge, StatsMetadata sstableMetadata, SSTableReader.OpenReason openReason, SerializationHeader header)
+        {
+            return new TrieIndexSSTableReader(descriptor, components, metadata, maxDataAge, sstableMetadata, openReason, header);
+        }
+    }
+
+    // aa (4.0.0): partition index trie, row index file, and the data and metadata of the big format version na
+    static class TrieIndexVersion extends Version
+    {
+        public static final String current_version = "aa";
+        public static final String earliest_supported_version = "aa";
+
+        private final boolean isLatestVersion;
+
+        TrieIndexVersion(String version)
+        {
+            super(instance, version);
+            isLatestVersion = version.compareTo(current_version) == 0;
+        }
+
+        @Override
+        public boolean isLatestVersion()
+        {
+            return isLatestVersion;
+        }
+
+        @Override
+        public int correspondingMessagingVersion()
+        {
+            return MessagingService.VERSION_30;
+        }
+
+        @Override
+        public boolean hasCommitLogLowerBound()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean hasCommitLogIntervals()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean hasMaxCompressedLength()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean hasPendingRepair()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean hasIsTransient()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean hasMetadataChecksum()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean hasOldBfFormat()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean hasAccurateMinMax()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isCompatible()
+        {
+            return version.compareTo(earliest_supported_version) >= 0 && version.charAt(0) <= current_version.charAt(0);
+        }
+
+        @Override
+        public boolean isCompatibleForStreaming()
+        {
+            return isCompatible() && version.charAt(0) == current_version.charAt(0);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.Throwables;
+
+/**
+ * Reads the partition keys of an sstable of the {@link TrieIndexFormat} in order, without opening a reader of the
+ * sstable: the partitions are enumerated by the partition index, and their keys read from the data file.
+ */
+public class TrieIndexKeyReader implements Closeable
+{
+    private final PartitionIndex partitionIndex;
+    private final FileHandle rowIndexFile;
+    private final FileHandle dataFile;
+    private final PartitionIndex.Reader index;
+    private final RandomAccessReader rowIndexReader;
+    private final RandomAccessReader dataReader;
+    private final IPartitioner partitioner;
+
+    private boolean started;
+    private long keyPosition = -1;
+
+    @SuppressWarnings("resource")
+    public TrieIndexKeyReader(Descriptor desc, IPartitioner partitioner) throws IOException
+    {
+        this.partitioner = partitioner;
+        PartitionIndex partitionIndex = null;
+        FileHandle rowIndexFile = null;
+        FileHandle dataFile = null;
+        try (FileHandle.Builder pbuilder = new FileHandle.Builder(desc.filenameFor(Component.PARTITION_INDEX));
+             FileHandle.Builder ibuilder = new FileHandle.Builder(desc.filenameFor(Component.ROW_INDEX));
+             FileHandle.Builder dbuilder = new FileHandle.Builder(desc.filenameFor(Component.DATA))
+                                           .compressed(new File(desc.filenameFor(Component.COMPRESSION_INFO)).exists()))
+        {
+            partitionIndex = PartitionIndex.load(pbuilder, partitioner);
+            rowIndexFile = ibuilder.complete();
+            dataFile = dbuilder.complete();
+        }
+        catch (Throwable t)
+        {
+            if (partitionIndex != null)
+                t = partitionIndex.close(t);
+            if (rowIndexFile != null)
+                t = rowIndexFile.close(t);
+            Throwables.maybeFail(t, IOException.class);
+        }
+        this.partitionIndex = partitionIndex;
+        this.rowIndexFile = rowIndexFile;
+        this.dataFile = dataFile;
+        this.index = partitionIndex.openReader();
+        this.rowIndexReader = rowIndexFile.createReader();
+        this.dataReader = dataFile.createReader();
+    }
+
+    /**
+     * @return the next key of the sstable, or null if there are no more
+     */
+    public DecoratedKey next() throws IOException
+    {
+        long payload = started ? index.next() : index.first();
+        started = true;
+        if (payload == PartitionIndex.NOT_FOUND)
+        {
+            keyPosition = dataReader.length();
+            return null;
+        }
+
+        keyPosition = TrieIndexSSTableReader.readDataPosition(payload, rowIndexReader);
+        dataReader.seek(keyPosition);
+        return partitioner.decorateKey(ByteBufferUtil.readWithShortLength(dataReader));
+    }
+
+    /**
+     * @return the position of the last read key in the data file
+     */
+    public long keyPosition()
+    {
+        return keyPosition;
+    }
+
+    public long length()
+    {
+        return dataReader.length();
+    }
+
+    public void close() throws IOException
+    {
+        FileUtils.close(index, rowIndexReader, dataReader);
+        Throwables.maybeFail(Throwables.close(null, Arrays.asList(partitionIndex, rowIndexFile, dataFile)));
+    }
+}
@@ -0,0 +1,627 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.cache.ChunkCache;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.columniterator.SSTableIterator;
+import org.apache.cassandra.db.columniterator.SSTableReversedIterator;
+import org.apache.cassandra.db.filter.ColumnFilter;
+import org.apache.cassandra.db.rows.Rows;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterators;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.Bounds;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.*;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableReadsListener;
+import org.apache.cassandra.io.sstable.format.SSTableReadsListener.SelectionReason;
+import org.apache.cassandra.io.sstable.format.SSTableReadsListener.SkippingReason;
+import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
+import org.apache.cassandra.io.sstable.metadata.ValidationMetadata;
+import org.apache.cassandra.io.util.FileDataInput;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.schema.TableMetadataRef;
+import org.apache.cassandra.tracing.Tracing;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.FilterFactory;
+import org.apache.cassandra.utils.IFilter;
+import org.apache.cassandra.utils.concurrent.SharedCloseable;
+
+/**
+ * Reader of the sstables of the {@link TrieIndexFormat}.
+ * <p>
+ * Partitions are looked up in the {@link PartitionIndex}, which only has a prefix of their keys: the candidate it
+ * returns is checked against the key at the start of the partition in the data file. Its {@link #ifile} is the row
+ * index file, so the column indexes are read by the same iterators as the ones of the big format. These sstables have
+ * no index summary and don't use the key cache.
+ */
+public class TrieIndexSSTableReader extends SSTableReader
+{
+    private static final Logger logger = LoggerFactory.getLogger(TrieIndexSSTableReader.class);
+
+    protected PartitionIndex partitionIndex;
+
+    TrieIndexSSTableReader(Descriptor desc, Set<Component> components, TableMetadataRef metadata, Long maxDataAge, StatsMetadata sstableMetadata, OpenReason openReason, SerializationHeader header)
+    {
+        super(desc, components, metadata, maxDataAge, sstableMetadata, openReason, header);
+    }
+
+    /**
+     * Open a reader which already has its state initialized (by the writer or by another reader).
+     */
+    static TrieIndexSSTableReader internalOpen(Descriptor desc,
+                                               Set<Component> components,
+                                               TableMetadataRef metadata,
+                                               FileHandle ifile,
+                                               FileHandle dfile,
+                                               PartitionIndex partitionIndex,
+                                               IFilter bf,
+                                               long maxDataAge,
+                                               StatsMetadata sstableMetadata,
+                                               OpenReason openReason,
+                                               SerializationHeader header)
+    {
+        assert desc != null && ifile != null && dfile != null && partitionIndex != null && bf != null && sstableMetadata != null;
+
+        TrieIndexSSTableReader reader = new TrieIndexSSTableReader(desc, components, metadata, maxDataAge, sstableMetadata, openReason, header);
+
+        reader.bf = bf;
+        reader.ifile = ifile;
+        reader.dfile = dfile;
+        reader.partitionIndex = partitionIndex;
+        reader.setup(true);
+
+        return reader;
+    }
+
+    @Override
+    protected List<? extends SharedCloseable> otherSharedResources()
+    {
+        return partitionIndex == null ? Collections.emptyList() : Collections.singletonList(partitionIndex);
+    }
+
+    @Override
+    public void setupOnline()
+    {
+        super.setupOnline();
+        // the partition index makes the key cache useless
+        keyCache = null;
+    }
+
+    @Override
+    protected void load(ValidationMetadata validation, boolean isOffline) throws IOException
+    {
+        if (!components.contains(Component.PARTITION_INDEX))
+        {
+            // avoid any reading of the missing index components, which should only happen during StandaloneScrubber
+            loadFiles(false);
+            bf = FilterFactory.AlwaysPresent;
+            return;
+        }
+
+        loadFiles(true);
+        try
+        {
+            if (metadata().params.bloomFilterFpChance == 1.0)
+            {
+                // bf is disabled.
+                bf = FilterFactory.AlwaysPresent;
+            }
+            else if (components.contains(Component.FILTER) && validation != null)
+            {
+                // bf is enabled and fp chance matches the currently configured value.
+                loadBloomFilter(descriptor.version.hasOldBfFormat());
+            }
+            else if (isOffline)
+            {
+                bf = FilterFactory.AlwaysPresent;
+            }
+            else
+            {
+                // bf is enabled, but filter component is missing.
+                buildBloomFilter();
+                saveBloomFilter();
+            }
+        }
+        catch (Throwable t)
+        {
+            closeFiles();
+            throw t;
+        }
+    }
+
+    @Override
+    protected void loadForBatch()
+    {
+        try
+        {
+            loadFiles(true);
+        }
+        catch (IOException e)
+        {
+            throw new CorruptSSTableException(e, descriptor.filenameFor(Component.PARTITION_INDEX));
+        }
+        bf = FilterFactory.AlwaysPresent;
+    }
+
+    /**
+     * Loads dfile and, if asked for, the partition index and ifile.
+     */
+    private void loadFiles(boolean loadIndexes) throws IOException
+    {
+        boolean mmapIndexes = DatabaseDescriptor.getIndexAccessMode() == Config.DiskAccessMode.mmap;
+        // an empty file can't be memory mapped, which is the case when no partition needed a row index
+        boolean mmapRowIndex = mmapIndexes && new File(descriptor.filenameFor(Component.ROW_INDEX)).length() > 0;
+        try (FileHandle.Builder pbuilder = new FileHandle.Builder(descriptor.filenameFor(Component.PARTITION_INDEX))
+                                           .mmapped(mmapIndexes)
+                                           .withChunkCache(ChunkCache.instance);
+             FileHandle.Builder ibuilder = new FileHandle.Builder(descriptor.filenameFor(Component.ROW_INDEX))
+                                           .mmapped(mmapRowIndex)
+                                           .withChunkCache(ChunkCache.instance);
+             FileHandle.Builder dbuilder = new FileHandle.Builder(descriptor.filenameFor(Component.DATA)).compressed(compression)
+                                           .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap)
+                                           .readAheadChunks(optimizationStrategy.readAheadChunks())
+                                           .withChunkCache(ChunkCache.instance))
+        {
+            if (loadIndexes)
+            {
+                partitionIndex = PartitionIndex.load(pbuilder, getPartitioner());
+                first = partitionIndex.firstKey();
+                last = partitionIndex.lastKey();
+                ifile = ibuilder.complete();
+            }
+
+            int dataBufferSize = optimizationStrategy.bufferSize(sstableMetadata.estimatedPartitionSize.percentile(DatabaseDescriptor.getDiskOptimizationEstimatePercentile()));
+            dfile = dbuilder.bufferSize(dataBufferSize).complete();
+        }
+        catch (Throwable t)
+        { // Because the tidier has not been set-up yet in SSTableReader.open(), we must release the files in case of error
+            closeFiles();
+            throw t;
+        }
+    }
+
+    private void closeFiles()
+    {
+        if (partitionIndex != null)
+        {
+            partitionIndex.close();
+            partitionIndex = null;
+        }
+
+        if (ifile != null)
+        {
+            ifile.close();
+            ifile = null;
+        }
+
+        if (dfile != null)
+        {
+            dfile.close();
+            dfile = null;
+        }
+    }
+
+    /**
+     * Builds the bloom filter from the keys read through the partition index.
+     */
+    private void buildBloomFilter() throws IOException
+    {
+        bf = FilterFactory.getFilter(partitionIndex.size(), metadata().params.bloomFilterFpChance, metadata().params.compaction.blockedBloomFilter());
+        try (PartitionIndex.Reader index = partitionIndex.openReader();
+             RandomAccessReader rowIndexReader = ifile.createReader();
+             RandomAccessReader dataReader = dfile.createReader())
+        {
+            for (long payload = index.first(); payload != PartitionIndex.NOT_FOUND; payload = index.next())
+                bf.add(readKey(dataReader, readDataPosition(payload, rowIndexReader)));
+        }
+    }
+
+    @Override
+    protected SSTableReader cloneAndReplace(DecoratedKey newFirst, OpenReason reason)
+    {
+        TrieIndexSSTableReader replacement = internalOpen(descriptor,
+                                                          components,
+                                                          metadata,
+                                                          ifile.sharedCopy(),
+                                                          dfile.sharedCopy(),
+                                                          partitionIndex.sharedCopy(),
+                                                          bf.sharedCopy(),
+                                                          maxDataAge,
+                                                          sstableMetadata,
+                                                          reason,
+                                                          header);
+        replacement.first = newFirst;
+        replacement.last = last;
+        replacement.synopsis = synopsis;
+        replacement.isSuspect.set(isSuspect.get());
+        return replacement;
+    }
+
+    public UnfilteredRowIterator iterator(DecoratedKey key,
+                                          Slices slices,
+                                          ColumnFilter selectedColumns,
+                                          boolean reversed,
+                                          SSTableReadsListener listener)
+    {
+        RowIndexEntry rie = getPosition(key, SSTableReader.Operator.EQ, listener);
+        return iterator(null, key, rie, slices, selectedColumns, reversed);
+    }
+
+    @SuppressWarnings("resource")
+    public UnfilteredRowIterator iterator(FileDataInput file, DecoratedKey key, RowIndexEntry indexEntry, Slices slices, ColumnFilter selectedColumns, boolean reversed)
+    {
+        if (indexEntry == null)
+            return UnfilteredRowIterators.noRowsIterator(metadata(), key, Rows.EMPTY_STATIC_ROW, DeletionTime.LIVE, reversed);
+        return reversed
+             ? new SSTableReversedIterator(this, file, key, indexEntry, slices, selectedColumns, ifile)
+             : new SSTableIterator(this, file, key, indexEntry, slices, selectedColumns, ifile);
+    }
+
+    @Override
+    public ISSTableScanner getScanner(ColumnFilter columns, DataRange dataRange, SSTableReadsListener listener)
+    {
+        return TrieIndexScanner.getScanner(this, columns, dataRange, listener);
+    }
+
+    public ISSTableScanner getScanner(Iterator<AbstractBounds<PartitionPosition>> boundsIterator)
+    {
+        return TrieIndexScanner.getScanner(this, boundsIterator);
+    }
+
+    public ISSTableScanner getScanner()
+    {
+        return TrieIndexScanner.getScanner(this);
+    }
+
+    public ISSTableScanner getScanner(Collection<Range<Token>> ranges)
+    {
+        if (ranges != null)
+            return TrieIndexScanner.getScanner(this, ranges);
+        else
+            return getScanner();
+    }
+
+    @SuppressWarnings("resource") // caller to close
+    @Override
+    public UnfilteredRowIterator simpleIterator(FileDataInput dfile, DecoratedKey key, RowIndexEntry position, boolean tombstoneOnly)
+    {
+        return SSTableIdentityIterator.create(this, dfile, position, key, tombstoneOnly);
+    }
+
+    /**
+     * @param key The key to apply as the rhs to the given Operator. A 'fake' key is allowed to
+     * allow key selection by token bounds but only if op != * EQ
+     * @param op The Operator defining matching keys: the nearest key to the target matching the operator wins.
+     * @param updateCacheAndStats true if updating stats
+     * @return The index entry corresponding to the key, or null if the key is not present
+     */
+    protected RowIndexEntry getPosition(PartitionPosition key,
+                                        Operator op,
+                                        boolean updateCacheAndStats,
+                                        boolean permitMatchPastLast,
+                                        SSTableReadsListener listener)
+    {
+        if (op == Operator.EQ)
+        {
+            assert key instanceof DecoratedKey; // EQ only make sense if the key is a valid row key
+            if (!bf.isPresent((DecoratedKey)key))
+            {
+                listener.onSSTableSkipped(this, SkippingReason.BLOOM_FILTER);
+                Tracing.trace("Bloom filter allows skipping sstable {}", descriptor.generation);
+                return null;
+            }
+        }
+
+        // check the smallest and greatest keys in the sstable to see if it can't be present
+        boolean skip = false;
+        if (key.compareTo(first) < 0)
+        {
+            if (op == Operator.EQ)
+                skip = true;
+            else
+                key = first;
+
+            op = Operator.EQ;
+        }
+        else
+        {
+            int l = last.compareTo(key);
+            // l <= 0  => we may be looking past the end of the file; we then narrow our behaviour to:
+            //             1) skipping if strictly greater for GE and EQ;
+            //             2) skipping if equal and searching GT, and we aren't permitting matching past last
+            skip = l <= 0 && (l < 0 || (!permitMatchPastLast && op == Operator.GT));
+        }
+        if (skip)
+        {
+            if (op == Operator.EQ && updateCacheAndStats)
+                bloomFilterTracker.addFalsePositive();
+            listener.onSSTableSkipped(this, SkippingReason.MIN_MAX_KEYS);
+            Tracing.trace("Check against min and max keys allows skipping sstable {}", descriptor.generation);
+            return null;
+        }
+
+        if (partitionIndex == null)
+            return null;
+
+        String path = null;
+        try (PartitionIndex.Reader index = partitionIndex.openReader();
+             RandomAccessReader rowIndexReader = ifile.createReader();
+             RandomAccessReader dataReader = dfile.createReader())
+        {
+            path = dataReader.getPath();
+            if (op == Operator.EQ)
+            {
+                // the index only returns the partition that can have the key, whose key must be checked
+                long payload = index.exactCandidate(PartitionPositionEncoding.encode((DecoratedKey) key));
+                if (payload != PartitionIndex.NOT_FOUND)
+                {
+                    RowIndexEntry indexEntry = readEntry(payload, rowIndexReader);
+                    if (readKey(dataReader, indexEntry.position).equals(key))
+                        return found(indexEntry, op, updateCacheAndStats, listener);
+                }
+            }
+            else
+            {
+                for (long payload = index.ceiling(PartitionPositionEncoding.encodeLowerBound(key));
+                     payload != PartitionIndex.NOT_FOUND;
+                     payload = index.next())
+                {
+                    RowIndexEntry indexEntry = readEntry(payload, rowIndexReader);
+                    int v = op.apply(readKey(dataReader, indexEntry.position).compareTo(key));
+                    if (v == 0)
+                        return found(indexEntry, op, updateCacheAndStats, listener);
+                    if (v < 0)
+                    {
+                        listener.onSSTableSkipped(this, SkippingReason.PARTITION_INDEX_LOOKUP);
+                        Tracing.trace("Partition index lookup allows skipping sstable {}", descriptor.generation);
+                        return null;
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            markSuspect();
+            throw new CorruptSSTableException(e, path);
+        }
+
+        if (op == SSTableReader.Operator.EQ && updateCacheAndStats)
+            bloomFilterTracker.addFalsePositive();
+        listener.onSSTableSkipped(this, SkippingReason.INDEX_ENTRY_NOT_FOUND);
+        Tracing.trace("Partition index lookup complete (bloom filter false positive) for sstable {}", descriptor.generation);
+        return null;
+    }
+
+    private RowIndexEntry found(RowIndexEntry indexEntry, Operator op, boolean updateCacheAndStats, SSTableReadsListener listener)
+    {
+        if (op == Operator.EQ && updateCacheAndStats)
+            bloomFilterTracker.addTruePositive();
+        listener.onSSTableSelected(this, indexEntry, SelectionReason.INDEX_ENTRY_FOUND);
+        Tracing.trace("Partition index with {} entries found for sstable {}", indexEntry.columnsIndexCount(), descriptor.generation);
+        return indexEntry;
+    }
+
+    /**
+     * @return the index entry of the partition of the given partition index payload
+     */
+    RowIndexEntry readEntry(long payload, FileDataInput rowIndexReader) throws IOException
+    {
+        long position = PartitionIndex.payloadPosition(payload);
+        if (!PartitionIndex.isRowIndexPayload(payload))
+            return new RowIndexEntry(position);
+
+        rowIndexReader.seek(position);
+        return rowIndexEntrySerializer.deserialize(rowIndexReader, position);
+    }
+
+    /**
+     * @return the position in the data file of the partition of the given partition index payload
+     */
+    static long readDataPosition(long payload, FileDataInput rowIndexReader) throws IOException
+    {
+        long position = PartitionIndex.payloadPosition(payload);
+        if (!PartitionIndex.isRowIndexPayload(payload))
+            return position;
+
+        rowIndexReader.seek(position);
+        return RowIndexEntry.Serializer.readPosition(rowIndexReader);
+    }
+
+    /**
+     * @return the key of the partition starting at the given position of the data file
+     */
+    DecoratedKey readKey(FileDataInput dataReader, long position) throws IOException
+    {
+        dataReader.seek(position);
+        return decorateKey(ByteBufferUtil.readWithShortLength(dataReader));
+    }
+
+    @Override
+    public long estimatedKeys()
+    {
+        return partitionIndex.size();
+    }
+
+    @Override
+    public long estimatedKeysForRanges(Collection<Range<Token>> ranges)
+    {
+        // there are no samples of the keys, so assume they are evenly spread over the data file
+        long length = uncompressedLength();
+        if (length == 0)
+            return 1;
+
+        long covered = 0;
+        for (PartitionPositionBounds bounds : getPositionsForRanges(ranges))
+            covered += bounds.upperPosition - bounds.lowerPosition;
+        return Math.max(1, (long) ((double) partitionIndex.size() * covered / length));
+    }
+
+    @Override
+    public long estimatedKeysForBounds(Collection<Bounds<Token>> bounds)
+    {
+        // like for ranges, assume the keys are evenly spread over the data file
+        long length = uncompressedLength();
+        if (length == 0)
+            return 1;
+
+        // the data file sections of each bounds, merged so that overlapping bounds aren't counted twice
+        List<PartitionPositionBounds> positions = new ArrayList<>(bounds.size());
+        for (Bounds<Token> bound : bounds)
+        {
+            PartitionPosition leftBound = bound.left.minKeyBound();
+            PartitionPosition rightBound = bound.right.maxKeyBound();
+            if (leftBound.compareTo(last) > 0 || rightBound.compareTo(first) < 0)
+                continue;
+
+            long left = leftBound.compareTo(first) < 0 ? 0 : getPosition(leftBound, Operator.GT).position;
+            long right = rightBound.compareTo(last) > 0 ? length : getPosition(rightBound, Operator.GT).position;
+            if (left < right)
+                positions.add(new PartitionPositionBounds(left, right));
+        }
+        positions.sort(Comparator.comparingLong(b -> b.lowerPosition));
+
+        long covered = 0;
+        long coveredUpTo = 0;
+        for (PartitionPositionBounds position : positions)
+        {
+            long lower = Math.max(position.lowerPosition, coveredUpTo);
+            if (lower < position.upperPosition)
+                covered += position.upperPosition - lower;
+            coveredUpTo = Math.max(coveredUpTo, position.upperPosition);
+        }
+        return Math.max(1, (long) ((double) partitionIndex.size() * covered / length));
+    }
+
+    @Override
+    public Iterable<DecoratedKey> getKeySamples(final Range<Token> range)
+    {
+        // sample the keys like the index summary would at full sampling, only reading the keys of the samples
+        int interval = metadata().params.minIndexInterval;
+        List<DecoratedKey> samples = new ArrayList<>();
+        try (PartitionIndex.Reader index = partitionIndex.openReader();
+             RandomAccessReader rowIndexReader = ifile.createReader();
+             RandomAccessReader dataReader = dfile.createReader())
+        {
+            for (Range<Token> normalized : Range.normalize(Collections.singletonList(range)))
+            {
+                List<PartitionPositionBounds> positions = getPositionsForRanges(Collections.singletonList(normalized));
+                if (positions.isEmpty())
+                    continue;
+
+                long end = positions.get(0).upperPosition;
+                long i = 0;
+                for (long payload = index.ceiling(PartitionPositionEncoding.encodeLowerBound(normalized.left.maxKeyBound()));
+                     payload != PartitionIndex.NOT_FOUND;
+                     payload = index.next())
+                {
+                    long position = readDataPosition(payload, rowIndexReader);
+                    if (position >= end)
+                        break;
+                    if (i++ % interval == 0)
+                        samples.add(readKey(dataReader, position));
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            markSuspect();
+            throw new CorruptSSTableException(e, getFilename());
+        }
+        return samples;
+    }
+
+    @Override
+    public DecoratedKey firstKeyBeyond(PartitionPosition token)
+    {
+        if (token.compareTo(first) < 0)
+            return first;
+
+        RowIndexEntry entry = getPosition(token, Operator.GT, false, true, SSTableReadsListener.NOOP_LISTENER);
+        if (entry == null)
+            return null;
+
+        try
+        {
+            return keyAt(entry.position);
+        }
+        catch (IOException e)
+        {
+            markSuspect();
+            throw new CorruptSSTableException(e, getFilename());
+        }
+    }
+
+    /**
+     * The positions passed to the {@link org.apache.cassandra.io.sstable.format.SSTableFlushObserver}s of this format
+     * are positions in the data file, so this reads the key of the partition at the given position of the data file.
+     */
+    @Override
+    public DecoratedKey keyAt(long dataPosition) throws IOException
+    {
+        try (FileDataInput in = dfile.createReader(dataPosition))
+        {
+            if (in.isEOF())
+                return null;
+
+            return decorateKey(ByteBufferUtil.readWithShortLength(in));
+        }
+    }
+
+    /**
+     * There is no index file to scan, so there's no position in it to start scanning from.
+     */
+    @Override
+    public long getIndexScanPosition(PartitionPosition key)
+    {
+        return 0;
+    }
+
+    @Override
+    public int getIndexSummarySize()
+    {
+        return 0;
+    }
+
+    @Override
+    public int getMaxIndexSummarySize()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the size on disk of the partition index
+     */
+    public long getPartitionIndexSize()
+    {
+        return partitionIndex.sizeOnDisk();
+    }
+}
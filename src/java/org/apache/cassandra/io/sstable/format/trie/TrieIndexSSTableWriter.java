@@ -0,0 +1,521 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.cache.ChunkCache;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnIndex;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.PartitionPositionEncoding;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.lifecycle.LifecycleNewTracker;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.db.transform.Transformation;
+import org.apache.cassandra.io.FSReadError;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.compress.CompressedSequentialWriter;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.IndexInfo;
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.format.SSTableFlushObserver;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+import org.apache.cassandra.io.sstable.format.big.BigTableWriter;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.io.sstable.metadata.MetadataComponent;
+import org.apache.cassandra.io.sstable.metadata.MetadataType;
+import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
+import org.apache.cassandra.io.util.BufferedDataOutputStreamPlus;
+import org.apache.cassandra.io.util.ChecksummedSequentialWriter;
+import org.apache.cassandra.io.util.DataOutputStreamPlus;
+import org.apache.cassandra.io.util.DataPosition;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.io.util.SequentialWriterOption;
+import org.apache.cassandra.schema.TableMetadataRef;
+import org.apache.cassandra.utils.BloomFilter;
+import org.apache.cassandra.utils.BloomFilterSerializer;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.FilterFactory;
+import org.apache.cassandra.utils.IFilter;
+import org.apache.cassandra.utils.SyncUtil;
+import org.apache.cassandra.utils.concurrent.Transactional;
+
+/**
+ * Writes sstables of the {@link TrieIndexFormat}. The data file is written like the one of the big format; the
+ * partition index is built as partitions are appended, and the column indexes spanning several blocks are written to
+ * the row index file instead of the primary index.
+ * <p>
+ * The partition index can only be read once complete, so these sstables can't be opened early.
+ */
+public class TrieIndexSSTableWriter extends SSTableWriter
+{
+    private static final Logger logger = LoggerFactory.getLogger(TrieIndexSSTableWriter.class);
+
+    private final ColumnIndex columnIndexWriter;
+    private final IndexWriter iwriter;
+    private final FileHandle.Builder dbuilder;
+    protected final SequentialWriter dataFile;
+    private DecoratedKey lastWrittenKey;
+    private DataPosition dataMark;
+    private final Optional<ChunkCache> chunkCache = Optional.ofNullable(ChunkCache.instance);
+
+    private final SequentialWriterOption writerOption = SequentialWriterOption.newBuilder()
+                                                        .trickleFsync(DatabaseDescriptor.getTrickleFsync())
+                                                        .trickleFsyncByteInterval(DatabaseDescriptor.getTrickleFsyncIntervalInKb() * 1024)
+                                                        .build();
+
+    public TrieIndexSSTableWriter(Descriptor descriptor,
+                                  long keyCount,
+                                  long repairedAt,
+                                  UUID pendingRepair,
+                                  boolean isTransient,
+                                  TableMetadataRef metadata,
+                                  MetadataCollector metadataCollector,
+                                  SerializationHeader header,
+                                  Collection<SSTableFlushObserver> observers,
+                                  LifecycleNewTracker lifecycleNewTracker)
+    {
+        super(descriptor, keyCount, repairedAt, pendingRepair, isTransient, metadata, metadataCollector, header, observers);
+        lifecycleNewTracker.trackNew(this); // must track before any files are created
+
+        if (compression)
+        {
+            dataFile = new CompressedSequentialWriter(new File(getFilename()),
+                                                      descriptor.filenameFor(Component.COMPRESSION_INFO),
+                                                      new File(descriptor.filenameFor(Component.DIGEST)),
+                                                      writerOption,
+                                                      metadata().params.compression,
+                                                      metadataCollector);
+        }
+        else
+        {
+            dataFile = new ChecksummedSequentialWriter(new File(getFilename()),
+                                                       new File(descriptor.filenameFor(Component.CRC)),
+                                                       new File(descriptor.filenameFor(Component.DIGEST)),
+                                                       writerOption);
+        }
+        dbuilder = new FileHandle.Builder(descriptor.filenameFor(Component.DATA)).compressed(compression)
+                                                                                .mmapped(DatabaseDescriptor.getDiskAccessMode() == Config.DiskAccessMode.mmap)
+                                                                                .readAheadChunks(optimizationStrategy.readAheadChunks());
+        chunkCache.ifPresent(dbuilder::withChunkCache);
+        iwriter = new IndexWriter(keyCount);
+
+        columnIndexWriter = new ColumnIndex(this.header, dataFile, descriptor.version, this.observers, getRowIndexEntrySerializer().indexInfoSerializer());
+    }
+
+    public void mark()
+    {
+        dataMark = dataFile.mark();
+        iwriter.mark();
+    }
+
+    public void resetAndTruncate()
+    {
+        dataFile.resetAndTruncate(dataMark);
+        iwriter.resetAndTruncate();
+    }
+
+    /**
+     * Perform sanity checks on @param decoratedKey and @return the position in the data file before any data is written
+     */
+    protected long beforeAppend(DecoratedKey decoratedKey)
+    {
+        assert decoratedKey != null : "Keys must not be null"; // empty keys ARE allowed b/c of indexed column values
+        if (lastWrittenKey != null && lastWrittenKey.compareTo(decoratedKey) >= 0)
+            throw new RuntimeException("Last written key " + lastWrittenKey + " >= current key " + decoratedKey + " writing into " + getFilename());
+        return (lastWrittenKey == null) ? 0 : dataFile.position();
+    }
+
+    private void afterAppend(DecoratedKey decoratedKey, long dataEnd, RowIndexEntry index, ByteBuffer indexInfo) throws IOException
+    {
+        metadataCollector.addKey(decoratedKey.getKey());
+        lastWrittenKey = decoratedKey;
+        last = lastWrittenKey;
+        if (first == null)
+            first = lastWrittenKey;
+
+        if (logger.isTraceEnabled())
+            logger.trace("wrote {} at {}", decoratedKey, dataEnd);
+        iwriter.append(decoratedKey, index, indexInfo);
+    }
+
+    /**
+     * Appends partition data to this writer.
+     *
+     * @param iterator the partition to write
+     * @return the created index entry if something was written, that is if {@code iterator}
+     * wasn't empty, {@code null} otherwise.
+     *
+     * @throws FSWriteError if a write to the dataFile fails
+     */
+    public RowIndexEntry append(UnfilteredRowIterator iterator)
+    {
+        DecoratedKey key = iterator.partitionKey();
+
+        if (key.getKey().remaining() > FBUtilities.MAX_UNSIGNED_SHORT)
+        {
+            logger.error("Key size {} exceeds maximum of {}, skipping row", key.getKey().remaining(), FBUtilities.MAX_UNSIGNED_SHORT);
+            return null;
+        }
+
+        if (iterator.isEmpty())
+            return null;
+
+        long startPosition = beforeAppend(key);
+        // there is no primary index, and partitions are found again from their position in the data file
+        observers.forEach((o) -> o.startPartition(key, startPosition));
+
+        //Reuse the writer for each row
+        columnIndexWriter.reset();
+
+        try (UnfilteredRowIterator collecting = Transformation.apply(iterator, new BigTableWriter.StatsCollector(metadataCollector, synopsisCollector)))
+        {
+            columnIndexWriter.buildRowIndex(collecting);
+
+            RowIndexEntry entry = RowIndexEntry.create(startPosition, iwriter.rowIndexFile.position(),
+                                                       collecting.partitionLevelDeletion(),
+                                                       columnIndexWriter.headerLength,
+                                                       columnIndexWriter.columnIndexCount,
+                                                       columnIndexWriter.indexInfoSerializedSize(),
+                                                       columnIndexWriter.indexSamples(),
+                                                       columnIndexWriter.offsets(),
+                                                       getRowIndexEntrySerializer().indexInfoSerializer());
+
+            long endPosition = dataFile.position();
+            long rowSize = endPosition - startPosition;
+            maybeLogLargePartitionWarning(key, rowSize);
+            metadataCollector.addPartitionSizeInBytes(rowSize);
+            synopsisCollector.partitionWritten(key, collecting.partitionLevelDeletion(), rowSize);
+            afterAppend(key, endPosition, entry, columnIndexWriter.buffer());
+            return entry;
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, dataFile.getPath());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private RowIndexEntry.IndexSerializer<IndexInfo> getRowIndexEntrySerializer()
+    {
+        return (RowIndexEntry.IndexSerializer<IndexInfo>) rowIndexEntrySerializer;
+    }
+
+    private void maybeLogLargePartitionWarning(DecoratedKey key, long rowSize)
+    {
+        if (rowSize > DatabaseDescriptor.getCompactionLargePartitionWarningThreshold())
+        {
+            String keyString = metadata().partitionKeyType.getString(key.getKey());
+            logger.warn("Writing large partition {}/{}:{} ({}) to sstable {}", metadata.keyspace, metadata.name, keyString, FBUtilities.prettyPrintMemory(rowSize), getFilename());
+        }
+    }
+
+    public SSTableReader openEarly()
+    {
+        return null;
+    }
+
+    public SSTableReader openFinalEarly()
+    {
+        // we must ensure the data is completely flushed to disk
+        iwriter.complete();
+        dataFile.sync();
+        iwriter.rowIndexFile.sync();
+        iwriter.partitionIndexFile.sync();
+
+        return openFinal(SSTableReader.OpenReason.EARLY);
+    }
+
+    @SuppressWarnings("resource")
+    private SSTableReader openFinal(SSTableReader.OpenReason openReason)
+    {
+        if (maxDataAge < 0)
+            maxDataAge = System.currentTimeMillis();
+
+        StatsMetadata stats = statsMetadata();
+        int dataBufferSize = optimizationStrategy.bufferSize(stats.estimatedPartitionSize.percentile(DatabaseDescriptor.getDiskOptimizationEstimatePercentile()));
+        PartitionIndex partitionIndex;
+        try
+        {
+            partitionIndex = PartitionIndex.load(iwriter.partitionIndexBuilder, getPartitioner());
+        }
+        catch (IOException e)
+        {
+            throw new FSReadError(e, iwriter.partitionIndexFile.getPath());
+        }
+        // an empty file can't be memory mapped, which is the case when no partition needed a row index
+        if (iwriter.rowIndexFile.position() == 0)
+            iwriter.rowIndexBuilder.mmapped(false);
+        FileHandle ifile = iwriter.rowIndexBuilder.complete();
+        if (compression)
+            dbuilder.withCompressionMetadata(((CompressedSequentialWriter) dataFile).open(0));
+        FileHandle dfile = dbuilder.bufferSize(dataBufferSize).complete();
+        SSTableReader sstable = TrieIndexSSTableReader.internalOpen(descriptor,
+                                                                    components,
+                                                                    metadata,
+                                                                    ifile,
+                                                                    dfile,
+                                                                    partitionIndex,
+                                                                    iwriter.bf.sharedCopy(),
+                                                                    maxDataAge,
+                                                                    stats,
+                                                                    openReason,
+                                                                    header);
+        sstable.first = getMinimalKey(first);
+        sstable.last = getMinimalKey(last);
+        return withSynopsis(sstable);
+    }
+
+    protected SSTableWriter.TransactionalProxy txnProxy()
+    {
+        return new TransactionalProxy();
+    }
+
+    class TransactionalProxy extends SSTableWriter.TransactionalProxy
+    {
+        // finalise our state on disk, including renaming
+        protected void doPrepare()
+        {
+            iwriter.prepareToCommit();
+
+            // write sstable statistics
+            dataFile.prepareToCommit();
+            writeMetadata(descriptor, finalizeMetadata());
+            writeSynopsis();
+
+            // save the table of components
+            SSTable.appendTOC(descriptor, components);
+
+            if (openResult)
+                finalReader = openFinal(SSTableReader.OpenReason.NORMAL);
+        }
+
+        protected Throwable doCommit(Throwable accumulate)
+        {
+            accumulate = dataFile.commit(accumulate);
+            accumulate = iwriter.commit(accumulate);
+            return accumulate;
+        }
+
+        @Override
+        protected Throwable doPostCleanup(Throwable accumulate)
+        {
+            accumulate = dbuilder.close(accumulate);
+            return accumulate;
+        }
+
+        protected Throwable doAbort(Throwable accumulate)
+        {
+            accumulate = iwriter.abort(accumulate);
+            accumulate = dataFile.abort(accumulate);
+            return accumulate;
+        }
+    }
+
+    private void writeMetadata(Descriptor desc, Map<MetadataType, MetadataComponent> components)
+    {
+        File file = new File(desc.filenameFor(Component.STATS));
+        try (SequentialWriter out = new SequentialWriter(file, writerOption))
+        {
+            desc.getMetadataSerializer().serialize(components, out, desc.version);
+            out.finish();
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, file.getPath());
+        }
+    }
+
+    public long getFilePointer()
+    {
+        return dataFile.position();
+    }
+
+    public long getOnDiskFilePointer()
+    {
+        return dataFile.getOnDiskFilePointer();
+    }
+
+    public long getEstimatedOnDiskBytesWritten()
+    {
+        return dataFile.getEstimatedOnDiskBytesWritten();
+    }
+
+    /**
+     * Encapsulates writing the partition index, row index and filter for an SSTable. The state of this object is not
+     * valid until it has been closed.
+     */
+    class IndexWriter extends AbstractTransactional implements Transactional
+    {
+        private final SequentialWriter rowIndexFile;
+        private final SequentialWriter partitionIndexFile;
+        private final PartitionIndexBuilder partitionIndex;
+        public final FileHandle.Builder rowIndexBuilder;
+        public final FileHandle.Builder partitionIndexBuilder;
+        public final IFilter bf;
+        private DataPosition mark;
+
+        IndexWriter(long keyCount)
+        {
+            rowIndexFile = new SequentialWriter(new File(descriptor.filenameFor(Component.ROW_INDEX)), writerOption);
+            partitionIndexFile = new SequentialWriter(new File(descriptor.filenameFor(Component.PARTITION_INDEX)), writerOption);
+            partitionIndex = new PartitionIndexBuilder(partitionIndexFile);
+            rowIndexBuilder = new FileHandle.Builder(descriptor.filenameFor(Component.ROW_INDEX)).mmapped(DatabaseDescriptor.getIndexAccessMode() == Config.DiskAccessMode.mmap);
+            partitionIndexBuilder = new FileHandle.Builder(descriptor.filenameFor(Component.PARTITION_INDEX)).mmapped(DatabaseDescriptor.getIndexAccessMode() == Config.DiskAccessMode.mmap);
+            chunkCache.ifPresent(rowIndexBuilder::withChunkCache);
+            chunkCache.ifPresent(partitionIndexBuilder::withChunkCache);
+            bf = FilterFactory.getFilter(keyCount, metadata().params.bloomFilterFpChance, metadata().params.compaction.blockedBloomFilter());
+        }
+
+        public void append(DecoratedKey key, RowIndexEntry indexEntry, ByteBuffer indexInfo) throws IOException
+        {
+            bf.add(key);
+            long payload;
+            if (indexEntry.isIndexed())
+            {
+                long rowIndexStart = rowIndexFile.position();
+                try
+                {
+                    rowIndexEntrySerializer.serialize(indexEntry, rowIndexFile, indexInfo);
+                }
+                catch (IOException e)
+                {
+                    throw new FSWriteError(e, rowIndexFile.getPath());
+                }
+
+                if (logger.isTraceEnabled())
+                    logger.trace("wrote row index entry: {} at {}", indexEntry, rowIndexStart);
+                payload = PartitionIndex.rowIndexPayload(rowIndexStart);
+            }
+            else
+            {
+                payload = PartitionIndex.dataPayload(indexEntry.position);
+            }
+
+            try
+            {
+                partitionIndex.addEntry(PartitionPositionEncoding.encode(key), payload);
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, partitionIndexFile.getPath());
+            }
+        }
+
+        /**
+         * Writes the last nodes of the partition index. No partition can be appended afterwards.
+         */
+        void complete()
+        {
+            try
+            {
+                partitionIndex.complete(first == null ? null : first.getKey(), last == null ? null : last.getKey());
+            }
+            catch (IOException e)
+            {
+                throw new FSWriteError(e, partitionIndexFile.getPath());
+            }
+        }
+
+        /**
+         * Closes the index and bloomfilter, making the public state of this writer valid for consumption.
+         */
+        void flushBf()
+        {
+            if (components.contains(Component.FILTER))
+            {
+                String path = descriptor.filenameFor(Component.FILTER);
+                try (FileOutputStream fos = new FileOutputStream(path);
+                     DataOutputStreamPlus stream = new BufferedDataOutputStreamPlus(fos))
+                {
+                    // bloom filter
+                    BloomFilterSerializer.serialize((BloomFilter) bf, stream);
+                    stream.flush();
+                    SyncUtil.sync(fos);
+                }
+                catch (IOException e)
+                {
+                    throw new FSWriteError(e, path);
+                }
+            }
+        }
+
+        public void mark()
+        {
+            mark = rowIndexFile.mark();
+        }
+
+        public void resetAndTruncate()
+        {
+            // we can't un-set the bloom filter addition, but extra keys in there are harmless.
+            // the partition index entry is added last in afterAppend, so if that worked we won't be trying to reset.
+            rowIndexFile.resetAndTruncate(mark);
+        }
+
+        protected void doPrepare()
+        {
+            complete();
+            flushBf();
+
+            // truncate row index file
+            long position = rowIndexFile.position();
+            rowIndexFile.prepareToCommit();
+            FileUtils.truncate(rowIndexFile.getPath(), position);
+
+            partitionIndexFile.prepareToCommit();
+        }
+
+        protected Throwable doCommit(Throwable accumulate)
+        {
+            accumulate = rowIndexFile.commit(accumulate);
+            return partitionIndexFile.commit(accumulate);
+        }
+
+        protected Throwable doAbort(Throwable accumulate)
+        {
+            accumulate = rowIndexFile.abort(accumulate);
+            return partitionIndexFile.abort(accumulate);
+        }
+
+        @Override
+        protected Throwable doPostCleanup(Throwable accumulate)
+        {
+            accumulate = bf.close(accumulate);
+            accumulate = rowIndexBuilder.close(accumulate);
+            accumulate = partitionIndexBuilder.close(accumulate);
+            return accumulate;
+        }
+    }
+}
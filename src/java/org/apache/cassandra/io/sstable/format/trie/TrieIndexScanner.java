@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+
+import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.filter.ClusteringIndexFilter;
+import org.apache.cassandra.db.filter.ColumnFilter;
+import org.apache.cassandra.db.rows.LazilyInitializedUnfilteredRowIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.CorruptSSTableException;
+import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.SSTableIdentityIterator;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableReadsListener;
+import org.apache.cassandra.io.sstable.format.big.BigTableScanner;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.AbstractIterator;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * Scanner of the sstables of the {@link TrieIndexFormat}. The partitions are enumerated by a cursor over the partition
+ * index, and their keys are read at their start in the data file, which the scanner reads sequentially.
+ */
+public class TrieIndexScanner implements ISSTableScanner
+{
+    private final AtomicBoolean isClosed = new AtomicBoolean(false);
+    protected final RandomAccessReader dfile;
+    protected final RandomAccessReader ifile;
+    protected final PartitionIndex.Reader index;
+    public final TrieIndexSSTableReader sstable;
+
+    private final Iterator<AbstractBounds<PartitionPosition>> rangeIterator;
+    private AbstractBounds<PartitionPosition> currentRange;
+
+    private final ColumnFilter columns;
+    private final DataRange dataRange;
+    private final SSTableReadsListener listener;
+    private long startScan = -1;
+    private long bytesScanned = 0;
+
+    protected Iterator<UnfilteredRowIterator> iterator;
+
+    // Full scan of the sstables
+    public static ISSTableScanner getScanner(TrieIndexSSTableReader sstable)
+    {
+        return getScanner(sstable, Iterators.singletonIterator(BigTableScanner.fullRange(sstable)));
+    }
+
+    public static ISSTableScanner getScanner(TrieIndexSSTableReader sstable,
+                                             ColumnFilter columns,
+                                             DataRange dataRange,
+                                             SSTableReadsListener listener)
+    {
+        return new TrieIndexScanner(sstable, columns, dataRange, BigTableScanner.makeBounds(sstable, dataRange).iterator(), listener);
+    }
+
+    public static ISSTableScanner getScanner(TrieIndexSSTableReader sstable, Collection<Range<Token>> tokenRanges)
+    {
+        // We want to avoid allocating a SSTableScanner if the range don't overlap the sstable (#5249)
+        List<SSTableReader.PartitionPositionBounds> positions = sstable.getPositionsForRanges(tokenRanges);
+        if (positions.isEmpty())
+            return new BigTableScanner.EmptySSTableScanner(sstable);
+
+        return getScanner(sstable, BigTableScanner.makeBounds(sstable, tokenRanges).iterator());
+    }
+
+    public static ISSTableScanner getScanner(TrieIndexSSTableReader sstable, Iterator<AbstractBounds<PartitionPosition>> rangeIterator)
+    {
+        return new TrieIndexScanner(sstable, ColumnFilter.all(sstable.metadata()), null, rangeIterator, SSTableReadsListener.NOOP_LISTENER);
+    }
+
+    private TrieIndexScanner(TrieIndexSSTableReader sstable,
+                             ColumnFilter columns,
+                             DataRange dataRange,
+                             Iterator<AbstractBounds<PartitionPosition>> rangeIterator,
+                             SSTableReadsListener listener)
+    {
+        assert sstable != null;
+
+        this.dfile = sstable.openDataReader();
+        this.ifile = sstable.openIndexReader();
+        this.index = sstable.partitionIndex.openReader();
+        this.sstable = sstable;
+        this.columns = columns;
+        this.dataRange = dataRange;
+        this.rangeIterator = rangeIterator;
+        this.listener = listener;
+    }
+
+    public void close()
+    {
+        try
+        {
+            if (isClosed.compareAndSet(false, true))
+                FileUtils.close(dfile, ifile, index);
+        }
+        catch (IOException e)
+        {
+            sstable.markSuspect();
+            throw new CorruptSSTableException(e, sstable.getFilename());
+        }
+    }
+
+    public long getLengthInBytes()
+    {
+        return dfile.length();
+    }
+
+    public long getCurrentPosition()
+    {
+        return dfile.getFilePointer();
+    }
+
+    public long getBytesScanned()
+    {
+        return bytesScanned;
+    }
+
+    public long getCompressedLengthInBytes()
+    {
+        return sstable.onDiskLength();
+    }
+
+    public Set<SSTableReader> getBackingSSTables()
+    {
+        return ImmutableSet.of(sstable);
+    }
+
+    public TableMetadata metadata()
+    {
+        return sstable.metadata();
+    }
+
+    public boolean hasNext()
+    {
+        if (iterator == null)
+            iterator = createIterator();
+        return iterator.hasNext();
+    }
+
+    public UnfilteredRowIterator next()
+    {
+        if (iterator == null)
+            iterator = createIterator();
+        return iterator.next();
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    private Iterator<UnfilteredRowIterator> createIterator()
+    {
+        this.listener.onScanningStarted(sstable);
+        return new KeyScanningIterator();
+    }
+
+    protected class KeyScanningIterator extends AbstractIterator<UnfilteredRowIterator>
+    {
+        protected UnfilteredRowIterator computeNext()
+        {
+            try
+            {
+                long payload;
+                if (currentRange == null)
+                {
+                    // we're starting the first range
+                    if (!rangeIterator.hasNext())
+                        return endOfData();
+                    payload = startRange();
+                }
+                else
+                {
+                    payload = index.next();
+                }
+
+                while (true)
+                {
+                    // the ranges are sorted, so there is nothing left to scan past the last partition
+                    if (payload == PartitionIndex.NOT_FOUND)
+                        return endOfData();
+
+                    RowIndexEntry entry = sstable.readEntry(payload, ifile);
+                    DecoratedKey key = sstable.readKey(dfile, entry.position);
+                    if (currentRange.contains(key))
+                        return partition(key, entry);
+
+                    if (currentRange.left.compareTo(key) >= 0)
+                    {
+                        // the key of the start bound of a range which excludes it
+                        payload = index.next();
+                    }
+                    else
+                    {
+                        // we just passed the end of the current range
+                        if (!rangeIterator.hasNext())
+                            return endOfData();
+                        payload = startRange();
+                    }
+                }
+            }
+            catch (CorruptSSTableException | IOException e)
+            {
+                sstable.markSuspect();
+                throw new CorruptSSTableException(e, sstable.getFilename());
+            }
+        }
+
+        private long startRange() throws IOException
+        {
+            if (startScan != -1)
+                bytesScanned += dfile.getFilePointer() - startScan;
+
+            currentRange = rangeIterator.next();
+            long payload = index.ceiling(PartitionPositionEncoding.encodeLowerBound(currentRange.left));
+            startScan = dfile.getFilePointer();
+            return payload;
+        }
+
+        private UnfilteredRowIterator partition(DecoratedKey key, RowIndexEntry entry)
+        {
+            /*
+             * For a given partition key, we want to avoid iterating the partition
+             * unless we're explicitely asked to. This is important
+             * for PartitionRangeReadCommand#checkCacheFilter.
+             */
+            return new LazilyInitializedUnfilteredRowIterator(key)
+            {
+                protected UnfilteredRowIterator initializeIterator()
+                {
+                    if (startScan != -1)
+                        bytesScanned += dfile.getFilePointer() - startScan;
+
+                    try
+                    {
+                        if (dataRange == null)
+                        {
+                            dfile.seek(entry.position);
+                            startScan = dfile.getFilePointer();
+                            ByteBufferUtil.skipShortLength(dfile); // key
+                            return SSTableIdentityIterator.create(sstable, dfile, partitionKey());
+                        }
+                        else
+                        {
+                            startScan = dfile.getFilePointer();
+                        }
+
+                        ClusteringIndexFilter filter = dataRange.clusteringIndexFilter(partitionKey());
+                        return sstable.iterator(dfile, partitionKey(), entry, filter.getSlices(TrieIndexScanner.this.metadata()), columns, filter.isReversed());
+                    }
+                    catch (CorruptSSTableException | IOException e)
+                    {
+                        sstable.markSuspect();
+                        throw new CorruptSSTableException(e, sstable.getFilename());
+                    }
+                }
+            };
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "(" +
+               "dfile=" + dfile +
+               " ifile=" + ifile +
+               " sstable=" + sstable +
+               ")";
+    }
+}
@@ -192,6 +192,45 @@ public class MetadataCollector implements PartitionStatisticsCollector
         }
     }
 
+    /**
+     * Updates the collected stats with the ones of an sstable whose partitions are copied without being deserialized.
+     * The min and max values and clusterings are those of the whole sstable, so this should be called once per such
+     * sstable, regardless of how many of its partitions are copied. The tombstone drop times can't be attributed to
+     * the copied partitions, so only sstables without any can be copied from.
+     */
+    public void update(StatsMetadata stats)
+    {
+        timestampTracker.update(stats.minTimestamp);
+        timestampTracker.update(stats.maxTimestamp);
+        localDeletionTimeTracker.update(stats.minLocalDeletionTime);
+        localDeletionTimeTracker.update(stats.maxLocalDeletionTime);
+        ttlTracker.update(stats.minTTL);
+        ttlTracker.update(stats.maxTTL);
+        assert stats.estimatedTombstoneDropTime.size() == 0 : "the tombstones of copied partitions can't be attributed";
+        if (!stats.minClusteringValues.isEmpty())
+            updateClusteringValues(Clustering.make(stats.minClusteringValues.toArray(new ByteBuffer[0])));
+        if (!stats.maxClusteringValues.isEmpty())
+            updateClusteringValues(Clustering.make(stats.maxClusteringValues.toArray(new ByteBuffer[0])));
+        updateHasLegacyCounterShards(stats.hasLegacyCounterShards);
+    }
+
+    /**
+     * Updates the collected stats with a partition copied without being deserialized from an sstable with the given
+     * stats, estimating its content from the average partition of that sstable.
+     */
+    public void updateCopiedPartition(long partitionSize, StatsMetadata stats)
+    {
+        long partitions = Math.max(1, stats.estimatedPartitionSize.count());
+        addPartitionSizeInBytes(partitionSize);
+        if (stats.estimatedCellPerPartitionCount.count() > 0 && !stats.estimatedCellPerPartitionCount.isOverflowed())
+            addCellPerPartitionCount(stats.estimatedCellPerPartitionCount.mean());
+        if (stats.totalRows > 0)
+        {
+            totalColumnsSet += stats.totalColumnsSet / partitions;
+            totalRows += Math.max(1, stats.totalRows / partitions);
+        }
+    }
+
     public void updateColumnSetPerRow(long columnSetInRow)
     {
         totalColumnsSet += columnSetInRow;
@@ -36,19 +36,28 @@ public abstract class BufferManagingRebufferer implements Rebufferer, Rebufferer
     protected final ChunkReader source;
     protected final ByteBuffer buffer;
     protected long offset = 0;
+    private final ChunkReadAhead readAhead;
 
     abstract long alignedPosition(long position);
 
     protected BufferManagingRebufferer(ChunkReader wrapped)
+    {
+        this(wrapped, 0);
+    }
+
+    protected BufferManagingRebufferer(ChunkReader wrapped, int readAheadChunks)
     {
         this.source = wrapped;
         buffer = BufferPool.get(wrapped.chunkSize(), wrapped.preferredBufferType()).order(ByteOrder.BIG_ENDIAN);
         buffer.limit(0);
+        readAhead = readAheadChunks > 0 ? new BufferReadAhead(readAheadChunks) : null;
     }
 
     @Override
     public void closeReader()
     {
+        if (readAhead != null)
+            readAhead.close();
         BufferPool.put(buffer);
         offset = -1;
     }
@@ -76,7 +85,24 @@ public abstract class BufferManagingRebufferer implements Rebufferer, Rebufferer
     public BufferHolder rebuffer(long position)
     {
         offset = alignedPosition(position);
-        source.readChunk(offset, buffer);
+        if (readAhead == null)
+        {
+            source.readChunk(offset, buffer);
+            return this;
+        }
+
+        ByteBuffer chunk = readAhead.take(offset);
+        if (chunk == null)
+        {
+            source.readChunk(offset, buffer);
+        }
+        else
+        {
+            buffer.clear();
+            buffer.put(chunk).flip();
+            BufferPool.put(chunk);
+        }
+        readAhead.onRead(offset);
         return this;
     }
 
@@ -110,6 +136,38 @@ public abstract class BufferManagingRebufferer implements Rebufferer, Rebufferer
         // nothing to do, we don't delete buffers before we're closed.
     }
 
+    /**
+     * Reads the chunks ahead into buffers of the same capacity as this rebufferer's, which are copied into it when
+     * the reader gets to them.
+     */
+    private class BufferReadAhead extends ChunkReadAhead
+    {
+        BufferReadAhead(int depth)
+        {
+            super(buffer.capacity(), depth, source.fileLength());
+        }
+
+        protected ByteBuffer read(long position)
+        {
+            ByteBuffer chunk = BufferPool.get(buffer.capacity(), source.preferredBufferType());
+            try
+            {
+                source.readChunk(position, chunk);
+                return chunk;
+            }
+            catch (Throwable t)
+            {
+                BufferPool.put(chunk);
+                throw t;
+            }
+        }
+
+        protected void discard(ByteBuffer chunk)
+        {
+            BufferPool.put(chunk);
+        }
+    }
+
     public static class Unaligned extends BufferManagingRebufferer
     {
         public Unaligned(ChunkReader wrapped)
@@ -117,6 +175,11 @@ public abstract class BufferManagingRebufferer implements Rebufferer, Rebufferer
             super(wrapped);
         }
 
+        public Unaligned(ChunkReader wrapped, int readAheadChunks)
+        {
+            super(wrapped, readAheadChunks);
+        }
+
         @Override
         long alignedPosition(long position)
         {
@@ -128,7 +191,12 @@ public abstract class BufferManagingRebufferer implements Rebufferer, Rebufferer
     {
         public Aligned(ChunkReader wrapped)
         {
-            super(wrapped);
+            this(wrapped, 0);
+        }
+
+        public Aligned(ChunkReader wrapped, int readAheadChunks)
+        {
+            super(wrapped, readAheadChunks);
             assert Integer.bitCount(wrapped.chunkSize()) == 1;
         }
 
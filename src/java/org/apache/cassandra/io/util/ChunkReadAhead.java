@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+/**
+ * Reads the chunks of a file asynchronously ahead of a reader scanning it sequentially, so that the reader doesn't
+ * wait for each chunk read in turn and the disk gets several requests at a time.
+ * <p>
+ * An instance belongs to a single reader, which calls {@link #take(long)} before reading a chunk and
+ * {@link #onRead(long)} after. Read-ahead starts once the reader has read {@link #SEQUENTIAL_READS} consecutive chunks,
+ * so that point reads crossing a chunk boundary don't trigger it, and keeps {@code depth} chunks in flight past the
+ * chunk being read. Any other access pattern discards the chunks read ahead.
+ */
+public abstract class ChunkReadAhead
+{
+    /**
+     * The number of consecutive chunks a reader must read for its reads to be considered sequential.
+     */
+    static final int SEQUENTIAL_READS = 3;
+
+    private static class ExecutorHolder
+    {
+        // created on first use, as most tools and clients never read ahead
+        private static final ExecutorService executor =
+            DebuggableThreadPoolExecutor.createWithMaximumPoolSize("ChunkReadAhead", DatabaseDescriptor.getConcurrentReadAheads(), 60, TimeUnit.SECONDS);
+    }
+
+    private static class Pending
+    {
+        final long position;
+        final Future<ByteBuffer> read;
+
+        Pending(long position, Future<ByteBuffer> read)
+        {
+            this.position = position;
+            this.read = read;
+        }
+    }
+
+    private final int stride;
+    private final int depth;
+    private final long fileLength;
+    private final ArrayDeque<Pending> pending;
+
+    private long nextSequential = -1;
+    private int sequentialReads;
+    private long nextScheduled;
+
+    /**
+     * @param stride the distance between the positions of consecutive chunks
+     * @param depth the number of chunks to read ahead of the reader
+     * @param fileLength the length of the file, past which no chunk is read
+     */
+    protected ChunkReadAhead(int stride, int depth, long fileLength)
+    {
+        assert stride > 0 && depth > 0;
+        this.stride = stride;
+        this.depth = depth;
+        this.fileLength = fileLength;
+        this.pending = new ArrayDeque<>(depth);
+    }
+
+    /**
+     * Reads the chunk at the given position. Called by the read-ahead threads.
+     *
+     * @return the result to return to the reader by {@link #take(long)}
+     */
+    protected abstract ByteBuffer read(long position);
+
+    /**
+     * Releases the result of a read the reader didn't take.
+     */
+    protected abstract void discard(ByteBuffer result);
+
+    /**
+     * Returns the chunk at the given position if it was read ahead, waiting for its read to complete, or null otherwise.
+     * The chunks read ahead before the given position are discarded, and all of them if the given position wasn't
+     * read ahead. The ownership of the returned buffer passes to the caller.
+     */
+    public ByteBuffer take(long position)
+    {
+        Pending head = pending.peekFirst();
+        while (head != null && head.position < position)
+        {
+            cancel(pending.pollFirst());
+            head = pending.peekFirst();
+        }
+
+        if (head == null)
+            return null;
+
+        if (head.position != position)
+        {
+            discardAll();
+            return null;
+        }
+
+        pending.pollFirst();
+        try
+        {
+            return Uninterruptibles.getUninterruptibly(head.read);
+        }
+        catch (ExecutionException e)
+        {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Notifies that the reader read the chunk at the given position, scheduling the read of the following chunks if the
+     * reads are sequential.
+     */
+    public void onRead(long position)
+    {
+        if (position == nextSequential)
+        {
+            sequentialReads++;
+        }
+        else
+        {
+            // the chunks still pending are past the position, keep them if the reader goes on from there
+            sequentialReads = 1;
+            nextScheduled = pending.isEmpty() ? position + stride : pending.peekLast().position + stride;
+        }
+        nextSequential = position + stride;
+
+        if (sequentialReads < SEQUENTIAL_READS)
+            return;
+
+        nextScheduled = Math.max(nextScheduled, nextSequential);
+        long limit = Math.min(fileLength, nextSequential + (long) depth * stride);
+        while (nextScheduled < limit)
+        {
+            long chunkPosition = nextScheduled;
+            pending.addLast(new Pending(chunkPosition, ExecutorHolder.executor.submit(() -> read(chunkPosition))));
+            nextScheduled += stride;
+        }
+    }
+
+    /**
+     * Discards all the chunks read ahead. Must be called when the reader is closed.
+     */
+    public void close()
+    {
+        discardAll();
+        nextSequential = -1;
+    }
+
+    private void discardAll()
+    {
+        while (!pending.isEmpty())
+            cancel(pending.pollFirst());
+    }
+
+    private void cancel(Pending chunk)
+    {
+        // if the read has not started it won't run anymore, otherwise wait for it, so that it isn't reading the file
+        // once it is closed
+        if (chunk.read.cancel(false))
+            return;
+
+        try
+        {
+            ByteBuffer result = Uninterruptibles.getUninterruptibly(chunk.read);
+            if (result != null)
+                discard(result);
+        }
+        catch (ExecutionException e)
+        {
+            // the reader doesn't need that chunk anymore
+        }
+    }
+}
@@ -87,11 +87,24 @@ public abstract class CompressedChunkReader extends AbstractReaderFileProxy impl
     {
         // we read the raw compressed bytes into this buffer, then uncompressed them into the provided one.
         private final ThreadLocal<ByteBuffer> compressedHolder;
+        private final int readAheadChunks;
 
         public Standard(ChannelProxy channel, CompressionMetadata metadata)
+        {
+            this(channel, metadata, 0);
+        }
+
+        public Standard(ChannelProxy channel, CompressionMetadata metadata, int readAheadChunks)
         {
             super(channel, metadata);
             compressedHolder = ThreadLocal.withInitial(this::allocateBuffer);
+            this.readAheadChunks = readAheadChunks;
+        }
+
+        @Override
+        public Rebufferer instantiateRebufferer()
+        {
+            return new BufferManagingRebufferer.Aligned(this, readAheadChunks);
         }
 
         public ByteBuffer allocateBuffer()
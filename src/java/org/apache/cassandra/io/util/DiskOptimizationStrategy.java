@@ -37,6 +37,14 @@ public interface DiskOptimizationStrategy
      */
     int bufferSize(long recordSize);
 
+    /**
+     * @return the number of chunks to read asynchronously ahead of a reader scanning a file sequentially, or 0 if the
+     * chunks should only be read when the reader gets to them.
+     *
+     * @see org.apache.cassandra.config.Config#disk_read_ahead_chunks
+     */
+    int readAheadChunks();
+
     /**
      * Round up to the next multiple of 4k but no more than {@link #MAX_BUFFER_SIZE}.
      */
@@ -239,6 +239,7 @@ public class FileHandle extends SharedCloseableImpl
         private ChunkCache chunkCache;
         private int bufferSize = RandomAccessReader.DEFAULT_BUFFER_SIZE;
         private BufferType bufferType = BufferType.OFF_HEAP;
+        private int readAheadChunks = 0;
 
         private boolean mmapped = false;
         private boolean compressed = false;
@@ -321,6 +322,19 @@ public class FileHandle extends SharedCloseableImpl
             return this;
         }
 
+        /**
+         * Set the number of chunks to read asynchronously ahead of the readers scanning the file sequentially. Only
+         * used if the file isn't memory mapped.
+         *
+         * @param readAheadChunks the number of chunks to read ahead, 0 to disable read-ahead
+         * @return this instance
+         */
+        public Builder readAheadChunks(int readAheadChunks)
+        {
+            this.readAheadChunks = readAheadChunks;
+            return this;
+        }
+
         /**
          * Complete building {@link FileHandle} without overriding file length.
          *
@@ -374,12 +388,12 @@ public class FileHandle extends SharedCloseableImpl
                     regions = null;
                     if (compressed)
                     {
-                        rebuffererFactory = maybeCached(new CompressedChunkReader.Standard(channelCopy, compressionMetadata));
+                        rebuffererFactory = maybeCached(new CompressedChunkReader.Standard(channelCopy, compressionMetadata, readAheadChunks));
                     }
                     else
                     {
                         int chunkSize = DiskOptimizationStrategy.roundForCaching(bufferSize, ChunkCache.roundUp);
-                        rebuffererFactory = maybeCached(new SimpleChunkReader(channelCopy, length, bufferType, chunkSize));
+                        rebuffererFactory = maybeCached(new SimpleChunkReader(channelCopy, length, bufferType, chunkSize, readAheadChunks));
                     }
                 }
                 Cleanup cleanup = new Cleanup(channelCopy, rebuffererFactory, compressionMetadata, chunkCache);
@@ -410,7 +424,7 @@ public class FileHandle extends SharedCloseableImpl
         private RebuffererFactory maybeCached(ChunkReader reader)
         {
             if (chunkCache != null && chunkCache.capacity() > 0)
-                return chunkCache.wrap(reader);
+                return chunkCache.wrap(reader, mmapped ? 0 : readAheadChunks);
             return reader;
         }
 
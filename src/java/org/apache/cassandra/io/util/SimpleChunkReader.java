@@ -26,12 +26,19 @@ class SimpleChunkReader extends AbstractReaderFileProxy implements ChunkReader
 {
     private final int bufferSize;
     private final BufferType bufferType;
+    private final int readAheadChunks;
 
     SimpleChunkReader(ChannelProxy channel, long fileLength, BufferType bufferType, int bufferSize)
+    {
+        this(channel, fileLength, bufferType, bufferSize, 0);
+    }
+
+    SimpleChunkReader(ChannelProxy channel, long fileLength, BufferType bufferType, int bufferSize, int readAheadChunks)
     {
         super(channel, fileLength);
         this.bufferSize = bufferSize;
         this.bufferType = bufferType;
+        this.readAheadChunks = readAheadChunks;
     }
 
     @Override
@@ -57,7 +64,7 @@ class SimpleChunkReader extends AbstractReaderFileProxy implements ChunkReader
     @Override
     public Rebufferer instantiateRebufferer()
     {
-        return new BufferManagingRebufferer.Unaligned(this);
+        return new BufferManagingRebufferer.Unaligned(this, readAheadChunks);
     }
 
     @Override
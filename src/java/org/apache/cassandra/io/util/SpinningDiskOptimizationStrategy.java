@@ -20,6 +20,22 @@ package org.apache.cassandra.io.util;
 
 public class SpinningDiskOptimizationStrategy implements DiskOptimizationStrategy
 {
+    private final int readAheadChunks;
+
+    /**
+     * Creates a strategy leaving the read-ahead of sequential scans to the OS, as concurrent reads would make the disk
+     * seek between them.
+     */
+    public SpinningDiskOptimizationStrategy()
+    {
+        this(0);
+    }
+
+    public SpinningDiskOptimizationStrategy(int readAheadChunks)
+    {
+        this.readAheadChunks = readAheadChunks;
+    }
+
     /**
      * For spinning disks always add one page.
      */
@@ -28,4 +44,10 @@ public class SpinningDiskOptimizationStrategy implements DiskOptimizationStrateg
     {
         return roundBufferSize(recordSize + 4096);
     }
+
+    @Override
+    public int readAheadChunks()
+    {
+        return readAheadChunks;
+    }
 }
@@ -20,11 +20,20 @@ package org.apache.cassandra.io.util;
 
 public class SsdDiskOptimizationStrategy implements DiskOptimizationStrategy
 {
+    public static final int DEFAULT_READ_AHEAD_CHUNKS = 8;
+
     private final double diskOptimizationPageCrossChance;
+    private final int readAheadChunks;
 
     public SsdDiskOptimizationStrategy(double diskOptimizationPageCrossChance)
+    {
+        this(diskOptimizationPageCrossChance, DEFAULT_READ_AHEAD_CHUNKS);
+    }
+
+    public SsdDiskOptimizationStrategy(double diskOptimizationPageCrossChance, int readAheadChunks)
     {
         this.diskOptimizationPageCrossChance = diskOptimizationPageCrossChance;
+        this.readAheadChunks = readAheadChunks;
     }
 
     /**
@@ -46,4 +55,14 @@ public class SsdDiskOptimizationStrategy implements DiskOptimizationStrategy
 
         return roundBufferSize(recordSize);
     }
+
+    /**
+     * Solid state disks serve concurrent requests in parallel, so sequential scans are the fastest with several chunk
+     * reads in flight.
+     */
+    @Override
+    public int readAheadChunks()
+    {
+        return readAheadChunks;
+    }
 }
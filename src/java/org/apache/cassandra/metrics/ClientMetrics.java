@@ -44,6 +44,7 @@ public final class ClientMetrics
     private AtomicInteger pausedConnections;
     private Gauge<Integer> pausedConnectionsGauge;
     private Meter requestDiscarded;
+    private Meter pipelinedRequests;
 
     private ClientMetrics()
     {
@@ -64,6 +65,8 @@ public final class ClientMetrics
 
     public void markRequestDiscarded() { requestDiscarded.mark(); }
 
+    public void markPipelinedRequests(int count) { pipelinedRequests.mark(count); }
+
     public List<ConnectedClient> allConnectedClients()
     {
         List<ConnectedClient> clients = new ArrayList<>();
@@ -92,6 +95,7 @@ public final class ClientMetrics
         pausedConnections = new AtomicInteger();
         pausedConnectionsGauge = registerGauge("PausedConnections", pausedConnections::get);
         requestDiscarded = registerMeter("RequestDiscarded");
+        pipelinedRequests = registerMeter("PipelinedRequests");
 
         initialized = true;
     }
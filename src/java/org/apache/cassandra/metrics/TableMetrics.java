@@ -136,6 +136,12 @@ public class TableMetrics
     public final Gauge<Long> compressionMetadataOffHeapMemoryUsed;
     /** Key cache hit rate  for this CF */
     public final Gauge<Double> keyCacheHitRate;
+    /** Number of chunk cache hits of the reads of this table's sstables */
+    public final Counter chunkCacheHit;
+    /** Number of chunk cache misses of the reads of this table's sstables */
+    public final Counter chunkCacheMiss;
+    /** Chunk cache hit rate for this table */
+    public final Gauge<Double> chunkCacheHitRate;
     /** Tombstones scanned in queries on this CF */
     public final TableHistogram tombstoneScannedHistogram;
     /** Live rows scanned in queries on this CF */
@@ -877,6 +883,19 @@ public class TableMetrics
                 return Math.max(requests, 1); // to avoid NaN.
             }
         });
+        chunkCacheHit = createTableCounter("ChunkCacheHit");
+        chunkCacheMiss = createTableCounter("ChunkCacheMiss");
+        chunkCacheHitRate = Metrics.register(factory.createMetricName("ChunkCacheHitRate"),
+                                             aliasFactory.createMetricName("ChunkCacheHitRate"),
+                                             new RatioGauge()
+        {
+            @Override
+            public Ratio getRatio()
+            {
+                long hits = chunkCacheHit.getCount();
+                return Ratio.of(hits, Math.max(hits + chunkCacheMiss.getCount(), 1)); // to avoid NaN.
+            }
+        });
         tombstoneScannedHistogram = createTableHistogram("TombstoneScannedHistogram", cfs.keyspace.metric.tombstoneScannedHistogram, false);
         liveScannedHistogram = createTableHistogram("LiveScannedHistogram", cfs.keyspace.metric.liveScannedHistogram, false);
         colUpdateTimeDeltaHistogram = createTableHistogram("ColUpdateTimeDeltaHistogram", cfs.keyspace.metric.colUpdateTimeDeltaHistogram, false);
@@ -973,6 +992,7 @@ public class TableMetrics
         Metrics.remove(factory.createMetricName("EstimatedPartitionCount"), aliasFactory.createMetricName("EstimatedRowCount"));
         Metrics.remove(factory.createMetricName("EstimatedColumnCountHistogram"), aliasFactory.createMetricName("EstimatedColumnCountHistogram"));
         Metrics.remove(factory.createMetricName("KeyCacheHitRate"), aliasFactory.createMetricName("KeyCacheHitRate"));
+        Metrics.remove(factory.createMetricName("ChunkCacheHitRate"), aliasFactory.createMetricName("ChunkCacheHitRate"));
         Metrics.remove(factory.createMetricName("CoordinatorReadLatency"), aliasFactory.createMetricName("CoordinatorReadLatency"));
         Metrics.remove(factory.createMetricName("CoordinatorScanLatency"), aliasFactory.createMetricName("CoordinatorScanLatency"));
         Metrics.remove(factory.createMetricName("CoordinatorWriteLatency"), aliasFactory.createMetricName("CoordinatorWriteLatency"));
@@ -77,6 +77,8 @@ public abstract class AsyncChannelOutputPlus extends BufferedDataOutputStreamPlu
      */
     private volatile long signalWhenFlushed; // updated only by writer
     private volatile Thread waiting; // updated only by writer
+    /** the time the writer spent waiting for flushes to catch up; updated only by writer */
+    private long parkedNanos;
 
     public AsyncChannelOutputPlus(Channel channel)
     {
@@ -171,8 +173,10 @@ public abstract class AsyncChannelOutputPlus extends BufferedDataOutputStreamPlu
         this.waiting = Thread.currentThread();
         this.signalWhenFlushed = signalWhenFlushed;
 
+        long start = System.nanoTime();
         while (flushed < wakeUpWhenFlushed)
             LockSupport.park();
+        parkedNanos += System.nanoTime() - start;
         waiting = null;
     }
 
@@ -218,6 +222,15 @@ public abstract class AsyncChannelOutputPlus extends BufferedDataOutputStreamPlu
         return flushedToNetwork;
     }
 
+    /**
+     * The time the writer spent waiting for the channel to accept more bytes, that is for the network or the peer to
+     * catch up. May only be invoked by the writer thread.
+     */
+    public long parkedNanos()
+    {
+        return parkedNanos;
+    }
+
     /**
      * Perform an asynchronous flush, then waits until all outstanding flushes have completed
      *
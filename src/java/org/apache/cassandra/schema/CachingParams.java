@@ -29,13 +29,14 @@ import org.apache.cassandra.exceptions.ConfigurationException;
 
 import static java.lang.String.format;
 
-// CQL: {'keys' : 'ALL'|'NONE', 'rows_per_partition': '200'|'NONE'|'ALL'}
+// CQL: {'keys' : 'ALL'|'NONE', 'rows_per_partition': '200'|'NONE'|'ALL', 'slices': 'ALL'|'NONE'}
 public final class CachingParams
 {
     public enum Option
     {
         KEYS,
-        ROWS_PER_PARTITION;
+        ROWS_PER_PARTITION,
+        SLICES;
 
         @Override
         public String toString()
@@ -59,11 +60,18 @@ public final class CachingParams
 
     final boolean cacheKeys;
     final int rowsPerPartitionToCache;
+    final boolean cacheSlices;
 
     public CachingParams(boolean cacheKeys, int rowsPerPartitionToCache)
+    {
+        this(cacheKeys, rowsPerPartitionToCache, false);
+    }
+
+    public CachingParams(boolean cacheKeys, int rowsPerPartitionToCache, boolean cacheSlices)
     {
         this.cacheKeys = cacheKeys;
         this.rowsPerPartitionToCache = rowsPerPartitionToCache;
+        this.cacheSlices = cacheSlices;
     }
 
     public boolean cacheKeys()
@@ -86,6 +94,15 @@ public final class CachingParams
         return rowsPerPartitionToCache;
     }
 
+    /**
+     * Whether the row cache holds the slices of the partitions that queries read, up to rowsPerPartitionToCache rows
+     * per slice, rather than the head of the partitions.
+     */
+    public boolean cacheSlices()
+    {
+        return cacheSlices;
+    }
+
     public static CachingParams fromMap(Map<String, String> map)
     {
         Map<String, String> copy = new HashMap<>(map);
@@ -98,23 +115,44 @@ public final class CachingParams
                                     ? 0
                                     : rowsPerPartitionFromString(rows);
 
+        String slices = copy.remove(Option.SLICES.toString());
+        boolean cacheSlices = slices != null && slicesFromString(slices);
+
         if (!copy.isEmpty())
         {
-            throw new ConfigurationException(format("Invalid caching sub-options %s: only '%s' and '%s' are allowed",
+            throw new ConfigurationException(format("Invalid caching sub-options %s: only '%s', '%s' and '%s' are allowed",
                                                     copy.keySet(),
                                                     Option.KEYS,
-                                                    Option.ROWS_PER_PARTITION));
+                                                    Option.ROWS_PER_PARTITION,
+                                                    Option.SLICES));
         }
 
-        return new CachingParams(cacheKeys, rowsPerPartitionToCache);
+        if (cacheSlices && rowsPerPartitionToCache == 0)
+        {
+            throw new ConfigurationException(format("Caching sub-option '%s' requires a '%s' value other than '%s'",
+                                                    Option.SLICES,
+                                                    Option.ROWS_PER_PARTITION,
+                                                    NONE));
+        }
+
+        return new CachingParams(cacheKeys, rowsPerPartitionToCache, cacheSlices);
     }
 
     public Map<String, String> asMap()
     {
+        // slices is only included when set, so that the schema of the tables not using it is unchanged
+        if (!cacheSlices)
+            return ImmutableMap.of(Option.KEYS.toString(),
+                                   keysAsString(),
+                                   Option.ROWS_PER_PARTITION.toString(),
+                                   rowsPerPartitionAsString());
+
         return ImmutableMap.of(Option.KEYS.toString(),
                                keysAsString(),
                                Option.ROWS_PER_PARTITION.toString(),
-                               rowsPerPartitionAsString());
+                               rowsPerPartitionAsString(),
+                               Option.SLICES.toString(),
+                               ALL);
     }
 
     private static boolean keysFromString(String value)
@@ -166,9 +204,33 @@ public final class CachingParams
             return Integer.toString(rowsPerPartitionToCache);
     }
 
+    private static boolean slicesFromString(String value)
+    {
+        if (value.equalsIgnoreCase(ALL))
+            return true;
+
+        if (value.equalsIgnoreCase(NONE))
+            return false;
+
+        throw new ConfigurationException(format("Invalid value '%s' for caching sub-option '%s': only '%s' and '%s' are allowed",
+                                                value,
+                                                Option.SLICES,
+                                                ALL,
+                                                NONE));
+    }
+
     @Override
     public String toString()
     {
+        if (cacheSlices)
+            return format("{'%s' : '%s', '%s' : '%s', '%s' : '%s'}",
+                          Option.KEYS,
+                          keysAsString(),
+                          Option.ROWS_PER_PARTITION,
+                          rowsPerPartitionAsString(),
+                          Option.SLICES,
+                          ALL);
+
         return format("{'%s' : '%s', '%s' : '%s'}",
                       Option.KEYS,
                       keysAsString(),
@@ -187,12 +249,12 @@ public final class CachingParams
 
         CachingParams c = (CachingParams) o;
 
-        return cacheKeys == c.cacheKeys && rowsPerPartitionToCache == c.rowsPerPartitionToCache;
+        return cacheKeys == c.cacheKeys && rowsPerPartitionToCache == c.rowsPerPartitionToCache && cacheSlices == c.cacheSlices;
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hashCode(cacheKeys, rowsPerPartitionToCache);
+        return Objects.hashCode(cacheKeys, rowsPerPartitionToCache, cacheSlices);
     }
 }
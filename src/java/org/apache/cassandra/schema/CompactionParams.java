@@ -18,12 +18,14 @@
 package org.apache.cassandra.schema;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableMap;
+import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,7 +48,8 @@ public final class CompactionParams
         ENABLED,
         MIN_THRESHOLD,
         MAX_THRESHOLD,
-        PROVIDE_OVERLAPPING_TOMBSTONES;
+        PROVIDE_OVERLAPPING_TOMBSTONES,
+        BLOOM_FILTER;
 
         @Override
         public String toString()
@@ -62,6 +65,16 @@ public final class CompactionParams
         CELL;
     }
 
+    /**
+     * The bloom filters of the sstables: classic ones, or blocked ones which probe a single cache line per lookup
+     * (see {@link org.apache.cassandra.utils.BlockedBloomFilter}).
+     */
+    public enum BloomFilterOption
+    {
+        CLASSIC,
+        BLOCKED;
+    }
+
     public static final int DEFAULT_MIN_THRESHOLD = 4;
     public static final int DEFAULT_MAX_THRESHOLD = 32;
 
@@ -138,6 +151,12 @@ public final class CompactionParams
         return tombstoneOption;
     }
 
+    public boolean blockedBloomFilter()
+    {
+        String option = options.get(Option.BLOOM_FILTER.toString());
+        return option != null && BloomFilterOption.BLOCKED.toString().equalsIgnoreCase(option);
+    }
+
     public void validate()
     {
         try
@@ -175,6 +194,15 @@ public final class CompactionParams
             throw new ConfigurationException("Cannot access method validateOptions in " + klass.getName(), e);
         }
 
+        String bloomFilter = options.get(Option.BLOOM_FILTER.toString());
+        if (bloomFilter != null && !EnumUtils.isValidEnum(BloomFilterOption.class, bloomFilter.toUpperCase()))
+        {
+            throw new ConfigurationException(format("Invalid value %s for '%s' compaction sub-option - must be one of %s",
+                                                    bloomFilter,
+                                                    Option.BLOOM_FILTER,
+                                                    Arrays.toString(BloomFilterOption.values()).toLowerCase()));
+        }
+
         String minThreshold = options.get(Option.MIN_THRESHOLD.toString());
         if (minThreshold != null && !StringUtils.isNumeric(minThreshold))
         {
@@ -133,6 +133,7 @@ public final class SchemaKeyspace
               + "gc_grace_seconds int,"
               + "id uuid,"
               + "max_index_interval int,"
+              + "memtable frozen<map<text, text>>,"
               + "memtable_flush_period_in_ms int,"
               + "min_index_interval int,"
               + "read_repair_chance double," // no longer used, left for drivers' sake
@@ -200,6 +201,7 @@ public final class SchemaKeyspace
               + "id uuid,"
               + "include_all_columns boolean,"
               + "max_index_interval int,"
+              + "memtable frozen<map<text, text>>,"
               + "memtable_flush_period_in_ms int,"
               + "min_index_interval int,"
               + "read_repair_chance double," // no longer used, left for drivers' sake
@@ -570,6 +572,7 @@ public final class SchemaKeyspace
                .add("caching", params.caching.asMap())
                .add("compaction", params.compaction.asMap())
                .add("compression", params.compression.asMap())
+               .add("memtable", params.memtable.asMap())
                .add("read_repair", params.readRepair.toString())
                .add("extensions", params.extensions);
 
@@ -986,6 +989,9 @@ public final class SchemaKeyspace
                           .comment(row.getString("comment"))
                           .compaction(CompactionParams.fromMap(row.getFrozenTextMap("compaction")))
                           .compression(CompressionParams.fromMap(row.getFrozenTextMap("compression")))
+                          .memtable(row.has("memtable") ?
+                                        MemtableParams.fromMap(row.getFrozenTextMap("memtable")) :
+                                        MemtableParams.DEFAULT)
                           .defaultTimeToLive(row.getInt("default_time_to_live"))
                           .extensions(row.getFrozenMap("extensions", UTF8Type.instance, BytesType.instance))
                           .gcGraceSeconds(row.getInt("gc_grace_seconds"))
@@ -792,6 +792,12 @@ public final class TableMetadata
             return this;
         }
 
+        public Builder memtable(MemtableParams val)
+        {
+            params.memtable(val);
+            return this;
+        }
+
         public Builder defaultTimeToLive(int val)
         {
             params.defaultTimeToLive(val);
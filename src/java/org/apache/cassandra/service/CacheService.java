@@ -99,12 +99,19 @@ public class CacheService implements CacheServiceMBean
     {
         logger.info("Initializing key cache with capacity of {} MBs.", DatabaseDescriptor.getKeyCacheSizeInMB());
 
-        long keyCacheInMemoryCapacity = DatabaseDescriptor.getKeyCacheSizeInMB() * 1024 * 1024;
+        CacheProvider<KeyCacheKey, RowIndexEntry> cacheProvider;
+        try
+        {
+            Class<CacheProvider<KeyCacheKey, RowIndexEntry>> cacheProviderClass =
+                (Class<CacheProvider<KeyCacheKey, RowIndexEntry>>) Class.forName(DatabaseDescriptor.getKeyCacheClassName());
+            cacheProvider = cacheProviderClass.newInstance();
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException("Cannot find configured key cache provider class " + DatabaseDescriptor.getKeyCacheClassName());
+        }
 
-        // as values are constant size we can use singleton weigher
-        // where 48 = 40 bytes (average size of the key) + 8 bytes (size of value)
-        ICache<KeyCacheKey, RowIndexEntry> kc;
-        kc = CaffeineCache.create(keyCacheInMemoryCapacity);
+        ICache<KeyCacheKey, RowIndexEntry> kc = cacheProvider.create();
         AutoSavingCache<KeyCacheKey, RowIndexEntry> keyCache = new AutoSavingCache<>(kc, CacheType.KEY_CACHE, new KeyCacheSerializer());
 
         int keyCacheKeysToSave = DatabaseDescriptor.getKeyCacheKeysToSave();
@@ -391,6 +398,9 @@ public class CacheService implements CacheServiceMBean
             final ByteBuffer buffer = ByteBufferUtil.readWithLength(in);
             if (cfs == null  || !cfs.isRowCacheEnabled())
                 return null;
+            // the saved keys don't tell which slices of the partitions were cached
+            if (cfs.metadata().params.caching.cacheSlices())
+                return null;
             final int rowsToCache = cfs.metadata().params.caching.rowsPerPartitionToCache();
             assert(!cfs.isIndex());//Shouldn't have row cache entries for indexes
 
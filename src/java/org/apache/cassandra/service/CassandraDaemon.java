@@ -57,6 +57,8 @@ import org.apache.cassandra.schema.Schema;
 import org.apache.cassandra.schema.SchemaConstants;
 import org.apache.cassandra.cql3.QueryProcessor;
 import org.apache.cassandra.db.*;
+import org.apache.cassandra.db.compaction.CompactionIOScheduler;
+import org.apache.cassandra.db.compaction.TombstoneCompactionScheduler;
 import org.apache.cassandra.db.commitlog.CommitLog;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.exceptions.StartupException;
@@ -430,6 +432,12 @@ public class CassandraDaemon
         // due to scheduling errors or race conditions
         ScheduledExecutors.optionalTasks.scheduleWithFixedDelay(ColumnFamilyStore.getBackgroundCompactionTaskSubmitter(), 5, 1, TimeUnit.MINUTES);
 
+        // schedule periodic rebalancing of the compaction throughput between the running operations
+        ScheduledExecutors.scheduledFastTasks.scheduleWithFixedDelay(CompactionIOScheduler.instance, CompactionIOScheduler.INTERVAL_MILLIS, CompactionIOScheduler.INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        // schedule periodic tombstone compactions across tables, if tombstone_compaction_throughput_mb_per_sec is set
+        ScheduledExecutors.optionalTasks.scheduleWithFixedDelay(TombstoneCompactionScheduler.instance, 300, TombstoneCompactionScheduler.INTERVAL_SECONDS, TimeUnit.SECONDS);
+
         // schedule periodic recomputation of speculative retry thresholds
         ScheduledExecutors.optionalTasks.scheduleWithFixedDelay(
             () -> Keyspace.all().forEach(k -> k.getColumnFamilyStores().forEach(ColumnFamilyStore::updateSpeculationThreshold)),
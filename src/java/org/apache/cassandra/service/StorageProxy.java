@@ -23,7 +23,9 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheLoader;
 import com.google.common.collect.*;
@@ -43,6 +45,7 @@ import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.concurrent.StageManager;
 import org.apache.cassandra.service.reads.AbstractReadExecutor;
 import org.apache.cassandra.service.reads.DataResolver;
+import org.apache.cassandra.service.reads.DigestResolver;
 import org.apache.cassandra.service.reads.ReadCallback;
 import org.apache.cassandra.service.reads.repair.ReadRepair;
 import org.apache.cassandra.schema.TableMetadata;
@@ -165,6 +168,15 @@ public class StorageProxy implements StorageProxyMBean
         ReadRepairMetrics.init();
     }
 
+    /**
+     * @return the metrics of the single partition reads coordinated by this node, whose latencies are the ones the
+     * clients observe, unlike the ones of the local reads of the tables
+     */
+    public static ClientRequestMetrics getReadMetrics()
+    {
+        return readMetrics;
+    }
+
     /**
      * Apply @param updates if and only if the current values in the row for @param key
      * match the provided @param conditions.  The algorithm is "raw" Paxos: that is, Paxos
@@ -1604,14 +1616,19 @@ public class StorageProxy implements StorageProxyMBean
         return result;
     }
 
-    @SuppressWarnings("resource")
     private static PartitionIterator readRegular(SinglePartitionReadCommand.Group group, ConsistencyLevel consistencyLevel, long queryStartNanoTime)
     throws UnavailableException, ReadFailureException, ReadTimeoutException
     {
-        long start = System.nanoTime();
+        return readRegular(group, consistencyLevel, System.nanoTime(), () -> fetchRows(group.queries, consistencyLevel, queryStartNanoTime));
+    }
+
+    @SuppressWarnings("resource")
+    private static PartitionIterator readRegular(SinglePartitionReadCommand.Group group, ConsistencyLevel consistencyLevel, long start, Supplier<PartitionIterator> reads)
+    throws UnavailableException, ReadFailureException, ReadTimeoutException
+    {
         try
         {
-            PartitionIterator result = fetchRows(group.queries, consistencyLevel, queryStartNanoTime);
+            PartitionIterator result = reads.get();
             // Note that the only difference between the command in a group must be the partition key on which
             // they applied.
             boolean enforceStrictLiveness = group.queries.get(0).metadata().enforceStrictLiveness();
@@ -1650,6 +1667,91 @@ public class StorageProxy implements StorageProxyMBean
         }
     }
 
+    /**
+     * Starts reading the provided group as {@link #read(SinglePartitionReadCommand.Group, ConsistencyLevel, long)}
+     * would, by sending the requests to the replicas, but returns without waiting for their responses. This lets a
+     * thread overlap the reads of several requests, like those of a group of pipelined requests of a connection.
+     *
+     * @return the started read, whose {@link PendingRead#get()} waits for and returns its result.
+     */
+    public static PendingRead readAsync(SinglePartitionReadCommand.Group group, ConsistencyLevel consistencyLevel, long queryStartNanoTime)
+    throws UnavailableException, IsBootstrappingException
+    {
+        assert !consistencyLevel.isSerialConsistency();
+        if (StorageService.instance.isBootstrapMode() && !systemKeyspaceQuery(group.queries))
+            throw new IsBootstrappingException();
+
+        long start = System.nanoTime();
+        AbstractReadExecutor[] reads = startFetchingRows(group.queries, consistencyLevel, queryStartNanoTime);
+        return new PendingRead(group, consistencyLevel, start, () -> awaitRows(reads));
+    }
+
+    /**
+     * A read started by {@link #readAsync} or {@link #readFromMemory}.
+     */
+    public static class PendingRead
+    {
+        private final SinglePartitionReadCommand.Group group;
+        private final ConsistencyLevel consistencyLevel;
+        private final long start;
+        private final Supplier<PartitionIterator> rows;
+
+        private PendingRead(SinglePartitionReadCommand.Group group, ConsistencyLevel consistencyLevel, long start, Supplier<PartitionIterator> rows)
+        {
+            this.group = group;
+            this.consistencyLevel = consistencyLevel;
+            this.start = start;
+            this.rows = rows;
+        }
+
+        /**
+         * Waits for the responses of the replicas and returns the result of the read, as {@link #read} would.
+         */
+        public PartitionIterator get() throws UnavailableException, ReadFailureException, ReadTimeoutException
+        {
+            return readRegular(group, consistencyLevel, start, rows);
+        }
+    }
+
+    /**
+     * Reads the provided group from the memtables of this node alone, on the calling thread, if this can be done
+     * without blocking: {@link DatabaseDescriptor#getNativeTransportInlineReads()} must be enabled, and the group must
+     * be a read of a single partition at ONE or LOCAL_ONE that this node is a full replica of and has in memory, see
+     * {@link SinglePartitionReadCommand#isServedFromMemory()}.
+     * <p>
+     * The read is executed by a {@link LocalReadRunnable}, as it would on the READ stage, that checks that the partition
+     * is in memory once it has started reading, as an sstable may have been flushed since.
+     *
+     * @return the completed read, or {@code null} if it couldn't be served from memory and should be executed regularly,
+     * off the calling thread.
+     */
+    public static PendingRead readFromMemory(SinglePartitionReadCommand.Group group, ConsistencyLevel consistencyLevel, long queryStartNanoTime)
+    {
+        if (!DatabaseDescriptor.getNativeTransportInlineReads()
+            || (consistencyLevel != ConsistencyLevel.ONE && consistencyLevel != ConsistencyLevel.LOCAL_ONE)
+            || group.queries.size() != 1
+            || StorageService.instance.isBootstrapMode())
+            return null;
+
+        SinglePartitionReadCommand command = group.queries.get(0);
+        Keyspace keyspace = Keyspace.open(command.metadata().keyspace);
+        Replica self = keyspace.getReplicationStrategy().getNaturalReplicasForToken(command.partitionKey()).selfIfPresent();
+        if (self == null || !self.isFull())
+            return null;
+
+        ReplicaPlan.SharedForTokenRead replicaPlan = ReplicaPlan.shared(ReplicaPlans.forSingleReplicaRead(keyspace, command.partitionKey().getToken(), self));
+        DigestResolver<EndpointsForToken, ReplicaPlan.ForTokenRead> resolver = new DigestResolver<>(command, replicaPlan, queryStartNanoTime);
+        ReadCallback<EndpointsForToken, ReplicaPlan.ForTokenRead> handler = new ReadCallback<>(resolver, command, replicaPlan, queryStartNanoTime);
+        PendingRead read = new PendingRead(group, consistencyLevel, System.nanoTime(), () -> {
+            handler.awaitResults();
+            return resolver.getData();
+        });
+
+        LocalReadRunnable localRead = new LocalReadRunnable(command, handler, true);
+        localRead.run();
+        return localRead.isExecuted() ? read : null;
+    }
+
     private static PartitionIterator concatAndBlockOnRepair(List<PartitionIterator> iterators, List<ReadRepair> repairs)
     {
         PartitionIterator concatenated = PartitionIterators.concat(iterators);
@@ -1691,6 +1793,15 @@ public class StorageProxy implements StorageProxyMBean
      */
     private static PartitionIterator fetchRows(List<SinglePartitionReadCommand> commands, ConsistencyLevel consistencyLevel, long queryStartNanoTime)
     throws UnavailableException, ReadFailureException, ReadTimeoutException
+    {
+        return awaitRows(startFetchingRows(commands, consistencyLevel, queryStartNanoTime));
+    }
+
+    /**
+     * The first steps of {@link #fetchRows}, that send the requests to the replicas.
+     */
+    private static AbstractReadExecutor[] startFetchingRows(List<SinglePartitionReadCommand> commands, ConsistencyLevel consistencyLevel, long queryStartNanoTime)
+    throws UnavailableException
     {
         int cmdCount = commands.size();
 
@@ -1710,6 +1821,17 @@ public class StorageProxy implements StorageProxyMBean
             reads[i].executeAsync();
         }
 
+        return reads;
+    }
+
+    /**
+     * The last steps of {@link #fetchRows}, that wait for the responses of the replicas.
+     */
+    private static PartitionIterator awaitRows(AbstractReadExecutor[] reads)
+    throws ReadFailureException, ReadTimeoutException
+    {
+        int cmdCount = reads.length;
+
         // if we have a speculating read executor and it looks like we may not receive a response from the initial
         // set of replicas we sent messages to, speculatively send an additional messages to an un-contacted replica
         for (int i=0; i<cmdCount; i++)
@@ -1755,12 +1877,30 @@ public class StorageProxy implements StorageProxyMBean
     {
         private final ReadCommand command;
         private final ReadCallback handler;
+        // whether the read is only executed if it is served from memory, see readFromMemory
+        private final boolean fromMemoryOnly;
+        private boolean executed;
 
         public LocalReadRunnable(ReadCommand command, ReadCallback handler)
+        {
+            this(command, handler, false);
+        }
+
+        LocalReadRunnable(ReadCommand command, ReadCallback handler, boolean fromMemoryOnly)
         {
             super(Verb.READ_REQ);
             this.command = command;
             this.handler = handler;
+            this.fromMemoryOnly = fromMemoryOnly;
+        }
+
+        /**
+         * Whether the read was executed, and the handler was notified of its outcome: it isn't if it expired before
+         * running, or if it is only executed from memory and the partition wasn't in memory anymore.
+         */
+        boolean isExecuted()
+        {
+            return executed;
         }
 
         protected void runMayThrow()
@@ -1770,10 +1910,16 @@ public class StorageProxy implements StorageProxyMBean
                 command.setMonitoringTime(approxCreationTimeNanos, false, verb.expiresAfterNanos(), DatabaseDescriptor.getSlowQueryTimeout(NANOSECONDS));
 
                 ReadResponse response;
-                try (ReadExecutionController executionController = command.executionController();
-                     UnfilteredPartitionIterator iterator = command.executeLocally(executionController))
+                try (ReadExecutionController executionController = command.executionController())
                 {
-                    response = command.createResponse(iterator);
+                    if (fromMemoryOnly && !((SinglePartitionReadCommand) command).isServedFromMemory())
+                        return;
+
+                    executed = true;
+                    try (UnfilteredPartitionIterator iterator = command.executeLocally(executionController))
+                    {
+                        response = command.createResponse(iterator);
+                    }
                 }
 
                 if (command.complete())
@@ -1805,12 +1951,16 @@ public class StorageProxy implements StorageProxyMBean
     }
 
     /**
-     * Estimate the number of result rows per range in the ring based on our local data.
+     * Estimate the number of result rows per unit of range size, as measured by {@link #rangeSize}, based on our
+     * local data.
      * <p>
-     * This assumes that ranges are uniformly distributed across the cluster and
-     * that the queried data is also uniformly distributed.
+     * This assumes that the queried data is uniformly distributed across the token space, but not that the ranges
+     * are: the rows expected from a range are proportional to the share of the ring it covers, so that the small
+     * and large ranges of an unbalanced vnode ring get their due. If the partitioner can't measure ranges, they all
+     * have a size of 1 and this is the estimate of the number of rows per range, assuming that ranges are uniformly
+     * distributed across the cluster.
      */
-    private static float estimateResultsPerRange(PartitionRangeReadCommand command, Keyspace keyspace)
+    private static float estimateResultsPerRangeSize(PartitionRangeReadCommand command, Keyspace keyspace)
     {
         ColumnFamilyStore cfs = keyspace.getColumnFamilyStore(command.metadata().id);
         Index index = command.getIndex(cfs);
@@ -1818,10 +1968,81 @@ public class StorageProxy implements StorageProxyMBean
                                  ? command.limits().estimateTotalResults(cfs)
                                  : index.getEstimatedResultRows();
 
-        // adjust maxExpectedResults by the number of tokens this node has and the replication factor for this ks
+        // adjust maxExpectedResults by the share of the ring the data of this node covers if we can measure it...
+        if (canMeasureRanges(command, keyspace))
+        {
+            double localSize = localRingShare(keyspace);
+            if (localSize > 0)
+                return (float) (maxExpectedResults / localSize);
+        }
+
+        // ... or by the number of tokens this node has and the replication factor for this ks otherwise
         return (maxExpectedResults / DatabaseDescriptor.getNumTokens()) / keyspace.getReplicationStrategy().getReplicationFactor().allReplicas;
     }
 
+    /**
+     * @return the share of the ring covered by the ranges this node replicates for the provided keyspace. This is
+     * computed from the local replicas, which is costly, so it is cached until the ring or the replication strategy
+     * of the keyspace changes.
+     */
+    private static double localRingShare(Keyspace keyspace)
+    {
+        AbstractReplicationStrategy strategy = keyspace.getReplicationStrategy();
+        long ringVersion = StorageService.instance.getTokenMetadata().getRingVersion();
+        LocalRingShare cached = localRingShares.get(keyspace.getName());
+        if (cached != null && cached.ringVersion == ringVersion && cached.strategy == strategy)
+            return cached.share;
+
+        double share = 0;
+        for (Replica replica : strategy.getAddressReplicas(FBUtilities.getBroadcastAddressAndPort()))
+            share += replica.range().left.size(replica.range().right);
+
+        localRingShares.put(keyspace.getName(), new LocalRingShare(strategy, ringVersion, share));
+        return share;
+    }
+
+    private static final ConcurrentMap<String, LocalRingShare> localRingShares = new ConcurrentHashMap<>();
+
+    private static class LocalRingShare
+    {
+        private final AbstractReplicationStrategy strategy;
+        private final long ringVersion;
+        private final double share;
+
+        private LocalRingShare(AbstractReplicationStrategy strategy, long ringVersion, double share)
+        {
+            this.strategy = strategy;
+            this.ringVersion = ringVersion;
+            this.share = share;
+        }
+    }
+
+    /**
+     * Whether the queried ranges can be measured by {@link #rangeSize}, which requires a partitioner whose tokens
+     * have a size. Ranges of a keyspace using the {@link LocalStrategy} aren't measured either, as they aren't vnodes.
+     */
+    private static boolean canMeasureRanges(PartitionRangeReadCommand command, Keyspace keyspace)
+    {
+        return command.metadata().partitioner.splitter().isPresent()
+               && !(keyspace.getReplicationStrategy() instanceof LocalStrategy);
+    }
+
+    /**
+     * @return the share of the ring covered by the provided range, between 0 and 1.
+     */
+    @VisibleForTesting
+    static double rangeSize(AbstractBounds<PartitionPosition> range)
+    {
+        Token left = range.left.getToken();
+        Token right = range.right.getToken();
+
+        // bounds within a single token, like those of a single partition, cover no token space
+        if (left.equals(right) && !left.isMinimum())
+            return 0;
+
+        return left.size(right);
+    }
+
     private static class RangeIterator extends AbstractIterator<ReplicaPlan.ForRangeRead>
     {
         private final Keyspace keyspace;
@@ -1936,28 +2157,49 @@ public class StorageProxy implements StorageProxyMBean
         }
     }
 
+    /**
+     * Iterates over the results of the range requests covering the queried range, in ring order.
+     * <p>
+     * Rather than sending requests in rounds, it keeps a sliding window of requests in flight: every time a range has
+     * been consumed, requests are sent for the next ranges until the rows expected from the requests in flight are
+     * enough to reach the limit of the command. The number of rows expected from a range is proportional to its size,
+     * using the density of the rows returned so far, or the local estimate of that density until a range has been
+     * consumed.
+     */
     private static class RangeCommandIterator extends AbstractIterator<RowIterator> implements PartitionIterator
     {
         private final Iterator<ReplicaPlan.ForRangeRead> ranges;
         private final int totalRangeCount;
         private final PartitionRangeReadCommand command;
         private final boolean enforceStrictLiveness;
+        private final boolean measureRanges;
+        private final float initialResultsPerRangeSize;
 
         private final long startTime;
         private final long queryStartNanoTime;
-        private DataLimits.Counter counter;
-        private PartitionIterator sentQueryIterator;
 
-        private int concurrencyFactor;
-        // The two following "metric" are maintained to improve the concurrencyFactor
+        // The requests in flight, in ring order. The first one is the one whose results are being returned.
+        private final Deque<PendingRange> inFlight = new ArrayDeque<>();
+        private double inFlightSize;
+
+        // The following "metrics" are maintained to improve the estimate of the rows per range size
         // when it was not good enough initially.
         private int liveReturned;
+        private double completedSize;
         private int rangesQueried;
+        private int rangesCompleted;
 
-        public RangeCommandIterator(RangeIterator ranges, PartitionRangeReadCommand command, int concurrencyFactor, Keyspace keyspace, ConsistencyLevel consistency, long queryStartNanoTime)
+        public RangeCommandIterator(RangeIterator ranges,
+                                    PartitionRangeReadCommand command,
+                                    boolean measureRanges,
+                                    float initialResultsPerRangeSize,
+                                    Keyspace keyspace,
+                                    ConsistencyLevel consistency,
+                                    long queryStartNanoTime)
         {
             this.command = command;
-            this.concurrencyFactor = concurrencyFactor;
+            this.measureRanges = measureRanges;
+            this.initialResultsPerRangeSize = initialResultsPerRangeSize;
             this.startTime = System.nanoTime();
             this.ranges = new RangeMerger(ranges, keyspace, consistency);
             this.totalRangeCount = ranges.rangeCount();
@@ -1969,26 +2211,26 @@ public class StorageProxy implements StorageProxyMBean
         {
             try
             {
-                while (sentQueryIterator == null || !sentQueryIterator.hasNext())
+                while (true)
                 {
-                    // If we don't have more range to handle, we're done
-                    if (!ranges.hasNext())
-                        return endOfData();
-
-                    // else, sends the next batch of concurrent queries (after having close the previous iterator)
-                    if (sentQueryIterator != null)
+                    if (inFlight.isEmpty())
                     {
-                        liveReturned += counter.counted();
-                        sentQueryIterator.close();
+                        // If we don't have more range to handle, we're done
+                        if (!ranges.hasNext())
+                            return endOfData();
 
-                        // It's not the first batch of queries and we're not done, so we we can use what has been
-                        // returned so far to improve our rows-per-range estimate and update the concurrency accordingly
-                        updateConcurrencyFactor();
+                        sendNextRequests();
                     }
-                    sentQueryIterator = sendNextRequests();
-                }
 
-                return sentQueryIterator.next();
+                    PendingRange first = inFlight.peekFirst();
+                    if (first.iterator.hasNext())
+                        return first.iterator.next();
+
+                    // The first range is done: use what it returned to improve our estimate, and slide the window
+                    inFlight.removeFirst();
+                    complete(first);
+                    sendNextRequests();
+                }
             }
             catch (UnavailableException e)
             {
@@ -2007,22 +2249,93 @@ public class StorageProxy implements StorageProxyMBean
             }
         }
 
-        private void updateConcurrencyFactor()
+        private void complete(PendingRange range)
+        {
+            liveReturned += range.counter.counted();
+            completedSize += range.size;
+            inFlightSize -= range.size;
+            rangesCompleted++;
+
+            range.iterator.close();
+            range.response.readRepair.maybeSendAdditionalWrites();
+            range.response.readRepair.awaitWrites();
+        }
+
+        /**
+         * Whether the requests in flight aren't expected to return enough rows to reach the limit of the command.
+         */
+        private boolean needsMoreRequests()
         {
-            if (liveReturned == 0)
+            if (inFlight.isEmpty())
+                return true;
+
+            float resultsPerRangeSize;
+            if (rangesCompleted == 0)
             {
-                // we haven't actually gotten any results, so query all remaining ranges at once
-                concurrencyFactor = totalRangeCount - rangesQueried;
-                return;
+                // we don't expect any result until we get some, so query ranges one at a time
+                if (initialResultsPerRangeSize == 0)
+                    return false;
+
+                resultsPerRangeSize = initialResultsPerRangeSize;
+            }
+            else
+            {
+                // if we haven't actually gotten any results, this queries all remaining ranges at once, otherwise
+                // this uses the density of the rows we got to pick the ranges that should allow us to fetch all
+                // remaining rows
+                resultsPerRangeSize = completedSize == 0 ? 0 : (float) (liveReturned / completedSize);
             }
 
-            // Otherwise, compute how many rows per range we got on average and pick a concurrency factor
-            // that should allow us to fetch all remaining rows with the next batch of (concurrent) queries.
             int remainingRows = command.limits().count() - liveReturned;
-            float rowsPerRange = (float)liveReturned / (float)rangesQueried;
-            concurrencyFactor = Math.max(1, Math.min(totalRangeCount - rangesQueried, Math.round(remainingRows / rowsPerRange)));
-            logger.trace("Didn't get enough response rows; actual rows per range: {}; remaining rows: {}, new concurrent requests: {}",
-                         rowsPerRange, remainingRows, concurrencyFactor);
+            return resultsPerRangeSize * inFlightSize < remainingRows;
+        }
+
+        private void sendNextRequests()
+        {
+            int sent = 0;
+            while (ranges.hasNext() && needsMoreRequests())
+            {
+                ReplicaPlan.ForRangeRead replicaPlan = ranges.next();
+                double size = measureRanges ? rangeSize(replicaPlan.range()) : 1;
+
+                // only the first range of the query continues whatever we've previously queried
+                @SuppressWarnings("resource") // response will be closed by complete or close
+                SingleRangeResponse response = query(replicaPlan, rangesQueried == 0);
+                DataLimits.Counter counter = DataLimits.NONE.newCounter(command.nowInSec(), true, command.selectsFullPartition(), enforceStrictLiveness);
+                inFlight.addLast(new PendingRange(response, counter, size));
+                inFlightSize += size;
+                ++rangesQueried;
+                ++sent;
+            }
+
+            if (sent > 0)
+            {
+                logger.trace("Submitted {} range requests; ranges queried: {} of {}, in flight: {}, rows returned: {}",
+                             sent, rangesQueried, totalRangeCount, inFlight.size(), liveReturned);
+                Tracing.trace("Submitted {} range requests ({} in flight)", sent, inFlight.size());
+            }
+        }
+
+        /**
+         * A range request in flight, along with the counter of the rows it returns.
+         */
+        private static class PendingRange
+        {
+            private final SingleRangeResponse response;
+            private final DataLimits.Counter counter;
+            private final PartitionIterator iterator;
+            private final double size;
+
+            private PendingRange(SingleRangeResponse response, DataLimits.Counter counter, double size)
+            {
+                this.response = response;
+                this.counter = counter;
+                // We want to count the results for the sake of estimating the rows per range size, but we don't want
+                // to enforce any particular limit at this point (this could break code than rely on
+                // postReconciliationProcessing), hence the DataLimits.NONE counter.
+                this.iterator = counter.applyTo(response);
+                this.size = size;
+            }
         }
 
         /**
@@ -2073,42 +2386,14 @@ public class StorageProxy implements StorageProxyMBean
             return new SingleRangeResponse(resolver, handler, readRepair);
         }
 
-        private PartitionIterator sendNextRequests()
-        {
-            List<PartitionIterator> concurrentQueries = new ArrayList<>(concurrencyFactor);
-            List<ReadRepair> readRepairs = new ArrayList<>(concurrencyFactor);
-
-            try
-            {
-                for (int i = 0; i < concurrencyFactor && ranges.hasNext(); i++)
-                {
-                    @SuppressWarnings("resource") // response will be closed by concatAndBlockOnRepair, or in the catch block below
-                    SingleRangeResponse response = query(ranges.next(), i == 0);
-                    concurrentQueries.add(response);
-                    readRepairs.add(response.readRepair);
-                    ++rangesQueried;
-                }
-            }
-            catch (Throwable t)
-            {
-                for (PartitionIterator response: concurrentQueries)
-                    response.close();
-                throw t;
-            }
-
-            Tracing.trace("Submitted {} concurrent range requests", concurrentQueries.size());
-            // We want to count the results for the sake of updating the concurrency factor (see updateConcurrencyFactor) but we don't want to
-            // enforce any particular limit at this point (this could break code than rely on postReconciliationProcessing), hence the DataLimits.NONE.
-            counter = DataLimits.NONE.newCounter(command.nowInSec(), true, command.selectsFullPartition(), enforceStrictLiveness);
-            return counter.applyTo(concatAndBlockOnRepair(concurrentQueries, readRepairs));
-        }
-
         public void close()
         {
             try
             {
-                if (sentQueryIterator != null)
-                    sentQueryIterator.close();
+                for (PendingRange range : inFlight)
+                    range.iterator.close();
+                inFlight.forEach(range -> range.response.readRepair.maybeSendAdditionalWrites());
+                inFlight.forEach(range -> range.response.readRepair.awaitWrites());
             }
             finally
             {
@@ -2127,21 +2412,20 @@ public class StorageProxy implements StorageProxyMBean
         Keyspace keyspace = Keyspace.open(command.metadata().keyspace);
         RangeIterator ranges = new RangeIterator(command, keyspace, consistencyLevel);
 
-        // our estimate of how many result rows there will be per-range
-        float resultsPerRange = estimateResultsPerRange(command, keyspace);
-        // underestimate how many rows we will get per-range in order to increase the likelihood that we'll
-        // fetch enough rows in the first round
-        resultsPerRange -= resultsPerRange * CONCURRENT_SUBREQUESTS_MARGIN;
-        int concurrencyFactor = resultsPerRange == 0.0
-                              ? 1
-                              : Math.max(1, Math.min(ranges.rangeCount(), (int) Math.ceil(command.limits().count() / resultsPerRange)));
-        logger.trace("Estimated result rows per range: {}; requested rows: {}, ranges.size(): {}; concurrent range requests: {}",
-                     resultsPerRange, command.limits().count(), ranges.rangeCount(), concurrencyFactor);
-        Tracing.trace("Submitting range requests on {} ranges with a concurrency of {} ({} rows per range expected)", ranges.rangeCount(), concurrencyFactor, resultsPerRange);
+        // our estimate of how many result rows there will be per range size
+        boolean measureRanges = canMeasureRanges(command, keyspace);
+        float resultsPerRangeSize = estimateResultsPerRangeSize(command, keyspace);
+        // underestimate how many rows we will get per range in order to increase the likelihood that we'll
+        // fetch enough rows with the first requests
+        resultsPerRangeSize -= resultsPerRangeSize * CONCURRENT_SUBREQUESTS_MARGIN;
+        logger.trace("Estimated result rows per range size: {}; requested rows: {}, ranges.size(): {}",
+                     resultsPerRangeSize, command.limits().count(), ranges.rangeCount());
+        Tracing.trace("Submitting range requests on {} ranges ({} rows per range size expected)", ranges.rangeCount(), resultsPerRangeSize);
 
         // Note that in general, a RangeCommandIterator will honor the command limit for each range, but will not enforce it globally.
 
-        return command.limits().filter(command.postReconciliationProcessing(new RangeCommandIterator(ranges, command, concurrencyFactor, keyspace, consistencyLevel, queryStartNanoTime)),
+        RangeCommandIterator rangeCommandIterator = new RangeCommandIterator(ranges, command, measureRanges, resultsPerRangeSize, keyspace, consistencyLevel, queryStartNanoTime);
+        return command.limits().filter(command.postReconciliationProcessing(rangeCommandIterator),
                                        command.nowInSec(),
                                        command.selectsFullPartition(),
                                        command.metadata().enforceStrictLiveness());
@@ -56,6 +56,7 @@ public class StreamReceiveTask extends StreamTask
 
     private int remoteStreamsReceived = 0;
     private long bytesReceived = 0;
+    private int streamsApplied = 0;
 
     public StreamReceiveTask(StreamSession session, TableId tableId, int totalStreams, long totalSize)
     {
@@ -66,34 +67,41 @@ public class StreamReceiveTask extends StreamTask
     }
 
     /**
-     * Process received stream.
+     * Process received stream. The streams received over several channels are applied concurrently.
      *
      * @param stream Stream received.
      */
-    public synchronized void received(IncomingStream stream)
+    public void received(IncomingStream stream)
     {
         Preconditions.checkState(!session.isPreview(), "we should never receive sstables when previewing");
 
-        if (done)
+        synchronized (this)
         {
-            logger.warn("[{}] Received stream {} on already finished stream received task. Aborting stream.", session.planId(),
-                        stream.getName());
-            receiver.discardStream(stream);
-            return;
-        }
+            if (done)
+            {
+                logger.warn("[{}] Received stream {} on already finished stream received task. Aborting stream.", session.planId(),
+                            stream.getName());
+                receiver.discardStream(stream);
+                return;
+            }
 
-        remoteStreamsReceived++;
-        bytesReceived += stream.getSize();
-        Preconditions.checkArgument(tableId.equals(stream.getTableId()));
-        logger.debug("received {} of {} total files {} of total bytes {}", remoteStreamsReceived, totalStreams,
-                     bytesReceived, totalSize);
+            remoteStreamsReceived++;
+            bytesReceived += stream.getSize();
+            Preconditions.checkArgument(tableId.equals(stream.getTableId()));
+            logger.debug("received {} of {} total files {} of total bytes {}", remoteStreamsReceived, totalStreams,
+                         bytesReceived, totalSize);
+        }
 
         receiver.received(stream);
 
-        if (remoteStreamsReceived == totalStreams)
+        synchronized (this)
         {
-            done = true;
-            executor.submit(new OnCompletionRunnable(this));
+            // the task may have been aborted while the stream was applied
+            if (++streamsApplied == totalStreams && !done)
+            {
+                done = true;
+                executor.submit(new OnCompletionRunnable(this));
+            }
         }
     }
 
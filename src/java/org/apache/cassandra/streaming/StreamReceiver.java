@@ -27,7 +27,8 @@ public interface StreamReceiver
 {
     /**
      * Called after we've finished receiving stream data. The data covered by the given stream should
-     * be kept isolated from the live dataset for it's table.
+     * be kept isolated from the live dataset for it's table. May be called concurrently for the streams
+     * received over distinct channels, and concurrently with {@link #abort()}.
      */
     void received(IncomingStream stream);
 
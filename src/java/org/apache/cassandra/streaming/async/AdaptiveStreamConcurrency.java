@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.streaming.async;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Adapts the number of streams a session sends concurrently, each over its own channel, to the throughput they
+ * achieve together.
+ *
+ * The concurrency starts at 1, and is increased by one stream at a time after each window of as many completed
+ * transfers as there are concurrent streams, as long as each increase improves the throughput of the session.
+ * It is decreased when an increase didn't pay off, or when the streams spend most of their time waiting for their
+ * channel to drain, which means the receiver or the network can't keep up, and then held for a few windows.
+ */
+class AdaptiveStreamConcurrency
+{
+    /**
+     * The ratio of their time streams spend waiting for their channel to drain beyond which the peer is considered
+     * saturated.
+     */
+    @VisibleForTesting
+    static final double BACKPRESSURE_RATIO = 0.5;
+
+    /**
+     * The throughput gain that an additional concurrent stream must bring to be kept.
+     */
+    @VisibleForTesting
+    static final double MIN_THROUGHPUT_GAIN = 1.1;
+
+    /**
+     * The number of windows the concurrency is held for after it has been decreased.
+     */
+    @VisibleForTesting
+    static final int HOLD_WINDOWS = 4;
+
+    private final int maxConcurrency;
+    private int concurrency = 1;
+
+    private long windowStartNanos;
+    private long windowBytes;
+    private long windowTransferNanos;
+    private long windowParkedNanos;
+    private int windowTransfers;
+
+    // the throughput, in bytes per nanosecond, before the last increase of the concurrency
+    private double throughputBeforeIncrease;
+    private boolean increased;
+    private int heldWindows;
+
+    AdaptiveStreamConcurrency(int maxConcurrency, long nowNanos)
+    {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.windowStartNanos = nowNanos;
+    }
+
+    synchronized int concurrency()
+    {
+        return concurrency;
+    }
+
+    /**
+     * Records a completed transfer, and returns the number of streams to send concurrently from now on.
+     *
+     * @param bytes the number of bytes transferred
+     * @param transferNanos the time the transfer took
+     * @param parkedNanos the time the transfer spent waiting for its channel to drain
+     * @param nowNanos the current time
+     */
+    synchronized int onTransferCompleted(long bytes, long transferNanos, long parkedNanos, long nowNanos)
+    {
+        windowBytes += bytes;
+        windowTransferNanos += transferNanos;
+        windowParkedNanos += parkedNanos;
+        if (++windowTransfers < concurrency)
+            return concurrency;
+
+        double throughput = windowBytes / (double) Math.max(1, nowNanos - windowStartNanos);
+        boolean backpressure = windowParkedNanos > windowTransferNanos * BACKPRESSURE_RATIO;
+
+        if (backpressure || (increased && throughput < throughputBeforeIncrease * MIN_THROUGHPUT_GAIN))
+        {
+            concurrency = Math.max(1, concurrency - 1);
+            increased = false;
+            heldWindows = HOLD_WINDOWS;
+        }
+        else if (heldWindows > 0)
+        {
+            heldWindows--;
+            increased = false;
+        }
+        else if (concurrency < maxConcurrency)
+        {
+            throughputBeforeIncrease = throughput;
+            concurrency++;
+            increased = true;
+        }
+        else
+        {
+            increased = false;
+        }
+
+        windowStartNanos = nowNanos;
+        windowBytes = 0;
+        windowTransferNanos = 0;
+        windowParkedNanos = 0;
+        windowTransfers = 0;
+        return concurrency;
+    }
+}
@@ -24,6 +24,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -48,7 +49,6 @@ import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.io.util.DataOutputBufferFixed;
-import org.apache.cassandra.io.util.DataOutputStreamPlus;
 import org.apache.cassandra.net.AsyncChannelPromise;
 import org.apache.cassandra.net.OutboundConnectionSettings;
 import org.apache.cassandra.net.AsyncStreamingOutputPlus;
@@ -77,6 +77,10 @@ import org.apache.cassandra.utils.FBUtilities;
  * When those conditions occur, it's easy enough to reschedule processing the stream once the resources pick up
  * (we acquire the permits from the rate limiter, or the socket drains). However, we need to ensure that
  * no other messages are submitted to the same channel while the current stream is still being processed.
+ *
+ * Several streams are sent concurrently, each over the channel of its {@link #fileTransferExecutor} thread. The number
+ * of threads adapts to the throughput of the session and to the backpressure of the peer (see
+ * {@link AdaptiveStreamConcurrency}), up to {@link #MAX_PARALLEL_TRANSFERS}.
  */
 public class NettyStreamingMessageSender implements StreamingMessageSender
 {
@@ -108,6 +112,7 @@ public class NettyStreamingMessageSender implements StreamingMessageSender
     private final Collection<ScheduledFuture<?>> channelKeepAlives = new LinkedBlockingQueue<>();
 
     private final ThreadPoolExecutor fileTransferExecutor;
+    private final AdaptiveStreamConcurrency concurrency = new AdaptiveStreamConcurrency(MAX_PARALLEL_TRANSFERS, System.nanoTime());
 
     /**
      * A mapping of each {@link #fileTransferExecutor} thread to a channel that can be written to (on that thread).
@@ -131,7 +136,8 @@ public class NettyStreamingMessageSender implements StreamingMessageSender
         this.isPreview = isPreview;
 
         String name = session.peer.toString().replace(':', '.');
-        fileTransferExecutor = new DebuggableThreadPoolExecutor(1, MAX_PARALLEL_TRANSFERS, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        // the pool grows as the concurrency increases, see onTransferCompleted()
+        fileTransferExecutor = new DebuggableThreadPoolExecutor(1, 1, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
                                                                 new NamedThreadFactory("NettyStreaming-Outbound-" + name));
         fileTransferExecutor.allowCoreThreadTimeOut(true);
     }
@@ -283,6 +289,41 @@ public class NettyStreamingMessageSender implements StreamingMessageSender
         return session.onError(cause);
     }
 
+    /**
+     * Adapts the number of streams sent concurrently given the throughput of a completed transfer.
+     */
+    private void onTransferCompleted(long bytes, long transferNanos, long parkedNanos)
+    {
+        synchronized (fileTransferExecutor)
+        {
+            int updated = concurrency.onTransferCompleted(bytes, transferNanos, parkedNanos, System.nanoTime());
+            int current = fileTransferExecutor.getMaximumPoolSize();
+            if (updated == current)
+                return;
+
+            if (logger.isDebugEnabled())
+                logger.debug("{} Sending {} streams concurrently to {}", createLogTag(session, null), updated, template.to);
+
+            // the maximum pool size can't be lower than the core pool size
+            if (updated > current)
+            {
+                fileTransferExecutor.setMaximumPoolSize(updated);
+                fileTransferExecutor.setCorePoolSize(updated);
+            }
+            else
+            {
+                fileTransferExecutor.setCorePoolSize(updated);
+                fileTransferExecutor.setMaximumPoolSize(updated);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    int fileTransferConcurrency()
+    {
+        return fileTransferExecutor.getMaximumPoolSize();
+    }
+
     class FileStreamTask implements Runnable
     {
         /**
@@ -323,9 +364,11 @@ public class NettyStreamingMessageSender implements StreamingMessageSender
                     throw new IllegalStateException("channel's transferring state is currently set to true. refusing to start new stream");
 
                 // close the DataOutputStreamPlus as we're done with it - but don't close the channel
-                try (DataOutputStreamPlus outPlus = new AsyncStreamingOutputPlus(channel))
+                long start = System.nanoTime();
+                try (AsyncStreamingOutputPlus outPlus = new AsyncStreamingOutputPlus(channel))
                 {
                     StreamMessage.serialize(msg, outPlus, streamingVersion, session);
+                    onTransferCompleted(outPlus.flushed(), System.nanoTime() - start, outPlus.parkedNanos());
                 }
                 finally
                 {
@@ -383,6 +426,16 @@ public class NettyStreamingMessageSender implements StreamingMessageSender
                 if (channel != null)
                     return channel;
 
+                // reuse the channel of a thread that exited as the concurrency decreased or the pool went idle
+                for (Map.Entry<Thread, Channel> entry : threadToChannelMap.entrySet())
+                {
+                    if (!entry.getKey().isAlive() && entry.getValue().isOpen() && threadToChannelMap.remove(entry.getKey(), entry.getValue()))
+                    {
+                        threadToChannelMap.put(currentThread, entry.getValue());
+                        return entry.getValue();
+                    }
+                }
+
                 channel = createChannel();
                 threadToChannelMap.put(currentThread, channel);
                 return channel;
@@ -88,6 +88,9 @@ public class StandaloneSplitter
                 Set<Component> components = new HashSet<Component>(Arrays.asList(new Component[]{
                     Component.DATA,
                     Component.PRIMARY_INDEX,
+                    Component.PARTITION_INDEX,
+                    Component.ROW_INDEX,
+                    Component.SYNOPSIS,
                     Component.FILTER,
                     Component.COMPRESSION_INFO,
                     Component.STATS
@@ -77,7 +77,7 @@ public class StandaloneVerifier
             for (Map.Entry<Descriptor, Set<Component>> entry : lister.list().entrySet())
             {
                 Set<Component> components = entry.getValue();
-                if (!components.contains(Component.DATA) || !components.contains(Component.PRIMARY_INDEX))
+                if (!components.contains(Component.DATA) || !components.contains(entry.getKey().getFormat().primaryIndexComponent()))
                     continue;
 
                 try
@@ -225,6 +225,42 @@ public abstract class Message
             return false;
         }
 
+        /**
+         * Starts the execution of this request on the netty event loop it was received on, if it can't block, see
+         * {@link DatabaseDescriptor#getNativeTransportInlineReads()}. If it does, the rest of its execution happens on
+         * the event loop too. Otherwise, it is handed to the request executor as usual. This must not fail: whatever
+         * would make the execution fail is left for it to report.
+         *
+         * Note: this method executes on the netty event loop.
+         *
+         * @return whether the execution was started.
+         */
+        protected boolean startInlineExecution(long queryStartNanoTime)
+        {
+            return false;
+        }
+
+        /**
+         * The key of the group of pipelined requests this request can be executed with: the consecutive requests of
+         * a connection that have the same key are handed to the request executor together, and start their execution
+         * with {@link #startExecution()} before any of them is executed. {@code null} if this request can't be grouped.
+         *
+         * Note: this method executes on the netty event loop.
+         */
+        protected Object groupKey()
+        {
+            return null;
+        }
+
+        /**
+         * Starts the part of the execution of this request that can overlap with that of the other requests of its
+         * group, like sending its reads to the replicas, see {@link #groupKey()}. Whatever would make the execution
+         * fail is left for it to report.
+         */
+        protected void startExecution(long queryStartNanoTime)
+        {
+        }
+
         protected abstract Response execute(QueryState queryState, long queryStartNanoTime, boolean traceRequest);
 
         final Response execute(QueryState queryState, long queryStartNanoTime)
@@ -477,6 +513,14 @@ public abstract class Message
 
         private boolean paused;
 
+        /**
+         * The pipelined requests received so far that can be executed as a group, see {@link Request#groupKey()}.
+         *
+         * Note: should only be accessed while on the netty event loop.
+         */
+        private final List<Request> pipelined = new ArrayList<>();
+        private Object pipelinedKey;
+
         private static class FlushItem
         {
             final ChannelHandlerContext ctx;
@@ -624,9 +668,67 @@ public abstract class Message
         @Override
         public void channelRead0(ChannelHandlerContext ctx, Request request)
         {
-            // if we decide to handle this message, process it outside of the netty event loop
-            if (shouldHandleRequest(ctx, request))
+            // if we decide to handle this message, process it outside of the netty event loop, unless it can't block
+            if (!shouldHandleRequest(ctx, request))
+                return;
+
+            if (DatabaseDescriptor.getNativeTransportInlineReads()
+                && !request.isTracingRequested()
+                && ((ServerConnection) request.connection()).stage() == ConnectionStage.READY)
+            {
+                long queryStartNanoTime = System.nanoTime();
+                if (request.startInlineExecution(queryStartNanoTime))
+                {
+                    flush(executeRequest(ctx, request, queryStartNanoTime));
+                    return;
+                }
+            }
+
+            int maxGroupSize = DatabaseDescriptor.getNativeTransportMaxPipelinedGroupSize();
+            Object key = maxGroupSize > 1 ? request.groupKey() : null;
+            if (!pipelined.isEmpty() && (key == null || !key.equals(pipelinedKey)))
+                dispatchPipelined(ctx);
+
+            if (key == null)
+            {
+                requestExecutor.submit(() -> processRequest(ctx, request));
+                return;
+            }
+
+            pipelined.add(request);
+            pipelinedKey = key;
+            if (pipelined.size() >= maxGroupSize)
+                dispatchPipelined(ctx);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx)
+        {
+            // the requests decoded from a read of the channel are all we can group without waiting
+            dispatchPipelined(ctx);
+            ctx.fireChannelReadComplete();
+        }
+
+        /**
+         * Note: this method should execute on the netty event loop.
+         */
+        private void dispatchPipelined(ChannelHandlerContext ctx)
+        {
+            if (pipelined.isEmpty())
+                return;
+
+            if (pipelined.size() == 1)
+            {
+                Request request = pipelined.get(0);
                 requestExecutor.submit(() -> processRequest(ctx, request));
+            }
+            else
+            {
+                List<Request> requests = new ArrayList<>(pipelined);
+                requestExecutor.submit(() -> processRequests(ctx, requests));
+            }
+            pipelined.clear();
+            pipelinedKey = null;
         }
 
         /** This check for inflight payload to potentially discard the request should have been ideally in one of the
@@ -701,14 +803,63 @@ public abstract class Message
             }
         }
 
+        /**
+         * Processes a group of pipelined requests, see {@link Request#groupKey()}. Their executions are all started
+         * before any of them is executed, and the response of each is flushed as soon as it is ready.
+         *
+         * Note: this method is not expected to execute on the netty event loop.
+         */
+        void processRequests(ChannelHandlerContext ctx, List<Request> requests)
+        {
+            ClientMetrics.instance.markPipelinedRequests(requests.size());
+            long queryStartNanoTime = System.nanoTime();
+            int processed = 0;
+            try
+            {
+                for (Request request : requests)
+                {
+                    try
+                    {
+                        // a traced request starts its execution once its tracing session is
+                        if (!request.isTracingRequested() && ((ServerConnection) request.connection()).stage() == ConnectionStage.READY)
+                            request.startExecution(queryStartNanoTime);
+                    }
+                    catch (Throwable t)
+                    {
+                        // the execution of the request reports whatever is wrong with it
+                        JVMStabilityInspector.inspectThrowable(t);
+                    }
+                }
+
+                for (Request request : requests)
+                {
+                    flush(executeRequest(ctx, request, queryStartNanoTime));
+                    processed++;
+                }
+            }
+            finally
+            {
+                // the requests left unprocessed must still be answered, and release their payloads
+                for (Request request : requests.subList(processed, requests.size()))
+                {
+                    ErrorMessage error = ErrorMessage.fromException(new ServerError("The request wasn't processed"));
+                    flush(new FlushItem(ctx, error.setStreamId(request.getStreamId()), request.getSourceFrame(), this));
+                }
+            }
+        }
+
         /**
          * Note: this method is not expected to execute on the netty event loop.
          */
         void processRequest(ChannelHandlerContext ctx, Request request)
+        {
+            flush(executeRequest(ctx, request, System.nanoTime()));
+        }
+
+        private FlushItem executeRequest(ChannelHandlerContext ctx, Request request, long queryStartNanoTime)
         {
             final Response response;
             final ServerConnection connection;
-            long queryStartNanoTime = System.nanoTime();
 
             try
             {
@@ -731,8 +882,7 @@ public abstract class Message
             {
                 JVMStabilityInspector.inspectThrowable(t);
                 UnexpectedChannelExceptionHandler handler = new UnexpectedChannelExceptionHandler(ctx.channel(), true);
-                flush(new FlushItem(ctx, ErrorMessage.fromException(t, handler).setStreamId(request.getStreamId()), request.getSourceFrame(), this));
-                return;
+                return new FlushItem(ctx, ErrorMessage.fromException(t, handler).setStreamId(request.getStreamId()), request.getSourceFrame(), this);
             }
             finally
             {
@@ -740,12 +890,13 @@ public abstract class Message
             }
 
             logger.trace("Responding: {}, v={}", response, connection.getVersion());
-            flush(new FlushItem(ctx, response, request.getSourceFrame(), this));
+            return new FlushItem(ctx, response, request.getSourceFrame(), this);
         }
 
         @Override
         public void channelInactive(ChannelHandlerContext ctx)
         {
+            dispatchPipelined(ctx);
             endpointPayloadTracker.release();
             if (paused)
             {
@@ -21,6 +21,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -244,6 +245,39 @@ public class SimpleClient implements Closeable
         }
     }
 
+    /**
+     * Sends the provided requests without waiting for the response of any of them, so that they are pipelined on the
+     * connection, then waits for all their responses.
+     *
+     * @return the responses, in the order of the requests.
+     */
+    public List<Message.Response> execute(List<Message.Request> requests)
+    {
+        try
+        {
+            for (int i = 0; i < requests.size(); i++)
+            {
+                Message.Request request = requests.get(i);
+                request.attach(connection);
+                request.setStreamId(i);
+                lastWriteFuture = channel.write(request);
+            }
+            channel.flush();
+
+            Message.Response[] responses = new Message.Response[requests.size()];
+            for (int i = 0; i < responses.length; i++)
+            {
+                Message.Response response = responseHandler.responses.take();
+                responses[response.getStreamId()] = response;
+            }
+            return Arrays.asList(responses);
+        }
+        catch (InterruptedException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     public interface EventHandler
     {
         void onEvent(Event event);
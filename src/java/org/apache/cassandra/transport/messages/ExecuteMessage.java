@@ -22,11 +22,14 @@ import com.google.common.collect.ImmutableMap;
 import io.netty.buffer.ByteBuf;
 import org.apache.cassandra.audit.AuditLogEntry;
 import org.apache.cassandra.audit.AuditLogManager;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.CQLStatement;
 import org.apache.cassandra.cql3.ColumnSpecification;
 import org.apache.cassandra.cql3.QueryHandler;
 import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.QueryProcessor;
 import org.apache.cassandra.cql3.ResultSet;
+import org.apache.cassandra.cql3.statements.SelectStatement;
 import org.apache.cassandra.exceptions.PreparedQueryNotFoundException;
 import org.apache.cassandra.service.ClientState;
 import org.apache.cassandra.service.QueryState;
@@ -35,6 +38,7 @@ import org.apache.cassandra.transport.CBUtil;
 import org.apache.cassandra.transport.Message;
 import org.apache.cassandra.transport.ProtocolException;
 import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.transport.ServerConnection;
 import org.apache.cassandra.utils.JVMStabilityInspector;
 import org.apache.cassandra.utils.MD5Digest;
 
@@ -96,6 +100,9 @@ public class ExecuteMessage extends Message.Request
     public final MD5Digest resultMetadataId;
     public final QueryOptions options;
 
+    // the read started by startExecution(), if any
+    private SelectStatement.StartedRead startedRead;
+
     public ExecuteMessage(MD5Digest statementId, MD5Digest resultMetadataId, QueryOptions options)
     {
         super(Message.Type.EXECUTE);
@@ -110,6 +117,77 @@ public class ExecuteMessage extends Message.Request
         return true;
     }
 
+    @Override
+    protected boolean startInlineExecution(long queryStartNanoTime)
+    {
+        // authorization, audit logging and custom query handlers may all block
+        if (DatabaseDescriptor.getAuthorizer().requireAuthorization()
+            || AuditLogManager.getInstance().isLoggingEnabled()
+            || !(ClientState.getCQLQueryHandler() instanceof QueryProcessor))
+            return false;
+
+        QueryHandler.Prepared prepared = ClientState.getCQLQueryHandler().getPrepared(statementId);
+        if (prepared == null || !(prepared.statement instanceof SelectStatement))
+            return false;
+
+        try
+        {
+            SelectStatement statement = (SelectStatement) prepared.statement;
+            options.prepare(statement.getBindVariables());
+            if (options.getPageSize() == 0 || options.getValues().size() != statement.getBindVariables().size())
+                return false;
+
+            ClientState clientState = ((ServerConnection) connection()).getClientState();
+            statement.validate(clientState);
+            startedRead = statement.readFromMemory(new QueryState(clientState), options, queryStartNanoTime);
+            return startedRead != null;
+        }
+        catch (Exception e)
+        {
+            // let the regular execution report whatever is wrong with the request
+            JVMStabilityInspector.inspectThrowable(e);
+            return false;
+        }
+    }
+
+    @Override
+    protected Object groupKey()
+    {
+        // only reads are grouped, as writes are executed one after the other by the group
+        QueryHandler.Prepared prepared = ClientState.getCQLQueryHandler().getPrepared(statementId);
+        return prepared != null && prepared.statement instanceof SelectStatement ? statementId : null;
+    }
+
+    @Override
+    protected void startExecution(long queryStartNanoTime)
+    {
+        QueryHandler handler = ClientState.getCQLQueryHandler();
+        if (!(handler instanceof QueryProcessor))
+            return;
+
+        QueryHandler.Prepared prepared = handler.getPrepared(statementId);
+        if (prepared == null || !(prepared.statement instanceof SelectStatement))
+            return;
+
+        try
+        {
+            SelectStatement statement = (SelectStatement) prepared.statement;
+            options.prepare(statement.getBindVariables());
+            if (options.getPageSize() == 0 || options.getValues().size() != statement.getBindVariables().size())
+                return;
+
+            ClientState clientState = ((ServerConnection) connection()).getClientState();
+            statement.authorize(clientState);
+            statement.validate(clientState);
+            startedRead = statement.startRead(new QueryState(clientState), options, queryStartNanoTime);
+        }
+        catch (Exception e)
+        {
+            // let the regular execution report whatever is wrong with the request
+            JVMStabilityInspector.inspectThrowable(e);
+        }
+    }
+
     @Override
     protected Message.Response execute(QueryState state, long queryStartNanoTime, boolean traceRequest)
     {
@@ -137,7 +215,16 @@ public class ExecuteMessage extends Message.Request
 
             long requestStartTime = auditLogManager.isLoggingEnabled() ? System.currentTimeMillis() : 0L;
 
-            Message.Response response = handler.processPrepared(statement, state, queryOptions, getCustomPayload(), queryStartNanoTime);
+            Message.Response response;
+            if (startedRead != null && startedRead.statement() == statement)
+            {
+                QueryProcessor.metrics.preparedStatementsExecuted.inc();
+                response = startedRead.execute(queryOptions);
+            }
+            else
+            {
+                response = handler.processPrepared(statement, state, queryOptions, getCustomPayload(), queryStartNanoTime);
+            }
 
             if (auditLogManager.isLoggingEnabled())
                 logSuccess(state, prepared, requestStartTime);
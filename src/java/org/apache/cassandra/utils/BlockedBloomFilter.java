@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import net.nicoulaj.compilecommand.annotations.Inline;
+import org.apache.cassandra.utils.obs.IBitSet;
+
+/**
+ * A bloom filter whose bits for a given key all are in the same block of {@link #BLOCK_BITS} bits, the size of a cache
+ * line, so that a lookup reads a single cache line rather than one per hash function.
+ * <p>
+ * The block is picked by one half of the murmur3 hash of the key, and the bits within the block by double hashing the
+ * other half. Keys are less evenly spread than with {@link BloomFilter}, since the load of the blocks varies, so more
+ * bits are needed for the same false positive rate (see {@link FilterFactory}).
+ * <p>
+ * Its serialized form is the one of {@link BloomFilter}, with {@link BloomFilterSerializer#BLOCKED_FLAG} set in the
+ * hash count.
+ */
+public class BlockedBloomFilter extends BloomFilter
+{
+    public static final int BLOCK_BITS = 512;
+    private static final int BLOCK_MASK = BLOCK_BITS - 1;
+
+    private final static FastThreadLocal<long[]> reusableHash = new FastThreadLocal<long[]>()
+    {
+        protected long[] initialValue()
+        {
+            return new long[2];
+        }
+    };
+
+    private final long blocks;
+
+    BlockedBloomFilter(int hashCount, IBitSet bitset)
+    {
+        super(hashCount, bitset);
+        this.blocks = bitset.capacity() / BLOCK_BITS;
+        assert blocks > 0 : "a blocked bloom filter needs at least " + BLOCK_BITS + " bits";
+    }
+
+    private BlockedBloomFilter(BlockedBloomFilter copy)
+    {
+        super(copy);
+        this.blocks = copy.blocks;
+    }
+
+    @Inline
+    private long[] hash(FilterKey key)
+    {
+        long[] hash = reusableHash.get();
+        key.filterHash(hash);
+        return hash;
+    }
+
+    @Inline
+    private long blockStart(long[] hash)
+    {
+        return FBUtilities.abs(hash[0] % blocks) * BLOCK_BITS;
+    }
+
+    @Override
+    public void add(FilterKey key)
+    {
+        long[] hash = hash(key);
+        long start = blockStart(hash);
+        int position = (int) hash[1];
+        // an odd increment visits distinct bits of the block
+        int increment = (int) (hash[1] >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++)
+        {
+            bitset.set(start + (position & BLOCK_MASK));
+            position += increment;
+        }
+    }
+
+    @Override
+    public boolean isPresent(FilterKey key)
+    {
+        long[] hash = hash(key);
+        long start = blockStart(hash);
+        int position = (int) hash[1];
+        int increment = (int) (hash[1] >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++)
+        {
+            if (!bitset.get(start + (position & BLOCK_MASK)))
+                return false;
+            position += increment;
+        }
+        return true;
+    }
+
+    @Override
+    public IFilter sharedCopy()
+    {
+        return new BlockedBloomFilter(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BlockedBloomFilter[hashCount=" + hashCount + ";capacity=" + bitset.capacity() + ']';
+    }
+}
@@ -27,13 +27,19 @@ import org.apache.cassandra.utils.obs.OffHeapBitSet;
 
 public final class BloomFilterSerializer
 {
+    /**
+     * Set in the serialized hash count of a {@link BlockedBloomFilter}. The hash count of the filters serialized before
+     * blocked filters existed never has it set, so that they keep being deserialized as they were.
+     */
+    static final int BLOCKED_FLAG = 1 << 31;
+
     private BloomFilterSerializer()
     {
     }
 
     public static void serialize(BloomFilter bf, DataOutputPlus out) throws IOException
     {
-        out.writeInt(bf.hashCount);
+        out.writeInt(bf instanceof BlockedBloomFilter ? bf.hashCount | BLOCKED_FLAG : bf.hashCount);
         bf.bitset.serialize(out);
     }
 
@@ -43,6 +49,8 @@ public final class BloomFilterSerializer
         int hashes = in.readInt();
         IBitSet bs = OffHeapBitSet.deserialize(in, oldBfFormat);
 
+        if ((hashes & BLOCKED_FLAG) != 0)
+            return new BlockedBloomFilter(hashes & ~BLOCKED_FLAG, bs);
         return new BloomFilter(hashes, bs);
     }
 
@@ -43,7 +43,7 @@ public class FilterFactory
             logger.warn("Cannot provide an optimal BloomFilter for {} elements ({}/{} buckets per element).", numElements, bucketsPerElement, targetBucketsPerElem);
         }
         BloomCalculations.BloomSpecification spec = BloomCalculations.computeBloomSpec(bucketsPerElement);
-        return createFilter(spec.K, numElements, spec.bucketsPerElement);
+        return createFilter(spec.K, numElements, spec.bucketsPerElement, false);
     }
 
     /**
@@ -54,20 +54,50 @@ public class FilterFactory
      *         filter.
      */
     public static IFilter getFilter(long numElements, double maxFalsePosProbability)
+    {
+        return getFilter(numElements, maxFalsePosProbability, false);
+    }
+
+    /**
+     * @return The smallest BloomFilter, or {@link BlockedBloomFilter} if {@code blocked}, that can provide the given
+     *         false positive probability rate for the given number of elements.
+     *
+     *         As the blocks of a blocked filter are unevenly loaded, it is sized for half the given false positive
+     *         probability, which makes up for it at the usual false positive probabilities.
+     */
+    public static IFilter getFilter(long numElements, double maxFalsePosProbability, boolean blocked)
     {
         assert maxFalsePosProbability <= 1.0 : "Invalid probability";
         if (maxFalsePosProbability == 1.0)
             return new AlwaysPresentFilter();
         int bucketsPerElement = BloomCalculations.maxBucketsPerElement(numElements);
+        if (blocked)
+        {
+            try
+            {
+                BloomCalculations.BloomSpecification spec = BloomCalculations.computeBloomSpec(bucketsPerElement, maxFalsePosProbability / 2);
+                return createFilter(spec.K, numElements, spec.bucketsPerElement, true);
+            }
+            catch (UnsupportedOperationException e)
+            {
+                // the filter would be too large, fall back to the most accurate classic filter
+                logger.debug("Cannot provide a blocked BloomFilter with false positive chance {} for {} elements", maxFalsePosProbability, numElements);
+            }
+        }
         BloomCalculations.BloomSpecification spec = BloomCalculations.computeBloomSpec(bucketsPerElement, maxFalsePosProbability);
-        return createFilter(spec.K, numElements, spec.bucketsPerElement);
+        return createFilter(spec.K, numElements, spec.bucketsPerElement, false);
     }
 
     @SuppressWarnings("resource")
-    private static IFilter createFilter(int hash, long numElements, int bucketsPer)
+    private static IFilter createFilter(int hash, long numElements, int bucketsPer, boolean blocked)
     {
         long numBits = (numElements * bucketsPer) + BITSET_EXCESS;
-        IBitSet bitset = new OffHeapBitSet(numBits);
-        return new BloomFilter(hash, bitset);
+        if (!blocked)
+            return new BloomFilter(hash, new OffHeapBitSet(numBits));
+
+        // the bits of a blocked filter are a whole number of blocks
+        long blocks = (numBits + BlockedBloomFilter.BLOCK_BITS - 1) / BlockedBloomFilter.BLOCK_BITS;
+        IBitSet bitset = new OffHeapBitSet(blocks * BlockedBloomFilter.BLOCK_BITS);
+        return new BlockedBloomFilter(hash, bitset);
     }
 }
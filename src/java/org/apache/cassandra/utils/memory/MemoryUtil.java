@@ -129,6 +129,32 @@ public abstract class MemoryUtil
             putLongByByte(address, l);
     }
 
+    /**
+     * Writes the given value with volatile semantics; the address must be aligned to 4 bytes.
+     */
+    public static void setIntVolatile(long address, int l)
+    {
+        unsafe.putIntVolatile(null, address, l);
+    }
+
+    /**
+     * Writes the given value with volatile semantics; the address must be aligned to 8 bytes.
+     */
+    public static void setLongVolatile(long address, long l)
+    {
+        unsafe.putLongVolatile(null, address, l);
+    }
+
+    public static int getIntVolatile(long address)
+    {
+        return unsafe.getIntVolatile(null, address);
+    }
+
+    public static long getLongVolatile(long address)
+    {
+        return unsafe.getLongVolatile(null, address);
+    }
+
     public static byte getByte(long address)
     {
         return unsafe.getByte(address);
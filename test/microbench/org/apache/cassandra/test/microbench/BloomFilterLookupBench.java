@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.test.microbench;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.db.BufferDecoratedKey;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.utils.FilterFactory;
+import org.apache.cassandra.utils.IFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the lookups in classic and blocked bloom filters large enough not to fit in the CPU caches. The false
+ * positive rate and the bits per key of each filter are printed on setup, as the blocked filters trade some space
+ * for their faster lookups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 4, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Benchmark)
+public class BloomFilterLookupBench
+{
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    @Param({"1000", "10000"})
+    private long numElemsInK;
+
+    @Param({"0.1", "0.01"})
+    private double fpChance;
+
+    @Param({"false", "true"})
+    private boolean blocked;
+
+    private IFilter filter;
+    private IFilter.FilterKey[] absentKeys;
+    private IFilter.FilterKey[] presentKeys;
+    private int next;
+
+    static IFilter.FilterKey key(long value)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putLong(0, value);
+        return new BufferDecoratedKey(new Murmur3Partitioner.LongToken(0L), buf);
+    }
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        long numElements = numElemsInK * 1024;
+        filter = FilterFactory.getFilter(numElements, fpChance, blocked);
+        presentKeys = new IFilter.FilterKey[LOOKUP_KEYS];
+        for (long i = 0; i < numElements; i++)
+        {
+            IFilter.FilterKey key = key(i);
+            filter.add(key);
+            if (i < LOOKUP_KEYS)
+                presentKeys[(int) i] = key;
+        }
+
+        Random random = new Random(42);
+        absentKeys = new IFilter.FilterKey[LOOKUP_KEYS];
+        int falsePositives = 0;
+        for (int i = 0; i < LOOKUP_KEYS; i++)
+        {
+            absentKeys[i] = key(numElements + (random.nextLong() & Long.MAX_VALUE) % (Long.MAX_VALUE - numElements));
+            if (filter.isPresent(absentKeys[i]))
+                falsePositives++;
+        }
+
+        System.out.printf("%n%s: false positive rate %.4f, %.2f bits per key%n",
+                          filter, falsePositives / (double) LOOKUP_KEYS, (filter.serializedSize() * 8.0) / numElements);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        filter.close();
+    }
+
+    @Benchmark
+    public boolean lookupAbsent()
+    {
+        return filter.isPresent(absentKeys[next++ & (LOOKUP_KEYS - 1)]);
+    }
+
+    @Benchmark
+    public boolean lookupPresent()
+    {
+        return filter.isPresent(presentKeys[next++ & (LOOKUP_KEYS - 1)]);
+    }
+}
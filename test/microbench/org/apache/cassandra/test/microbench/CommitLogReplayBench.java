@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.test.microbench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.SystemKeyspace;
+import org.apache.cassandra.db.commitlog.CommitLog;
+import org.apache.cassandra.db.commitlog.CommitLogReplayer;
+import org.apache.cassandra.io.util.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the throughput of commit log replay, in megabytes of segments per second, for a varying number of
+ * replay threads. Each invocation replays the same copies of the segments written during setup, including the
+ * flush that follows replay on startup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class CommitLogReplayBench extends CQLTester
+{
+    @Param({"1", "2", "4", "8"})
+    int replayThreads;
+
+    @Param({"128"})
+    int dataSizeInMB;
+
+    @Param({"1024"})
+    int valueSize;
+
+    private ColumnFamilyStore cfs;
+    private File segmentCopies;
+    private File[] segments;
+    private long segmentBytes;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class ReplayedData
+    {
+        // reported per second, i.e. as the replay throughput in MB/s
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            megabytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable
+    {
+        CQLTester.setUpClass();
+        DatabaseDescriptor.setAutoSnapshot(false);
+        String keyspace = createKeyspace("CREATE KEYSPACE %s with replication = { 'class' : 'SimpleStrategy', 'replication_factor' : 1 }");
+        String table = createTable(keyspace, "CREATE TABLE %s (pk bigint, ck bigint, v blob, PRIMARY KEY (pk, ck))");
+        cfs = Keyspace.open(keyspace).getColumnFamilyStore(table);
+        cfs.disableAutoCompaction();
+
+        String insert = "INSERT INTO " + keyspace + "." + table + " (pk, ck, v) VALUES (?, ?, ?)";
+        ByteBuffer value = ByteBuffer.allocate(valueSize);
+        long rows = ((long) dataSizeInMB << 20) / valueSize;
+        for (long i = 0; i < rows; i++)
+            execute(insert, i % 1000, i, value);
+        CommitLog.instance.sync(true);
+
+        // replay copies, as the live segments get recycled
+        segmentCopies = Files.createTempDirectory("commitlog-replay-bench").toFile();
+        List<File> copies = new ArrayList<>();
+        for (String name : CommitLog.instance.getActiveSegmentNames())
+        {
+            File copy = new File(segmentCopies, name);
+            Files.copy(new File(DatabaseDescriptor.getCommitLogLocation(), name).toPath(), copy.toPath());
+            copies.add(copy);
+            segmentBytes += copy.length();
+        }
+        segments = copies.toArray(new File[0]);
+
+        CommitLogReplayer.REPLAY_THREADS = replayThreads;
+        System.err.println(String.format("Replaying %d segments (%d MB) with %d threads",
+                                         segments.length, segmentBytes >> 20, replayThreads));
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable()
+    {
+        // drop the replayed data, along with the record of the truncation so that the next replay is not skipped
+        cfs.truncateBlocking();
+        SystemKeyspace.removeTruncationRecord(cfs.metadata.id);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException
+    {
+        FileUtils.deleteRecursive(segmentCopies);
+        CQLTester.cleanup();
+    }
+
+    @Benchmark
+    public int replay(ReplayedData replayed) throws IOException
+    {
+        CommitLogReplayer replayer = CommitLogReplayer.construct(CommitLog.instance);
+        replayer.replayFiles(segments);
+        int mutations = replayer.blockForWrites();
+        replayed.megabytes += segmentBytes / (1024.0 * 1024.0);
+        return mutations;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.test.microbench;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.cache.CaffeineCache;
+import org.apache.cassandra.cache.ICache;
+import org.apache.cassandra.cache.KeyCacheKey;
+import org.apache.cassandra.cache.OffHeapKeyCache;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the lookups of the on-heap and off-heap key caches, as done by {@code SSTableReader.getCachedPosition}:
+ * the on-heap cache is looked up with a new {@link KeyCacheKey}, the off-heap one with the sstable's descriptor and
+ * the decorated key. Half of the lookups miss. Run with {@code -prof gc} to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1G")
+@Threads(4)
+@State(Scope.Benchmark)
+public class KeyCacheBench
+{
+    private static final int SSTABLES = 8;
+
+    @Param({"caffeine", "offheap"})
+    String cache;
+
+    @Param({"1000000"})
+    int keys;
+
+    private TableMetadata metadata;
+    private Descriptor[] descriptors;
+    private DecoratedKey[] decoratedKeys;
+    private ICache<KeyCacheKey, RowIndexEntry> caffeineCache;
+    private OffHeapKeyCache offHeapCache;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        DatabaseDescriptor.daemonInitialization();
+        metadata = TableMetadata.builder("ks", "tbl")
+                                .addPartitionKeyColumn("pk", Int32Type.instance)
+                                .addRegularColumn("v", Int32Type.instance)
+                                .build();
+        File directory = new File(System.getProperty("java.io.tmpdir"));
+        descriptors = new Descriptor[SSTABLES];
+        for (int i = 0; i < SSTABLES; i++)
+            descriptors[i] = new Descriptor(directory, "ks", "tbl", i + 1, SSTableFormat.Type.BIG);
+        decoratedKeys = new DecoratedKey[keys * 2];
+        for (int i = 0; i < decoratedKeys.length; i++)
+            decoratedKeys[i] = metadata.partitioner.decorateKey(ByteBufferUtil.bytes(i));
+
+        // large enough for all the keys, so that the lookups don't depend on the eviction policies
+        long capacity = 512L << 20;
+        if (cache.equals("caffeine"))
+            caffeineCache = CaffeineCache.create(capacity);
+        else
+            offHeapCache = new OffHeapKeyCache(capacity);
+
+        // only the first half of the keys is cached
+        for (int i = 0; i < keys; i++)
+        {
+            Descriptor descriptor = descriptors[i % SSTABLES];
+            RowIndexEntry entry = new RowIndexEntry<>(i * 100L);
+            if (caffeineCache != null)
+                caffeineCache.put(new KeyCacheKey(metadata, descriptor, decoratedKeys[i].getKey()), entry);
+            else
+                offHeapCache.put(metadata, descriptor, decoratedKeys[i], entry);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if (offHeapCache != null)
+            offHeapCache.clear();
+    }
+
+    @Benchmark
+    public RowIndexEntry lookup()
+    {
+        int i = ThreadLocalRandom.current().nextInt(decoratedKeys.length);
+        Descriptor descriptor = descriptors[i % SSTABLES];
+        DecoratedKey key = decoratedKeys[i];
+        if (caffeineCache != null)
+            return caffeineCache.get(new KeyCacheKey(metadata, descriptor, key.getKey()));
+        return offHeapCache.get(descriptor, key);
+    }
+}
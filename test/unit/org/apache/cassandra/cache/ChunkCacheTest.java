@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.metrics.TableMetrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkCacheTest extends CQLTester
+{
+    @Test
+    public void testTableMetricsAndBackgroundReads() throws Throwable
+    {
+        Assume.assumeTrue(ChunkCache.instance != null);
+
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck)) WITH compression = {'class' : 'LZ4Compressor', 'chunk_length_in_kb' : 4}");
+        String value = new String(new char[100]).replace('\0', 'x');
+        for (int pk = 0; pk < 10; pk++)
+            for (int ck = 0; ck < 100; ck++)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, value);
+        flush();
+
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        SSTableReader sstable = cfs.getLiveSSTables().iterator().next();
+        ChunkCache.instance.invalidateFile(sstable.descriptor.filenameFor(Component.DATA));
+        TableMetrics metrics = cfs.metric;
+
+        // the reads of background operations only use the chunks in the cache
+        long misses = metrics.chunkCacheMiss.getCount();
+        long hits = metrics.chunkCacheHit.getCount();
+        CompletableFuture.runAsync(() -> backgroundScan(sstable)).get();
+        long backgroundMisses = metrics.chunkCacheMiss.getCount() - misses;
+        assertTrue(backgroundMisses > 1);
+        assertEquals(hits, metrics.chunkCacheHit.getCount());
+
+        // so the foreground reads still miss, but then admit the chunks
+        scan(sstable);
+        assertEquals(misses + 2 * backgroundMisses, metrics.chunkCacheMiss.getCount());
+        scan(sstable);
+        assertEquals(misses + 2 * backgroundMisses, metrics.chunkCacheMiss.getCount());
+        assertEquals(hits + backgroundMisses, metrics.chunkCacheHit.getCount());
+
+        // and the background reads hit them
+        CompletableFuture.runAsync(() -> backgroundScan(sstable)).get();
+        assertEquals(misses + 2 * backgroundMisses, metrics.chunkCacheMiss.getCount());
+        assertEquals(hits + 2 * backgroundMisses, metrics.chunkCacheHit.getCount());
+        assertEquals(1.0 * metrics.chunkCacheHit.getCount() / (metrics.chunkCacheHit.getCount() + metrics.chunkCacheMiss.getCount()),
+                     metrics.chunkCacheHitRate.getValue(), 0.0001);
+    }
+
+    /**
+     * Scans the sstable as a background operation, resetting the flag afterwards as the thread is a shared one.
+     */
+    private static void backgroundScan(SSTableReader sstable)
+    {
+        ChunkCache.setBackgroundThread(true);
+        try
+        {
+            scan(sstable);
+        }
+        finally
+        {
+            ChunkCache.setBackgroundThread(false);
+        }
+    }
+
+    private static void scan(SSTableReader sstable)
+    {
+        try (ISSTableScanner scanner = sstable.getScanner())
+        {
+            while (scanner.hasNext())
+            {
+                try (UnfilteredRowIterator partition = scanner.next())
+                {
+                    while (partition.hasNext())
+                        partition.next();
+                }
+            }
+        }
+    }
+}
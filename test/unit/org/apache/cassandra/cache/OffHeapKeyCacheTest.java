@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.DeletionTime;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.IndexInfo;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.schema.KeyspaceParams;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapKeyCacheTest
+{
+    private static final String KEYSPACE = "OffHeapKeyCacheTest";
+    private static final String TABLE = "Standard1";
+
+    private static TableMetadata metadata;
+    private static Descriptor descriptor1;
+    private static Descriptor descriptor2;
+
+    @BeforeClass
+    public static void defineSchema()
+    {
+        SchemaLoader.prepareServer();
+        metadata = TableMetadata.builder(KEYSPACE, TABLE)
+                                .addPartitionKeyColumn("pk", AsciiType.instance)
+                                .addClusteringColumn("ck", AsciiType.instance)
+                                .addRegularColumn("v", AsciiType.instance)
+                                .build();
+        SchemaLoader.createKeyspace(KEYSPACE, KeyspaceParams.simple(1), metadata);
+
+        File directory = new File(System.getProperty("java.io.tmpdir"));
+        descriptor1 = new Descriptor(directory, KEYSPACE, TABLE, 1, SSTableFormat.Type.BIG);
+        descriptor2 = new Descriptor(directory, KEYSPACE, TABLE, 2, SSTableFormat.Type.BIG);
+    }
+
+    @Test
+    public void testPutGetRemove()
+    {
+        OffHeapKeyCache cache = new OffHeapKeyCache(1 << 20, 4);
+        for (int i = 0; i < 1000; i++)
+        {
+            cache.put(metadata, descriptor1, key(i), new RowIndexEntry<>(i));
+            cache.put(metadata, descriptor2, key(i), new RowIndexEntry<>(i + 1000));
+        }
+        assertEquals(2000, cache.size());
+
+        for (int i = 0; i < 1000; i++)
+        {
+            assertEquals(i, cache.get(descriptor1, key(i)).position);
+            assertEquals(i + 1000, cache.get(descriptor2, key(i)).position);
+            assertEquals(i, cache.get(cacheKey(descriptor1, i)).position);
+        }
+        assertNull(cache.get(descriptor1, key(1000)));
+
+        // replacing an entry keeps a single entry for the key
+        cache.put(metadata, descriptor1, key(0), new RowIndexEntry<>(42));
+        assertEquals(42, cache.get(descriptor1, key(0)).position);
+        assertEquals(2000, cache.size());
+        assertFalse(cache.putIfAbsent(cacheKey(descriptor1, 0), new RowIndexEntry<>(43)));
+        assertFalse(cache.replace(cacheKey(descriptor1, 0), new RowIndexEntry<>(43), new RowIndexEntry<>(44)));
+        assertTrue(cache.replace(cacheKey(descriptor1, 0), new RowIndexEntry<>(42), new RowIndexEntry<>(0)));
+        assertEquals(0, cache.get(descriptor1, key(0)).position);
+
+        // removing the entries keeps finding the entries that followed them in their probe sequence
+        for (int i = 0; i < 1000; i += 2)
+            cache.remove(cacheKey(descriptor1, i));
+        assertEquals(1500, cache.size());
+        for (int i = 0; i < 1000; i++)
+        {
+            assertEquals(i % 2 == 1, cache.containsKey(cacheKey(descriptor1, i)));
+            assertEquals(i + 1000, cache.get(descriptor2, key(i)).position);
+        }
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(descriptor2, key(1)));
+
+        // the keys of tables in the schema can be added without their metadata
+        assertTrue(cache.putIfAbsent(cacheKey(descriptor1, 1), new RowIndexEntry<>(1)));
+        assertEquals(1, cache.get(descriptor1, key(1)).position);
+    }
+
+    @Test
+    public void testIndexedEntries()
+    {
+        OffHeapKeyCache cache = new OffHeapKeyCache(1 << 20, 4);
+        IndexInfo.Serializer serializer = IndexInfo.serializer(descriptor1.version, SerializationHeader.makeWithoutStats(metadata));
+        DeletionTime deletion = new DeletionTime(1000, 10);
+        RowIndexEntry<IndexInfo> entry = RowIndexEntry.create(123, 456, deletion, 7, 20, 500, null, null, serializer);
+        assertTrue(entry.isIndexed());
+
+        cache.put(metadata, descriptor1, key(1), entry);
+        RowIndexEntry cached = cache.get(descriptor1, key(1));
+        assertTrue(cached.isIndexed());
+        assertEquals(entry.position, cached.position);
+        assertEquals(entry.columnsIndexCount(), cached.columnsIndexCount());
+        assertEquals(entry.deletionTime(), cached.deletionTime());
+    }
+
+    @Test
+    public void testEviction()
+    {
+        long capacity = 64 << 10;
+        OffHeapKeyCache cache = new OffHeapKeyCache(capacity, 2);
+        cache.put(metadata, descriptor1, key(0), new RowIndexEntry<>(0));
+        for (int i = 1; i < 10000; i++)
+        {
+            cache.put(metadata, descriptor1, key(i), new RowIndexEntry<>(i));
+            // keep the first key referenced
+            assertNotNull(cache.get(descriptor1, key(0)));
+            assertTrue(cache.weightedSize() <= capacity);
+        }
+        assertTrue(cache.size() < 10000);
+        assertTrue(cache.size() > 100);
+
+        cache.setCapacity(0);
+        assertEquals(0, cache.size());
+        assertNull(cache.get(descriptor1, key(0)));
+    }
+
+    @Test
+    public void testKeyIterator()
+    {
+        OffHeapKeyCache cache = new OffHeapKeyCache(1 << 20, 4);
+        Set<KeyCacheKey> expected = new HashSet<>();
+        for (int i = 0; i < 100; i++)
+        {
+            cache.put(metadata, descriptor1, key(i), new RowIndexEntry<>(i));
+            expected.add(cacheKey(descriptor1, i));
+        }
+        cache.get(descriptor1, key(42));
+
+        // the referenced entries come first
+        assertEquals(cacheKey(descriptor1, 42), cache.hotKeyIterator(1).next());
+
+        Set<KeyCacheKey> keys = new HashSet<>();
+        for (Iterator<KeyCacheKey> iterator = cache.keyIterator(); iterator.hasNext(); )
+        {
+            KeyCacheKey key = iterator.next();
+            keys.add(key);
+            if (new String(key.key).endsWith("7"))
+                iterator.remove();
+        }
+        assertEquals(expected, keys);
+        assertEquals(90, cache.size());
+        assertNull(cache.get(descriptor1, key(17)));
+    }
+
+    private static DecoratedKey key(int i)
+    {
+        return metadata.partitioner.decorateKey(ByteBufferUtil.bytes("key" + i));
+    }
+
+    private static KeyCacheKey cacheKey(Descriptor descriptor, int i)
+    {
+        return new KeyCacheKey(metadata, descriptor, key(i).getKey());
+    }
+}
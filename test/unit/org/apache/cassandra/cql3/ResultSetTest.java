@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.cql3;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResultSetTest
+{
+    @Test
+    public void testEncodedRows()
+    {
+        ResultSet.ResultMetadata metadata = metadata();
+        ResultSet plain = new ResultSet(metadata);
+        ResultSet encoded = ResultSet.withEncodedRows(metadata);
+        assertTrue(encoded.hasEncodedRows());
+
+        for (int i = 0; i < 100; i++)
+        {
+            List<ByteBuffer> row = Arrays.asList(Int32Type.instance.decompose(i),
+                                                 i % 3 == 0 ? null : UTF8Type.instance.decompose("v" + i));
+            plain.addRow(row);
+            encoded.addRow(row);
+        }
+
+        plain.trim(42);
+        encoded.trim(42);
+
+        assertEquals(plain.rows, encoded.rows);
+        assertArrayEquals(encode(plain), encode(encoded));
+
+        ByteBuf decoded = Unpooled.wrappedBuffer(encode(encoded));
+        assertEquals(plain.rows, ResultSet.codec.decode(decoded, ProtocolVersion.CURRENT).rows);
+
+        try
+        {
+            encoded.rows.remove(0);
+            fail("Removing another row than the last one should not be supported");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEncodedRowsWithNonSerializedColumns()
+    {
+        ResultSet.ResultMetadata metadata = metadata();
+        metadata.addNonSerializedColumns(Collections.singletonList(new ColumnSpecification("ks", "cf", new ColumnIdentifier("c", true), Int32Type.instance)));
+        assertFalse(ResultSet.withEncodedRows(metadata).hasEncodedRows());
+    }
+
+    private static ResultSet.ResultMetadata metadata()
+    {
+        return new ResultSet.ResultMetadata(new ArrayList<>(Arrays.asList(new ColumnSpecification("ks", "cf", new ColumnIdentifier("k", true), Int32Type.instance),
+                                                                          new ColumnSpecification("ks", "cf", new ColumnIdentifier("v", true), UTF8Type.instance))));
+    }
+
+    private static byte[] encode(ResultSet rs)
+    {
+        ByteBuf buf = Unpooled.buffer(ResultSet.codec.encodedSize(rs, ProtocolVersion.CURRENT));
+        ResultSet.codec.encode(rs, buf, ProtocolVersion.CURRENT);
+        assertEquals(buf.capacity(), buf.readableBytes());
+        return ByteBufferUtil.getArray(buf.nioBuffer());
+    }
+}
@@ -20,6 +20,8 @@
  */
 package org.apache.cassandra.cql3.validation.miscellaneous;
 
+import java.util.Collections;
+
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -27,6 +29,8 @@ import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.CQLTester;
 import org.apache.cassandra.cql3.UntypedResultSet;
 import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.io.sstable.SSTableSynopsis;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.metrics.ClearableHistogram;
 
 /**
@@ -430,10 +434,14 @@ public class SSTablesIteratedTest extends CQLTester
         executeAndCheck("SELECT * FROM %s WHERE id=1 LIMIT 1", 3, row(1, 1001, "1001"));
         executeAndCheck("SELECT * FROM %s WHERE id=1 LIMIT 2", 3, row(1, 1001, "1001"), row(1, 1002, "1002"));
 
+        // the row deletions make a partition large enough to have its clustering bounds in the synopsis of its
+        // sstable, which are then known not to intersect the queried slice
+        int deletionSSTables = deleteWithRange ? 1 : 0;
+
         executeAndCheck("SELECT * FROM %s WHERE id=1", 3, allRows);
-        executeAndCheck("SELECT * FROM %s WHERE id=1 AND col > 1000 LIMIT 1", 2, row(1, 1001, "1001"));
+        executeAndCheck("SELECT * FROM %s WHERE id=1 AND col > 1000 LIMIT 1", 1 + deletionSSTables, row(1, 1001, "1001"));
         executeAndCheck("SELECT * FROM %s WHERE id=1 AND col <= 2000 LIMIT 1", 3, row(1, 1001, "1001"));
-        executeAndCheck("SELECT * FROM %s WHERE id=1 AND col > 1000", 2, allRows);
+        executeAndCheck("SELECT * FROM %s WHERE id=1 AND col > 1000", 1 + deletionSSTables, allRows);
         executeAndCheck("SELECT * FROM %s WHERE id=1 AND col <= 2000", 3, allRows);
     }
 
@@ -554,4 +562,47 @@ public class SSTablesIteratedTest extends CQLTester
             executeAndCheck(base + String.format("WHERE id=%d AND col < 40 LIMIT 1", i), 1, row(i, 30, "30"));
         }
     }
+
+    @Test
+    public void testSkippingOnPartitionClusteringBounds() throws Throwable
+    {
+        createTable("CREATE TABLE %s (id int, col int, val text, PRIMARY KEY (id, col))");
+        String value = String.join("", Collections.nCopies(100, "x"));
+
+        // large partitions, whose clustering bounds are in the synopsis of their sstable, within the wider bounds of
+        // the sstables set by the small partitions
+        for (int i = 0; i < 200; i++)
+            execute("INSERT INTO %s (id, col, val) VALUES (?, ?, ?)", 1, i, value);
+        execute("INSERT INTO %s (id, col, val) VALUES (?, ?, ?)", 2, 1000, "1000");
+        flush();
+
+        for (int i = 500; i < 700; i++)
+            execute("INSERT INTO %s (id, col, val) VALUES (?, ?, ?)", 1, i, value);
+        execute("INSERT INTO %s (id, col, val) VALUES (?, ?, ?)", 2, 5, "5");
+        execute("INSERT INTO %s (id, col, val) VALUES (?, ?, ?)", 2, 1500, "1500");
+        flush();
+
+        for (SSTableReader sstable : getCurrentColumnFamilyStore(KEYSPACE_PER_TEST).getLiveSSTables())
+        {
+            assertEquals(1, sstable.getSynopsis().partitionCount());
+            assertEquals(1, SSTableSynopsis.load(sstable.descriptor).partitionCount());
+        }
+
+        executeAndCheck("SELECT * FROM %s WHERE id=1 AND col >= 100 AND col < 102", 1,
+                        row(1, 100, value),
+                        row(1, 101, value));
+        executeAndCheck("SELECT * FROM %s WHERE id=1 AND col >= 600 AND col < 602 ORDER BY col DESC", 1,
+                        row(1, 601, value),
+                        row(1, 600, value));
+        executeAndCheck("SELECT * FROM %s WHERE id=1 AND col = 650", 1, row(1, 650, value));
+        executeAndCheck("SELECT * FROM %s WHERE id=1 AND col >= 300 AND col < 400", 0);
+        executeAndCheck("SELECT * FROM %s WHERE id=2 AND col >= 100 AND col < 2000", 2,
+                        row(2, 1000, "1000"),
+                        row(2, 1500, "1500"));
+
+        // a partition deletion in the newest sstable still shadows the data of the others
+        execute("DELETE FROM %s WHERE id=1");
+        flush();
+        executeAndCheck("SELECT * FROM %s WHERE id=1 AND col >= 100 AND col < 102", 1);
+    }
 }
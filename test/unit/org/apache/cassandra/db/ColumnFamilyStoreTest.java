@@ -34,6 +34,7 @@ import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.Iterators;
 import org.apache.cassandra.*;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.cql3.Operator;
 import org.apache.cassandra.db.lifecycle.SSTableSet;
 import org.apache.cassandra.db.rows.*;
@@ -115,6 +116,40 @@ public class ColumnFamilyStoreTest
         assertEquals(1, cfs.metric.sstablesPerReadHistogram.cf.getCount());
     }
 
+    @Test
+    public void testSplitFlush()
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF_STANDARD2);
+        String value = new String(new char[1024]).replace('\0', 'x');
+        for (int i = 0; i < 1000; i++)
+        {
+            new RowUpdateBuilder(cfs.metadata(), 0, "key" + i)
+                    .clustering("Column1")
+                    .add("val", value)
+                    .build()
+                    .applyUnsafe();
+        }
+
+        int splitSizeInMB = DatabaseDescriptor.getMemtableFlushSplitSizeInMB();
+        DatabaseDescriptor.setMemtableFlushSplitSizeInMB(1);
+        try
+        {
+            cfs.forceBlockingFlush();
+        }
+        finally
+        {
+            DatabaseDescriptor.setMemtableFlushSplitSizeInMB(splitSizeInMB);
+        }
+
+        // the memtable is split into as many sstables of disjoint token ranges as there are flush writers
+        List<SSTableReader> sstables = new ArrayList<>(cfs.getLiveSSTables());
+        assertEquals(DatabaseDescriptor.getFlushWriters(), sstables.size());
+        sstables.sort(Comparator.comparing(sstable -> sstable.first));
+        for (int i = 1; i < sstables.size(); i++)
+            assertTrue(sstables.get(i - 1).last.compareTo(sstables.get(i).first) < 0);
+        assertEquals(1000, Util.getAll(Util.cmd(cfs).build()).size());
+    }
+
     @Test
     public void testGetColumnWithWrongBF()
     {
@@ -19,6 +19,7 @@
 package org.apache.cassandra.db;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -223,6 +224,41 @@ public class RecoveryManagerTest
         Assert.assertTrue(Util.sameContent(upd2, Util.getOnlyPartitionUnfiltered(Util.cmd(keyspace2.getColumnFamilyStore(CF_STANDARD3), dk).build()).unfilteredIterator()));
     }
 
+    @Test
+    public void testRecoverSegmentsConcurrently() throws IOException
+    {
+        int originalReplayThreads = CommitLogReplayer.REPLAY_THREADS;
+        CommitLogReplayer.REPLAY_THREADS = 3;
+        try
+        {
+            CommitLog.instance.resetUnsafe(true);
+            ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF_STANDARD1);
+
+            // large enough values to spread the writes over several segments
+            ByteBuffer value = ByteBuffer.allocate(64 * 1024);
+            int rows = 200;
+            for (int i = 0; i < rows; i++)
+            {
+                new RowUpdateBuilder(cfs.metadata(), 1L, "key" + i)
+                    .clustering("cc")
+                    .add("val", value)
+                    .build()
+                    .apply();
+            }
+            Assert.assertTrue(CommitLog.instance.getActiveSegmentNames().size() > 1);
+
+            cfs.clearUnsafe();
+            int replayed = CommitLog.instance.resetUnsafe(false);
+
+            Assert.assertTrue(replayed >= rows);
+            assertEquals(rows, Util.getAll(Util.cmd(cfs).build()).size());
+        }
+        finally
+        {
+            CommitLogReplayer.REPLAY_THREADS = originalReplayThreads;
+        }
+    }
+
     @Test
     public void testRecoverCounter() throws IOException
     {
@@ -22,6 +22,7 @@ import org.junit.Test;
 
 import org.apache.cassandra.cql3.CQLTester;
 import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.metrics.TableMetrics;
 import org.apache.cassandra.service.CacheService;
 import static org.junit.Assert.assertEquals;
 
@@ -108,4 +109,126 @@ public class RowCacheCQLTest extends CQLTester
                    row(2, 2, 2, 2),
                    row(2, 3, 2, 3));
     }
+
+    @Test
+    public void testSliceCache() throws Throwable
+    {
+        CacheService.instance.setRowCacheCapacityInMB(1);
+        createTable("CREATE TABLE %s (pk int, ck int, s int static, v1 int, v2 int, PRIMARY KEY (pk, ck))" +
+                    "WITH caching = { 'keys': 'ALL', 'rows_per_partition': 'ALL', 'slices': 'ALL' }");
+        for (int ck = 0; ck < 100; ck++)
+            execute("INSERT INTO %s (pk, ck, v1, v2) VALUES (1, ?, ?, ?)", ck, ck, ck);
+        flush();
+        TableMetrics metrics = getCurrentColumnFamilyStore().metric;
+
+        // the slice read is cached, and serves the queries within it
+        assertRows(execute("SELECT ck, v1 FROM %s WHERE pk = 1 AND ck >= 97"),
+                   row(97, 97), row(98, 98), row(99, 99));
+        assertEquals(0, metrics.rowCacheHit.getCount());
+        assertRows(execute("SELECT ck, v2 FROM %s WHERE pk = 1 AND ck >= 98"),
+                   row(98, 98), row(99, 99));
+        assertRows(execute("SELECT v1 FROM %s WHERE pk = 1 AND ck = 97"),
+                   row(97));
+        assertEquals(2, metrics.rowCacheHit.getCount());
+        assertRows(execute("SELECT ck FROM %s WHERE pk = 1 AND ck >= 50 AND ck < 52"),
+                   row(50), row(51));
+        assertEquals(2, metrics.rowCacheHit.getCount());
+
+        // a write outside of the cached slices doesn't invalidate them
+        execute("INSERT INTO %s (pk, ck, v1, v2) VALUES (1, 10, 0, 0)");
+        assertRows(execute("SELECT ck FROM %s WHERE pk = 1 AND ck >= 97"),
+                   row(97), row(98), row(99));
+        assertRows(execute("SELECT ck FROM %s WHERE pk = 1 AND ck > 50 AND ck <= 51"),
+                   row(51));
+        assertEquals(4, metrics.rowCacheHit.getCount());
+
+        // while a write within one does
+        execute("INSERT INTO %s (pk, ck, v1, v2) VALUES (1, 98, 0, 0)");
+        assertRows(execute("SELECT ck, v1 FROM %s WHERE pk = 1 AND ck >= 97"),
+                   row(97, 97), row(98, 0), row(99, 99));
+        assertEquals(4, metrics.rowCacheHit.getCount());
+        assertRows(execute("SELECT ck, v1 FROM %s WHERE pk = 1 AND ck >= 97"),
+                   row(97, 97), row(98, 0), row(99, 99));
+        assertEquals(5, metrics.rowCacheHit.getCount());
+
+        // as does a range deletion overlapping it
+        execute("DELETE FROM %s WHERE pk = 1 AND ck > 90 AND ck < 98");
+        assertRows(execute("SELECT ck, v1 FROM %s WHERE pk = 1 AND ck >= 97"),
+                   row(98, 0), row(99, 99));
+        assertEquals(5, metrics.rowCacheHit.getCount());
+
+        // and a static row, that all the slices hold
+        execute("UPDATE %s SET s = 1 WHERE pk = 1");
+        assertRows(execute("SELECT ck, s FROM %s WHERE pk = 1 AND ck >= 97"),
+                   row(98, 1), row(99, 1));
+        assertRows(execute("SELECT ck, s FROM %s WHERE pk = 1 AND ck >= 97"),
+                   row(98, 1), row(99, 1));
+        assertEquals(6, metrics.rowCacheHit.getCount());
+    }
+
+    @Test
+    public void testSliceCacheTailReads() throws Throwable
+    {
+        CacheService.instance.setRowCacheCapacityInMB(1);
+        createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck))" +
+                    "WITH caching = { 'keys': 'ALL', 'rows_per_partition': '10', 'slices': 'ALL' }");
+        for (int ck = 0; ck < 1000; ck++)
+            execute("INSERT INTO %s (pk, ck, v) VALUES (1, ?, ?)", ck, ck);
+        flush();
+        TableMetrics metrics = getCurrentColumnFamilyStore().metric;
+
+        // the latest rows read are cached, and serve the reads of at most as many latest rows
+        assertRows(execute("SELECT ck FROM %s WHERE pk = 1 ORDER BY ck DESC LIMIT 3"),
+                   row(999), row(998), row(997));
+        assertRows(execute("SELECT ck FROM %s WHERE pk = 1 ORDER BY ck DESC LIMIT 3"),
+                   row(999), row(998), row(997));
+        assertRows(execute("SELECT ck FROM %s WHERE pk = 1 AND ck > 997"),
+                   row(998), row(999));
+        assertEquals(2, metrics.rowCacheHit.getCount());
+        assertRows(execute("SELECT ck FROM %s WHERE pk = 1 ORDER BY ck DESC LIMIT 4"),
+                   row(999), row(998), row(997), row(996));
+        assertEquals(2, metrics.rowCacheHit.getCount());
+
+        // up to rows_per_partition rows
+        assertEquals(20, execute("SELECT ck FROM %s WHERE pk = 1 ORDER BY ck DESC LIMIT 20").size());
+        assertEquals(10, execute("SELECT ck FROM %s WHERE pk = 1 ORDER BY ck DESC LIMIT 10").size());
+        assertEquals(3, metrics.rowCacheHit.getCount());
+        assertEquals(11, execute("SELECT ck FROM %s WHERE pk = 1 ORDER BY ck DESC LIMIT 11").size());
+        assertEquals(3, metrics.rowCacheHit.getCount());
+
+        // appending a row invalidates the tail
+        execute("INSERT INTO %s (pk, ck, v) VALUES (1, 1000, 1000)");
+        assertRows(execute("SELECT ck FROM %s WHERE pk = 1 ORDER BY ck DESC LIMIT 2"),
+                   row(1000), row(999));
+        assertRows(execute("SELECT ck FROM %s WHERE pk = 1 ORDER BY ck DESC LIMIT 2"),
+                   row(1000), row(999));
+        assertEquals(4, metrics.rowCacheHit.getCount());
+
+        // deleting the partition invalidates all the slices
+        execute("DELETE FROM %s WHERE pk = 1");
+        assertEmpty(execute("SELECT ck FROM %s WHERE pk = 1 ORDER BY ck DESC LIMIT 2"));
+        assertEquals(4, metrics.rowCacheHit.getCount());
+    }
+
+    @Test
+    public void testSliceCacheOptions() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck))");
+        assertInvalidMessage("requires a 'rows_per_partition' value",
+                             "ALTER TABLE %s WITH caching = { 'keys': 'ALL', 'slices': 'ALL' }");
+        assertInvalidMessage("Invalid value 'SOME' for caching sub-option 'slices'",
+                             "ALTER TABLE %s WITH caching = { 'keys': 'ALL', 'rows_per_partition': 'ALL', 'slices': 'SOME' }");
+
+        // switching between caching the slices and the head of partitions drops the entries of the other mode
+        CacheService.instance.setRowCacheCapacityInMB(1);
+        execute("INSERT INTO %s (pk, ck, v) VALUES (1, 1, 1)");
+        execute("ALTER TABLE %s WITH caching = { 'keys': 'ALL', 'rows_per_partition': 'ALL', 'slices': 'ALL' }");
+        assertRows(execute("SELECT ck, v FROM %s WHERE pk = 1 AND ck >= 1"), row(1, 1));
+        execute("ALTER TABLE %s WITH caching = { 'keys': 'ALL', 'rows_per_partition': 'ALL' }");
+        assertRows(execute("SELECT ck, v FROM %s WHERE pk = 1"), row(1, 1));
+        execute("ALTER TABLE %s WITH caching = { 'keys': 'ALL', 'rows_per_partition': 'ALL', 'slices': 'ALL' }");
+        execute("INSERT INTO %s (pk, ck, v) VALUES (1, 1, 2)");
+        assertRows(execute("SELECT ck, v FROM %s WHERE pk = 1 AND ck >= 1"), row(1, 2));
+        assertRows(execute("SELECT ck, v FROM %s WHERE pk = 1 AND ck >= 1"), row(1, 2));
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.junit.After;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CompactionIOSchedulerTest extends CQLTester
+{
+    private static final double MB = 1024 * 1024;
+
+    @After
+    public void resetThroughput()
+    {
+        DatabaseDescriptor.setCompactionThroughputMbPerSec(0);
+    }
+
+    @Test
+    public void testShareByWeight() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        ColumnFamilyStore low = getCurrentColumnFamilyStore();
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int) WITH compaction = {'class':'SizeTieredCompactionStrategy', 'io_priority':3}");
+        ColumnFamilyStore high = getCurrentColumnFamilyStore();
+
+        CompactionIOScheduler scheduler = new CompactionIOScheduler();
+        RateLimiter unthrottled = scheduler.getRateLimiter(OperationType.COMPACTION, low);
+        assertEquals(Double.MAX_VALUE, unthrottled.getRate(), 0);
+
+        DatabaseDescriptor.setCompactionThroughputMbPerSec(16);
+        RateLimiter lowCompaction = scheduler.getRateLimiter(OperationType.COMPACTION, low);
+        assertSame(unthrottled, lowCompaction);
+        assertEquals(16 * MB, lowCompaction.getRate(), 1);
+
+        // the operations of a table share its rate limiter
+        RateLimiter highCompaction = scheduler.getRateLimiter(OperationType.COMPACTION, high);
+        assertSame(highCompaction, scheduler.getRateLimiter(OperationType.COMPACTION, high));
+        RateLimiter lowCleanup = scheduler.getRateLimiter(OperationType.CLEANUP, low);
+
+        // weights 4, 4 * 3 and 1
+        assertEquals(16 * MB * 4 / 17, lowCompaction.getRate(), 1);
+        assertEquals(16 * MB * 12 / 17, highCompaction.getRate(), 1);
+        assertEquals(16 * MB / 17, lowCleanup.getRate(), 1);
+    }
+
+    @Test
+    public void testAdjust() throws Throwable
+    {
+        CompactionIOScheduler scheduler = new CompactionIOScheduler();
+        scheduler.setRate(16);
+        long target = TimeUnit.MILLISECONDS.toNanos(10);
+        long slow = TimeUnit.MILLISECONDS.toNanos(100);
+        long backlog = CompactionIOScheduler.BACKLOG_PENDING_TASKS + 1;
+
+        // the throughput decreases down to a quarter while the reads are slow
+        scheduler.adjust(0, slow, target);
+        assertEquals(12 * MB, scheduler.getRate(), 1);
+        for (int i = 0; i < 10; i++)
+            scheduler.adjust(0, slow, target);
+        assertEquals(4 * MB, scheduler.getRate(), 1);
+
+        // unless compactions are falling behind
+        scheduler.adjust(backlog, slow, target);
+        assertEquals(16 * MB * CompactionIOScheduler.RATE_INCREASE, scheduler.getRate(), 1);
+        for (int i = 0; i < 10; i++)
+            scheduler.adjust(backlog, slow, target);
+        assertEquals(32 * MB, scheduler.getRate(), 1);
+
+        // and the throughput converges back to the configured one otherwise
+        for (int i = 0; i < 10; i++)
+            scheduler.adjust(0, 0, target);
+        assertEquals(16 * MB, scheduler.getRate(), 1);
+    }
+
+    @Test
+    public void testInvalidIOPriority() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        assertInvalidThrow(ConfigurationException.class, "ALTER TABLE %s WITH compaction = {'class':'SizeTieredCompactionStrategy', 'io_priority':0}");
+        assertInvalidThrow(ConfigurationException.class, "ALTER TABLE %s WITH compaction = {'class':'SizeTieredCompactionStrategy', 'io_priority':'high'}");
+    }
+}
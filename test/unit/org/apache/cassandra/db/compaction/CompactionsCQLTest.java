@@ -18,11 +18,15 @@
 package org.apache.cassandra.db.compaction;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.junit.After;
@@ -38,6 +42,7 @@ import org.apache.cassandra.db.DeletionTime;
 import org.apache.cassandra.db.Mutation;
 import org.apache.cassandra.db.RangeTombstone;
 import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.SerializationHeader;
 import org.apache.cassandra.db.Slice;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
 import org.apache.cassandra.db.partitions.PartitionUpdate;
@@ -45,14 +50,18 @@ import org.apache.cassandra.db.rows.Cell;
 import org.apache.cassandra.db.rows.Row;
 import org.apache.cassandra.db.rows.Unfiltered;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.io.sstable.CopyablePartition;
 import org.apache.cassandra.io.sstable.CorruptSSTableException;
 import org.apache.cassandra.io.sstable.ISSTableScanner;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.serializers.MarshalException;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.UUIDGen;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -599,6 +608,130 @@ public class CompactionsCQLTest extends CQLTester
         assertEquals(expectTS, foundTombstone);
     }
 
+    @Test
+    public void testCompactionSplitInSubRanges() throws Throwable
+    {
+        createTable("CREATE TABLE %s (id int PRIMARY KEY, data blob) WITH compression = {'enabled':'false'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        Random random = new Random(42);
+        byte[] data = new byte[1024];
+        for (int i = 0; i < 3; i++)
+        {
+            for (int id = 0; id < 1000; id++)
+            {
+                random.nextBytes(data);
+                execute("INSERT INTO %s (id, data) VALUES (?, ?)", i * 1000 + id, ByteBuffer.wrap(data));
+            }
+            flush();
+        }
+        long inputFilterSize = 0;
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+            inputFilterSize += sstable.getBloomFilterSerializedSize();
+
+        int previousSplitSize = DatabaseDescriptor.getCompactionSplitSizeInMB();
+        DatabaseDescriptor.setCompactionSplitSizeInMB(1);
+        try
+        {
+            cfs.forceMajorCompaction();
+        }
+        finally
+        {
+            DatabaseDescriptor.setCompactionSplitSizeInMB(previousSplitSize);
+        }
+
+        // each sub-range of the compaction writes its own sstables, covering disjoint token ranges
+        List<SSTableReader> sstables = new ArrayList<>(cfs.getLiveSSTables());
+        assertTrue(sstables.size() > 1);
+        sstables.sort(SSTableReader.sstableComparator);
+        for (int i = 1; i < sstables.size(); i++)
+            assertTrue(sstables.get(i - 1).last.compareTo(sstables.get(i).first) < 0);
+        assertRowCount(execute("SELECT id FROM %s"), 3000);
+
+        // the bloom filters are sized for the keys of each sub-range, rather than for all the compacted keys
+        long outputFilterSize = 0;
+        for (SSTableReader sstable : sstables)
+            outputFilterSize += sstable.getBloomFilterSerializedSize();
+        assertTrue(outputFilterSize + " >= 2 * " + inputFilterSize, outputFilterSize < 2 * inputFilterSize);
+    }
+
+    @Test
+    public void testCopyPartitionsOfSingleSSTable() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        for (int pk = 0; pk < 100; pk++)
+        {
+            for (int ck = 0; ck < 10; ck++)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, "value" + ck);
+        }
+        flush();
+        for (int pk = 90; pk < 110; pk++)
+            execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, 10, "value10");
+        flush();
+
+        // the partitions of the first sstable don't need to be merged, but the ones both sstables have do
+        Set<SSTableReader> sstables = cfs.getLiveSSTables();
+        SSTableReader largest = Collections.max(sstables, Comparator.comparingLong(SSTableReader::uncompressedLength));
+        assertSame(largest.header, SerializationHeader.makeForCompaction(cfs.metadata(), sstables));
+        int nowInSec = FBUtilities.nowInSeconds();
+        int copyable = 0;
+        int merged = 0;
+        try (AbstractCompactionStrategy.ScannerList scanners = cfs.getCompactionStrategyManager().getScanners(sstables);
+             CompactionController controller = new CompactionController(cfs, sstables, cfs.gcBefore(nowInSec));
+             CompactionIterator ci = new CompactionIterator(OperationType.COMPACTION, scanners.scanners, controller, nowInSec, UUIDGen.getTimeUUID()))
+        {
+            while (ci.hasNext())
+            {
+                try (UnfilteredRowIterator partition = ci.next())
+                {
+                    if (partition instanceof CopyablePartition && ((CopyablePartition) partition).isCopyable())
+                        copyable++;
+                    else
+                        merged++;
+                }
+            }
+        }
+        assertEquals(100, copyable);
+        assertEquals(10, merged);
+
+        cfs.forceMajorCompaction();
+        assertEquals(1, cfs.getLiveSSTables().size());
+        assertRowCount(execute("SELECT * FROM %s"), 1020);
+        assertRows(execute("SELECT v FROM %s WHERE pk = 5 AND ck = 3"), row("value3"));
+        assertRows(execute("SELECT v FROM %s WHERE pk = 95 AND ck = 10"), row("value10"));
+        assertRows(execute("SELECT v FROM %s WHERE pk = 105 AND ck = 10"), row("value10"));
+        SSTableReader compacted = cfs.getLiveSSTables().iterator().next();
+        assertEquals(110, compacted.getSSTableMetadata().estimatedPartitionSize.count());
+        assertTrue(compacted.getMaxTimestamp() > compacted.getMinTimestamp());
+    }
+
+    @Test
+    public void testCopyPartitionsOfSSTableWithTombstones() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        for (int pk = 0; pk < 100; pk++)
+        {
+            for (int ck = 0; ck < 10; ck++)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, "value" + ck);
+        }
+        execute("DELETE FROM %s WHERE pk = ? AND ck = ?", 95, 3);
+        flush();
+        for (int pk = 90; pk < 110; pk++)
+            execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, 10, "value10");
+        flush();
+
+        // the tombstone of the merged partition must only be counted once, although the others of its sstable aren't merged
+        cfs.forceMajorCompaction();
+        assertEquals(1, cfs.getLiveSSTables().size());
+        assertRowCount(execute("SELECT * FROM %s"), 1019);
+        SSTableReader compacted = cfs.getLiveSSTables().iterator().next();
+        assertEquals(1, compacted.getSSTableMetadata().estimatedTombstoneDropTime.sum(Integer.MAX_VALUE), 0);
+    }
+
     public boolean verifyStrategies(CompactionStrategyManager manager, Class<? extends AbstractCompactionStrategy> expected)
     {
         boolean found = false;
@@ -317,6 +317,45 @@ public class LeveledCompactionStrategyTest
         assertEquals(cfs.getLiveSSTables().size(), levels[6]);
     }
 
+    @Test
+    public void testManifestKeepsLevelsSorted() throws Exception
+    {
+        cfs.disableAutoCompaction();
+        ByteBuffer value = ByteBuffer.wrap(new byte[100 * 1024]); // 100 KB value, make it easy to have multiple files
+
+        // Enough data to have a level 1 and 2
+        int rows = 40;
+        int columns = 20;
+
+        for (int r = 0; r < rows; r++)
+        {
+            UpdateBuilder update = UpdateBuilder.create(cfs.metadata(), String.valueOf(r));
+            for (int c = 0; c < columns; c++)
+                update.newRow("column" + c).add("val", value);
+            update.applyUnsafe();
+            cfs.forceBlockingFlush();
+        }
+        LeveledCompactionStrategy strategy = (LeveledCompactionStrategy) cfs.getCompactionStrategyManager().getStrategies().get(1).get(0);
+        cfs.forceMajorCompaction();
+        assertTrue(strategy.manifest.getLevelCount() > 1);
+
+        // sstables added in any order are kept sorted, so that the overlapping ones are found by binary search
+        for (int level = 1; level <= strategy.manifest.getLevelCount(); level++)
+        {
+            List<SSTableReader> sstables = new ArrayList<>(strategy.manifest.getLevel(level));
+            Collections.shuffle(sstables);
+            for (SSTableReader sstable : sstables)
+                strategy.manifest.remove(sstable);
+            for (SSTableReader sstable : sstables)
+                strategy.manifest.add(sstable);
+
+            List<SSTableReader> sorted = strategy.manifest.getLevel(level);
+            assertEquals(sstables.size(), sorted.size());
+            for (int i = 1; i < sorted.size(); i++)
+                assertTrue(sorted.get(i - 1).last.compareTo(sorted.get(i).first) < 0);
+        }
+    }
+
     @Test
     public void testNewRepairedSSTable() throws Exception
     {
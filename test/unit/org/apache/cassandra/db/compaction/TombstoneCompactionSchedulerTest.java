@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TombstoneCompactionSchedulerTest extends CQLTester
+{
+    private static final String OPTIONS = " WITH gc_grace_seconds = 0" +
+                                          " AND compaction = {'class':'SizeTieredCompactionStrategy', 'tombstone_compaction_interval':0}";
+
+    @After
+    public void resetThroughput()
+    {
+        DatabaseDescriptor.setTombstoneCompactionThroughputMbPerSec(0);
+    }
+
+    @Test
+    public void testScheduleByPurgeableTombstones() throws Throwable
+    {
+        // the tombstones of the first table shadow the older data of its other sstable, so they can't be purged
+        String shadowing = createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)" + OPTIONS);
+        for (int i = 0; i < 10; i++)
+            execute("INSERT INTO %s (k, v) VALUES (?, ?)", i, i);
+        flush();
+        for (int i = 0; i < 10; i++)
+            execute("DELETE v FROM %s WHERE k = ?", i);
+        flush();
+
+        String purgeable = createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)" + OPTIONS);
+        for (int i = 0; i < 10; i++)
+            execute("DELETE v FROM %s WHERE k = ?", i);
+        flush();
+
+        ColumnFamilyStore shadowingCfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(shadowing);
+        ColumnFamilyStore purgeableCfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(purgeable);
+        List<ColumnFamilyStore> tables = Arrays.asList(shadowingCfs, purgeableCfs);
+
+        // the deletion times are rounded up to the minute by the sstable tombstone histograms
+        int nowInSec = FBUtilities.nowInSeconds() + SSTable.TOMBSTONE_HISTOGRAM_TTL_ROUND_SECONDS + 1;
+        for (SSTableReader sstable : shadowingCfs.getLiveSSTables())
+            assertEquals(0, TombstoneCompactionScheduler.purgeableTombstoneRatio(shadowingCfs, sstable, CompactionManager.getDefaultGcBefore(shadowingCfs, nowInSec)), 0);
+
+        List<TombstoneCompactionScheduler.Candidate> candidates = TombstoneCompactionScheduler.getCandidates(tables, nowInSec);
+        assertEquals(1, candidates.size());
+        assertSame(purgeableCfs, candidates.get(0).cfs);
+        assertTrue(candidates.get(0).purgeableRatio > 0.2);
+
+        // nothing is compacted unless a throughput is configured
+        TombstoneCompactionScheduler scheduler = new TombstoneCompactionScheduler();
+        assertTrue(scheduler.schedule(tables, nowInSec).isEmpty());
+
+        // the budget accumulates from the previous run
+        DatabaseDescriptor.setTombstoneCompactionThroughputMbPerSec(16);
+        Thread.sleep(100);
+        List<Future<?>> futures = scheduler.schedule(tables, nowInSec);
+        assertEquals(1, futures.size());
+        FBUtilities.waitOnFutures(futures);
+
+        assertEquals(0, purgeableCfs.getLiveSSTables().size());
+        assertEquals(2, shadowingCfs.getLiveSSTables().size());
+    }
+
+    @Test
+    public void testSinglePartitionOverlap() throws Throwable
+    {
+        // an older sstable with a single partition only shadows the tombstones of that partition
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)" + OPTIONS);
+        execute("INSERT INTO %s (k, v) VALUES (0, 0)");
+        flush();
+        for (int i = 0; i < 500; i++)
+            execute("DELETE v FROM %s WHERE k = ?", i);
+        flush();
+
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        int nowInSec = FBUtilities.nowInSeconds() + SSTable.TOMBSTONE_HISTOGRAM_TTL_ROUND_SECONDS + 1;
+        int gcBefore = CompactionManager.getDefaultGcBefore(cfs, nowInSec);
+        int checked = 0;
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+        {
+            if (sstable.getIndexSummarySize() > 1)
+            {
+                double droppableRatio = sstable.getEstimatedDroppableTombstoneRatio(gcBefore);
+                double ratio = TombstoneCompactionScheduler.purgeableTombstoneRatio(cfs, sstable, gcBefore);
+                assertTrue(droppableRatio > 0);
+                assertTrue(String.valueOf(ratio), ratio > 0.5 * droppableRatio);
+                checked++;
+            }
+        }
+        assertEquals(1, checked);
+    }
+
+    @Test
+    public void testOverlapWithoutIndexSummary() throws Throwable
+    {
+        // the sstables of the trie-indexed format have no index summary to estimate the overlapping keys from
+        String previousFormat = DatabaseDescriptor.getSSTableFormat();
+        DatabaseDescriptor.setSSTableFormat("bti");
+        try
+        {
+            createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)" + OPTIONS);
+            execute("INSERT INTO %s (k, v) VALUES (0, 0)");
+            flush();
+            for (int i = 0; i < 500; i++)
+                execute("DELETE v FROM %s WHERE k = ?", i);
+            flush();
+        }
+        finally
+        {
+            DatabaseDescriptor.setSSTableFormat(previousFormat);
+        }
+
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        int nowInSec = FBUtilities.nowInSeconds() + SSTable.TOMBSTONE_HISTOGRAM_TTL_ROUND_SECONDS + 1;
+        int gcBefore = CompactionManager.getDefaultGcBefore(cfs, nowInSec);
+        int checked = 0;
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+        {
+            assertFalse(sstable.hasIndexSummary());
+            if (sstable.estimatedKeys() > 1)
+            {
+                double droppableRatio = sstable.getEstimatedDroppableTombstoneRatio(gcBefore);
+                double ratio = TombstoneCompactionScheduler.purgeableTombstoneRatio(cfs, sstable, gcBefore);
+                assertTrue(droppableRatio > 0);
+                assertTrue(String.valueOf(ratio), ratio > 0.5 * droppableRatio);
+                checked++;
+            }
+        }
+        assertEquals(1, checked);
+
+        List<TombstoneCompactionScheduler.Candidate> candidates = TombstoneCompactionScheduler.getCandidates(Collections.singletonList(cfs), nowInSec);
+        assertEquals(1, candidates.size());
+        assertTrue(candidates.get(0).sstable.estimatedKeys() > 1);
+    }
+}
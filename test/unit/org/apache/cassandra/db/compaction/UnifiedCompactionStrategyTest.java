@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.compaction.writers.ShardedCompactionWriter;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UnifiedCompactionStrategyTest extends CQLTester
+{
+    @Test
+    public void testScalingParameter()
+    {
+        assertEquals(2, UnifiedCompactionStrategyOptions.parseScalingParameter("T4"));
+        assertEquals(-8, UnifiedCompactionStrategyOptions.parseScalingParameter("L10"));
+        assertEquals(0, UnifiedCompactionStrategyOptions.parseScalingParameter("N"));
+        assertEquals(0, UnifiedCompactionStrategyOptions.parseScalingParameter("T2"));
+        assertEquals(-3, UnifiedCompactionStrategyOptions.parseScalingParameter("-3"));
+
+        UnifiedCompactionStrategyOptions tiered = new UnifiedCompactionStrategyOptions(Collections.singletonMap("scaling_parameter", "T8"));
+        assertEquals(8, tiered.fanout());
+        assertEquals(8, tiered.threshold());
+        UnifiedCompactionStrategyOptions leveled = new UnifiedCompactionStrategyOptions(Collections.singletonMap("scaling_parameter", "L8"));
+        assertEquals(8, leveled.fanout());
+        assertEquals(2, leveled.threshold());
+        UnifiedCompactionStrategyOptions defaults = new UnifiedCompactionStrategyOptions();
+        assertEquals(4, defaults.fanout());
+        assertEquals(4, defaults.threshold());
+
+        assertInvalidOption("scaling_parameter", "L1");
+        assertInvalidOption("scaling_parameter", "X4");
+        assertInvalidOption("shard_count", "0");
+        assertInvalidOption("min_sstable_size_in_mb", "-1");
+    }
+
+    private static void assertInvalidOption(String option, String value)
+    {
+        try
+        {
+            UnifiedCompactionStrategy.validateOptions(Collections.singletonMap(option, value));
+            fail(String.format("%s: %s should be invalid", option, value));
+        }
+        catch (ConfigurationException e)
+        {
+            assertTrue(e.getMessage().contains(option));
+        }
+    }
+
+    @Test
+    public void testLevels()
+    {
+        long minSize = 100;
+        assertEquals(0, UnifiedCompactionStrategy.level(0, minSize, 4));
+        assertEquals(0, UnifiedCompactionStrategy.level(399, minSize, 4));
+        assertEquals(1, UnifiedCompactionStrategy.level(400, minSize, 4));
+        assertEquals(1, UnifiedCompactionStrategy.level(1599, minSize, 4));
+        assertEquals(2, UnifiedCompactionStrategy.level(1600, minSize, 4));
+        assertEquals(3, UnifiedCompactionStrategy.level(1000, 1, 10));
+    }
+
+    @Test
+    public void testShardBoundaries()
+    {
+        List<Token> boundaries = UnifiedCompactionStrategy.computeShardBoundaries(Murmur3Partitioner.instance, 4);
+        assertEquals(4, boundaries.size());
+        assertEquals(Murmur3Partitioner.instance.getMaximumToken(), boundaries.get(3));
+        for (int i = 1; i < boundaries.size(); i++)
+            assertEquals(0.25, boundaries.get(i - 1).size(boundaries.get(i)), 0.001);
+
+        assertEquals(0, ShardedCompactionWriter.shardOf(boundaries, Murmur3Partitioner.instance.getMinimumToken()));
+        assertEquals(1, ShardedCompactionWriter.shardOf(boundaries, boundaries.get(1)));
+        assertEquals(2, ShardedCompactionWriter.shardOf(boundaries, boundaries.get(1).increaseSlightly()));
+        assertEquals(3, ShardedCompactionWriter.shardOf(boundaries, boundaries.get(3)));
+    }
+
+    @Test
+    public void testShardedCompaction() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck)) WITH compaction = {'class':'UnifiedCompactionStrategy', 'scaling_parameter':'T4', 'shard_count':'4'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        UnifiedCompactionStrategy strategy = (UnifiedCompactionStrategy) cfs.getCompactionStrategyManager().getUnrepairedUnsafe().first();
+
+        for (int ck = 0; ck < 4; ck++)
+        {
+            // the flushed sstables share a shard and a level, that only compacts once it holds 4 of them
+            assertNull(strategy.getNextBackgroundTask(FBUtilities.nowInSeconds()));
+            for (int pk = 0; pk < 100; pk++)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, "value");
+            flush();
+        }
+        assertEquals(4, cfs.getLiveSSTables().size());
+
+        AbstractCompactionTask task = strategy.getNextBackgroundTask(FBUtilities.nowInSeconds());
+        assertNotNull(task);
+        assertEquals(4, task.transaction.originals().size());
+        task.execute(ActiveCompactionsTracker.NOOP);
+
+        // the compaction writes an sstable per shard
+        List<Token> boundaries = strategy.getShardBoundaries();
+        Set<Integer> shards = new HashSet<>();
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+        {
+            int shard = ShardedCompactionWriter.shardOf(boundaries, sstable.first.getToken());
+            assertEquals(shard, ShardedCompactionWriter.shardOf(boundaries, sstable.last.getToken()));
+            assertTrue(shards.add(shard));
+            // with a quarter of the data over a quarter of the ring, their densities match the ones of the flushes
+            assertTrue(strategy.density(sstable) < 4 * sstable.onDiskLength() * 1.5);
+        }
+        assertEquals(4, shards.size());
+        assertRowCount(execute("SELECT * FROM %s"), 400);
+        assertNull(strategy.getNextBackgroundTask(FBUtilities.nowInSeconds()));
+
+        // a major compaction also keeps an sstable per shard
+        cfs.forceMajorCompaction();
+        assertEquals(4, cfs.getLiveSSTables().size());
+        assertRowCount(execute("SELECT * FROM %s"), 400);
+    }
+}
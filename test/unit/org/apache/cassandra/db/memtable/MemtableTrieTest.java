@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import org.apache.cassandra.utils.FastByteOperations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MemtableTrieTest
+{
+    private static final Comparator<byte[]> UNSIGNED = (a, b) -> FastByteOperations.compareUnsigned(a, 0, a.length, b, 0, b.length);
+
+    @Test
+    public void testPutAndGet()
+    {
+        MemtableTrie<String> trie = new MemtableTrie<>();
+        assertNull(trie.get(key(1, 2, 0)));
+        assertNull(trie.putIfAbsent(key(1, 2, 0), "a"));
+        assertNull(trie.putIfAbsent(key(1, 3, 0), "b"));
+        assertNull(trie.putIfAbsent(key(1, 2, 4, 0), "c"));
+        assertEquals("a", trie.putIfAbsent(key(1, 2, 0), "d"));
+
+        assertEquals("a", trie.get(key(1, 2, 0)));
+        assertEquals("b", trie.get(key(1, 3, 0)));
+        assertEquals("c", trie.get(key(1, 2, 4, 0)));
+        assertNull(trie.get(key(1, 0)));
+        assertNull(trie.get(key(1, 2, 5, 0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrefixKeyRejected()
+    {
+        MemtableTrie<String> trie = new MemtableTrie<>();
+        trie.putIfAbsent(key(1, 2, 3), "a");
+        trie.putIfAbsent(key(1, 2, 3, 4), "b");
+    }
+
+    @Test
+    public void testRandomAgainstTreeMap()
+    {
+        Random random = new Random(42);
+        MemtableTrie<byte[]> trie = new MemtableTrie<>();
+        TreeMap<byte[], byte[]> expected = new TreeMap<>(UNSIGNED);
+        for (int i = 0; i < 10000; i++)
+        {
+            byte[] key = randomKey(random);
+            byte[] previous = trie.putIfAbsent(key, key);
+            assertEquals(expected.get(key), previous);
+            expected.putIfAbsent(key, key);
+        }
+
+        for (byte[] key : expected.keySet())
+            assertEquals(key, trie.get(key));
+
+        assertIterates(expected.values(), trie.iterator(null));
+
+        for (int i = 0; i < 100; i++)
+        {
+            byte[] from = new byte[random.nextInt(4)];
+            random.nextBytes(from);
+            assertIterates(expected.tailMap(from, true).values(), trie.iterator(from));
+        }
+
+        // bounds that are existing keys are inclusive
+        for (byte[] from : new ArrayList<>(expected.keySet()).subList(0, 100))
+            assertIterates(expected.tailMap(from, true).values(), trie.iterator(from));
+    }
+
+    private static void assertIterates(Iterable<byte[]> expected, Iterator<byte[]> actual)
+    {
+        List<byte[]> values = new ArrayList<>();
+        actual.forEachRemaining(values::add);
+        List<byte[]> expectedValues = new ArrayList<>();
+        expected.forEach(expectedValues::add);
+        assertEquals(expectedValues, values);
+    }
+
+    /**
+     * Generates keys with a few highly populated byte values, to exercise both sparse and dense nodes, terminated
+     * by a zero byte so that no key is a prefix of another.
+     */
+    private static byte[] randomKey(Random random)
+    {
+        byte[] key = new byte[1 + random.nextInt(6)];
+        for (int i = 0; i < key.length - 1; i++)
+            key[i] = (byte) (random.nextBoolean() ? 1 + random.nextInt(4) : 1 + random.nextInt(255));
+        return key;
+    }
+
+    private static byte[] key(int... bytes)
+    {
+        byte[] key = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++)
+            key[i] = (byte) bytes[i];
+        return key;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedTrieMemtableTest extends CQLTester
+{
+    private static final int PARTITIONS = 200;
+
+    @Test
+    public void testReadsAndFlush() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck)) " +
+                    "WITH memtable = {'class': 'ShardedTrieMemtable', 'shards': '4'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        Memtable memtable = cfs.getTracker().getView().getCurrentMemtable();
+        assertTrue(memtable instanceof ShardedTrieMemtable);
+        assertEquals(4, ((ShardedTrieMemtable) memtable).shardCount());
+        assertTrue(memtable.isClean());
+
+        for (int pk = 0; pk < PARTITIONS; pk++)
+            for (int ck = 0; ck < 3; ck++)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, pk + ck);
+
+        assertEquals(PARTITIONS, memtable.partitionCount());
+        for (int pk = 0; pk < PARTITIONS; pk += 7)
+            assertRows(execute("SELECT ck, v FROM %s WHERE pk = ?", pk),
+                       row(0, pk), row(1, pk + 1), row(2, pk + 2));
+        assertEmpty(execute("SELECT * FROM %s WHERE pk = ?", PARTITIONS));
+
+        List<Long> tokens = tokens(execute("SELECT token(pk) FROM %s"));
+        assertEquals(PARTITIONS * 3, tokens.size());
+        for (int i = 1; i < tokens.size(); i++)
+            assertTrue(tokens.get(i - 1) <= tokens.get(i));
+
+        long middle = tokens.get(tokens.size() / 2);
+        List<Long> upper = tokens(execute("SELECT token(pk) FROM %s WHERE token(pk) > ?", middle));
+        List<Long> lower = tokens(execute("SELECT token(pk) FROM %s WHERE token(pk) <= ?", middle));
+        assertEquals(tokens.size(), upper.size() + lower.size());
+
+        cfs.forceBlockingFlush();
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable().isClean());
+        assertEquals(tokens, tokens(execute("SELECT token(pk) FROM %s")));
+        assertEquals(upper, tokens(execute("SELECT token(pk) FROM %s WHERE token(pk) > ?", middle)));
+    }
+
+    @Test
+    public void testOffHeapIndex() throws Throwable
+    {
+        Config.MemtableAllocationType allocationType = DatabaseDescriptor.getMemtableAllocationType();
+        DatabaseDescriptor.getRawConfig().memtable_allocation_type = Config.MemtableAllocationType.offheap_objects_full;
+        try
+        {
+            createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck)) " +
+                        "WITH memtable = {'class': 'ShardedTrieMemtable', 'shards': '3'}");
+            ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+            Memtable memtable = cfs.getTracker().getView().getCurrentMemtable();
+            assertTrue(((ShardedTrieMemtable) memtable).hasOffHeapIndex());
+
+            for (int pk = 0; pk < PARTITIONS; pk++)
+                for (int ck = 0; ck < 2; ck++)
+                    execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, pk + ck);
+
+            assertEquals(PARTITIONS, memtable.partitionCount());
+            for (int pk = 0; pk < PARTITIONS; pk += 7)
+                assertRows(execute("SELECT ck, v FROM %s WHERE pk = ?", pk), row(0, pk), row(1, pk + 1));
+
+            List<Long> tokens = tokens(execute("SELECT token(pk) FROM %s"));
+            assertEquals(PARTITIONS * 2, tokens.size());
+            for (int i = 1; i < tokens.size(); i++)
+                assertTrue(tokens.get(i - 1) <= tokens.get(i));
+
+            cfs.forceBlockingFlush();
+            assertEquals(tokens, tokens(execute("SELECT token(pk) FROM %s")));
+        }
+        finally
+        {
+            DatabaseDescriptor.getRawConfig().memtable_allocation_type = allocationType;
+        }
+    }
+
+    @Test
+    public void testAlterMemtable() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v int)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof SkipListMemtable);
+        execute("INSERT INTO %s (pk, v) VALUES (1, 1)");
+
+        alterTable("ALTER TABLE %s WITH memtable = {'class': 'ShardedTrieMemtable'}");
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof ShardedTrieMemtable);
+        execute("INSERT INTO %s (pk, v) VALUES (2, 2)");
+        assertRowsIgnoringOrder(execute("SELECT pk, v FROM %s"), row(1, 1), row(2, 2));
+
+        alterTable("ALTER TABLE %s WITH memtable = {'class': 'SkipListMemtable'}");
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof SkipListMemtable);
+        assertRowsIgnoringOrder(execute("SELECT pk, v FROM %s"), row(1, 1), row(2, 2));
+    }
+
+    @Test
+    public void testInvalidOptions() throws Throwable
+    {
+        assertInvalidThrow(ConfigurationException.class,
+                           "CREATE TABLE " + KEYSPACE + ".invalid_shards (pk int PRIMARY KEY) " +
+                           "WITH memtable = {'class': 'ShardedTrieMemtable', 'shards': '0'}");
+        assertInvalidThrow(ConfigurationException.class,
+                           "CREATE TABLE " + KEYSPACE + ".unknown_option (pk int PRIMARY KEY) " +
+                           "WITH memtable = {'class': 'SkipListMemtable', 'shards': '2'}");
+    }
+
+    private static List<Long> tokens(UntypedResultSet result)
+    {
+        List<Long> tokens = new ArrayList<>();
+        for (UntypedResultSet.Row row : result)
+            tokens.add(row.getLong(row.getColumns().get(0).name.toString()));
+        return tokens;
+    }
+}
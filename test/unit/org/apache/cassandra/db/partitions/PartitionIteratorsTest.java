@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.partitions;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.EmptyIterators;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.db.rows.RowIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.AbstractIterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import static org.apache.cassandra.utils.ByteBufferUtil.bytes;
+
+public class PartitionIteratorsTest
+{
+    private TableMetadata metadata;
+
+    @Before
+    public void setUp()
+    {
+        DatabaseDescriptor.setPartitionerUnsafe(Murmur3Partitioner.instance);
+
+        metadata =
+            TableMetadata.builder("PartitionIteratorsTest", "table")
+                         .addPartitionKeyColumn("pk", UTF8Type.instance)
+                         .build();
+    }
+
+    @Test
+    public void testConcatClosesIterators()
+    {
+        List<SinglePartition> iterators = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            iterators.add(new SinglePartition(partition("key" + i)));
+
+        try (PartitionIterator concat = PartitionIterators.concat(new ArrayList<>(iterators)))
+        {
+            assertTrue(concat.hasNext());
+            concat.next().close();
+            assertEquals(0, iterators.get(0).closed);
+
+            // moving on to the next iterator closes the exhausted one
+            assertTrue(concat.hasNext());
+            concat.next().close();
+            assertEquals(1, iterators.get(0).closed);
+            assertEquals(0, iterators.get(1).closed);
+        }
+
+        // closing the concatenation early closes the current iterator
+        assertEquals(1, iterators.get(0).closed);
+        assertEquals(1, iterators.get(1).closed);
+    }
+
+    @Test
+    public void testConcatReleasesConsumedIterators()
+    {
+        List<PartitionIterator> iterators = new ArrayList<>();
+        iterators.add(new SinglePartition(partition("key0")));
+        iterators.add(new SinglePartition(partition("key1")));
+        WeakReference<PartitionIterator> first = new WeakReference<>(iterators.get(0));
+
+        try (PartitionIterator concat = PartitionIterators.concat(iterators))
+        {
+            iterators = null;
+            assertTrue(concat.hasNext());
+            concat.next().close();
+            assertTrue(concat.hasNext());
+            try (RowIterator partition = concat.next())
+            {
+                // the first iterator isn't referenced anymore, while the concatenation isn't consumed yet
+                assertCollected(first);
+                assertFalse(partition.hasNext());
+            }
+            assertFalse(concat.hasNext());
+        }
+    }
+
+    @Test
+    public void testUnfilteredConcatReleasesConsumedIterators()
+    {
+        List<UnfilteredPartitionIterator> iterators = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            iterators.add(new EmptyUnfiltered(metadata));
+        WeakReference<UnfilteredPartitionIterator> first = new WeakReference<>(iterators.get(0));
+
+        try (UnfilteredPartitionIterator concat = UnfilteredPartitionIterators.concat(iterators))
+        {
+            iterators = null;
+            // the first two iterators are empty, so the concatenation moves on to the last one
+            assertFalse(concat.hasNext());
+            assertCollected(first);
+        }
+    }
+
+    private RowIterator partition(String key)
+    {
+        DecoratedKey partitionKey = Murmur3Partitioner.instance.decorateKey(bytes(key));
+        return EmptyIterators.row(metadata, partitionKey, false);
+    }
+
+    private static void assertCollected(WeakReference<?> reference)
+    {
+        for (int i = 0; i < 10 && reference.get() != null; i++)
+            System.gc();
+        assertNull(reference.get());
+    }
+
+    private static class SinglePartition extends AbstractIterator<RowIterator> implements PartitionIterator
+    {
+        private RowIterator partition;
+        private int closed;
+
+        private SinglePartition(RowIterator partition)
+        {
+            this.partition = partition;
+        }
+
+        protected RowIterator computeNext()
+        {
+            if (partition == null)
+                return endOfData();
+            RowIterator next = partition;
+            partition = null;
+            return next;
+        }
+
+        public void close()
+        {
+            closed++;
+        }
+    }
+
+    private static class EmptyUnfiltered extends AbstractUnfilteredPartitionIterator
+    {
+        private final TableMetadata metadata;
+
+        private EmptyUnfiltered(TableMetadata metadata)
+        {
+            this.metadata = metadata;
+        }
+
+        public TableMetadata metadata()
+        {
+            return metadata;
+        }
+
+        public boolean hasNext()
+        {
+            return false;
+        }
+
+        public UnfilteredRowIterator next()
+        {
+            throw new NoSuchElementException();
+        }
+    }
+}
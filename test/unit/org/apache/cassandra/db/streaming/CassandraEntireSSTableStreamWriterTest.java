@@ -20,11 +20,14 @@ package org.apache.cassandra.db.streaming;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
 
+import com.google.common.collect.Lists;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -36,14 +39,20 @@ import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.RowUpdateBuilder;
 import org.apache.cassandra.db.compaction.CompactionManager;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.KeyIterator;
 import org.apache.cassandra.io.sstable.SSTableMultiWriter;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.DataInputBuffer;
 import org.apache.cassandra.locator.InetAddressAndPort;
+import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.net.SharedDefaultFileRegion;
 import org.apache.cassandra.net.AsyncStreamingOutputPlus;
 import org.apache.cassandra.schema.CachingParams;
@@ -161,6 +170,56 @@ public class CassandraEntireSSTableStreamWriterTest
         assertEquals(1, newSstables.size());
     }
 
+    @Test
+    public void testSliceReadingAndWritingOverWire() throws Exception
+    {
+        StreamSession session = setupStreamingSessionForTest();
+        InetAddressAndPort peer = FBUtilities.getBroadcastAddressAndPort();
+
+        List<DecoratedKey> keys = new ArrayList<>();
+        try (KeyIterator iter = new KeyIterator(sstable.descriptor, sstable.metadata()))
+        {
+            iter.forEachRemaining(keys::add);
+        }
+        List<Range<Token>> ranges = Collections.singletonList(new Range<>(keys.get(2).getToken(), keys.get(5).getToken()));
+        CassandraOutgoingFile outgoingFile = new CassandraOutgoingFile(StreamOperation.BOOTSTRAP, sstable.ref(),
+                                                                       sstable.getPositionsForRanges(ranges),
+                                                                       ranges, sstable.estimatedKeys());
+
+        ByteBuf serializedFile = Unpooled.buffer(8192);
+        EmbeddedChannel channel = createMockNettyChannel(serializedFile);
+        AsyncStreamingOutputPlus out = new AsyncStreamingOutputPlus(channel);
+        DatabaseDescriptor.setStreamEntireSSTableSlices(true);
+        try
+        {
+            outgoingFile.write(session, out, MessagingService.current_version);
+        }
+        finally
+        {
+            DatabaseDescriptor.setStreamEntireSSTableSlices(false);
+            outgoingFile.finish();
+        }
+
+        session.prepareReceiving(new StreamSummary(sstable.metadata().id, 1, 5104));
+
+        DataInputBuffer in = new DataInputBuffer(serializedFile.nioBuffer(), false);
+        CassandraStreamHeader header = CassandraStreamHeader.serializer.deserialize(in, MessagingService.current_version);
+        assertTrue(header.isEntireSSTable);
+        assertEquals(keys.get(3), header.firstKey);
+
+        CassandraEntireSSTableStreamReader reader = new CassandraEntireSSTableStreamReader(new StreamMessageHeader(sstable.metadata().id, peer, session.planId(), 0, 0, 0, null), header, session);
+        Collection<SSTableReader> newSstables = reader.read(in).finished();
+        assertEquals(1, newSstables.size());
+
+        SSTableReader received = newSstables.iterator().next();
+        assertEquals(keys.get(3), received.first);
+        assertEquals(keys.get(5), received.last);
+        try (KeyIterator iter = new KeyIterator(received.descriptor, received.metadata()))
+        {
+            assertEquals(keys.subList(3, 6), Lists.newArrayList(iter));
+        }
+    }
+
     private EmbeddedChannel createMockNettyChannel(ByteBuf serializedFile) throws Exception
     {
         WritableByteChannel wbc = new WritableByteChannel()
@@ -188,7 +247,10 @@ public class CassandraEntireSSTableStreamWriterTest
                 @Override
                 public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception
                 {
-                    ((SharedDefaultFileRegion) msg).transferTo(wbc, 0);
+                    if (msg instanceof ByteBuf)
+                        serializedFile.writeBytes(((ByteBuf) msg).duplicate());
+                    else
+                        ((SharedDefaultFileRegion) msg).transferTo(wbc, 0);
                     super.write(ctx, msg, promise);
                 }
             });
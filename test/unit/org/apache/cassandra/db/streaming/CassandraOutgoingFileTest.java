@@ -18,6 +18,8 @@
 
 package org.apache.cassandra.db.streaming;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -25,6 +27,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Keyspace;
@@ -39,7 +42,9 @@ import org.apache.cassandra.schema.KeyspaceParams;
 import org.apache.cassandra.streaming.StreamOperation;
 import org.apache.cassandra.utils.ByteBufferUtil;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class CassandraOutgoingFileTest
@@ -123,6 +128,51 @@ public class CassandraOutgoingFileTest
         assertTrue(cof.contained(requestedRanges, sstable));
     }
 
+    @Test
+    public void testSlicePartiallyContainedSSTable()
+    {
+        List<Range<Token>> requestedRanges = Arrays.asList(new Range<>(getTokenAtIndex(2), getTokenAtIndex(6)));
+
+        CassandraOutgoingFile cof = new CassandraOutgoingFile(StreamOperation.BOOTSTRAP, sstable.ref(),
+                                                              sstable.getPositionsForRanges(requestedRanges),
+                                                              requestedRanges, sstable.estimatedKeys());
+        try
+        {
+            assertFalse(cof.shouldStreamSlice());
+            DatabaseDescriptor.setStreamEntireSSTableSlices(true);
+            assertTrue(cof.shouldStreamSlice());
+        }
+        finally
+        {
+            DatabaseDescriptor.setStreamEntireSSTableSlices(false);
+            cof.finish();
+        }
+
+        File sliceData;
+        try (CassandraSSTableSlice slice = CassandraSSTableSlice.create(store, sstable, requestedRanges, sstable.estimatedKeys()))
+        {
+            SSTableReader sliced = slice.sstable();
+            sliceData = new File(sliced.getFilename());
+            assertTrue(sliceData.exists());
+            assertFalse(store.getLiveSSTables().contains(sliced));
+            assertEquals(getKeyAtIndex(3), sliced.first);
+            assertEquals(getKeyAtIndex(6), sliced.last);
+            assertEquals(sstable.getSSTableMetadata().maxTimestamp, sliced.getSSTableMetadata().maxTimestamp);
+
+            List<DecoratedKey> keys = new ArrayList<>();
+            try (KeyIterator iter = new KeyIterator(sliced.descriptor, sliced.metadata()))
+            {
+                iter.forEachRemaining(keys::add);
+            }
+            assertEquals(4, keys.size());
+        }
+        assertFalse(sliceData.exists());
+
+        // none of the partitions are in the ranges
+        List<Range<Token>> emptyRanges = Arrays.asList(new Range<>(getTokenAtIndex(2), store.getPartitioner().midpoint(getTokenAtIndex(2), getTokenAtIndex(3))));
+        assertNull(CassandraSSTableSlice.create(store, sstable, emptyRanges, sstable.estimatedKeys()));
+    }
+
     private DecoratedKey getKeyAtIndex(int i)
     {
         int count = 0;
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.PartitionPositionEncoding;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionIndexTest
+{
+    private static final IPartitioner partitioner = Murmur3Partitioner.instance;
+
+    @BeforeClass
+    public static void setup()
+    {
+        DatabaseDescriptor.daemonInitialization();
+    }
+
+    @Test
+    public void testEmpty() throws IOException
+    {
+        try (PartitionIndex index = write(new ArrayList<>());
+             PartitionIndex.Reader reader = index.openReader())
+        {
+            assertEquals(0, index.size());
+            assertNull(index.firstKey());
+            assertEquals(PartitionIndex.NOT_FOUND, reader.first());
+            assertEquals(PartitionIndex.NOT_FOUND, reader.exactCandidate(PartitionPositionEncoding.encode(key(1))));
+        }
+    }
+
+    @Test
+    public void testSingleKey() throws IOException
+    {
+        List<DecoratedKey> keys = Collections.singletonList(key(42));
+        try (PartitionIndex index = write(keys);
+             PartitionIndex.Reader reader = index.openReader())
+        {
+            assertEquals(keys.get(0), index.firstKey());
+            assertEquals(keys.get(0), index.lastKey());
+            assertEquals(0, reader.exactCandidate(PartitionPositionEncoding.encode(keys.get(0))));
+            assertEquals(0, reader.first());
+            assertEquals(PartitionIndex.NOT_FOUND, reader.next());
+        }
+    }
+
+    @Test
+    public void testLookups() throws IOException
+    {
+        Random random = new Random(1);
+        for (int count : new int[]{ 2, 10, 300, 5000 })
+        {
+            TreeSet<DecoratedKey> sorted = new TreeSet<>();
+            while (sorted.size() < count)
+                sorted.add(key(random.nextInt()));
+            List<DecoratedKey> keys = new ArrayList<>(sorted);
+
+            try (PartitionIndex index = write(keys);
+                 PartitionIndex.Reader reader = index.openReader())
+            {
+                assertEquals(count, index.size());
+                assertEquals(keys.get(0), index.firstKey());
+                assertEquals(keys.get(count - 1), index.lastKey());
+
+                // exact lookups find the payload of each key
+                for (int i = 0; i < count; i++)
+                    assertEquals(payload(i), reader.exactCandidate(PartitionPositionEncoding.encode(keys.get(i))));
+
+                // iteration returns all the payloads in order
+                int i = 0;
+                for (long payload = reader.first(); payload != PartitionIndex.NOT_FOUND; payload = reader.next())
+                    assertEquals(payload(i++), payload);
+                assertEquals(count, i);
+
+                // ceiling finds the first candidate at or after the searched keys and tokens
+                for (int j = 0; j < 200; j++)
+                {
+                    DecoratedKey searched = key(random.nextInt());
+                    checkCeiling(reader, keys, searched);
+                    checkCeiling(reader, keys, searched.getToken().minKeyBound());
+                    checkCeiling(reader, keys, searched.getToken().maxKeyBound());
+                }
+                for (DecoratedKey key : keys)
+                {
+                    checkCeiling(reader, keys, key);
+                    checkCeiling(reader, keys, key.getToken().maxKeyBound());
+                }
+            }
+        }
+    }
+
+    private static void checkCeiling(PartitionIndex.Reader reader, List<DecoratedKey> keys, PartitionPosition searched) throws IOException
+    {
+        long payload = reader.ceiling(PartitionPositionEncoding.encodeLowerBound(searched));
+        if (payload == PartitionIndex.NOT_FOUND)
+        {
+            // only possible if all keys are before the searched position
+            assertTrue(keys.get(keys.size() - 1).compareTo(searched) < 0);
+            return;
+        }
+
+        int index = (int) (payload >>> 1);
+        // the candidate is the first key greater than or equal to the searched position, or the one just before it
+        // if it shares the searched key's prefix in the index
+        int expected = 0;
+        while (expected < keys.size() && keys.get(expected).compareTo(searched) < 0)
+            expected++;
+        if (index != expected)
+            assertEquals(expected - 1, index);
+
+        // the cursor continues from there
+        long next = reader.next();
+        if (index + 1 < keys.size())
+            assertEquals(payload(index + 1), next);
+        else
+            assertEquals(PartitionIndex.NOT_FOUND, next);
+    }
+
+    private static long payload(int i)
+    {
+        return (long) i << 1;
+    }
+
+    private static DecoratedKey key(int i)
+    {
+        return partitioner.decorateKey(ByteBufferUtil.bytes(i));
+    }
+
+    private static PartitionIndex write(List<DecoratedKey> keys) throws IOException
+    {
+        File file = FileUtils.createTempFile("PartitionIndexTest", "Partitions.db");
+        file.deleteOnExit();
+        try (SequentialWriter writer = new SequentialWriter(file))
+        {
+            PartitionIndexBuilder builder = new PartitionIndexBuilder(writer);
+            for (int i = 0; i < keys.size(); i++)
+                builder.addEntry(PartitionPositionEncoding.encode(keys.get(i)), payload(i));
+            ByteBuffer first = keys.isEmpty() ? null : keys.get(0).getKey();
+            ByteBuffer last = keys.isEmpty() ? null : keys.get(keys.size() - 1).getKey();
+            builder.complete(first, last);
+            writer.finish();
+        }
+
+        try (FileHandle.Builder builder = new FileHandle.Builder(file.getPath()))
+        {
+            return PartitionIndex.load(builder, partitioner);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable.format.trie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.KeyIterator;
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TrieIndexFormatTest extends CQLTester
+{
+    private static final int PARTITIONS = 300;
+    private static String previousFormat;
+
+    @BeforeClass
+    public static void setFormat()
+    {
+        previousFormat = DatabaseDescriptor.getSSTableFormat();
+        DatabaseDescriptor.setSSTableFormat("bti");
+    }
+
+    @AfterClass
+    public static void resetFormat()
+    {
+        DatabaseDescriptor.setSSTableFormat(previousFormat);
+    }
+
+    @Test
+    public void testPointAndRangeReads() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck))");
+        for (int pk = 0; pk < PARTITIONS; pk++)
+            for (int ck = 0; ck < 3; ck++)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, "v" + pk + ck);
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        List<Long> tokens = tokens(execute("SELECT token(pk) FROM %s"));
+        flush();
+
+        SSTableReader sstable = onlySSTable(cfs);
+        assertTrue(sstable instanceof TrieIndexSSTableReader);
+        assertTrue(SSTable.componentsFor(sstable.descriptor).contains(Component.PARTITION_INDEX));
+        assertFalse(SSTable.componentsFor(sstable.descriptor).contains(Component.PRIMARY_INDEX));
+        assertFalse(sstable.hasIndexSummary());
+        assertEquals(PARTITIONS, sstable.estimatedKeys());
+
+        for (int pk = 0; pk < PARTITIONS; pk += 7)
+            assertRows(execute("SELECT ck, v FROM %s WHERE pk = ?", pk),
+                       row(0, "v" + pk + 0), row(1, "v" + pk + 1), row(2, "v" + pk + 2));
+        assertEmpty(execute("SELECT * FROM %s WHERE pk = ?", PARTITIONS));
+        assertEmpty(execute("SELECT * FROM %s WHERE pk = ?", -1));
+
+        assertEquals(tokens, tokens(execute("SELECT token(pk) FROM %s")));
+        for (int i = 0; i < tokens.size(); i += 97)
+        {
+            long token = tokens.get(i);
+            List<Long> upper = tokens(execute("SELECT token(pk) FROM %s WHERE token(pk) > ?", token));
+            List<Long> lower = tokens(execute("SELECT token(pk) FROM %s WHERE token(pk) <= ?", token));
+            assertEquals(tokens.size(), upper.size() + lower.size());
+            assertEquals(tokens.subList(lower.size(), tokens.size()), upper);
+        }
+
+        // reopening the sstable loads the same index
+        cfs.clearUnsafe();
+        cfs.loadNewSSTables();
+        assertEquals(tokens, tokens(execute("SELECT token(pk) FROM %s")));
+        assertRows(execute("SELECT ck FROM %s WHERE pk = ?", 5), row(0), row(1), row(2));
+    }
+
+    @Test
+    public void testWidePartitions() throws Throwable
+    {
+        // partitions larger than the column index size get a row index, and the larger ones are read lazily
+        createTable("CREATE TABLE %s (pk int, ck int, v text, PRIMARY KEY (pk, ck))");
+        String value = new String(new char[200]).replace('\0', 'x');
+        for (int pk = 0; pk < 5; pk++)
+            for (int ck = 0; ck < (pk + 1) * 500; ck++)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, value);
+        flush();
+
+        for (int pk = 0; pk < 5; pk++)
+        {
+            int rows = (pk + 1) * 500;
+            assertRows(execute("SELECT ck FROM %s WHERE pk = ? AND ck >= 300 AND ck < 303", pk), row(300), row(301), row(302));
+            assertRows(execute("SELECT ck FROM %s WHERE pk = ? AND ck >= ? ORDER BY ck DESC", pk, rows - 3), row(rows - 1), row(rows - 2), row(rows - 3));
+            assertEquals(rows, execute("SELECT ck FROM %s WHERE pk = ?", pk).size());
+        }
+    }
+
+    @Test
+    public void testCompactionAndKeyIterator() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        for (int i = 0; i < 3; i++)
+        {
+            for (int pk = i; pk < PARTITIONS; pk += 2)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, i, i);
+            flush();
+        }
+        execute("DELETE FROM %s WHERE pk = ?", 10);
+        flush();
+        compact();
+
+        SSTableReader sstable = onlySSTable(cfs);
+        assertTrue(sstable instanceof TrieIndexSSTableReader);
+        assertEquals(PARTITIONS - 1, execute("SELECT DISTINCT pk FROM %s").size());
+        assertRows(execute("SELECT ck, v FROM %s WHERE pk = ?", 2), row(0, 0), row(2, 2));
+        assertRows(execute("SELECT ck, v FROM %s WHERE pk = ?", 3), row(1, 1));
+        assertEmpty(execute("SELECT * FROM %s WHERE pk = ?", 10));
+
+        List<DecoratedKey> keys = new ArrayList<>();
+        try (KeyIterator iterator = new KeyIterator(sstable.descriptor, sstable.metadata()))
+        {
+            while (iterator.hasNext())
+            {
+                DecoratedKey key = iterator.next();
+                assertEquals(key, sstable.keyAt(iterator.getKeyPosition()));
+                keys.add(key);
+            }
+        }
+        // the partition deletion is kept until gc_grace_seconds
+        assertEquals(PARTITIONS, keys.size());
+        List<DecoratedKey> sorted = new ArrayList<>(keys);
+        Collections.sort(sorted);
+        assertEquals(sorted, keys);
+
+        Token middle = keys.get(keys.size() / 2).getToken();
+        Range<Token> range = new Range<>(sstable.getPartitioner().getMinimumToken(), middle);
+        int scanned = 0;
+        try (ISSTableScanner scanner = sstable.getScanner(Collections.singleton(range)))
+        {
+            while (scanner.hasNext())
+            {
+                scanner.next().close();
+                scanned++;
+            }
+        }
+        assertEquals(keys.size() / 2 + 1, scanned);
+        assertTrue(sstable.getKeySamples(range).iterator().hasNext());
+    }
+
+    @Test
+    public void testSecondaryIndex() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck))");
+        createIndex("CREATE INDEX ON %s (v)");
+        for (int pk = 0; pk < 50; pk++)
+            execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, 0, pk % 5);
+        flush();
+
+        assertEquals(10, execute("SELECT pk FROM %s WHERE v = ?", 3).size());
+    }
+
+    @Test
+    public void testUnknownFormat()
+    {
+        DatabaseDescriptor.setSSTableFormat("unknown");
+        try
+        {
+            SSTableFormat.Type.current();
+            fail("Expected a ConfigurationException");
+        }
+        catch (ConfigurationException e)
+        {
+            assertTrue(e.getMessage().contains("unknown"));
+        }
+        finally
+        {
+            DatabaseDescriptor.setSSTableFormat("bti");
+        }
+    }
+
+    private static SSTableReader onlySSTable(ColumnFamilyStore cfs)
+    {
+        Set<SSTableReader> sstables = cfs.getLiveSSTables();
+        assertEquals(1, sstables.size());
+        return sstables.iterator().next();
+    }
+
+    private static List<Long> tokens(UntypedResultSet rows)
+    {
+        List<Long> tokens = new ArrayList<>();
+        for (UntypedResultSet.Row row : rows)
+            tokens.add(row.getLong(row.getColumns().get(0).name.toString()));
+        return tokens;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.cache.ChunkCache;
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkReadAheadTest
+{
+    @BeforeClass
+    public static void setupDD()
+    {
+        DatabaseDescriptor.daemonInitialization();
+    }
+
+    private static class RecordingReadAhead extends ChunkReadAhead
+    {
+        final List<Long> reads = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> discarded = new ArrayList<>();
+
+        RecordingReadAhead(int stride, int depth, long fileLength)
+        {
+            super(stride, depth, fileLength);
+        }
+
+        protected ByteBuffer read(long position)
+        {
+            reads.add(position);
+            ByteBuffer result = ByteBuffer.allocate(Long.BYTES);
+            result.putLong(0, position);
+            return result;
+        }
+
+        protected void discard(ByteBuffer result)
+        {
+            discarded.add(result.getLong(0));
+        }
+
+        long takePosition(long position)
+        {
+            ByteBuffer result = take(position);
+            return result == null ? -1 : result.getLong(0);
+        }
+    }
+
+    @Test
+    public void testSequentialReads()
+    {
+        RecordingReadAhead readAhead = new RecordingReadAhead(10, 4, 100);
+
+        // nothing is read ahead until the reads are sequential
+        for (long position = 0; position < 30; position += 10)
+        {
+            assertEquals(-1, readAhead.takePosition(position));
+            readAhead.onRead(position);
+        }
+
+        // then depth chunks are kept ahead of the reader, up to the end of the file
+        for (long position = 30; position < 100; position += 10)
+        {
+            assertEquals(position, readAhead.takePosition(position));
+            readAhead.onRead(position);
+        }
+        readAhead.close();
+
+        List<Long> expected = new ArrayList<>();
+        for (long position = 30; position < 100; position += 10)
+            expected.add(position);
+        readAhead.reads.sort(Long::compare);
+        assertEquals(expected, readAhead.reads);
+        assertEquals(Collections.emptyList(), readAhead.discarded);
+    }
+
+    @Test
+    public void testNonSequentialReads()
+    {
+        RecordingReadAhead readAhead = new RecordingReadAhead(10, 4, 1000);
+        for (long position = 0; position < 30; position += 10)
+        {
+            readAhead.take(position);
+            readAhead.onRead(position);
+        }
+        // 30 to 60 are read ahead, skipping to 50 discards 30 and 40
+        assertEquals(50, readAhead.takePosition(50));
+        readAhead.onRead(50);
+        assertEquals(60, readAhead.takePosition(60));
+        readAhead.onRead(60);
+
+        // going back restarts the detection of sequential reads
+        assertNull(readAhead.take(0));
+        readAhead.onRead(0);
+        assertNull(readAhead.take(10));
+        readAhead.onRead(10);
+        readAhead.close();
+
+        // the skipped chunks are only read if their read started before the jump, and then discarded
+        List<Long> skipped = new ArrayList<>(readAhead.reads);
+        skipped.removeAll(Arrays.asList(50L, 60L));
+        skipped.sort(Long::compare);
+        assertTrue(Arrays.asList(30L, 40L).containsAll(skipped));
+        assertEquals(skipped, readAhead.discarded);
+    }
+
+    @Test
+    public void testReadFile() throws IOException
+    {
+        testReadFile(null);
+    }
+
+    @Test
+    public void testReadFileWithChunkCache() throws IOException
+    {
+        if (ChunkCache.instance != null)
+            testReadFile(ChunkCache.instance);
+    }
+
+    private void testReadFile(ChunkCache chunkCache) throws IOException
+    {
+        Random random = new Random(1);
+        byte[] data = new byte[1 << 20];
+        random.nextBytes(data);
+
+        File file = FileUtils.createTempFile("ChunkReadAheadTest", "db");
+        file.deleteOnExit();
+        try (SequentialWriter writer = new SequentialWriter(file))
+        {
+            writer.write(data);
+            writer.finish();
+        }
+
+        try (FileHandle.Builder builder = new FileHandle.Builder(file.getPath()).bufferSize(4096)
+                                                                                .readAheadChunks(4)
+                                                                                .withChunkCache(chunkCache);
+             FileHandle handle = builder.complete())
+        {
+            // sequential scan
+            try (RandomAccessReader reader = handle.createReader())
+            {
+                byte[] read = new byte[data.length];
+                reader.readFully(read);
+                assertArrayEquals(data, read);
+            }
+
+            // scans starting at random positions, with jumps within and past the chunks read ahead
+            try (RandomAccessReader reader = handle.createReader())
+            {
+                for (int i = 0; i < 100; i++)
+                {
+                    int position = random.nextInt(data.length);
+                    int length = Math.min(data.length - position, random.nextInt(8 * 4096));
+                    byte[] read = new byte[length];
+                    reader.seek(position);
+                    reader.readFully(read);
+                    assertArrayEquals(Arrays.copyOfRange(data, position, position + length), read);
+                }
+            }
+        }
+    }
+}
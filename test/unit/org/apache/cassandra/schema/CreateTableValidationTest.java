@@ -20,8 +20,11 @@ package org.apache.cassandra.schema;
 
 import org.apache.cassandra.cql3.CQLTester;
 import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.utils.BlockedBloomFilter;
 import org.junit.Test;
 
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class CreateTableValidationTest extends CQLTester
@@ -48,4 +51,23 @@ public class CreateTableValidationTest extends CQLTester
         // sanity check
         createTable("CREATE TABLE %s (a int PRIMARY KEY, b int) WITH bloom_filter_fp_chance = 0.1");
     }
+
+    @Test
+    public void testBloomFilterOption() throws Throwable
+    {
+        try
+        {
+            createTableMayThrow("CREATE TABLE %s (a int PRIMARY KEY, b int) WITH compaction = {'class':'SizeTieredCompactionStrategy', 'bloom_filter':'cuckoo'}");
+            fail("Expected a bloom_filter of cuckoo to be rejected");
+        }
+        catch (ConfigurationException exc) { }
+
+        createTable("CREATE TABLE %s (a int PRIMARY KEY, b int) WITH compaction = {'class':'SizeTieredCompactionStrategy', 'bloom_filter':'blocked'}");
+        execute("INSERT INTO %s (a, b) VALUES (1, 1)");
+        flush();
+        for (SSTableReader sstable : getCurrentColumnFamilyStore().getLiveSSTables())
+            assertTrue(sstable.getBloomFilter() instanceof BlockedBloomFilter);
+        assertRows(execute("SELECT * FROM %s WHERE a = 1"), row(1, 1));
+        assertEmpty(execute("SELECT * FROM %s WHERE a = 2"));
+    }
 }
@@ -26,6 +26,7 @@ import org.junit.Test;
 import org.apache.cassandra.db.PartitionPosition;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.dht.*;
+import org.apache.cassandra.dht.Murmur3Partitioner.LongToken;
 import org.apache.cassandra.locator.InetAddressAndPort;
 import org.apache.cassandra.locator.TokenMetadata;
 
@@ -236,4 +237,19 @@ public class StorageProxyTest
         testGRRKeys(exBounds(rp(""), rp("")), range(rp(""), endOf("1")), range(endOf("1"), endOf("6")), exBounds(endOf("6"), rp("")));
         testGRRKeys(incExBounds(rp(""), rp("")), bounds(rp(""), endOf("1")), range(endOf("1"), endOf("6")), exBounds(endOf("6"), rp("")));
     }
+
+    @Test
+    public void testRangeSize()
+    {
+        PartitionPosition min = Murmur3Partitioner.instance.getMinimumToken().minKeyBound();
+        PartitionPosition zero = new LongToken(0).maxKeyBound();
+        PartitionPosition quarter = new LongToken(Long.MAX_VALUE / 2 + 1).maxKeyBound();
+
+        assertEquals(0.5, StorageProxy.rangeSize(range(min, zero)), 1e-9);
+        assertEquals(0.25, StorageProxy.rangeSize(range(zero, quarter)), 1e-9);
+        assertEquals(0.75, StorageProxy.rangeSize(range(quarter, zero)), 1e-9);
+        assertEquals(1.0, StorageProxy.rangeSize(range(min, min)), 1e-9);
+        // a single token covers no token space
+        assertEquals(0.0, StorageProxy.rangeSize(bounds(new LongToken(42).minKeyBound(), new LongToken(42).maxKeyBound())), 1e-9);
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.streaming.async;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveStreamConcurrencyTest
+{
+    private static final long SECOND = 1_000_000_000L;
+    private static final long MB = 1024 * 1024;
+
+    private long now = 0;
+
+    @Test
+    public void testIncreasesWhileThroughputImproves()
+    {
+        AdaptiveStreamConcurrency concurrency = new AdaptiveStreamConcurrency(4, now);
+        Assert.assertEquals(1, concurrency.concurrency());
+
+        // each stream transfers 10MB/s whatever the number of concurrent streams
+        for (int i = 0; i < 10; i++)
+            window(concurrency, 10 * MB, 0);
+        Assert.assertEquals(4, concurrency.concurrency());
+    }
+
+    @Test
+    public void testDecreasesWhenThroughputDoesNotImprove()
+    {
+        AdaptiveStreamConcurrency concurrency = new AdaptiveStreamConcurrency(8, now);
+        window(concurrency, 100 * MB, 0);
+        Assert.assertEquals(2, concurrency.concurrency());
+
+        // the session is limited to 150MB/s
+        window(concurrency, 75 * MB, 0);
+        Assert.assertEquals(3, concurrency.concurrency());
+        window(concurrency, 50 * MB, 0);
+        Assert.assertEquals(2, concurrency.concurrency());
+
+        // and then held
+        for (int i = 0; i < AdaptiveStreamConcurrency.HOLD_WINDOWS; i++)
+        {
+            window(concurrency, 75 * MB, 0);
+            Assert.assertEquals(2, concurrency.concurrency());
+        }
+        window(concurrency, 75 * MB, 0);
+        Assert.assertEquals(3, concurrency.concurrency());
+    }
+
+    @Test
+    public void testDecreasesOnBackpressure()
+    {
+        AdaptiveStreamConcurrency concurrency = new AdaptiveStreamConcurrency(8, now);
+        for (int i = 0; i < 3; i++)
+            window(concurrency, 10 * MB, 0);
+        Assert.assertEquals(4, concurrency.concurrency());
+
+        // the streams spend most of their time waiting for the receiver
+        window(concurrency, 10 * MB, SECOND * 3 / 4);
+        Assert.assertEquals(3, concurrency.concurrency());
+        window(concurrency, 10 * MB, SECOND * 3 / 4);
+        Assert.assertEquals(2, concurrency.concurrency());
+    }
+
+    @Test
+    public void testBounds()
+    {
+        AdaptiveStreamConcurrency concurrency = new AdaptiveStreamConcurrency(2, now);
+        for (int i = 0; i < 10; i++)
+            window(concurrency, 10 * MB, 0);
+        Assert.assertEquals(2, concurrency.concurrency());
+
+        for (int i = 0; i < 10; i++)
+            window(concurrency, 10 * MB, SECOND);
+        Assert.assertEquals(1, concurrency.concurrency());
+    }
+
+    /**
+     * Completes a window of one second, in which each of the concurrent streams transfers the given number of bytes
+     * and is parked for the given time.
+     */
+    private void window(AdaptiveStreamConcurrency concurrency, long bytesPerStream, long parkedNanos)
+    {
+        int streams = concurrency.concurrency();
+        now += SECOND;
+        for (int i = 0; i < streams; i++)
+            concurrency.onTransferCompleted(bytesPerStream, SECOND, parkedNanos, now);
+    }
+}
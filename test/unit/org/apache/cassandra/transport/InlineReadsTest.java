@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.transport;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import org.apache.cassandra.Util;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.cql3.statements.SelectStatement;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.SinglePartitionReadCommand;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.partitions.PartitionIterator;
+import org.apache.cassandra.db.rows.RowIterator;
+import org.apache.cassandra.exceptions.ReadFailureException;
+import org.apache.cassandra.exceptions.RequestFailureReason;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.service.StorageProxy;
+import org.apache.cassandra.transport.messages.ResultMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class InlineReadsTest extends CQLTester
+{
+    @BeforeClass
+    public static void setUp()
+    {
+        DatabaseDescriptor.setNativeTransportInlineReads(true);
+        requireNetwork();
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        DatabaseDescriptor.setNativeTransportInlineReads(false);
+    }
+
+    @Test
+    public void testReadFromMemory() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        execute("INSERT INTO %s (k, c, v) VALUES (1, 1, 1)");
+
+        SinglePartitionReadCommand.Group group = SinglePartitionReadCommand.Group.one((SinglePartitionReadCommand) Util.cmd(cfs, 1).build());
+        assertEquals(1, rowCount(StorageProxy.readFromMemory(group, ConsistencyLevel.ONE, System.nanoTime())));
+        assertEquals(1, rowCount(StorageProxy.readFromMemory(group, ConsistencyLevel.LOCAL_ONE, System.nanoTime())));
+        assertNull(StorageProxy.readFromMemory(group, ConsistencyLevel.QUORUM, System.nanoTime()));
+
+        DatabaseDescriptor.setNativeTransportInlineReads(false);
+        try
+        {
+            assertNull(StorageProxy.readFromMemory(group, ConsistencyLevel.ONE, System.nanoTime()));
+        }
+        finally
+        {
+            DatabaseDescriptor.setNativeTransportInlineReads(true);
+        }
+
+        // once flushed, the partition has to be read from disk
+        flush();
+        assertNull(StorageProxy.readFromMemory(group, ConsistencyLevel.ONE, System.nanoTime()));
+    }
+
+    @Test
+    public void testReadFromMemoryTooManyTombstones() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        for (int i = 0; i < 20; i++)
+            execute("DELETE FROM %s WHERE k = 1 AND c = ?", i);
+
+        int previousThreshold = DatabaseDescriptor.getTombstoneFailureThreshold();
+        DatabaseDescriptor.setTombstoneFailureThreshold(10);
+        try
+        {
+            SinglePartitionReadCommand.Group group = SinglePartitionReadCommand.Group.one((SinglePartitionReadCommand) Util.cmd(cfs, 1).build());
+            StorageProxy.PendingRead read = StorageProxy.readFromMemory(group, ConsistencyLevel.ONE, System.nanoTime());
+            assertNotNull(read);
+            read.get();
+            fail("Reading more tombstones than the failure threshold should fail");
+        }
+        catch (ReadFailureException e)
+        {
+            assertEquals(Collections.singleton(RequestFailureReason.READ_TOO_MANY_TOMBSTONES), new HashSet<>(e.failureReasonByEndpoint.values()));
+        }
+        finally
+        {
+            DatabaseDescriptor.setTombstoneFailureThreshold(previousThreshold);
+        }
+    }
+
+    @Test
+    public void testReadStatementFromMemory() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        execute("INSERT INTO %s (k, c, v) VALUES (1, 1, 1)");
+
+        SelectStatement select = prepareSelect("SELECT * FROM %s WHERE k = ?");
+        SelectStatement range = prepareSelect("SELECT * FROM %s");
+
+        SelectStatement.StartedRead read = readFromMemory(select, ConsistencyLevel.ONE);
+        assertNotNull(read);
+        assertEquals(1, read.execute(options(ConsistencyLevel.ONE)).result.size());
+        assertNull(readFromMemory(select, ConsistencyLevel.ALL));
+        assertNull(readFromMemory(range, ConsistencyLevel.ONE));
+
+        flush();
+        assertNull(readFromMemory(select, ConsistencyLevel.ONE));
+    }
+
+    @Test
+    public void testInlineReads() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        Session session = sessionNet();
+        PreparedStatement select = session.prepare(formatQuery("SELECT c, v FROM %s WHERE k = ?"))
+                                          .setConsistencyLevel(com.datastax.driver.core.ConsistencyLevel.ONE);
+
+        for (int i = 0; i < 10; i++)
+            execute("INSERT INTO %s (k, c, v) VALUES (1, ?, ?)", i, i);
+        execute("DELETE FROM %s WHERE k = 1 AND c = 0");
+
+        // served from the memtable, on the event loop
+        assertEquals(9, session.execute(select.bind(1)).all().size());
+        assertEquals(0, session.execute(select.bind(2)).all().size());
+
+        // served from disk, off the event loop
+        flush();
+        execute("INSERT INTO %s (k, c, v) VALUES (1, 10, 10)");
+        assertEquals(10, session.execute(select.bind(1)).all().size());
+    }
+
+    private SelectStatement prepareSelect(String query)
+    {
+        ResultMessage.Prepared prepared = QueryProcessor.prepare(formatQuery(query), ClientState.forInternalCalls());
+        return (SelectStatement) QueryProcessor.instance.getPrepared(prepared.statementId).statement;
+    }
+
+    private static SelectStatement.StartedRead readFromMemory(SelectStatement statement, ConsistencyLevel consistency)
+    {
+        QueryOptions options = options(consistency);
+        options.prepare(statement.getBindVariables());
+        return statement.readFromMemory(QueryState.forInternalCalls(), options, System.nanoTime());
+    }
+
+    private static QueryOptions options(ConsistencyLevel consistency)
+    {
+        return QueryOptions.forInternalCalls(consistency, Collections.singletonList(Int32Type.instance.decompose(1)));
+    }
+
+    private static int rowCount(StorageProxy.PendingRead read)
+    {
+        assertNotNull(read);
+        int rows = 0;
+        try (PartitionIterator partitions = read.get())
+        {
+            while (partitions.hasNext())
+            {
+                try (RowIterator partition = partitions.next())
+                {
+                    while (partition.hasNext())
+                    {
+                        partition.next();
+                        rows++;
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.transport;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.metrics.CassandraMetricsRegistry;
+import org.apache.cassandra.metrics.DefaultNameFactory;
+import org.apache.cassandra.transport.messages.ErrorMessage;
+import org.apache.cassandra.transport.messages.ExecuteMessage;
+import org.apache.cassandra.transport.messages.QueryMessage;
+import org.apache.cassandra.transport.messages.ResultMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedRequestsTest extends CQLTester
+{
+    @BeforeClass
+    public static void setUp()
+    {
+        DatabaseDescriptor.setNativeTransportMaxPipelinedGroupSize(4);
+        requireNetwork();
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        DatabaseDescriptor.setNativeTransportMaxPipelinedGroupSize(1);
+    }
+
+    @Test
+    public void testPipelinedExecutions() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        for (int k = 0; k < 10; k++)
+            for (int c = 0; c <= k; c++)
+                execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", k, c, k * c);
+        flush();
+        execute("INSERT INTO %s (k, c, v) VALUES (9, 10, 90)");
+
+        try (SimpleClient client = new SimpleClient(nativeAddr.getHostAddress(), nativePort, ProtocolVersion.V4))
+        {
+            client.connect(false, false);
+            ResultMessage.Prepared select = client.prepare(formatQuery("SELECT c, v FROM %s WHERE k = ?"));
+            ResultMessage.Prepared insert = client.prepare(formatQuery("INSERT INTO %s (k, c, v) VALUES (?, 100, 100)"));
+
+            // a run of selects larger than a group, interrupted by an insert and an unprepared select, and ending with
+            // a select for a partition that doesn't exist and one with an invalid consistency level
+            List<Message.Request> requests = new ArrayList<>();
+            for (int k = 0; k < 6; k++)
+                requests.add(execute(select, ConsistencyLevel.ONE, k));
+            requests.add(execute(insert, ConsistencyLevel.ONE, 100));
+            requests.add(new QueryMessage(formatQuery("SELECT c, v FROM %s WHERE k = 1"), QueryOptions.DEFAULT));
+            for (int k = 6; k < 11; k++)
+                requests.add(execute(select, ConsistencyLevel.ONE, k));
+            requests.add(execute(select, ConsistencyLevel.ANY, 0));
+
+            long pipelinedBefore = pipelinedRequests();
+            List<Message.Response> responses = client.execute(requests);
+            assertEquals(requests.size(), responses.size());
+            // the requests are all written at once, so the runs of selects are received together and grouped
+            assertTrue(pipelinedRequests() - pipelinedBefore >= 2);
+            for (int k = 0; k < 6; k++)
+                assertRows(responses.get(k), k, k + 1);
+            assertTrue(responses.get(6) instanceof ResultMessage.Void);
+            assertRows(responses.get(7), 1, 2);
+            for (int k = 6; k < 11; k++)
+                assertRows(responses.get(k + 2), k, k == 10 ? 0 : k == 9 ? k + 2 : k + 1);
+            assertTrue(responses.get(13) instanceof ErrorMessage);
+        }
+    }
+
+    private static long pipelinedRequests()
+    {
+        return CassandraMetricsRegistry.Metrics.meter(new DefaultNameFactory("Client").createMetricName("PipelinedRequests")).getCount();
+    }
+
+    private static ExecuteMessage execute(ResultMessage.Prepared prepared, ConsistencyLevel consistency, int value)
+    {
+        List<ByteBuffer> values = Collections.singletonList(Int32Type.instance.decompose(value));
+        QueryOptions options = QueryOptions.create(consistency, values, false, 100, null, null, ProtocolVersion.V4, null);
+        return new ExecuteMessage(prepared.statementId, prepared.resultMetadataId, options);
+    }
+
+    private static void assertRows(Message.Response response, int k, int expectedRows)
+    {
+        assertTrue(response.toString(), response instanceof ResultMessage.Rows);
+        List<List<ByteBuffer>> rows = ((ResultMessage.Rows) response).result.rows;
+        assertEquals(expectedRows, rows.size());
+        for (int c = 0; c < expectedRows; c++)
+        {
+            int expectedC = k == 9 && c == expectedRows - 1 ? 10 : c;
+            assertEquals(expectedC, (int) Int32Type.instance.compose(rows.get(c).get(0)));
+            assertEquals(k * expectedC, (int) Int32Type.instance.compose(rows.get(c).get(1)));
+        }
+    }
+}
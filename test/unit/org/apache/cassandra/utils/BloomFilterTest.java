@@ -140,6 +140,55 @@ public class BloomFilterTest
         BloomFilterTest.testSerialize(bfInvHashes, false).close();
     }
 
+    @Test
+    public void testBlockedFalsePositives()
+    {
+        for (double fpChance : new double[]{ 0.1, 0.01 })
+        {
+            try (IFilter filter = FilterFactory.getFilter(FilterTestHelper.ELEMENTS, fpChance, true))
+            {
+                Assert.assertTrue(filter instanceof BlockedBloomFilter);
+
+                ResetableIterator<ByteBuffer> keys = FilterTestHelper.randomKeys();
+                while (keys.hasNext())
+                    filter.add(FilterTestHelper.wrap(keys.next()));
+
+                // no false negatives
+                keys.reset();
+                while (keys.hasNext())
+                    Assert.assertTrue(filter.isPresent(FilterTestHelper.wrap(keys.next())));
+
+                int falsePositives = 0;
+                ResetableIterator<ByteBuffer> otherKeys = FilterTestHelper.randomKeys2();
+                while (otherKeys.hasNext())
+                {
+                    if (filter.isPresent(FilterTestHelper.wrap(otherKeys.next())))
+                        falsePositives++;
+                }
+                double ratio = falsePositives / (double) FilterTestHelper.ELEMENTS;
+                Assert.assertTrue("false positive ratio " + ratio + " for a chance of " + fpChance, ratio <= fpChance);
+            }
+        }
+    }
+
+    @Test
+    public void testBlockedSerialize() throws IOException
+    {
+        try (IFilter blocked = FilterFactory.getFilter(10000L, FilterTestHelper.MAX_FAILURE_RATE, true);
+             IFilter blocked2 = BloomFilterTest.testSerialize(blocked, false))
+        {
+            Assert.assertTrue(blocked2 instanceof BlockedBloomFilter);
+            Assert.assertEquals(((BloomFilter) blocked).hashCount, ((BloomFilter) blocked2).hashCount);
+            compare(((BloomFilter) blocked).bitset, ((BloomFilter) blocked2).bitset);
+        }
+
+        // classic filters are still deserialized as such
+        try (IFilter classic = BloomFilterTest.testSerialize(bfInvHashes, false))
+        {
+            Assert.assertFalse(classic instanceof BlockedBloomFilter);
+        }
+    }
+
     @Test
     @Ignore
     public void testManyRandom()